@@ -0,0 +1,32 @@
+package com.gringotts.hibernatecache.cache.budget;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link CaffeineStorageAccess} of a region sized by a {@link MemoryBudget}, reporting its misses to the region's
+ * {@link GhostHistory}.
+ */
+public class BudgetedStorageAccess extends CaffeineStorageAccess {
+
+    private final GhostHistory ghostHistory;
+
+    public BudgetedStorageAccess(Cache<Object, Object> underlyingCache, GhostHistory ghostHistory) {
+        super(underlyingCache);
+        this.ghostHistory = ghostHistory;
+    }
+
+    public GhostHistory getGhostHistory() {
+        return ghostHistory;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = super.getFromCache(key, session);
+        if (value == null) {
+            ghostHistory.recordMiss(key);
+        }
+        return value;
+    }
+}
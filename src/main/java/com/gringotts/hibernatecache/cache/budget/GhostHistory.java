@@ -0,0 +1,62 @@
+package com.gringotts.hibernatecache.cache.budget;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keys a region recently evicted for lack of space, remembered up to a given total weight of the entries they stood
+ * for. A miss on such a key would have been a hit had the region been that much larger, which is the gain
+ * {@link MemoryBudget} weighs when it moves capacity. Only keys are kept, not values.
+ */
+public class GhostHistory implements RemovalListener<Object, Object> {
+
+    private final Cache<Object, Integer> ghosts;
+
+    private final Weigher<Object, Object> weigher;
+
+    private final LongAdder hits = new LongAdder();
+
+    public GhostHistory(long maximumWeight, Weigher<Object, Object> weigher) {
+        this.weigher = weigher;
+        this.ghosts = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .<Object, Integer>weigher((key, weight) -> weight)
+                .build();
+    }
+
+    @Override
+    public void onRemoval(Object key, Object value, RemovalCause cause) {
+        if (cause == RemovalCause.SIZE && key != null) {
+            ghosts.put(key, weigher.weigh(key, value));
+        }
+    }
+
+    /**
+     * Called on a miss of the region, counts a ghost hit if the key was evicted recently.
+     */
+    public void recordMiss(Object key) {
+        if (ghosts.asMap().remove(key) != null) {
+            hits.increment();
+        }
+    }
+
+    /**
+     * Ghost hits since the last call.
+     */
+    public long drainHits() {
+        return hits.sumThenReset();
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        ghosts.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maximumWeight));
+    }
+
+    public void clear() {
+        ghosts.invalidateAll();
+    }
+}
@@ -0,0 +1,260 @@
+package com.gringotts.hibernatecache.cache.budget;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A number of bytes shared by the regions of one region factory, moved between them while the application runs.
+ * <p>
+ * Every region starts with an equal share of the budget, less what the {@linkplain #reserve reserved} regions (the
+ * timestamps region, which must not be evicted) hold. Each {@link #rebalance()} then compares, over the last interval:
+ * <ul>
+ *     <li>the gain of growing a region by one step: the misses on keys its {@link GhostHistory} evicted within the
+ *     last step worth of entries;</li>
+ *     <li>the loss of shrinking a region by one step: nothing if it does not use that space, otherwise its hits (from
+ *     {@link org.hibernate.stat.CacheRegionStatistics}) spread evenly over its capacity, an upper bound since the
+ *     entries evicted first are the coldest.</li>
+ * </ul>
+ * and moves one step from the region losing least to the region gaining most, if the gain is larger. A step is a
+ * twentieth of the budget, and no region is shrunk below a quarter of its equal share.
+ */
+public class MemoryBudget implements MemoryBudgetMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final int STEPS = 20;
+
+    private static final int MINIMUM_SHARE_DIVISOR = 4;
+
+    private final long budget;
+
+    private final Map<String, Region> regions = new LinkedHashMap<>();
+
+    private final Map<String, LongSupplier> reserved = new ConcurrentHashMap<>();
+
+    private long rebalanceCount;
+
+    private long moveCount;
+
+    private long bytesMoved;
+
+    private String lastDecision = "none";
+
+    public MemoryBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive: " + budget);
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Shares the budget with a region, whose cache must be bounded by weight.
+     *
+     * @param hits the region's hit count so far
+     */
+    public synchronized void register(String regionName, Cache<Object, Object> cache, GhostHistory ghostHistory,
+                                      LongSupplier hits) {
+        regions.put(regionName, new Region(regionName, cache, ghostHistory, hits));
+        long share = available() / regions.size();
+        for (Region region : regions.values()) {
+            region.resize(share);
+        }
+        resizeGhosts();
+    }
+
+    /**
+     * Takes the bytes a region holds off the top of the budget, without bounding it.
+     */
+    public void reserve(String regionName, LongSupplier size) {
+        reserved.put(regionName, size);
+    }
+
+    public synchronized void rebalance() {
+        rebalanceCount++;
+        if (regions.isEmpty()) {
+            return;
+        }
+        long available = available();
+        fit(available);
+        long step = Math.max(1, available / STEPS);
+        long minimum = available / ((long) regions.size() * MINIMUM_SHARE_DIVISOR);
+
+        Region receiver = null;
+        for (Region region : regions.values()) {
+            region.sample();
+            if (region.ghostHits > 0 && (receiver == null || region.ghostHits > receiver.ghostHits)) {
+                receiver = region;
+            }
+        }
+        if (receiver == null) {
+            decide("no region missed evicted keys", false);
+            return;
+        }
+        Region donor = null;
+        double donorLoss = Double.MAX_VALUE;
+        for (Region region : regions.values()) {
+            if (region == receiver || region.allocation - step < minimum) {
+                continue;
+            }
+            double loss = region.lossOfShrinking(step);
+            if (loss < donorLoss) {
+                donor = region;
+                donorLoss = loss;
+            }
+        }
+        if (donor == null || donorLoss >= receiver.ghostHits) {
+            decide(String.format(
+                    "kept allocations: %s would gain %d hits, cheapest donor %s would lose %.1f",
+                    receiver.name, receiver.ghostHits, donor == null ? "none" : donor.name, donorLoss
+            ), false);
+            return;
+        }
+        donor.resize(donor.allocation - step);
+        receiver.resize(receiver.allocation + step);
+        moveCount++;
+        bytesMoved += step;
+        decide(String.format(
+                "moved %d bytes from %s (%d bytes, est. loss %.1f hits) to %s (%d bytes, %d ghost hits)",
+                step, donor.name, donor.allocation, donorLoss, receiver.name, receiver.allocation, receiver.ghostHits
+        ), true);
+    }
+
+    private void decide(String decision, boolean moved) {
+        lastDecision = decision;
+        if (moved) {
+            LOGGER.info("Memory budget rebalancing #{}: {}", rebalanceCount, decision);
+        } else {
+            LOGGER.debug("Memory budget rebalancing #{}: {}", rebalanceCount, decision);
+        }
+    }
+
+    /**
+     * Shrinks every region by the same ratio when the reserved regions grew into the shared budget.
+     */
+    private void fit(long available) {
+        long allocated = 0;
+        for (Region region : regions.values()) {
+            allocated += region.allocation;
+        }
+        if (allocated <= available) {
+            return;
+        }
+        double ratio = (double) available / allocated;
+        for (Region region : regions.values()) {
+            region.resize((long) (region.allocation * ratio));
+        }
+    }
+
+    private void resizeGhosts() {
+        long step = Math.max(1, available() / STEPS);
+        for (Region region : regions.values()) {
+            region.ghostHistory.setMaximumWeight(step);
+        }
+    }
+
+    private long available() {
+        long available = budget;
+        for (LongSupplier size : reserved.values()) {
+            available -= size.getAsLong();
+        }
+        return Math.max(regions.size(), available);
+    }
+
+    @Override
+    public long getBudget() {
+        return budget;
+    }
+
+    @Override
+    public long getReserved() {
+        long size = 0;
+        for (LongSupplier supplier : reserved.values()) {
+            size += supplier.getAsLong();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getAllocations() {
+        Map<String, Long> allocations = new LinkedHashMap<>();
+        for (Region region : regions.values()) {
+            allocations.put(region.name, region.allocation);
+        }
+        return allocations;
+    }
+
+    @Override
+    public synchronized long getRebalanceCount() {
+        return rebalanceCount;
+    }
+
+    @Override
+    public synchronized long getMoveCount() {
+        return moveCount;
+    }
+
+    @Override
+    public synchronized long getBytesMoved() {
+        return bytesMoved;
+    }
+
+    @Override
+    public synchronized String getLastDecision() {
+        return lastDecision;
+    }
+
+    private static final class Region {
+
+        private final String name;
+
+        private final Policy.Eviction<Object, Object> eviction;
+
+        private final GhostHistory ghostHistory;
+
+        private final LongSupplier hits;
+
+        private long allocation;
+
+        private long lastHits;
+
+        private long intervalHits;
+
+        private long ghostHits;
+
+        Region(String name, Cache<Object, Object> cache, GhostHistory ghostHistory, LongSupplier hits) {
+            this.name = name;
+            this.eviction = cache.policy().eviction().orElseThrow(
+                    () -> new IllegalArgumentException("The cache of region " + name + " is not bounded")
+            );
+            this.ghostHistory = ghostHistory;
+            this.hits = hits;
+        }
+
+        void sample() {
+            long currentHits = hits.getAsLong();
+            intervalHits = currentHits - lastHits;
+            lastHits = currentHits;
+            ghostHits = ghostHistory.drainHits();
+        }
+
+        double lossOfShrinking(long step) {
+            long used = eviction.weightedSize().orElse(allocation);
+            if (used <= allocation - step) {
+                return 0;
+            }
+            return allocation == 0 ? 0 : (double) intervalHits * step / allocation;
+        }
+
+        void resize(long allocation) {
+            this.allocation = allocation;
+            eviction.setMaximum(allocation);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.gringotts.hibernatecache.cache.budget;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link MemoryBudget}, registered as
+ * {@code com.gringotts.hibernatecache:type=MemoryBudget,name=<session factory>}.
+ */
+public interface MemoryBudgetMXBean {
+
+    long getBudget();
+
+    /**
+     * Bytes held by regions outside of the rebalancing, such as the timestamps region.
+     */
+    long getReserved();
+
+    /**
+     * Current capacity in bytes of every rebalanced region.
+     */
+    Map<String, Long> getAllocations();
+
+    long getRebalanceCount();
+
+    /**
+     * Rebalancing runs that moved capacity from one region to another.
+     */
+    long getMoveCount();
+
+    long getBytesMoved();
+
+    String getLastDecision();
+}
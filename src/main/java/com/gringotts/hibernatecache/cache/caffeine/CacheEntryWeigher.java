@@ -0,0 +1,184 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.gringotts.hibernatecache.cache.packed.PackedCacheEntry;
+import com.gringotts.hibernatecache.cache.primitive.LongQueryResults;
+import com.gringotts.hibernatecache.cache.query.CanonicalQueryKey;
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.ReferenceCacheEntryImpl;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Weighs a region entry by the heap it retains, in bytes: the key, the value and the storage's own bookkeeping.
+ * <p>
+ * Sizes follow a 64-bit JVM with compressed references (12 byte headers, 4 byte references, 8 byte alignment). The
+ * values Hibernate stores (read-write items and locks, entity, collection and query entries, and the disassembled
+ * state inside them) are walked field by field. Shared instances are not counted: entity names, enum constants,
+ * {@link Boolean}s and the small boxed numbers the JDK caches. Anything else is weighed by its encoded size, which
+ * tracks its heap size closely enough for values that are rare in a region.
+ */
+public class CacheEntryWeigher implements Weigher<Object, Object> {
+
+    /**
+     * Caffeine node plus the {@code ConcurrentHashMap} node and table slot holding it.
+     */
+    static final int ENTRY_OVERHEAD = 80;
+
+    private static final int HEADER = 12;
+
+    private static final int REFERENCE = 4;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int UNKNOWN = 64;
+
+    private final CacheEntryCodec codec;
+
+    public CacheEntryWeigher(CacheEntryCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD + sizeOfKey(key) + sizeOf(value));
+    }
+
+    public long sizeOfKey(Object key) {
+        if (key.getClass().getName().equals("org.hibernate.cache.internal.CacheKeyImplementation")) {
+            // id, type, entity or role name, tenant id and hash code
+            return align(HEADER + 4 * REFERENCE + 4) + sizeOf(DefaultCacheKeysFactory.staticGetEntityId(key));
+        }
+        if (key instanceof CanonicalQueryKey) {
+            // shape, values, row selection, value count and hash code; the shape is shared by the keys of its query
+            return align(HEADER + 4 * REFERENCE + 2 * 4) + sizeOf(((CanonicalQueryKey) key).getParameterValues());
+        }
+        return sizeOf(key);
+    }
+
+    public long sizeOf(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Enum) {
+            return 0;
+        }
+        Class<?> type = value.getClass();
+        if (type == Long.class) {
+            long number = (Long) value;
+            return number >= -128 && number <= 127 ? 0 : 24;
+        } else if (type == Integer.class) {
+            int number = (Integer) value;
+            return number >= -128 && number <= 127 ? 0 : 16;
+        } else if (type == String.class) {
+            return sizeOfString((String) value);
+        } else if (value instanceof AbstractReadWriteAccess.Item) {
+            AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) value;
+            return align(HEADER + 2 * REFERENCE + 8)
+                    + sizeOf(HibernateCacheInternals.getVersion(item))
+                    + sizeOf(item.getValue());
+        } else if (value instanceof AbstractReadWriteAccess.SoftLockImpl) {
+            // the source UUID belongs to the access strategy
+            return align(HEADER + 2 * REFERENCE + 8 + 8 + 4 + 1 + 8 + 8)
+                    + sizeOf(HibernateCacheInternals.getVersion((AbstractReadWriteAccess.SoftLockImpl) value));
+        } else if (value instanceof StandardCacheEntryImpl) {
+            StandardCacheEntryImpl entry = (StandardCacheEntryImpl) value;
+            return align(HEADER + 3 * REFERENCE)
+                    + sizeOf(entry.getVersion())
+                    + sizeOf(entry.getDisassembledState());
+        } else if (value instanceof PackedCacheEntry) {
+            PackedCacheEntry entry = (PackedCacheEntry) value;
+            return align(HEADER + 3 * REFERENCE)
+                    + sizeOf(entry.getVersion())
+                    + align(ARRAY_HEADER + entry.getPackedSize());
+        } else if (value instanceof CollectionCacheEntry) {
+            return align(HEADER + REFERENCE) + sizeOf(HibernateCacheInternals.getState((CollectionCacheEntry) value));
+        } else if (value instanceof QueryResultsCacheImpl.CacheItem) {
+            return align(HEADER + 8 + REFERENCE)
+                    + sizeOf(HibernateCacheInternals.getResults((QueryResultsCacheImpl.CacheItem) value));
+        } else if (value instanceof LongQueryResults) {
+            LongQueryResults results = (LongQueryResults) value;
+            return align(HEADER + 8 + 2 * REFERENCE) + sizeOf(results.getIntValues()) + sizeOf(results.getLongValues());
+        } else if (value instanceof ReferenceCacheEntryImpl) {
+            // the entity instance it references is weighed by its encoded size
+            return align(HEADER + 2 * REFERENCE) + sizeOfUnknown(((ReferenceCacheEntryImpl) value).getReference());
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = align(ARRAY_HEADER + (long) REFERENCE * array.length);
+            for (Object element : array) {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            // an ArrayList and its backing array, the common case for query results
+            long size = align(HEADER + 2 * 4 + REFERENCE) + align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+            for (Object element : collection) {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (type == byte[].class) {
+            return align(ARRAY_HEADER + ((byte[]) value).length);
+        } else if (type == int[].class) {
+            return align(ARRAY_HEADER + 4L * ((int[]) value).length);
+        } else if (type == long[].class) {
+            return align(ARRAY_HEADER + 8L * ((long[]) value).length);
+        } else if (type == Double.class || type == Date.class || type == Instant.class || type == LocalDate.class
+                || type == LocalTime.class) {
+            return 24;
+        } else if (type == Short.class || type == Byte.class || type == Character.class || type == Float.class) {
+            return 16;
+        } else if (type == LocalDateTime.class) {
+            return 24 + 24 + 24;
+        } else if (type == java.sql.Timestamp.class || type == UUID.class) {
+            return 32;
+        } else if (type == java.sql.Date.class || type == java.sql.Time.class) {
+            return 24;
+        } else if (type == BigInteger.class) {
+            return align(HEADER + 5 * 4 + REFERENCE) + align(ARRAY_HEADER + ((BigInteger) value).bitLength() / 8 + 4);
+        } else if (type == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            return align(HEADER + 8 + 2 * 4 + 2 * REFERENCE)
+                    + (decimal.precision() > 18 ? sizeOf(decimal.unscaledValue()) : 0);
+        }
+        return sizeOfUnknown(value);
+    }
+
+    private long sizeOfUnknown(Object value) {
+        try {
+            return align(codec.encode(value).length);
+        } catch (RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Compact strings: one byte per character unless one of them is not Latin-1.
+     */
+    private static long sizeOfString(String value) {
+        int length = value.length();
+        int bytesPerChar = 1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return align(HEADER + REFERENCE + 4 + 1 + 1) + align(ARRAY_HEADER + (long) bytesPerChar * length);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
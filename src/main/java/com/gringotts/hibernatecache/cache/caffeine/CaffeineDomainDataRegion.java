@@ -0,0 +1,140 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import com.gringotts.hibernatecache.cache.nonstrict.GuardedCollectionNonStrictReadWriteAccess;
+import com.gringotts.hibernatecache.cache.nonstrict.GuardedEntityNonStrictReadWriteAccess;
+import com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue;
+import com.gringotts.hibernatecache.cache.readwrite.StripedCollectionReadWriteAccess;
+import com.gringotts.hibernatecache.cache.readwrite.StripedEntityReadWriteAccess;
+import com.gringotts.hibernatecache.cache.readwrite.StripedLocks;
+import com.gringotts.hibernatecache.cache.readwrite.StripedNaturalIdReadWriteAccess;
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.cfg.spi.EntityDataCachingConfig;
+import org.hibernate.cache.cfg.spi.NaturalIdDataCachingConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.ExtendedStatisticsSupport;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionDataAccess;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+
+/**
+ * Entity, collection and natural-id region of a {@link CaffeineRegionFactory}, reporting its entry count and retained
+ * bytes through {@link org.hibernate.stat.CacheRegionStatistics}.
+ * <p>
+ * READ_WRITE access runs its transitions as atomic {@code compute}s, or locks per key through {@link StripedLocks} when
+ * the storage wraps the cache, rather than per region, unless {@link CaffeineSettings#LOCK_STRIPES} is {@code 0}, and
+ * applies the writes of a transaction completion in one pass with {@link CaffeineSettings#BATCH_COMPLETION_WRITES},
+ * puts loads off the reader's thread with {@link CaffeineSettings#ASYNC_PUTS}, and updates inverse collections in
+ * place with {@link CaffeineSettings#INCREMENTAL_COLLECTIONS}.
+ * NONSTRICT_READ_WRITE access turns down stale loads with {@link CaffeineSettings#VERSION_GUARDED_PUTS}, and
+ * caches committed updates with {@link CaffeineSettings#WRITE_THROUGH_UPDATES}.
+ */
+public class CaffeineDomainDataRegion extends DomainDataRegionTemplate implements ExtendedStatisticsSupport {
+
+    public CaffeineDomainDataRegion(
+            DomainDataRegionConfig regionConfig,
+            CaffeineRegionFactory regionFactory,
+            DomainDataStorageAccess storageAccess,
+            CacheKeysFactory defaultKeysFactory,
+            DomainDataRegionBuildingContext buildingContext) {
+        super(regionConfig, regionFactory, storageAccess, defaultKeysFactory, buildingContext);
+    }
+
+    @Override
+    protected EntityDataAccess generateReadWriteEntityAccess(EntityDataCachingConfig accessConfig) {
+        StripedLocks locks = createLocks();
+        return locks == null
+                ? super.generateReadWriteEntityAccess(accessConfig)
+                : new StripedEntityReadWriteAccess(
+                        this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, locks,
+                        isBatchingCompletionWrites(), getAsyncPutQueue()
+                );
+    }
+
+    @Override
+    protected EntityDataAccess generateNonStrictReadWriteEntityAccess(EntityDataCachingConfig accessConfig) {
+        boolean writeThrough = ((CaffeineRegionFactory) getRegionFactory()).getRegionBoolean(
+                getName(), CaffeineSettings.WRITE_THROUGH_UPDATES, false
+        );
+        return writeThrough || isVersionGuarded()
+                ? new GuardedEntityNonStrictReadWriteAccess(
+                        this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, writeThrough
+                )
+                : super.generateNonStrictReadWriteEntityAccess(accessConfig);
+    }
+
+    @Override
+    protected NaturalIdDataAccess generateReadWriteNaturalIdAccess(NaturalIdDataCachingConfig accessConfig) {
+        StripedLocks locks = createLocks();
+        return locks == null
+                ? super.generateReadWriteNaturalIdAccess(accessConfig)
+                : new StripedNaturalIdReadWriteAccess(
+                        this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, locks,
+                        isBatchingCompletionWrites(), getAsyncPutQueue()
+                );
+    }
+
+    @Override
+    public CollectionDataAccess generateCollectionAccess(CollectionDataCachingConfig accessConfig) {
+        if (accessConfig.getAccessType() == AccessType.NONSTRICT_READ_WRITE && isVersionGuarded()) {
+            return new GuardedCollectionNonStrictReadWriteAccess(
+                    this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig
+            );
+        }
+        StripedLocks locks = accessConfig.getAccessType() == AccessType.READ_WRITE ? createLocks() : null;
+        return locks == null
+                ? super.generateCollectionAccess(accessConfig)
+                : new StripedCollectionReadWriteAccess(
+                        this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, locks,
+                        isBatchingCompletionWrites(), getAsyncPutQueue(),
+                        ((CaffeineRegionFactory) getRegionFactory()).getRegionBoolean(
+                                getName(), CaffeineSettings.INCREMENTAL_COLLECTIONS, false
+                        )
+                );
+    }
+
+    /**
+     * Called while the super constructor runs, before any field of this class is assigned.
+     */
+    private StripedLocks createLocks() {
+        long stripes = ((CaffeineRegionFactory) getRegionFactory()).getRegionLong(
+                getName(), CaffeineSettings.LOCK_STRIPES, CaffeineSettings.DEFAULT_LOCK_STRIPES
+        );
+        return stripes > 0 ? new StripedLocks((int) Math.min(stripes, Integer.MAX_VALUE)) : null;
+    }
+
+    private boolean isBatchingCompletionWrites() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getRegionBoolean(
+                getName(), CaffeineSettings.BATCH_COMPLETION_WRITES, false
+        );
+    }
+
+    private boolean isVersionGuarded() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getRegionBoolean(
+                getName(), CaffeineSettings.VERSION_GUARDED_PUTS, false
+        );
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getElementCountInMemory(getName());
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getSizeInMemory(getName());
+    }
+
+    private AsyncPutQueue getAsyncPutQueue() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getAsyncPutQueue(getName());
+    }
+}
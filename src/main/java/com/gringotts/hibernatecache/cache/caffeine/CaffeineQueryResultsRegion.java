@@ -0,0 +1,30 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import org.hibernate.cache.spi.ExtendedStatisticsSupport;
+import org.hibernate.cache.spi.support.QueryResultsRegionTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+
+/**
+ * Query results region of a {@link CaffeineRegionFactory}, see {@link CaffeineDomainDataRegion}.
+ */
+public class CaffeineQueryResultsRegion extends QueryResultsRegionTemplate implements ExtendedStatisticsSupport {
+
+    public CaffeineQueryResultsRegion(String name, CaffeineRegionFactory regionFactory, StorageAccess storageAccess) {
+        super(name, regionFactory, storageAccess);
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getElementCountInMemory(getName());
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getSizeInMemory(getName());
+    }
+}
@@ -0,0 +1,710 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.gringotts.hibernatecache.cache.budget.BudgetedStorageAccess;
+import com.gringotts.hibernatecache.cache.budget.GhostHistory;
+import com.gringotts.hibernatecache.cache.budget.MemoryBudget;
+import com.gringotts.hibernatecache.cache.packed.EntitySchemas;
+import com.gringotts.hibernatecache.cache.packed.PackedCacheEntryCodec;
+import com.gringotts.hibernatecache.cache.packed.PackedStorageAccess;
+import com.gringotts.hibernatecache.cache.primitive.ConcurrentLongObjectMap;
+import com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory;
+import com.gringotts.hibernatecache.cache.primitive.LongKeyedStorageAccess;
+import com.gringotts.hibernatecache.cache.primitive.LongQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.query.BatchResolvingQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.query.CanonicalQueryKeyStorageAccess;
+import com.gringotts.hibernatecache.cache.query.EntityScopedInvalidation;
+import com.gringotts.hibernatecache.cache.query.EntityScopedQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.query.EntityScopedTimestampsStorageAccess;
+import com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue;
+import com.gringotts.hibernatecache.cache.revalidate.RevalidatingStorageAccess;
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.StringDictionary;
+import com.gringotts.hibernatecache.cache.snapshot.SnapshotStorageAccess;
+import com.gringotts.hibernatecache.cache.timestamps.StripedTimestampsStorageAccess;
+import org.hibernate.boot.registry.selector.spi.StrategySelector;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.SimpleTimestamper;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link org.hibernate.cache.spi.RegionFactory} backed by Caffeine caches.
+ * <p>
+ * Selected with {@code hibernate.cache.region.factory_class=caffeine}. Each region gets its own size-bounded cache
+ * evicted by Caffeine's W-TinyLFU policy, sized through {@link CaffeineSettings}. When
+ * {@link CaffeineSettings#SNAPSHOT_DIRECTORY} is set, entries of versioned entities survive a restart through
+ * {@link SnapshotStorageAccess}. With {@code hibernate.cache.keys_factory=long}, entity regions are stored by
+ * {@link LongKeyedStorageAccess} instead. Entity regions given a {@link CaffeineSettings#STALE_WHILE_REVALIDATE} window
+ * serve expired entries while reloading them, through {@link RevalidatingStorageAccess}.
+ * <p>
+ * Regions report their entry count and the heap their entries retain, as weighed by {@link CacheEntryWeigher},
+ * through {@link org.hibernate.stat.CacheRegionStatistics}; with {@link CaffeineSettings#MAXIMUM_WEIGHT} they are
+ * bounded by those bytes instead of by entry count. With {@link CaffeineSettings#MEMORY_BUDGET}, all bounded regions
+ * share one number of bytes instead, redistributed by a {@link MemoryBudget}.
+ * <p>
+ * Query results regions enabling {@link CaffeineSettings#ENTITY_SCOPED_INVALIDATION} drop their entity queries on the
+ * writes that may change their results only, as told by an {@link EntityScopedInvalidation} the timestamps region
+ * feeds. With {@link CaffeineSettings#COMPACT_QUERY_RESULTS}, identifier results are kept in primitive arrays by
+ * {@link LongQueryResultsStorageAccess}, and with {@link CaffeineSettings#CANONICAL_QUERY_KEYS} keyed by
+ * {@link CanonicalQueryKeyStorageAccess}; {@link CaffeineSettings#BATCH_ENTITY_RESOLUTION} has
+ * {@link BatchResolvingQueryResultsStorageAccess} load the entities missing from a hit in one query. With
+ * {@link CaffeineSettings#STRIPED_TIMESTAMPS}, the timestamps region keeps a slot per table in a
+ * {@link StripedTimestampsStorageAccess} instead of a cache.
+ */
+public class CaffeineRegionFactory extends RegionFactoryTemplate {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaffeineRegionFactory.class);
+
+    private final CacheKeysFactory defaultCacheKeysFactory;
+
+    private volatile CacheKeysFactory cacheKeysFactory;
+
+    private final Map<String, Cache<Object, Object>> caches = new ConcurrentHashMap<>();
+
+    private final Map<String, ConcurrentLongObjectMap> longKeyedEntries = new ConcurrentHashMap<>();
+
+    private volatile Map configValues;
+
+    private volatile long lockTimeout = SimpleTimestamper.timeOut();
+
+    private volatile Path snapshotDirectory;
+
+    private volatile CacheEntryCodec snapshotCodec;
+
+    private volatile PackedCacheEntryCodec packedCodec;
+
+    private volatile CacheEntryWeigher weigher;
+
+    private final Map<String, GhostHistory> ghostHistories = new ConcurrentHashMap<>();
+
+    private final Map<String, StripedTimestampsStorageAccess> stripedTimestamps = new ConcurrentHashMap<>();
+
+    private volatile MemoryBudget memoryBudget;
+
+    private volatile ScheduledExecutorService rebalancer;
+
+    private final Map<String, Long> annotatedStaleWindows = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> staleWindows = new ConcurrentHashMap<>();
+
+    private volatile Executor revalidationExecutor;
+
+    private volatile AsyncPutQueue asyncPutQueue;
+
+    private volatile EntityScopedInvalidation entityScopedInvalidation;
+
+    private volatile ObjectName memoryBudgetName;
+
+    private final Map<String, ObjectName> dictionaryNames = new ConcurrentHashMap<>();
+
+    public CaffeineRegionFactory() {
+        this(DefaultCacheKeysFactory.INSTANCE);
+    }
+
+    public CaffeineRegionFactory(CacheKeysFactory cacheKeysFactory) {
+        this.defaultCacheKeysFactory = cacheKeysFactory;
+        this.cacheKeysFactory = cacheKeysFactory;
+    }
+
+    public Cache<Object, Object> getCache(String regionName) {
+        return caches.get(regionName);
+    }
+
+    /**
+     * Stale window of a region, as annotated by {@link com.gringotts.hibernatecache.cache.revalidate.StaleWhileRevalidate}
+     * on its entity; {@link CaffeineSettings#STALE_WHILE_REVALIDATE} still takes precedence.
+     */
+    public void registerStaleWhileRevalidate(String regionName, long seconds) {
+        annotatedStaleWindows.put(regionName, seconds);
+    }
+
+    /**
+     * The queue putting the loads of a region, shared by every region enabling {@link CaffeineSettings#ASYNC_PUTS}, {@code null}
+     * for the others.
+     */
+    public AsyncPutQueue getAsyncPutQueue(String regionName) {
+        if (!getRegionBoolean(regionName, CaffeineSettings.ASYNC_PUTS, false)) {
+            return null;
+        }
+        AsyncPutQueue queue = asyncPutQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = asyncPutQueue;
+                if (queue == null) {
+                    queue = new AsyncPutQueue(
+                            "caffeine-async-put",
+                            ConfigurationHelper.getInt(
+                                    CaffeineSettings.ASYNC_PUT_QUEUE_SIZE, configValues, CaffeineSettings.DEFAULT_ASYNC_PUT_QUEUE_SIZE
+                            ),
+                            ConfigurationHelper.getInt(
+                                    CaffeineSettings.ASYNC_PUT_THREADS, configValues, CaffeineSettings.DEFAULT_ASYNC_PUT_THREADS
+                            ),
+                            ConfigurationHelper.getLong(
+                                    CaffeineSettings.ASYNC_PUT_BACK_PRESSURE, configValues, CaffeineSettings.DEFAULT_ASYNC_PUT_BACK_PRESSURE
+                            )
+                    );
+                    asyncPutQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * The invalidation shared by the query results regions enabling {@link CaffeineSettings#ENTITY_SCOPED_INVALIDATION},
+     * {@code null} if none does.
+     */
+    public EntityScopedInvalidation getEntityScopedInvalidation() {
+        return entityScopedInvalidation;
+    }
+
+    @Override
+    protected CacheKeysFactory getImplicitCacheKeysFactory() {
+        return cacheKeysFactory;
+    }
+
+    @Override
+    public DomainDataRegion buildDomainDataRegion(
+            DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        verifyStarted();
+        String regionName = regionConfig.getRegionName();
+        CaffeineDomainDataRegion region = new CaffeineDomainDataRegion(
+                regionConfig,
+                this,
+                createDomainDataStorageAccess(regionConfig, buildingContext),
+                getImplicitCacheKeysFactory(),
+                buildingContext
+        );
+        shareMemoryBudget(regionName, buildingContext.getSessionFactory(),
+                          statistics -> statistics.getDomainDataRegionStatistics(regionName));
+        return region;
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, SessionFactoryImplementor sessionFactory) {
+        verifyStarted();
+        CaffeineQueryResultsRegion region = new CaffeineQueryResultsRegion(
+                regionName, this, createQueryResultsRegionStorageAccess(regionName, sessionFactory)
+        );
+        shareMemoryBudget(regionName, sessionFactory, statistics -> statistics.getQueryRegionStatistics(regionName));
+        return region;
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, SessionFactoryImplementor sessionFactory) {
+        verifyStarted();
+        CaffeineTimestampsRegion region = new CaffeineTimestampsRegion(
+                regionName, this, createTimestampsRegionStorageAccess(regionName, sessionFactory)
+        );
+        if (memoryBudget != null) {
+            memoryBudget.reserve(regionName, () -> getSizeInMemory(regionName));
+        }
+        return region;
+    }
+
+    /**
+     * Hands the cache of a region over to the {@link MemoryBudget}, if there is one and the cache is bounded.
+     */
+    protected void shareMemoryBudget(
+            String regionName,
+            SessionFactoryImplementor sessionFactory,
+            Function<Statistics, CacheRegionStatistics> regionStatistics) {
+        GhostHistory ghostHistory = ghostHistories.get(regionName);
+        if (memoryBudget == null || ghostHistory == null) {
+            return;
+        }
+        memoryBudget.register(regionName, caches.get(regionName), ghostHistory, () -> {
+            Statistics statistics = sessionFactory.getStatistics();
+            if (!statistics.isStatisticsEnabled()) {
+                return 0;
+            }
+            CacheRegionStatistics cacheRegionStatistics = regionStatistics.apply(statistics);
+            return cacheRegionStatistics == null ? 0 : cacheRegionStatistics.getHitCount();
+        });
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Entries held by a region, including the ones of a {@link LongKeyedStorageAccess} and the tables of a
+     * {@link StripedTimestampsStorageAccess}.
+     */
+    public long getElementCountInMemory(String regionName) {
+        long count = 0;
+        Cache<Object, Object> cache = caches.get(regionName);
+        if (cache != null) {
+            count += cache.estimatedSize();
+        }
+        ConcurrentLongObjectMap entries = longKeyedEntries.get(regionName);
+        if (entries != null) {
+            count += entries.size();
+        }
+        StripedTimestampsStorageAccess timestamps = stripedTimestamps.get(regionName);
+        if (timestamps != null) {
+            count += timestamps.getElementCount();
+        }
+        return count;
+    }
+
+    /**
+     * Heap bytes retained by the entries of a region. Byte-bounded caches keep this number up to date, the others are
+     * weighed entry by entry on every call.
+     */
+    public long getSizeInMemory(String regionName) {
+        CacheEntryWeigher weigher = this.weigher;
+        if (weigher == null) {
+            return 0;
+        }
+        long size = 0;
+        Cache<Object, Object> cache = caches.get(regionName);
+        if (cache != null) {
+            OptionalLong weightedSize = cache.policy().eviction()
+                    .map(Policy.Eviction::weightedSize)
+                    .orElse(OptionalLong.empty());
+            if (weightedSize.isPresent()) {
+                size += weightedSize.getAsLong();
+            } else {
+                for (Map.Entry<Object, Object> entry : cache.asMap().entrySet()) {
+                    size += weigher.weigh(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        ConcurrentLongObjectMap entries = longKeyedEntries.get(regionName);
+        if (entries != null) {
+            LongAdder entriesSize = new LongAdder();
+            // the key and reference slots, at the maximum load factor
+            entries.forEach((key, value) -> entriesSize.add(16 + weigher.sizeOf(value)));
+            size += entriesSize.sum();
+        }
+        StripedTimestampsStorageAccess timestamps = stripedTimestamps.get(regionName);
+        if (timestamps != null) {
+            size += timestamps.getSizeInMemory();
+        }
+        return size;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+            DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        String regionName = regionConfig.getRegionName();
+        if (cacheKeysFactory instanceof LongCacheKeysFactory && regionConfig.getCollectionCaching().isEmpty()) {
+            return createLongKeyedStorageAccess(regionConfig);
+        }
+        long staleWindow = getStaleWindow(regionConfig);
+        if (staleWindow > 0) {
+            staleWindows.put(regionName, staleWindow);
+        }
+        Cache<Object, Object> cache = getOrCreateCache(regionName, true);
+        CaffeineStorageAccess storageAccess = createStorageAccess(regionName, cache);
+        if (staleWindow > 0) {
+            CacheKeysFactory keysFactory = buildingContext.getEnforcedCacheKeysFactory() != null
+                    ? buildingContext.getEnforcedCacheKeysFactory()
+                    : getImplicitCacheKeysFactory();
+            storageAccess = new RevalidatingStorageAccess(
+                    storageAccess,
+                    getRegionLong(regionName, CaffeineSettings.EXPIRE_AFTER_WRITE, -1),
+                    revalidationExecutor,
+                    buildingContext.getSessionFactory(),
+                    regionConfig.getEntityCaching().get(0).getNavigableRole().getFullPath(),
+                    keysFactory
+            );
+        }
+        if (getRegionBoolean(regionName, CaffeineSettings.PACKED_ENTRIES, false)) {
+            return new PackedStorageAccess(
+                    storageAccess,
+                    createPackedCodec(regionName, buildingContext.getSessionFactory()),
+                    EntitySchemas.getInstance()
+            );
+        }
+        if (snapshotDirectory == null || regionConfig.getEntityCaching().isEmpty()) {
+            return storageAccess;
+        }
+        return new SnapshotStorageAccess(
+                storageAccess,
+                cache.asMap(),
+                snapshotDirectory.resolve(regionName.replaceAll("[^\\w.$-]", "_") + ".snapshot"),
+                snapshotCodec,
+                getRegionLong(
+                        regionName, CaffeineSettings.SNAPSHOT_MAX_AGE, CaffeineSettings.DEFAULT_SNAPSHOT_MAX_AGE
+                ),
+                regionConfig.getEntityCaching().stream()
+                        .map(config -> config.getNavigableRole().getFullPath())
+                        .collect(Collectors.toList()),
+                this::nextTimestamp
+        );
+    }
+
+    /**
+     * Seconds the entries of a region are served once expired, {@code -1} unless the region holds a single entity
+     * hierarchy and nothing else, and expires its entries at all.
+     */
+    protected long getStaleWindow(DomainDataRegionConfig regionConfig) {
+        String regionName = regionConfig.getRegionName();
+        if (regionConfig.getEntityCaching().size() != 1
+                || !regionConfig.getCollectionCaching().isEmpty()
+                || !regionConfig.getNaturalIdCaching().isEmpty()
+                || getRegionLong(regionName, CaffeineSettings.EXPIRE_AFTER_WRITE, -1) <= 0) {
+            return -1;
+        }
+        return getRegionLong(
+                regionName, CaffeineSettings.STALE_WHILE_REVALIDATE, annotatedStaleWindows.getOrDefault(regionName, -1L)
+        );
+    }
+
+    /**
+     * The shared codec, or one with a dictionary of the region's own, since dictionary ids are only valid within it.
+     * Such a dictionary is registered as an MBean until the factory is released.
+     */
+    protected PackedCacheEntryCodec createPackedCodec(String regionName, SessionFactoryImplementor sessionFactory) {
+        long dictionarySize = getRegionLong(regionName, CaffeineSettings.STRING_DICTIONARY_SIZE, 0);
+        if (dictionarySize <= 0) {
+            return packedCodec;
+        }
+        StringDictionary dictionary = new StringDictionary((int) Math.min(Integer.MAX_VALUE, dictionarySize));
+        String name = sessionFactory.getName() != null
+                ? sessionFactory.getName()
+                : Integer.toHexString(System.identityHashCode(this));
+        ObjectName objectName = dictionary.registerMBean(name, regionName);
+        if (objectName != null) {
+            dictionaryNames.put(regionName, objectName);
+        }
+        return new PackedCacheEntryCodec(
+                Thread.currentThread().getContextClassLoader(), EntitySchemas.getInstance(), dictionary
+        );
+    }
+
+    protected DomainDataStorageAccess createLongKeyedStorageAccess(DomainDataRegionConfig regionConfig) {
+        String regionName = regionConfig.getRegionName();
+        if (regionConfig.getEntityCaching().size() > 1) {
+            throw new CacheException(
+                    "Region [" + regionName + "] holds several entity hierarchies, whose identifiers would collide " +
+                    "as keys of the [" + LongCacheKeysFactory.SHORT_NAME + "] cache keys factory"
+            );
+        }
+        ConcurrentLongObjectMap entries = new ConcurrentLongObjectMap(
+                getRegionLong(regionName, CaffeineSettings.MAXIMUM_SIZE, CaffeineSettings.DEFAULT_MAXIMUM_SIZE),
+                getRegionLong(regionName, CaffeineSettings.EXPIRE_AFTER_WRITE, -1),
+                ticker()
+        );
+        longKeyedEntries.put(regionName, entries);
+        return new LongKeyedStorageAccess(entries, createStorageAccess(regionName, getOrCreateCache(regionName, true)));
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(
+            String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        StorageAccess storageAccess = createStorageAccess(regionName, getOrCreateCache(regionName, true));
+        if (getRegionBoolean(regionName, CaffeineSettings.CANONICAL_QUERY_KEYS, false)) {
+            storageAccess = new CanonicalQueryKeyStorageAccess(storageAccess);
+        }
+        if (getRegionBoolean(regionName, CaffeineSettings.COMPACT_QUERY_RESULTS, false)) {
+            storageAccess = new LongQueryResultsStorageAccess(storageAccess);
+        }
+        if (entityScopedInvalidation != null
+                && getRegionBoolean(regionName, CaffeineSettings.ENTITY_SCOPED_INVALIDATION, false)) {
+            storageAccess = new EntityScopedQueryResultsStorageAccess(storageAccess, entityScopedInvalidation);
+        }
+        if (getRegionBoolean(regionName, CaffeineSettings.BATCH_ENTITY_RESOLUTION, false)) {
+            // resolves the hits the scoped invalidation let through
+            storageAccess = new BatchResolvingQueryResultsStorageAccess(storageAccess);
+        }
+        return storageAccess;
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(
+            String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        StorageAccess storageAccess;
+        if (getRegionBoolean(regionName, CaffeineSettings.STRIPED_TIMESTAMPS, false)) {
+            StripedTimestampsStorageAccess timestamps = new StripedTimestampsStorageAccess();
+            stripedTimestamps.put(regionName, timestamps);
+            storageAccess = timestamps;
+        } else {
+            // evicting an update timestamp would let stale query results through, so only bound it when asked to
+            storageAccess = new CaffeineStorageAccess(getOrCreateCache(regionName, false));
+        }
+        if (entityScopedInvalidation != null) {
+            return new EntityScopedTimestampsStorageAccess(storageAccess, entityScopedInvalidation);
+        }
+        return storageAccess;
+    }
+
+    protected CaffeineStorageAccess createStorageAccess(String regionName, Cache<Object, Object> cache) {
+        GhostHistory ghostHistory = ghostHistories.get(regionName);
+        return ghostHistory == null
+                ? new CaffeineStorageAccess(cache)
+                : new BudgetedStorageAccess(cache, ghostHistory);
+    }
+
+    protected Cache<Object, Object> getOrCreateCache(String regionName, boolean bounded) {
+        return caches.computeIfAbsent(regionName, name -> createCache(name, bounded));
+    }
+
+    protected Cache<Object, Object> createCache(String regionName, boolean bounded) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+
+        long maximumWeight = getRegionLong(regionName, CaffeineSettings.MAXIMUM_WEIGHT, -1);
+        if (memoryBudget != null && bounded) {
+            // sized once the region is registered with the budget
+            GhostHistory ghostHistory = new GhostHistory(1, weigher);
+            ghostHistories.put(regionName, ghostHistory);
+            builder.maximumWeight(memoryBudget.getBudget()).weigher(weigher).removalListener(ghostHistory);
+        } else if (maximumWeight >= 0) {
+            builder.maximumWeight(maximumWeight).weigher(weigher);
+        } else {
+            long maximumSize = getRegionLong(regionName, CaffeineSettings.MAXIMUM_SIZE,
+                                             bounded ? CaffeineSettings.DEFAULT_MAXIMUM_SIZE : -1);
+            if (maximumSize >= 0) {
+                builder.maximumSize(maximumSize);
+            }
+        }
+
+        long expireAfterWrite = getRegionLong(regionName, CaffeineSettings.EXPIRE_AFTER_WRITE, -1);
+        if (expireAfterWrite > 0) {
+            // stale entries are still served for their window
+            builder.expireAfterWrite(expireAfterWrite + staleWindows.getOrDefault(regionName, 0L), TimeUnit.SECONDS);
+        }
+        builder.ticker(ticker());
+
+        return builder.build();
+    }
+
+    private Ticker ticker() {
+        Object ticker = configValues.get(CaffeineSettings.TICKER);
+        return ticker instanceof Ticker ? (Ticker) ticker : Ticker.systemTicker();
+    }
+
+    protected long getRegionLong(String regionName, String setting, long defaultValue) {
+        Object value = getRegionSetting(regionName, setting);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+    }
+
+    protected boolean getRegionBoolean(String regionName, String setting, boolean defaultValue) {
+        Object value = getRegionSetting(regionName, setting);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString().trim());
+    }
+
+    private Object getRegionSetting(String regionName, String setting) {
+        Object value = configValues.get(CaffeineSettings.PROP_PREFIX + regionName + "." + setting);
+        if (value == null) {
+            value = configValues.get(CaffeineSettings.PROP_PREFIX + setting);
+        }
+        return value;
+    }
+
+    @Override
+    public long getTimeout() {
+        return lockTimeout;
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        this.configValues = configValues;
+        this.cacheKeysFactory = settings.getServiceRegistry().getService(StrategySelector.class)
+                .resolveDefaultableStrategy(
+                        CacheKeysFactory.class,
+                        configValues.get(AvailableSettings.CACHE_KEYS_FACTORY),
+                        defaultCacheKeysFactory
+                );
+        Integer lockTimeoutMillis = ConfigurationHelper.getInteger(CaffeineSettings.LOCK_TIMEOUT, configValues);
+        if (lockTimeoutMillis != null) {
+            this.lockTimeout = (long) lockTimeoutMillis * SimpleTimestamper.ONE_MS;
+        }
+        this.packedCodec = new PackedCacheEntryCodec(Thread.currentThread().getContextClassLoader());
+        this.weigher = new CacheEntryWeigher(new CacheEntryCodec(Thread.currentThread().getContextClassLoader()));
+        long memoryBudget = ConfigurationHelper.getLong(CaffeineSettings.MEMORY_BUDGET, configValues, -1);
+        if (memoryBudget > 0) {
+            startMemoryBudget(settings, memoryBudget, ConfigurationHelper.getInt(
+                    CaffeineSettings.REBALANCE_INTERVAL, configValues, CaffeineSettings.DEFAULT_REBALANCE_INTERVAL
+            ));
+        }
+        Object revalidationExecutor = configValues.get(CaffeineSettings.REVALIDATION_EXECUTOR);
+        this.revalidationExecutor = revalidationExecutor instanceof Executor
+                ? (Executor) revalidationExecutor
+                : createRevalidationExecutor(ConfigurationHelper.getInt(
+                        CaffeineSettings.REVALIDATION_THREADS, configValues, CaffeineSettings.DEFAULT_REVALIDATION_THREADS
+                ));
+        if (isEnabledForAnyRegion(CaffeineSettings.ENTITY_SCOPED_INVALIDATION)) {
+            this.entityScopedInvalidation = new EntityScopedInvalidation(
+                    ConfigurationHelper.getInt(
+                            CaffeineSettings.QUERY_TAGS_MAXIMUM_SIZE, configValues, CaffeineSettings.DEFAULT_QUERY_TAGS_MAXIMUM_SIZE
+                    ),
+                    lockTimeout / SimpleTimestamper.ONE_MS,
+                    this::nextTimestamp
+            );
+        }
+        String snapshotDirectory = ConfigurationHelper.getString(CaffeineSettings.SNAPSHOT_DIRECTORY, configValues);
+        if (snapshotDirectory != null) {
+            try {
+                this.snapshotDirectory = Files.createDirectories(Paths.get(snapshotDirectory));
+            } catch (IOException e) {
+                throw new CacheException("Could not create cache snapshot directory " + snapshotDirectory, e);
+            }
+            this.snapshotCodec = new CacheEntryCodec(Thread.currentThread().getContextClassLoader());
+        }
+    }
+
+    /**
+     * Whether a region setting is enabled globally or for at least one region.
+     */
+    private boolean isEnabledForAnyRegion(String setting) {
+        for (Object entry : configValues.entrySet()) {
+            Object key = ((Map.Entry) entry).getKey();
+            Object value = ((Map.Entry) entry).getValue();
+            if (key instanceof String
+                    && ((String) key).startsWith(CaffeineSettings.PROP_PREFIX)
+                    && (key.equals(CaffeineSettings.PROP_PREFIX + setting) || ((String) key).endsWith("." + setting))
+                    && Boolean.parseBoolean(value.toString().trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Threads start with the first reload, and reloads beyond the queue are turned down rather than waited for.
+     */
+    private ExecutorService createRevalidationExecutor(int threads) {
+        return new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(CaffeineSettings.DEFAULT_REVALIDATION_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "caffeine-revalidation");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    private void startMemoryBudget(SessionFactoryOptions settings, long budget, int rebalanceInterval) {
+        MemoryBudget memoryBudget = new MemoryBudget(budget);
+        this.memoryBudget = memoryBudget;
+        this.rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "caffeine-memory-budget");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalancer.scheduleWithFixedDelay(() -> {
+            try {
+                memoryBudget.rebalance();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not rebalance the cache memory budget", e);
+            }
+        }, rebalanceInterval, rebalanceInterval, TimeUnit.SECONDS);
+
+        String name = settings.getSessionFactoryName() != null
+                ? settings.getSessionFactoryName()
+                : Integer.toHexString(System.identityHashCode(this));
+        try {
+            ObjectName objectName = new ObjectName(
+                    "com.gringotts.hibernatecache:type=MemoryBudget,name=" + ObjectName.quote(name)
+            );
+            ManagementFactory.getPlatformMBeanServer().registerMBean(memoryBudget, objectName);
+            this.memoryBudgetName = objectName;
+        } catch (JMException e) {
+            LOGGER.warn("Could not register the cache memory budget MBean for " + name, e);
+        }
+    }
+
+    private void stopMemoryBudget() {
+        if (rebalancer != null) {
+            rebalancer.shutdownNow();
+            rebalancer = null;
+        }
+        if (memoryBudgetName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(memoryBudgetName);
+            } catch (JMException e) {
+                LOGGER.warn("Could not unregister the cache memory budget MBean " + memoryBudgetName, e);
+            }
+            memoryBudgetName = null;
+        }
+        ghostHistories.values().forEach(GhostHistory::clear);
+        ghostHistories.clear();
+        memoryBudget = null;
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        stopMemoryBudget();
+        dictionaryNames.values().forEach(StringDictionary::unregisterMBean);
+        dictionaryNames.clear();
+        AsyncPutQueue queue = asyncPutQueue;
+        if (queue != null) {
+            queue.close();
+            asyncPutQueue = null;
+        }
+        if (revalidationExecutor instanceof ExecutorService
+                && revalidationExecutor != configValues.get(CaffeineSettings.REVALIDATION_EXECUTOR)) {
+            ((ExecutorService) revalidationExecutor).shutdownNow();
+        }
+        revalidationExecutor = null;
+        entityScopedInvalidation = null;
+        staleWindows.clear();
+        annotatedStaleWindows.clear();
+        caches.values().forEach(Cache::invalidateAll);
+        caches.clear();
+        longKeyedEntries.clear();
+        stripedTimestamps.values().forEach(StripedTimestampsStorageAccess::release);
+        stripedTimestamps.clear();
+        configValues = null;
+        snapshotDirectory = null;
+        snapshotCodec = null;
+        packedCodec = null;
+        weigher = null;
+        cacheKeysFactory = defaultCacheKeysFactory;
+    }
+}
@@ -0,0 +1,240 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+/**
+ * Configuration properties understood by {@link CaffeineRegionFactory}.
+ * <p>
+ * Every region-level setting can be given globally (e.g. {@code hibernate.cache.caffeine.maximum_size}) or for a
+ * single region by inserting the qualified region name after the prefix
+ * (e.g. {@code hibernate.cache.caffeine.com.gringotts.hibernatecache.domain.Post.maximum_size}).
+ */
+public interface CaffeineSettings {
+
+    String SIMPLE_FACTORY_NAME = "caffeine";
+
+    String PROP_PREFIX = "hibernate.cache.caffeine.";
+
+    /**
+     * Maximum number of entries held by a region. Defaults to {@link #DEFAULT_MAXIMUM_SIZE}.
+     * The timestamps region is unbounded unless configured explicitly.
+     */
+    String MAXIMUM_SIZE = "maximum_size";
+
+    /**
+     * Maximum heap bytes retained by the entries of a region, as weighed by {@link CacheEntryWeigher}. Takes precedence
+     * over {@link #MAXIMUM_SIZE}, so that one large collection or query result counts for more than a small entity.
+     * The entries a {@link com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory} region keeps in its
+     * primitive map stay bounded by {@link #MAXIMUM_SIZE}.
+     */
+    String MAXIMUM_WEIGHT = "maximum_weight";
+
+    /**
+     * Heap bytes shared by all bounded regions, moved between them by a
+     * {@link com.gringotts.hibernatecache.cache.budget.MemoryBudget} according to where more space would bring more
+     * hits. Overrides {@link #MAXIMUM_SIZE} and {@link #MAXIMUM_WEIGHT} of those regions; the timestamps region keeps
+     * its own bound, and what it holds is taken off the budget. Disabled unless set.
+     */
+    String MEMORY_BUDGET = PROP_PREFIX + "memory_budget";
+
+    /**
+     * Seconds between two redistributions of the {@link #MEMORY_BUDGET}. Defaults to
+     * {@link #DEFAULT_REBALANCE_INTERVAL}.
+     */
+    String REBALANCE_INTERVAL = PROP_PREFIX + "rebalance_interval";
+
+    /**
+     * Seconds after which an entry expires once written. Entries never expire by default.
+     */
+    String EXPIRE_AFTER_WRITE = "expire_after_write";
+
+    /**
+     * Seconds an entity entry is still served once {@link #EXPIRE_AFTER_WRITE} made it stale, while a background task
+     * reloads it (see {@link com.gringotts.hibernatecache.cache.revalidate.RevalidatingStorageAccess}). Defaults to the
+     * {@link com.gringotts.hibernatecache.cache.revalidate.StaleWhileRevalidate} annotation of the entity, and only
+     * applies to regions holding a single entity hierarchy and nothing else. Disabled unless set.
+     */
+    String STALE_WHILE_REVALIDATE = "stale_while_revalidate";
+
+    /**
+     * Number of threads reloading the entries served by {@link #STALE_WHILE_REVALIDATE}. Defaults to
+     * {@link #DEFAULT_REVALIDATION_THREADS}; reloads beyond {@link #DEFAULT_REVALIDATION_QUEUE_SIZE} queued ones are
+     * dropped, and the entry keeps being served stale until it expires.
+     */
+    String REVALIDATION_THREADS = PROP_PREFIX + "revalidation_threads";
+
+    /**
+     * {@link java.util.concurrent.Executor} instance running the reloads of {@link #STALE_WHILE_REVALIDATE} instead of
+     * the factory's own threads, e.g. to run them on demand in tests.
+     */
+    String REVALIDATION_EXECUTOR = PROP_PREFIX + "revalidation_executor";
+
+    /**
+     * {@link com.github.benmanes.caffeine.cache.Ticker} instance the regions measure the age of their entries with,
+     * e.g. to control expiry in tests. Defaults to {@code System.nanoTime()}.
+     */
+    String TICKER = PROP_PREFIX + "ticker";
+
+    /**
+     * Milliseconds a soft-locked entry stays locked before concurrent loads may replace it.
+     * Defaults to Hibernate's 60 seconds.
+     */
+    String LOCK_TIMEOUT = PROP_PREFIX + "lock_timeout";
+
+    /**
+     * Number of locks the READ_WRITE entries of a region are striped over, so that concurrent writes to different
+     * keys do not wait for each other. Plain regions run their transitions as atomic {@code compute}s and only need
+     * them with {@link #PACKED_ENTRIES}, {@link #SNAPSHOT_DIRECTORY} or long keys. Defaults to
+     * {@link #DEFAULT_LOCK_STRIPES}; {@code 0} falls back to Hibernate's single read/write lock per region.
+     */
+    String LOCK_STRIPES = "lock_stripes";
+
+    /**
+     * Whether the READ_WRITE writes a transaction leaves for its completion (inserted and updated entries, released
+     * soft locks) are buffered per region and applied in one pass once every action completed. Only regions whose
+     * transitions are atomic batch them. Disabled by default.
+     */
+    String BATCH_COMPLETION_WRITES = "batch_completion_writes";
+
+    /**
+     * Whether the READ_WRITE loads of a region are put by the threads of an
+     * {@link com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue} shared by the regions of the factory, instead
+     * of by the reader before its load returns. The soft lock and version checks run when the put does; a put waiting
+     * longer than the lock timeout, or finding the queue still full after {@link #ASYNC_PUT_BACK_PRESSURE}, is dropped.
+     * Disabled by default.
+     */
+    String ASYNC_PUTS = "async_puts";
+
+    /**
+     * Capacity of the queue of {@link #ASYNC_PUTS}. Defaults to {@link #DEFAULT_ASYNC_PUT_QUEUE_SIZE}.
+     */
+    String ASYNC_PUT_QUEUE_SIZE = PROP_PREFIX + "async_put_queue_size";
+
+    /**
+     * Number of threads applying the {@link #ASYNC_PUTS}. Defaults to {@link #DEFAULT_ASYNC_PUT_THREADS}.
+     */
+    String ASYNC_PUT_THREADS = PROP_PREFIX + "async_put_threads";
+
+    /**
+     * Milliseconds a reader waits for room in a full {@link #ASYNC_PUTS} queue before dropping its put. Defaults to
+     * {@link #DEFAULT_ASYNC_PUT_BACK_PRESSURE}; {@code 0} drops right away.
+     */
+    String ASYNC_PUT_BACK_PRESSURE = PROP_PREFIX + "async_put_back_pressure";
+
+    /**
+     * Whether the READ_WRITE inverse one-to-many collections of a region (unordered bags and sets mapped by their
+     * elements) are updated at commit with the element ids a transaction added and removed, under the same soft lock
+     * rules as an updated entity, instead of being invalidated. Disabled by default.
+     */
+    String INCREMENTAL_COLLECTIONS = "incremental_collections";
+
+    /**
+     * Whether the entity queries a query results region caches are invalidated by the writes that may change their
+     * results only, instead of by any write to the tables they read
+     * (see {@link com.gringotts.hibernatecache.cache.query.EntityScopedInvalidation}). Queries it cannot scope to the
+     * rows and columns of a single table keep Hibernate's table-wide invalidation. Disabled by default.
+     */
+    String ENTITY_SCOPED_INVALIDATION = "entity_scoped_invalidation";
+
+    /**
+     * Whether a query results region keeps the results made of {@code long} values only, such as the identifiers of
+     * the entities a query returned, in a primitive array
+     * ({@link com.gringotts.hibernatecache.cache.primitive.LongQueryResults}) instead of a list of boxed values.
+     * Disabled by default.
+     */
+    String COMPACT_QUERY_RESULTS = "compact_query_results";
+
+    /**
+     * Whether a query results region keys its entries by
+     * {@link com.gringotts.hibernatecache.cache.query.CanonicalQueryKey}s sharing the interned, pre-hashed shape of
+     * their query, so that a lookup only hashes and compares parameter values, through a probe reused by the calling
+     * thread. Disabled by default.
+     */
+    String CANONICAL_QUERY_KEYS = "canonical_query_keys";
+
+    /**
+     * Whether a query results region resolves the entities of a cached entity query hit in bulk
+     * ({@link com.gringotts.hibernatecache.cache.query.BatchResolvingQueryResultsStorageAccess}): the ones missing from
+     * both the persistence context and their entity region are loaded by one multi-load query, instead of by a select
+     * each while Hibernate assembles the results. Disabled by default.
+     */
+    String BATCH_ENTITY_RESOLUTION = "batch_entity_resolution";
+
+    /**
+     * Maximum number of row and column change timestamps {@link #ENTITY_SCOPED_INVALIDATION} remembers; evicting one
+     * invalidates every scoped query of its table cached before it. Defaults to
+     * {@link #DEFAULT_QUERY_TAGS_MAXIMUM_SIZE}.
+     */
+    String QUERY_TAGS_MAXIMUM_SIZE = PROP_PREFIX + "query_tags_maximum_size";
+
+    /**
+     * Whether the timestamps region keeps the last update timestamp of each table in a padded slot of its own
+     * ({@link com.gringotts.hibernatecache.cache.timestamps.StripedTimestampsStorageAccess}) instead of a cache entry,
+     * so that query cache hits read them without contending with each other or with the writers. Tables are never
+     * evicted. Disabled by default.
+     */
+    String STRIPED_TIMESTAMPS = "striped_timestamps";
+
+    /**
+     * Whether the NONSTRICT_READ_WRITE entities and collections of a region remember what they invalidated for the
+     * {@link #LOCK_TIMEOUT}, and turn down the loads that read it before the change committed instead of caching stale
+     * state (see {@link com.gringotts.hibernatecache.cache.nonstrict.GuardedEntityNonStrictReadWriteAccess}).
+     * Disabled by default.
+     */
+    String VERSION_GUARDED_PUTS = "version_guarded_puts";
+
+    /**
+     * Whether the NONSTRICT_READ_WRITE entities of a region cache the state an update committed, rather than only
+     * evicting it for the next reader to load again. Commits are ordered by version, so that an older one never
+     * replaces a newer one, which implies {@link #VERSION_GUARDED_PUTS}; unversioned entities are still evicted.
+     * Disabled by default.
+     */
+    String WRITE_THROUGH_UPDATES = "write_through_updates";
+
+    /**
+     * Directory entity regions are snapshotted to when the factory closes, and warmed from when it starts again. Only
+     * entries of versioned entities are kept, and only those whose version still matches the database on restart are
+     * served. Snapshots are disabled unless set, and never taken of regions keyed by
+     * {@link com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory} or using {@link #PACKED_ENTRIES}.
+     */
+    String SNAPSHOT_DIRECTORY = PROP_PREFIX + "snapshot_directory";
+
+    /**
+     * Seconds after which a region snapshot is no longer used to warm the region, being likely to have gone too stale
+     * to be worth validating against the database. Defaults to {@link #DEFAULT_SNAPSHOT_MAX_AGE}; a negative value accepts snapshots of any age.
+     */
+    String SNAPSHOT_MAX_AGE = "snapshot_max_age";
+
+    /**
+     * Whether entity entries are kept packed into a byte array per entry
+     * ({@link com.gringotts.hibernatecache.cache.packed.PackedStorageAccess}), trading hit latency for footprint.
+     * Disabled by default.
+     */
+    String PACKED_ENTRIES = "packed_entries";
+
+    /**
+     * Maximum number of distinct strings the {@link #PACKED_ENTRIES} of a region share through its
+     * {@link com.gringotts.hibernatecache.cache.serialization.StringDictionary}, instead of holding a copy each.
+     * {@code 0}, the default, disables the dictionary. Its statistics are registered as a
+     * {@link com.gringotts.hibernatecache.cache.serialization.StringDictionaryMXBean}.
+     */
+    String STRING_DICTIONARY_SIZE = "string_dictionary_size";
+
+    long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    int DEFAULT_REBALANCE_INTERVAL = 60;
+
+    int DEFAULT_LOCK_STRIPES = 256;
+
+    int DEFAULT_REVALIDATION_THREADS = 1;
+
+    int DEFAULT_REVALIDATION_QUEUE_SIZE = 1_000;
+
+    int DEFAULT_ASYNC_PUT_QUEUE_SIZE = 10_000;
+
+    int DEFAULT_ASYNC_PUT_THREADS = 1;
+
+    int DEFAULT_ASYNC_PUT_BACK_PRESSURE = 10;
+
+    int DEFAULT_QUERY_TAGS_MAXIMUM_SIZE = 100_000;
+
+    long DEFAULT_SNAPSHOT_MAX_AGE = 300;
+}
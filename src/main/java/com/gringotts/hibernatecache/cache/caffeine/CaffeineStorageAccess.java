@@ -0,0 +1,100 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.gringotts.hibernatecache.cache.readwrite.AtomicStorageAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link DomainDataStorageAccess} talking to a Caffeine {@link Cache} directly, without the JCache indirection.
+ * Atomic transitions run as one {@link java.util.concurrent.ConcurrentMap#compute}.
+ */
+public class CaffeineStorageAccess implements AtomicStorageAccess {
+
+    private final Cache<Object, Object> underlyingCache;
+
+    public CaffeineStorageAccess(Cache<Object, Object> underlyingCache) {
+        this.underlyingCache = underlyingCache;
+    }
+
+    public Cache<Object, Object> getUnderlyingCache() {
+        return underlyingCache;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return underlyingCache.getIfPresent(key);
+    }
+
+    /**
+     * @return the entries present for the given keys, read in one pass and left out of the region statistics
+     */
+    public Map<Object, Object> getAllPresent(Iterable<?> keys) {
+        return underlyingCache.getAllPresent(keys);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        underlyingCache.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object key, Function<Entry, T> transition, SharedSessionContractImplementor session) {
+        Object[] result = new Object[1];
+        underlyingCache.asMap().compute(key, (k, value) -> {
+            ComputedEntry entry = new ComputedEntry(value);
+            result[0] = transition.apply(entry);
+            return entry.value;
+        });
+        return (T) result[0];
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return underlyingCache.asMap().containsKey(key);
+    }
+
+    @Override
+    public void evictData() {
+        underlyingCache.invalidateAll();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        underlyingCache.invalidate(key);
+    }
+
+    @Override
+    public void release() {
+        underlyingCache.invalidateAll();
+        underlyingCache.cleanUp();
+    }
+
+    private static final class ComputedEntry implements Entry {
+
+        private Object value;
+
+        private ComputedEntry(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public void remove() {
+            value = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory;
+import org.hibernate.boot.registry.selector.SimpleStrategyRegistrationImpl;
+import org.hibernate.boot.registry.selector.StrategyRegistration;
+import org.hibernate.boot.registry.selector.StrategyRegistrationProvider;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.RegionFactory;
+
+import java.util.Arrays;
+
+/**
+ * Registers {@link CaffeineRegionFactory} under the {@value CaffeineSettings#SIMPLE_FACTORY_NAME} short name, and
+ * {@link LongCacheKeysFactory} under {@value LongCacheKeysFactory#SHORT_NAME}.
+ */
+public final class CaffeineStrategyRegistrationProvider implements StrategyRegistrationProvider {
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Iterable<StrategyRegistration> getStrategyRegistrations() {
+        return Arrays.asList(
+                new SimpleStrategyRegistrationImpl<>(
+                        RegionFactory.class,
+                        CaffeineRegionFactory.class,
+                        CaffeineSettings.SIMPLE_FACTORY_NAME,
+                        CaffeineRegionFactory.class.getName(),
+                        CaffeineRegionFactory.class.getSimpleName()
+                ),
+                new SimpleStrategyRegistrationImpl<>(
+                        CacheKeysFactory.class,
+                        LongCacheKeysFactory.class,
+                        LongCacheKeysFactory.SHORT_NAME,
+                        LongCacheKeysFactory.class.getName(),
+                        LongCacheKeysFactory.class.getSimpleName()
+                )
+        );
+    }
+}
@@ -0,0 +1,30 @@
+package com.gringotts.hibernatecache.cache.caffeine;
+
+import org.hibernate.cache.spi.ExtendedStatisticsSupport;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.cache.spi.support.TimestampsRegionTemplate;
+
+/**
+ * Timestamps region of a {@link CaffeineRegionFactory}, see {@link CaffeineDomainDataRegion}.
+ */
+public class CaffeineTimestampsRegion extends TimestampsRegionTemplate implements ExtendedStatisticsSupport {
+
+    public CaffeineTimestampsRegion(String name, CaffeineRegionFactory regionFactory, StorageAccess storageAccess) {
+        super(name, regionFactory, storageAccess);
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getElementCountInMemory(getName());
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return ((CaffeineRegionFactory) getRegionFactory()).getSizeInMemory(getName());
+    }
+}
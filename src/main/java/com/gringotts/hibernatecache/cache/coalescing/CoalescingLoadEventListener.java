@@ -0,0 +1,144 @@
+package com.gringotts.hibernatecache.cache.coalescing;
+
+import org.hibernate.LockMode;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.event.internal.DefaultLoadEventListener;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.loader.entity.CacheEntityLoaderHelper;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * A {@link DefaultLoadEventListener} letting the concurrent second-level cache misses of an entity share one database
+ * load.
+ * <p>
+ * When a hot entry expires, every request reading it misses at once, runs the same SELECT and then races to put the
+ * same state. Here the first miss of a key loads it as usual, which puts it into the cache before the load returns,
+ * while the misses of the same key arriving meanwhile wait for it, up to the wait timeout, and read the second-level
+ * cache again once it completed. A miss still loads the entity on its own when:
+ * <ul>
+ *     <li>the wait times out, so that a slow or blocked load never stalls the others for longer than that;</li>
+ *     <li>the load it waited for cached nothing, e.g. the row does not exist, or the concurrency strategy turned the
+ *     put down or keeps the entry unreadable to a transaction that started before it.</li>
+ * </ul>
+ * Only plain reads coalesce: loads into a given instance, loads with a lock mode of {@link LockMode#READ} or above,
+ * and sessions that do not both read and write the second-level cache load the entity on their own as before.
+ */
+public class CoalescingLoadEventListener extends DefaultLoadEventListener {
+
+    private final BiFunction<String, String, Object> settings;
+
+    private final Map<Object, Flight> flights = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> waitTimeouts = new ConcurrentHashMap<>();
+
+    private final LoadCoalescingStatistics statistics = new LoadCoalescingStatistics(flights::size);
+
+    /**
+     * @param settings resolves a {@link CoalescingSettings} setting for a region name, {@code null} when it is not set
+     */
+    public CoalescingLoadEventListener(BiFunction<String, String, Object> settings) {
+        this.settings = settings;
+    }
+
+    public LoadCoalescingStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    protected Object loadFromDatasource(LoadEvent event, EntityPersister persister) {
+        long waitTimeout = waitTimeout(event, persister);
+        if (waitTimeout < 0) {
+            return super.loadFromDatasource(event, persister);
+        }
+        EventSource session = event.getSession();
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        Object cacheKey = access.generateCacheKey(
+                event.getEntityId(), persister, session.getFactory(), session.getTenantIdentifier()
+        );
+        Flight flight = new Flight();
+        Flight leader = flights.putIfAbsent(cacheKey, flight);
+        if (leader == null) {
+            statistics.recordLeaderLoad();
+            try {
+                return super.loadFromDatasource(event, persister);
+            } finally {
+                flights.remove(cacheKey, flight);
+                flight.land();
+            }
+        }
+        if (leader.thread == Thread.currentThread()) {
+            // loading the same key again while loading it, the wait could only time out
+            return super.loadFromDatasource(event, persister);
+        }
+        if (!leader.await(waitTimeout)) {
+            statistics.recordTimeout();
+            return super.loadFromDatasource(event, persister);
+        }
+        EntityKey entityKey = session.generateEntityKey(event.getEntityId(), persister);
+        Object entity = CacheEntityLoaderHelper.INSTANCE.loadFromSecondLevelCache(event, persister, entityKey);
+        if (entity != null) {
+            statistics.recordCoalescedLoad();
+            return entity;
+        }
+        statistics.recordUncachedWait();
+        return super.loadFromDatasource(event, persister);
+    }
+
+    /**
+     * @return the milliseconds the load may wait for the one in flight, {@code -1} if it does not coalesce at all
+     */
+    private long waitTimeout(LoadEvent event, EntityPersister persister) {
+        EventSource session = event.getSession();
+        if (!persister.canReadFromCache()
+                || !persister.canWriteToCache()
+                || event.getInstanceToLoad() != null
+                || !event.getLockMode().lessThan(LockMode.READ)
+                || !session.getCacheMode().isGetEnabled()
+                || !session.getCacheMode().isPutEnabled()) {
+            return -1;
+        }
+        return waitTimeouts.computeIfAbsent(persister.getEntityName(), entityName -> {
+            String regionName = persister.getCacheAccessStrategy().getRegion().getName();
+            Object enabled = settings.apply(regionName, CoalescingSettings.ENABLED);
+            if (enabled == null || !Boolean.parseBoolean(enabled.toString().trim())) {
+                return -1L;
+            }
+            Object timeout = settings.apply(regionName, CoalescingSettings.WAIT_TIMEOUT);
+            return timeout == null ? CoalescingSettings.DEFAULT_WAIT_TIMEOUT : Long.parseLong(timeout.toString().trim());
+        });
+    }
+
+    /**
+     * The database load of a key, which the misses of the same key wait for.
+     */
+    private static final class Flight {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final CountDownLatch landed = new CountDownLatch(1);
+
+        void land() {
+            landed.countDown();
+        }
+
+        /**
+         * @return whether the load completed within {@code timeout} milliseconds
+         */
+        boolean await(long timeout) {
+            try {
+                return landed.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.gringotts.hibernatecache.cache.coalescing;
+
+/**
+ * Configuration properties understood by {@link LoadCoalescingIntegrator}.
+ * <p>
+ * Every setting can be given globally (e.g. {@code hibernate.cache.coalescing.enabled}) or for the entities of a
+ * single region by inserting the qualified region name after the prefix
+ * (e.g. {@code hibernate.cache.coalescing.com.gringotts.hibernatecache.domain.Post.wait_timeout}).
+ */
+public interface CoalescingSettings {
+
+    String PROP_PREFIX = "hibernate.cache.coalescing.";
+
+    /**
+     * Whether concurrent second-level cache misses of the same entity share one database load. Disabled by default.
+     */
+    String ENABLED = "enabled";
+
+    /**
+     * Milliseconds a load waits for the one in flight before falling through to the database on its own. Defaults to
+     * {@link #DEFAULT_WAIT_TIMEOUT}; {@code 0} never waits, so that misses are only counted.
+     */
+    String WAIT_TIMEOUT = "wait_timeout";
+
+    long DEFAULT_WAIT_TIMEOUT = 200;
+}
@@ -0,0 +1,110 @@
+package com.gringotts.hibernatecache.cache.coalescing;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.internal.DefaultLoadEventListener;
+import org.hibernate.event.service.spi.DuplicationStrategy;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces the {@link DefaultLoadEventListener} of every session factory enabling {@link CoalescingSettings#ENABLED},
+ * globally or for any region, with a {@link CoalescingLoadEventListener}, and registers its statistics as
+ * {@code com.gringotts.hibernatecache:type=LoadCoalescing,name=<session factory>}.
+ */
+public class LoadCoalescingIntegrator implements Integrator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadCoalescingIntegrator.class);
+
+    private final Map<SessionFactoryImplementor, ObjectName> statisticsNames = new ConcurrentHashMap<>();
+
+    @Override
+    public void integrate(
+            Metadata metadata,
+            SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        Map<?, ?> configValues = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        if (!isEnabledAnywhere(configValues)) {
+            return;
+        }
+        CoalescingLoadEventListener coalescingListener = new CoalescingLoadEventListener((regionName, setting) -> {
+            Object value = configValues.get(CoalescingSettings.PROP_PREFIX + regionName + "." + setting);
+            return value != null ? value : configValues.get(CoalescingSettings.PROP_PREFIX + setting);
+        });
+
+        EventListenerGroup<LoadEventListener> group = serviceRegistry.getService(EventListenerRegistry.class)
+                .getEventListenerGroup(EventType.LOAD);
+        boolean[] hasDefaultListener = new boolean[1];
+        group.fireEventOnEachListener(hasDefaultListener, (listener, found) -> found[0] |= isDefault(listener));
+        if (!hasDefaultListener[0]) {
+            LOGGER.warn("No default load listener to replace, concurrent cache misses will not be coalesced");
+            return;
+        }
+        group.addDuplicationStrategy(new DuplicationStrategy() {
+            @Override
+            public boolean areMatch(Object listener, Object original) {
+                return isDefault(original);
+            }
+
+            @Override
+            public Action getAction() {
+                return Action.REPLACE_ORIGINAL;
+            }
+        });
+        group.appendListener(coalescingListener);
+
+        String name = sessionFactory.getName() != null
+                ? sessionFactory.getName()
+                : Integer.toHexString(System.identityHashCode(sessionFactory));
+        try {
+            ObjectName objectName = new ObjectName(
+                    "com.gringotts.hibernatecache:type=LoadCoalescing,name=" + ObjectName.quote(name)
+            );
+            ManagementFactory.getPlatformMBeanServer().registerMBean(coalescingListener.getStatistics(), objectName);
+            statisticsNames.put(sessionFactory, objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Could not register the load coalescing MBean for " + name, e);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        ObjectName objectName = statisticsNames.remove(sessionFactory);
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.warn("Could not unregister the load coalescing MBean " + objectName, e);
+            }
+        }
+    }
+
+    private static boolean isDefault(Object listener) {
+        return listener.getClass() == DefaultLoadEventListener.class;
+    }
+
+    private static boolean isEnabledAnywhere(Map<?, ?> configValues) {
+        for (Map.Entry<?, ?> entry : configValues.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            if (key.startsWith(CoalescingSettings.PROP_PREFIX)
+                    && key.endsWith(CoalescingSettings.ENABLED)
+                    && Boolean.parseBoolean(String.valueOf(entry.getValue()).trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
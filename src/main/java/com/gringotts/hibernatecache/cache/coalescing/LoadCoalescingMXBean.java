@@ -0,0 +1,33 @@
+package com.gringotts.hibernatecache.cache.coalescing;
+
+/**
+ * JMX view of {@link LoadCoalescingStatistics}, registered as
+ * {@code com.gringotts.hibernatecache:type=LoadCoalescing,name=<session factory>}.
+ */
+public interface LoadCoalescingMXBean {
+
+    /**
+     * Misses that loaded from the database while other loads of the same key could wait for them.
+     */
+    long getLeaderLoadCount();
+
+    /**
+     * Misses served from the second-level cache once the load they waited for completed.
+     */
+    long getCoalescedLoadCount();
+
+    /**
+     * Misses that waited for a load which completed without caching the entity, and loaded it themselves.
+     */
+    long getUncachedWaitCount();
+
+    /**
+     * Misses that gave up waiting after the wait timeout and loaded the entity themselves.
+     */
+    long getTimeoutCount();
+
+    /**
+     * Loads in flight right now.
+     */
+    int getInFlightCount();
+}
@@ -0,0 +1,76 @@
+package com.gringotts.hibernatecache.cache.coalescing;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters of the {@link CoalescingLoadEventListener} of a session factory.
+ */
+public final class LoadCoalescingStatistics implements LoadCoalescingMXBean {
+
+    private final LongAdder leaderLoads = new LongAdder();
+
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    private final LongAdder uncachedWaits = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final IntSupplier inFlight;
+
+    LoadCoalescingStatistics(IntSupplier inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    void recordLeaderLoad() {
+        leaderLoads.increment();
+    }
+
+    void recordCoalescedLoad() {
+        coalescedLoads.increment();
+    }
+
+    void recordUncachedWait() {
+        uncachedWaits.increment();
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public long getLeaderLoadCount() {
+        return leaderLoads.sum();
+    }
+
+    @Override
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    @Override
+    public long getUncachedWaitCount() {
+        return uncachedWaits.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return inFlight.getAsInt();
+    }
+
+    @Override
+    public String toString() {
+        return "LoadCoalescingStatistics{" +
+                "leaderLoads=" + getLeaderLoadCount() +
+                ", coalescedLoads=" + getCoalescedLoadCount() +
+                ", uncachedWaits=" + getUncachedWaitCount() +
+                ", timeouts=" + getTimeoutCount() +
+                ", inFlight=" + getInFlightCount() +
+                '}';
+    }
+}
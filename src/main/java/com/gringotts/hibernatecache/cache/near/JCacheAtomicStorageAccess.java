@@ -0,0 +1,115 @@
+package com.gringotts.hibernatecache.cache.near;
+
+import com.gringotts.hibernatecache.cache.readwrite.AtomicStorageAccess;
+import org.hibernate.cache.jcache.internal.JCacheAccessImpl;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import javax.cache.Cache;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link JCacheAccessImpl} running atomic transitions as one {@link Cache#invoke} each, which a local provider executes
+ * under the lock of the entry, and batches of them as one {@link Cache#invokeAll}.
+ * <p>
+ * Only providers running entry processors in the calling JVM are supported, such as Ehcache's heap and off-heap
+ * tiers. The transitions close over Hibernate's version comparators and the state of the transaction, so they are
+ * neither serializable nor meaningful on another node, which a clustered provider would ship them to.
+ */
+public class JCacheAtomicStorageAccess extends JCacheAccessImpl implements AtomicStorageAccess {
+
+    public JCacheAtomicStorageAccess(Cache underlyingCache) {
+        super(underlyingCache);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object key, Function<Entry, T> transition, SharedSessionContractImplementor session) {
+        try {
+            return (T) getUnderlyingCache().invoke(key, new TransitionProcessor<>(transition));
+        } catch (EntryProcessorException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<Object, T> invokeAll(
+            Map<Object, Function<Entry, T>> transitions,
+            SharedSessionContractImplementor session) {
+        Map<Object, EntryProcessorResult<T>> processed = getUnderlyingCache().invokeAll(
+                transitions.keySet(), new BatchProcessor<>(transitions)
+        );
+        // keys whose transition returned null have no result
+        Map<Object, T> results = new HashMap<>();
+        for (Map.Entry<Object, EntryProcessorResult<T>> result : processed.entrySet()) {
+            try {
+                results.put(result.getKey(), result.getValue().get());
+            } catch (EntryProcessorException e) {
+                throw unwrap(e);
+            }
+        }
+        return results;
+    }
+
+    private static RuntimeException unwrap(EntryProcessorException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+
+    private static final class TransitionProcessor<T> implements EntryProcessor<Object, Object, T> {
+
+        private final Function<Entry, T> transition;
+
+        private TransitionProcessor(Function<Entry, T> transition) {
+            this.transition = transition;
+        }
+
+        @Override
+        public T process(MutableEntry<Object, Object> entry, Object... arguments) {
+            return transition.apply(new MutableEntryAdapter(entry));
+        }
+    }
+
+    private static final class BatchProcessor<T> implements EntryProcessor<Object, Object, T> {
+
+        private final Map<Object, Function<Entry, T>> transitions;
+
+        private BatchProcessor(Map<Object, Function<Entry, T>> transitions) {
+            this.transitions = transitions;
+        }
+
+        @Override
+        public T process(MutableEntry<Object, Object> entry, Object... arguments) {
+            return transitions.get(entry.getKey()).apply(new MutableEntryAdapter(entry));
+        }
+    }
+
+    private static final class MutableEntryAdapter implements Entry {
+
+        private final MutableEntry<Object, Object> entry;
+
+        private MutableEntryAdapter(MutableEntry<Object, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public void setValue(Object value) {
+            entry.setValue(value);
+        }
+
+        @Override
+        public void remove() {
+            entry.remove();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.gringotts.hibernatecache.cache.near;
+
+import com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue;
+import com.gringotts.hibernatecache.cache.readwrite.StripedCollectionReadWriteAccess;
+import com.gringotts.hibernatecache.cache.readwrite.StripedEntityReadWriteAccess;
+import com.gringotts.hibernatecache.cache.readwrite.StripedNaturalIdReadWriteAccess;
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.cfg.spi.EntityDataCachingConfig;
+import org.hibernate.cache.cfg.spi.NaturalIdDataCachingConfig;
+import org.hibernate.cache.jcache.internal.JCacheDomainDataRegionImpl;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionDataAccess;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+
+/**
+ * Domain region of a {@link NearCacheJCacheRegionFactory}, whose READ_WRITE access runs every soft-lock transition
+ * as one atomic invocation of its {@link JCacheAtomicStorageAccess} instead of a {@code get} and a {@code put} under
+ * a region-wide lock, and, with {@link NearCacheSettings#BATCH_COMPLETION_WRITES}, the writes of a transaction
+ * completion as one batch invocation. With {@link NearCacheSettings#ASYNC_PUTS}, loads are put off the reader's thread,
+ * and with {@link NearCacheSettings#INCREMENTAL_COLLECTIONS}, inverse collections are updated in place.
+ */
+public class NearCacheDomainDataRegion extends JCacheDomainDataRegionImpl {
+
+    public NearCacheDomainDataRegion(
+            DomainDataRegionConfig regionConfig,
+            RegionFactoryTemplate regionFactory,
+            DomainDataStorageAccess storageAccess,
+            CacheKeysFactory defaultKeysFactory,
+            DomainDataRegionBuildingContext buildingContext) {
+        super(regionConfig, regionFactory, storageAccess, defaultKeysFactory, buildingContext);
+    }
+
+    @Override
+    protected EntityDataAccess generateReadWriteEntityAccess(EntityDataCachingConfig accessConfig) {
+        return new StripedEntityReadWriteAccess(
+                this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, null,
+                isBatchingCompletionWrites(), getAsyncPutQueue()
+        );
+    }
+
+    @Override
+    protected NaturalIdDataAccess generateReadWriteNaturalIdAccess(NaturalIdDataCachingConfig accessConfig) {
+        return new StripedNaturalIdReadWriteAccess(
+                this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, null,
+                isBatchingCompletionWrites(), getAsyncPutQueue()
+        );
+    }
+
+    @Override
+    public CollectionDataAccess generateCollectionAccess(CollectionDataCachingConfig accessConfig) {
+        return accessConfig.getAccessType() == AccessType.READ_WRITE
+                ? new StripedCollectionReadWriteAccess(
+                        this, getEffectiveKeysFactory(), getCacheStorageAccess(), accessConfig, null,
+                        isBatchingCompletionWrites(), getAsyncPutQueue(),
+                        ((NearCacheJCacheRegionFactory) getRegionFactory()).getRegionBoolean(
+                                getName(), NearCacheSettings.INCREMENTAL_COLLECTIONS, false
+                        )
+                )
+                : super.generateCollectionAccess(accessConfig);
+    }
+
+    /**
+     * Called while the super constructor runs, before any field of this class is assigned.
+     */
+    private boolean isBatchingCompletionWrites() {
+        return ((NearCacheJCacheRegionFactory) getRegionFactory()).getRegionBoolean(
+                getName(), NearCacheSettings.BATCH_COMPLETION_WRITES, false
+        );
+    }
+
+    private AsyncPutQueue getAsyncPutQueue() {
+        return ((NearCacheJCacheRegionFactory) getRegionFactory()).getAsyncPutQueue(getName());
+    }
+}
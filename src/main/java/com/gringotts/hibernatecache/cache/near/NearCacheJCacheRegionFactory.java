@@ -0,0 +1,146 @@
+package com.gringotts.hibernatecache.cache.near;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JCacheRegionFactory} putting a {@link NearCacheStorageAccess} in front of every entity, collection and
+ * natural-id region, whose READ_WRITE transitions run as JCache entry processors ({@link NearCacheDomainDataRegion}).
+ * Query and timestamps regions are left as they are.
+ * <p>
+ * Selected with {@code hibernate.cache.region.factory_class=jcache-near}, configured through the usual
+ * {@code hibernate.javax.cache} properties plus {@link NearCacheSettings}. The JCache provider must be a local one,
+ * see {@link JCacheAtomicStorageAccess}.
+ */
+public class NearCacheJCacheRegionFactory extends JCacheRegionFactory {
+
+    private volatile Map configValues;
+
+    private volatile AsyncPutQueue asyncPutQueue;
+
+    public NearCacheJCacheRegionFactory() {
+    }
+
+    public NearCacheJCacheRegionFactory(CacheKeysFactory cacheKeysFactory) {
+        super(cacheKeysFactory);
+    }
+
+    @Override
+    public DomainDataRegion buildDomainDataRegion(
+            DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        return new NearCacheDomainDataRegion(
+                regionConfig,
+                this,
+                createDomainDataStorageAccess(regionConfig, buildingContext),
+                getImplicitCacheKeysFactory(),
+                buildingContext
+        );
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+            DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        String regionName = regionConfig.getRegionName();
+        DomainDataStorageAccess storageAccess = new JCacheAtomicStorageAccess(
+                getOrCreateCache(regionName, buildingContext.getSessionFactory())
+        );
+
+        long maximumSize = getRegionLong(regionName, NearCacheSettings.MAXIMUM_SIZE,
+                                         NearCacheSettings.DEFAULT_MAXIMUM_SIZE);
+        if (maximumSize <= 0) {
+            return storageAccess;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maximumSize);
+        long expireAfterWrite = getRegionLong(regionName, NearCacheSettings.EXPIRE_AFTER_WRITE, -1);
+        if (expireAfterWrite > 0) {
+            builder.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+        }
+        return new NearCacheStorageAccess(storageAccess, builder.build());
+    }
+
+    protected long getRegionLong(String regionName, String setting, long defaultValue) {
+        Object value = getRegionSetting(regionName, setting);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+    }
+
+    protected boolean getRegionBoolean(String regionName, String setting, boolean defaultValue) {
+        Object value = getRegionSetting(regionName, setting);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString().trim());
+    }
+
+    /**
+     * The queue putting the loads of a region, shared by every region enabling {@link NearCacheSettings#ASYNC_PUTS}, {@code null}
+     * for the others.
+     */
+    public AsyncPutQueue getAsyncPutQueue(String regionName) {
+        if (!getRegionBoolean(regionName, NearCacheSettings.ASYNC_PUTS, false)) {
+            return null;
+        }
+        AsyncPutQueue queue = asyncPutQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = asyncPutQueue;
+                if (queue == null) {
+                    queue = new AsyncPutQueue(
+                            "jcache-near-async-put",
+                            ConfigurationHelper.getInt(
+                                    NearCacheSettings.ASYNC_PUT_QUEUE_SIZE, configValues, NearCacheSettings.DEFAULT_ASYNC_PUT_QUEUE_SIZE
+                            ),
+                            ConfigurationHelper.getInt(
+                                    NearCacheSettings.ASYNC_PUT_THREADS, configValues, NearCacheSettings.DEFAULT_ASYNC_PUT_THREADS
+                            ),
+                            ConfigurationHelper.getLong(
+                                    NearCacheSettings.ASYNC_PUT_BACK_PRESSURE, configValues, NearCacheSettings.DEFAULT_ASYNC_PUT_BACK_PRESSURE
+                            )
+                    );
+                    asyncPutQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    private Object getRegionSetting(String regionName, String setting) {
+        Object value = configValues.get(NearCacheSettings.PROP_PREFIX + regionName + "." + setting);
+        if (value == null) {
+            value = configValues.get(NearCacheSettings.PROP_PREFIX + setting);
+        }
+        return value;
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        this.configValues = configValues;
+        super.prepareForUse(settings, configValues);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        super.releaseFromUse();
+        AsyncPutQueue queue = asyncPutQueue;
+        if (queue != null) {
+            queue.close();
+            asyncPutQueue = null;
+        }
+        configValues = null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gringotts.hibernatecache.cache.near;
+
+/**
+ * Configuration properties understood by {@link NearCacheJCacheRegionFactory}, on top of the {@code hibernate.javax.cache}
+ * ones of the JCache region factory it extends.
+ * <p>
+ * Every setting can be given globally (e.g. {@code hibernate.cache.near.maximum_size}) or for a single region by
+ * inserting the qualified region name after the prefix
+ * (e.g. {@code hibernate.cache.near.com.gringotts.hibernatecache.domain.Post.maximum_size}).
+ */
+public interface NearCacheSettings {
+
+    String SIMPLE_FACTORY_NAME = "jcache-near";
+
+    String PROP_PREFIX = "hibernate.cache.near.";
+
+    /**
+     * Maximum number of entries kept in front of a region. Defaults to {@link #DEFAULT_MAXIMUM_SIZE}; {@code 0}
+     * disables the near cache of the region, which then cannot hold reference entries either.
+     */
+    String MAXIMUM_SIZE = "maximum_size";
+
+    /**
+     * Seconds after which a near entry expires once loaded, so that it never outlives the JCache entry it copies
+     * by much. Entries never expire by default.
+     */
+    String EXPIRE_AFTER_WRITE = "expire_after_write";
+
+    /**
+     * Whether the READ_WRITE writes a transaction leaves for its completion (inserted and updated entries, released
+     * soft locks) are buffered per region and sent to the JCache as one {@code invokeAll}, instead of one
+     * {@code invoke} each. Disabled by default.
+     */
+    String BATCH_COMPLETION_WRITES = "batch_completion_writes";
+
+    /**
+     * Whether the READ_WRITE loads of a region are put by the threads of an
+     * {@link com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue} shared by the regions of the factory, instead
+     * of by the reader before its load returns. The soft lock and version checks run when the put does; a put waiting
+     * longer than the lock timeout, or finding the queue still full after {@link #ASYNC_PUT_BACK_PRESSURE}, is dropped.
+     * Disabled by default.
+     */
+    String ASYNC_PUTS = "async_puts";
+
+    /**
+     * Capacity of the queue of {@link #ASYNC_PUTS}. Defaults to {@link #DEFAULT_ASYNC_PUT_QUEUE_SIZE}.
+     */
+    String ASYNC_PUT_QUEUE_SIZE = PROP_PREFIX + "async_put_queue_size";
+
+    /**
+     * Number of threads applying the {@link #ASYNC_PUTS}. Defaults to {@link #DEFAULT_ASYNC_PUT_THREADS}.
+     */
+    String ASYNC_PUT_THREADS = PROP_PREFIX + "async_put_threads";
+
+    /**
+     * Milliseconds a reader waits for room in a full {@link #ASYNC_PUTS} queue before dropping its put. Defaults to
+     * {@link #DEFAULT_ASYNC_PUT_BACK_PRESSURE}; {@code 0} drops right away.
+     */
+    String ASYNC_PUT_BACK_PRESSURE = PROP_PREFIX + "async_put_back_pressure";
+
+    /**
+     * Whether the READ_WRITE inverse one-to-many collections of a region (unordered bags and sets mapped by their
+     * elements) are updated at commit with the element ids a transaction added and removed, under the same soft lock
+     * rules as an updated entity, instead of being invalidated. Disabled by default.
+     */
+    String INCREMENTAL_COLLECTIONS = "incremental_collections";
+
+    long DEFAULT_MAXIMUM_SIZE = 1_000;
+
+    int DEFAULT_ASYNC_PUT_QUEUE_SIZE = 10_000;
+
+    int DEFAULT_ASYNC_PUT_THREADS = 1;
+
+    int DEFAULT_ASYNC_PUT_BACK_PRESSURE = 10;
+}
@@ -0,0 +1,339 @@
+package com.gringotts.hibernatecache.cache.near;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.gringotts.hibernatecache.cache.readwrite.AtomicStorageAccess;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.ReferenceCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Bounded on-heap cache in front of a domain region storage, so that a hot entry costs a single hash lookup instead of
+ * a JCache {@code get} (and its store-by-value copy).
+ * <p>
+ * Only immutable values are kept: readable {@link AbstractReadWriteAccess.Item}s, disassembled {@link CacheEntry}s and
+ * {@link CollectionCacheEntry}s, never soft locks. Every write the access strategies issue ({@code lockItem},
+ * {@code unlockItem}, {@code afterUpdate}, {@code remove}, {@code evict}) goes through this storage and invalidates the
+ * near entry synchronously, after the write reached the underlying cache. A load racing with such a write is detected
+ * through per-stripe invalidation counters and does not publish the value it read.
+ * <p>
+ * Reference entries ({@code hibernate.cache.use_reference_entries} for immutable entities without associations) hold
+ * the entity instance itself and its persister, which a store-by-value JCache can neither copy nor serialize. They are
+ * kept in the near cache only, and whatever the underlying cache held for that key is evicted, so a hit hands back
+ * the cached instance without disassembling or copying anything; once evicted from the near cache, the entity is
+ * loaded again.
+ * <p>
+ * Atomic transitions go to the underlying storage as one invocation when it is an {@link AtomicStorageAccess} too
+ * (batches of them as one batch invocation), and are otherwise serialized per invalidation stripe, which covers every
+ * transition issued through this storage.
+ * <p>
+ * Writes made by other JVMs to a shared JCache are not seen; the near cache is meant for local (heap, off-heap)
+ * JCache providers, or has to be bounded with {@link NearCacheSettings#EXPIRE_AFTER_WRITE}.
+ */
+public class NearCacheStorageAccess implements AtomicStorageAccess {
+
+    private static final int STRIPES = 64;
+
+    private final DomainDataStorageAccess delegate;
+
+    private final Cache<Object, Object> nearCache;
+
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong clears = new AtomicLong();
+
+    private final Object[] transitionLocks = new Object[STRIPES];
+
+    public NearCacheStorageAccess(DomainDataStorageAccess delegate, Cache<Object, Object> nearCache) {
+        this.delegate = delegate;
+        this.nearCache = nearCache;
+        for (int i = 0; i < STRIPES; i++) {
+            transitionLocks[i] = new Object();
+        }
+    }
+
+    public DomainDataStorageAccess getDelegate() {
+        return delegate;
+    }
+
+    public Cache<Object, Object> getNearCache() {
+        return nearCache;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = nearCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        int stripe = stripe(key);
+        long invalidation = invalidations.get(stripe);
+        long clear = clears.get();
+        value = delegate.getFromCache(key, session);
+        if (isImmutable(value)) {
+            nearCache.put(key, value);
+            if (invalidations.get(stripe) != invalidation || clears.get() != clear) {
+                // a write overtook this load, its own invalidation may already have run
+                nearCache.invalidate(key);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        if (isReference(value)) {
+            putReference(key, value);
+            return;
+        }
+        try {
+            delegate.putIntoCache(key, value, session);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void putFromLoad(Object key, Object value, SharedSessionContractImplementor session) {
+        if (isReference(value)) {
+            putReference(key, value);
+            return;
+        }
+        try {
+            delegate.putFromLoad(key, value, session);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public <T> T invoke(Object key, Function<Entry, T> transition, SharedSessionContractImplementor session) {
+        Object[] reference = new Object[1];
+        try {
+            Function<Entry, T> nearTransition = entry -> {
+                reference[0] = null;
+                return transition.apply(new NearEntry(key, entry, reference));
+            };
+            if (delegate instanceof AtomicStorageAccess) {
+                return ((AtomicStorageAccess) delegate).invoke(key, nearTransition, session);
+            }
+            synchronized (transitionLocks[stripe(key)]) {
+                StoredEntry entry = new StoredEntry(delegate.getFromCache(key, session));
+                T result = nearTransition.apply(entry);
+                if (entry.removed) {
+                    delegate.evictData(key);
+                } else if (entry.written) {
+                    delegate.putIntoCache(key, entry.value, session);
+                }
+                return result;
+            }
+        } finally {
+            invalidate(key);
+            if (reference[0] != null) {
+                nearCache.put(key, reference[0]);
+            }
+        }
+    }
+
+    @Override
+    public <T> Map<Object, T> invokeAll(
+            Map<Object, Function<Entry, T>> transitions,
+            SharedSessionContractImplementor session) {
+        if (!(delegate instanceof AtomicStorageAccess)) {
+            return AtomicStorageAccess.super.invokeAll(transitions, session);
+        }
+        Map<Object, Object[]> references = new HashMap<>();
+        Map<Object, Function<Entry, T>> nearTransitions = new LinkedHashMap<>();
+        for (Map.Entry<Object, Function<Entry, T>> transition : transitions.entrySet()) {
+            Object key = transition.getKey();
+            Object[] reference = new Object[1];
+            references.put(key, reference);
+            nearTransitions.put(key, entry -> {
+                reference[0] = null;
+                return transition.getValue().apply(new NearEntry(key, entry, reference));
+            });
+        }
+        try {
+            return ((AtomicStorageAccess) delegate).invokeAll(nearTransitions, session);
+        } finally {
+            for (Map.Entry<Object, Object[]> reference : references.entrySet()) {
+                invalidate(reference.getKey());
+                if (reference.getValue()[0] != null) {
+                    nearCache.put(reference.getKey(), reference.getValue()[0]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        try {
+            delegate.removeFromCache(key, session);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        try {
+            delegate.clearCache(session);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return nearCache.asMap().containsKey(key) || delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        try {
+            delegate.evictData();
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void evictData(Object key) {
+        try {
+            delegate.evictData(key);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void release() {
+        invalidateAll();
+        nearCache.cleanUp();
+        delegate.release();
+    }
+
+    protected boolean isImmutable(Object value) {
+        return value instanceof AbstractReadWriteAccess.Item
+                || value instanceof CacheEntry
+                || value instanceof CollectionCacheEntry;
+    }
+
+    protected boolean isReference(Object value) {
+        if (value instanceof AbstractReadWriteAccess.Item) {
+            value = ((AbstractReadWriteAccess.Item) value).getValue();
+        }
+        return value instanceof ReferenceCacheEntryImpl;
+    }
+
+    private void putReference(Object key, Object value) {
+        try {
+            delegate.evictData(key);
+        } finally {
+            // fails loads of the evicted value still in flight
+            invalidations.incrementAndGet(stripe(key));
+            nearCache.put(key, value);
+        }
+    }
+
+    private void invalidate(Object key) {
+        invalidations.incrementAndGet(stripe(key));
+        nearCache.invalidate(key);
+    }
+
+    private void invalidateAll() {
+        clears.incrementAndGet();
+        nearCache.invalidateAll();
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Keeps reference values out of the underlying storage, as {@link #putIntoCache} does.
+     */
+    private final class NearEntry implements Entry {
+
+        private final Object key;
+
+        private final Entry entry;
+
+        private final Object[] reference;
+
+        private NearEntry(Object key, Entry entry, Object[] reference) {
+            this.key = key;
+            this.entry = entry;
+            this.reference = reference;
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = entry.getValue();
+            if (value == null) {
+                Object nearValue = nearCache.getIfPresent(key);
+                return isReference(nearValue) ? nearValue : null;
+            }
+            return value;
+        }
+
+        @Override
+        public void setValue(Object value) {
+            if (isReference(value)) {
+                entry.remove();
+                reference[0] = value;
+            } else {
+                entry.setValue(value);
+                reference[0] = null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            entry.remove();
+            reference[0] = null;
+        }
+    }
+
+    private static final class StoredEntry implements Entry {
+
+        private Object value;
+
+        private boolean written;
+
+        private boolean removed;
+
+        private StoredEntry(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(Object value) {
+            this.value = value;
+            written = true;
+            removed = false;
+        }
+
+        @Override
+        public void remove() {
+            value = null;
+            removed = true;
+            written = false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.gringotts.hibernatecache.cache.near;
+
+import org.hibernate.boot.registry.selector.SimpleStrategyRegistrationImpl;
+import org.hibernate.boot.registry.selector.StrategyRegistration;
+import org.hibernate.boot.registry.selector.StrategyRegistrationProvider;
+import org.hibernate.cache.spi.RegionFactory;
+
+import java.util.Collections;
+
+/**
+ * Registers {@link NearCacheJCacheRegionFactory} under the {@value NearCacheSettings#SIMPLE_FACTORY_NAME} short name.
+ */
+public final class NearCacheStrategyRegistrationProvider implements StrategyRegistrationProvider {
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Iterable<StrategyRegistration> getStrategyRegistrations() {
+        return Collections.singletonList(
+                new SimpleStrategyRegistrationImpl<>(
+                        RegionFactory.class,
+                        NearCacheJCacheRegionFactory.class,
+                        NearCacheSettings.SIMPLE_FACTORY_NAME,
+                        NearCacheJCacheRegionFactory.class.getName(),
+                        NearCacheJCacheRegionFactory.class.getSimpleName()
+                )
+        );
+    }
+}
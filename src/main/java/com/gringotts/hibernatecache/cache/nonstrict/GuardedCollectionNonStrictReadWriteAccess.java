@@ -0,0 +1,45 @@
+package com.gringotts.hibernatecache.cache.nonstrict;
+
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.support.CollectionNonStrictReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link CollectionNonStrictReadWriteAccess} turning down the loads that read a collection before its change
+ * committed, see {@link InvalidationMarkers}. The owner version a collection is loaded with does not always change
+ * with it, so only the timestamp of the change is compared.
+ */
+public class GuardedCollectionNonStrictReadWriteAccess extends CollectionNonStrictReadWriteAccess {
+
+    private final InvalidationMarkers markers;
+
+    public GuardedCollectionNonStrictReadWriteAccess(
+            DomainDataRegion region,
+            CacheKeysFactory keysFactory,
+            DomainDataStorageAccess storageAccess,
+            CollectionDataCachingConfig config) {
+        super(region, keysFactory, storageAccess, config);
+        this.markers = new InvalidationMarkers(region, storageAccess, null);
+    }
+
+    public long getRejectedPutCount() {
+        return markers.getRejectedPutCount();
+    }
+
+    public long getInvalidationMarkerCount() {
+        return markers.getMarkerCount();
+    }
+
+    @Override
+    public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        return markers.putFromLoad(session, key, value, version);
+    }
+
+    @Override
+    public void remove(SharedSessionContractImplementor session, Object key) {
+        markers.invalidate(session, key, null);
+    }
+}
@@ -0,0 +1,84 @@
+package com.gringotts.hibernatecache.cache.nonstrict;
+
+import org.hibernate.cache.cfg.spi.EntityDataCachingConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.EntityNonStrictReadWriteAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link EntityNonStrictReadWriteAccess} turning down the loads that read an entity before its change committed, see
+ * {@link InvalidationMarkers}.
+ * <p>
+ * With {@code writeThrough}, the state a versioned update commits replaces the entry instead of leaving the next
+ * reader to load it again.
+ */
+public class GuardedEntityNonStrictReadWriteAccess extends EntityNonStrictReadWriteAccess {
+
+    private final InvalidationMarkers markers;
+
+    private final boolean writeThrough;
+
+    public GuardedEntityNonStrictReadWriteAccess(
+            DomainDataRegion region,
+            CacheKeysFactory keysFactory,
+            DomainDataStorageAccess storageAccess,
+            EntityDataCachingConfig entityAccessConfig,
+            boolean writeThrough) {
+        super(region, keysFactory, storageAccess, entityAccessConfig);
+        this.writeThrough = writeThrough;
+        this.markers = new InvalidationMarkers(
+                region, storageAccess,
+                entityAccessConfig.isVersioned() ? entityAccessConfig.getVersionComparatorAccess().get() : null
+        );
+    }
+
+    public long getRejectedPutCount() {
+        return markers.getRejectedPutCount();
+    }
+
+    public long getWriteThroughCount() {
+        return markers.getWriteThroughCount();
+    }
+
+    public long getInvalidationMarkerCount() {
+        return markers.getMarkerCount();
+    }
+
+    @Override
+    public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        return markers.putFromLoad(session, key, value, version);
+    }
+
+    @Override
+    public boolean update(
+            SharedSessionContractImplementor session,
+            Object key,
+            Object value,
+            Object currentVersion,
+            Object previousVersion) {
+        markers.invalidate(session, key, currentVersion);
+        return false;
+    }
+
+    @Override
+    public boolean afterUpdate(
+            SharedSessionContractImplementor session,
+            Object key,
+            Object value,
+            Object currentVersion,
+            Object previousVersion,
+            SoftLock lock) {
+        if (writeThrough) {
+            return markers.writeThrough(session, key, value, currentVersion);
+        }
+        return super.afterUpdate(session, key, value, currentVersion, previousVersion, lock);
+    }
+
+    @Override
+    public void remove(SharedSessionContractImplementor session, Object key) {
+        markers.invalidate(session, key, null);
+    }
+}
@@ -0,0 +1,211 @@
+package com.gringotts.hibernatecache.cache.nonstrict;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.readwrite.AtomicStorageAccess;
+import com.gringotts.hibernatecache.cache.readwrite.StripedLocks;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.SimpleTimestamper;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The keys a NONSTRICT_READ_WRITE access invalidated recently, so that it can turn down the loads that read them before
+ * the change committed.
+ * <p>
+ * Hibernate's NONSTRICT_READ_WRITE access only evicts a key when it changes, at flush and again after completion, and
+ * caches whatever a load puts afterwards: a load that read the row before the change committed but puts after the
+ * eviction leaves the old state cached until it expires. Here an update leaves a marker behind, before evicting, with:
+ * <ul>
+ *     <li>the new version, for versioned entities: a load is put only if it read that version or a later one, so the
+ *     entry is cacheable again as soon as the change committed;</li>
+ *     <li>the timestamp of the change otherwise (deletes, collections, unversioned entities): a load is put only if its
+ *     transaction started after the change completed.</li>
+ * </ul>
+ * A load that slipped its put in between the check and the marker is evicted right after, since it checks the marker
+ * again once it put. The marker of a rolled back change is dropped on completion, and every marker expires after the
+ * lock timeout, the same bound READ_WRITE puts on how long a load may take. Loads and hits take no lock at all.
+ * <p>
+ * The markers also order the {@linkplain #writeThrough write-through} of committed versions: a commit only replaces
+ * an entry holding an older version, and never writes once a later change marked the key.
+ */
+final class InvalidationMarkers {
+
+    private static final int STRIPES = 64;
+
+    private final DomainDataRegion region;
+
+    private final DomainDataStorageAccess storageAccess;
+
+    private final Comparator versionComparator;
+
+    private final Cache<Object, Marker> markers;
+
+    /**
+     * Guards the write-through of a storage that cannot replace an entry atomically, {@code null} otherwise.
+     */
+    private final StripedLocks locks;
+
+    private final LongAdder rejectedPuts = new LongAdder();
+
+    private final LongAdder writeThroughPuts = new LongAdder();
+
+    /**
+     * @param versionComparator {@code null} unless the data is versioned
+     */
+    InvalidationMarkers(DomainDataRegion region, DomainDataStorageAccess storageAccess, Comparator versionComparator) {
+        this.region = region;
+        this.storageAccess = storageAccess;
+        this.versionComparator = versionComparator;
+        this.markers = Caffeine.newBuilder()
+                .expireAfterWrite(regionFactory().getTimeout() / SimpleTimestamper.ONE_MS, TimeUnit.MILLISECONDS)
+                .build();
+        this.locks = storageAccess instanceof AtomicStorageAccess ? null : new StripedLocks(STRIPES);
+    }
+
+    boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        long timestamp = session.getTransactionStartTimestamp();
+        Marker marker = markers.getIfPresent(key);
+        if (marker != null && marker.isStale(version, timestamp, versionComparator)) {
+            rejectedPuts.increment();
+            return false;
+        }
+        storageAccess.putFromLoad(key, value, session);
+        Marker current = markers.getIfPresent(key);
+        if (current != null && current != marker && current.isStale(version, timestamp, versionComparator)) {
+            storageAccess.removeFromCache(key, session);
+            rejectedPuts.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the key as changed by the transaction of {@code session}, then evicts it.
+     *
+     * @param version the version the change writes, {@code null} when it deletes or the data is not versioned
+     */
+    void invalidate(SharedSessionContractImplementor session, Object key, Object version) {
+        Marker marker = new Marker(versionComparator == null ? null : version, regionFactory().nextTimestamp());
+        markers.put(key, marker);
+        storageAccess.removeFromCache(key, session);
+        if (session instanceof SessionImplementor) {
+            ((SessionImplementor) session).getActionQueue().registerProcess((success, completedSession) -> {
+                if (success) {
+                    // loads that started before the commit may still have read the previous state
+                    markers.asMap().replace(key, marker, new Marker(marker.version, regionFactory().nextTimestamp()));
+                } else {
+                    markers.asMap().remove(key, marker);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the state a versioned change committed, unless the key holds that version or a later one, or a later
+     * change marked it meanwhile. Without a version to order commits by, or once a delete marked the key, the key is
+     * only evicted.
+     *
+     * @return whether {@code value} was cached
+     */
+    @SuppressWarnings("unchecked")
+    boolean writeThrough(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        if (version == null || versionComparator == null) {
+            storageAccess.removeFromCache(key, session);
+            return false;
+        }
+        Marker marker = markers.getIfPresent(key);
+        if (marker != null && marker.version == null) {
+            // deleted since: no version orders the delete against this commit
+            storageAccess.removeFromCache(key, session);
+            return false;
+        }
+        if (marker != null && versionComparator.compare(version, marker.version) < 0) {
+            return false;
+        }
+        boolean written;
+        if (locks == null) {
+            written = ((AtomicStorageAccess) storageAccess).invoke(key, entry -> {
+                if (!isOlder(entry.getValue(), version)) {
+                    return false;
+                }
+                entry.setValue(value);
+                return true;
+            }, session);
+        } else {
+            Lock lock = locks.lockFor(key);
+            lock.lock();
+            try {
+                written = isOlder(storageAccess.getFromCache(key, session), version);
+                if (written) {
+                    storageAccess.putIntoCache(key, value, session);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (written) {
+            writeThroughPuts.increment();
+        }
+        return written;
+    }
+
+    /**
+     * @return whether {@code cached} holds no version or one older than {@code version}
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isOlder(Object cached, Object version) {
+        Object cachedVersion = cached instanceof CacheEntry ? ((CacheEntry) cached).getVersion() : null;
+        return cachedVersion == null || versionComparator.compare(cachedVersion, version) < 0;
+    }
+
+    /**
+     * Loads turned down, or evicted right after their put, because they read a key before its change committed.
+     */
+    long getRejectedPutCount() {
+        return rejectedPuts.sum();
+    }
+
+    /**
+     * Committed versions written through instead of only evicted.
+     */
+    long getWriteThroughCount() {
+        return writeThroughPuts.sum();
+    }
+
+    long getMarkerCount() {
+        return markers.estimatedSize();
+    }
+
+    private RegionFactory regionFactory() {
+        return region.getRegionFactory();
+    }
+
+    private static final class Marker {
+
+        private final Object version;
+
+        private final long timestamp;
+
+        private Marker(Object version, long timestamp) {
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean isStale(Object loadedVersion, long transactionStart, Comparator versionComparator) {
+            if (version != null && loadedVersion != null) {
+                return versionComparator.compare(loadedVersion, version) < 0;
+            }
+            return transactionStart <= timestamp;
+        }
+    }
+}
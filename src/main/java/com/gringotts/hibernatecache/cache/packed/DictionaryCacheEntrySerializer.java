@@ -0,0 +1,34 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntrySerializer;
+import com.gringotts.hibernatecache.cache.serialization.StringDictionary;
+
+import javax.management.ObjectName;
+import java.io.Closeable;
+
+/**
+ * Packs entity entries like {@link PackedCacheEntrySerializer}, and writes repeated strings through a
+ * {@link StringDictionary} of its own. Ehcache creates a serializer per cache, so every region configured with it gets
+ * its own dictionary, whose statistics are registered as an MBean named after the serializer until Ehcache closes the
+ * cache. Not suitable for persistent tiers, which would outlive the dictionary.
+ */
+public class DictionaryCacheEntrySerializer extends CacheEntrySerializer implements Closeable {
+
+    private final ObjectName dictionaryName;
+
+    public DictionaryCacheEntrySerializer(ClassLoader classLoader) {
+        super(new PackedCacheEntryCodec(
+                classLoader, EntitySchemas.getInstance(), new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_SIZE)
+        ));
+        dictionaryName = getCodec().getDictionary().registerMBean(
+                getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)), null
+        );
+    }
+
+    @Override
+    public void close() {
+        if (dictionaryName != null) {
+            StringDictionary.unregisterMBean(dictionaryName);
+        }
+    }
+}
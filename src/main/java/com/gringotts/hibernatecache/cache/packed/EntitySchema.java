@@ -0,0 +1,108 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.EntryInput;
+import com.gringotts.hibernatecache.cache.serialization.EntryOutput;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Layout of the disassembled state of one entity class: a null bitmap (one varint per 64 properties) followed by the
+ * non-null properties, each written as the {@link PropertyKind} its mapping declares.
+ */
+public class EntitySchema {
+
+    private final int id;
+
+    private final String entityName;
+
+    private final PropertyKind[] kinds;
+
+    private final String fingerprint;
+
+    EntitySchema(int id, String entityName, PropertyKind[] kinds) {
+        this.id = id;
+        this.entityName = entityName;
+        this.kinds = kinds;
+        this.fingerprint = fingerprint(entityName, kinds);
+    }
+
+    static String fingerprint(String entityName, PropertyKind[] kinds) {
+        return entityName + Arrays.stream(kinds).map(Enum::name).collect(Collectors.joining(",", "(", ")"));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public int getPropertyCount() {
+        return kinds.length;
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Whether {@code state} has the shape this schema was derived for.
+     */
+    public boolean accepts(Serializable[] state) {
+        if (state.length != kinds.length) {
+            return false;
+        }
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] != null && !kinds[i].accepts(state[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void write(EntryOutput output, Serializable[] state, CacheEntryCodec codec) {
+        for (int i = 0; i < state.length; i += Long.SIZE) {
+            long nulls = 0;
+            for (int bit = 0; bit < Long.SIZE && i + bit < state.length; bit++) {
+                if (state[i + bit] == null) {
+                    nulls |= 1L << bit;
+                }
+            }
+            output.writeVarLong(nulls);
+        }
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] != null) {
+                kinds[i].write(output, state[i], codec);
+            }
+        }
+    }
+
+    public Serializable[] read(EntryInput input, CacheEntryCodec codec) {
+        Serializable[] state = new Serializable[kinds.length];
+        // one bitmap word covers the usual entity, only wider ones pay for an array
+        long nulls = input.readVarLong();
+        long[] moreNulls = null;
+        if (kinds.length > Long.SIZE) {
+            moreNulls = new long[(kinds.length - 1) / Long.SIZE];
+            for (int i = 0; i < moreNulls.length; i++) {
+                moreNulls[i] = input.readVarLong();
+            }
+        }
+        for (int i = 0; i < state.length; i++) {
+            long word = i < Long.SIZE ? nulls : moreNulls[i / Long.SIZE - 1];
+            if ((word & (1L << (i % Long.SIZE))) == 0) {
+                state[i] = (Serializable) kinds[i].read(input, codec);
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "EntitySchema#" + id + fingerprint;
+    }
+}
@@ -0,0 +1,89 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Schemas of the cached entities of every started {@link org.hibernate.SessionFactory}, derived from its metamodel by
+ * {@link PackedEntryIntegrator}.
+ * <p>
+ * Schema ids are only meaningful within this JVM: they are handed out in registration order, and a schema is never
+ * dropped, so that entries written by a closed factory can still be read. Registering the same mapping again reuses
+ * its schema.
+ */
+public final class EntitySchemas {
+
+    private static final EntitySchemas INSTANCE = new EntitySchemas();
+
+    private final List<EntitySchema> schemasById = new CopyOnWriteArrayList<>();
+
+    private final Map<String, EntitySchema> schemasByFingerprint = new ConcurrentHashMap<>();
+
+    private final Map<String, EntitySchema> schemasByEntityName = new ConcurrentHashMap<>();
+
+    public static EntitySchemas getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The schema of the most recently registered mapping of {@code entityName}, or {@code null}.
+     */
+    public EntitySchema forEntity(String entityName) {
+        return schemasByEntityName.get(entityName);
+    }
+
+    /**
+     * @throws IllegalArgumentException when no schema has this id
+     */
+    public EntitySchema forId(int id) {
+        if (id < 0 || id >= schemasById.size()) {
+            throw new IllegalArgumentException("Unknown entity schema id: " + id);
+        }
+        return schemasById.get(id);
+    }
+
+    public void register(SessionFactoryImplementor sessionFactory) {
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (persister.canWriteToCache()) {
+                register(persister.getEntityName(), kinds(persister, sessionFactory));
+            }
+        }
+    }
+
+    synchronized EntitySchema register(String entityName, PropertyKind[] kinds) {
+        EntitySchema schema = schemasByFingerprint.get(EntitySchema.fingerprint(entityName, kinds));
+        if (schema == null) {
+            schema = new EntitySchema(schemasById.size(), entityName, kinds);
+            schemasById.add(schema);
+            schemasByFingerprint.put(schema.getFingerprint(), schema);
+        }
+        schemasByEntityName.put(entityName, schema);
+        return schema;
+    }
+
+    /**
+     * To-one associations are disassembled to the identifier of the associated entity, everything else to a value
+     * of the property's own Java type.
+     */
+    private static PropertyKind[] kinds(EntityPersister persister, SessionFactoryImplementor sessionFactory) {
+        Type[] types = persister.getPropertyTypes();
+        PropertyKind[] kinds = new PropertyKind[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Type type = types[i];
+            if (type.isEntityType()) {
+                type = sessionFactory.getIdentifierType(((EntityType) type).getAssociatedEntityName(sessionFactory));
+            }
+            kinds[i] = type.isCollectionType() || type.isComponentType() || type.isAnyType()
+                    ? PropertyKind.GENERIC
+                    : PropertyKind.of(type.getReturnedClass());
+        }
+        return kinds;
+    }
+}
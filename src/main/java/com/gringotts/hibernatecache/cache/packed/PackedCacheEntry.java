@@ -0,0 +1,41 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+/**
+ * Heap form of a {@link org.hibernate.cache.spi.entry.StandardCacheEntryImpl} whose disassembled state is packed into
+ * a single byte array by its {@link EntitySchema}, instead of an array of boxed values.
+ */
+public final class PackedCacheEntry {
+
+    private final EntitySchema schema;
+
+    private final Object version;
+
+    private final byte[] state;
+
+    PackedCacheEntry(EntitySchema schema, Object version, byte[] state) {
+        this.schema = schema;
+        this.version = version;
+        this.state = state;
+    }
+
+    public EntitySchema getSchema() {
+        return schema;
+    }
+
+    public Object getVersion() {
+        return version;
+    }
+
+    public int getPackedSize() {
+        return state.length;
+    }
+
+    byte[] getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "PackedCacheEntry(" + schema.getEntityName() + ", " + state.length + " bytes)";
+    }
+}
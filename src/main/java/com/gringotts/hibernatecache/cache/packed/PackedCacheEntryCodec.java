@@ -0,0 +1,61 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.EntryInput;
+import com.gringotts.hibernatecache.cache.serialization.EntryOutput;
+import com.gringotts.hibernatecache.cache.serialization.StringDictionary;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+
+import java.io.Serializable;
+
+/**
+ * {@link CacheEntryCodec} packing {@link StandardCacheEntryImpl}s by their {@link EntitySchema}: the entity name
+ * becomes a schema id and the disassembled state loses its per-value type tags. Entries without a registered schema,
+ * or whose state does not match it, keep the tagged encoding.
+ */
+public class PackedCacheEntryCodec extends CacheEntryCodec {
+
+    protected static final byte PACKED_ENTRY = 6;
+
+    private final EntitySchemas schemas;
+
+    public PackedCacheEntryCodec(ClassLoader classLoader) {
+        this(classLoader, EntitySchemas.getInstance());
+    }
+
+    public PackedCacheEntryCodec(ClassLoader classLoader, EntitySchemas schemas) {
+        this(classLoader, schemas, null);
+    }
+
+    public PackedCacheEntryCodec(ClassLoader classLoader, EntitySchemas schemas, StringDictionary dictionary) {
+        super(classLoader, dictionary);
+        this.schemas = schemas;
+    }
+
+    @Override
+    protected void writeStandardEntry(EntryOutput output, StandardCacheEntryImpl entry) {
+        EntitySchema schema = schemas.forEntity(entry.getSubclass());
+        Serializable[] state = entry.getDisassembledState();
+        if (schema == null || !schema.accepts(state)) {
+            super.writeStandardEntry(output, entry);
+            return;
+        }
+        output.writeByte(PACKED_ENTRY);
+        output.writeVarInt(schema.getId());
+        write(output, entry.getVersion());
+        schema.write(output, state, this);
+    }
+
+    @Override
+    protected Object readValue(EntryInput input, byte tag) {
+        if (tag != PACKED_ENTRY) {
+            return super.readValue(input, tag);
+        }
+        EntitySchema schema = schemas.forId(input.readVarInt());
+        Object version = read(input);
+        return HibernateCacheInternals.newStandardCacheEntry(
+                schema.read(input, this), schema.getEntityName(), version
+        );
+    }
+}
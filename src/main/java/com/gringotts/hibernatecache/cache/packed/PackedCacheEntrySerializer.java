@@ -0,0 +1,15 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntrySerializer;
+
+/**
+ * {@link CacheEntrySerializer} writing entity entries with {@link PackedCacheEntryCodec}. Usable wherever the former
+ * is, e.g. as the value serializer of the {@code domain-tiered} template in {@code ehcache-tiered.xml}; the off-heap
+ * tier then holds fewer bytes per entry and a hit decodes the state without per-value type dispatch.
+ */
+public class PackedCacheEntrySerializer extends CacheEntrySerializer {
+
+    public PackedCacheEntrySerializer(ClassLoader classLoader) {
+        super(new PackedCacheEntryCodec(classLoader));
+    }
+}
@@ -0,0 +1,140 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.EntryInput;
+import com.gringotts.hibernatecache.cache.serialization.EntryOutput;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Heap region storage keeping entity entries as {@link PackedCacheEntry}s, plain or inside a READ_WRITE
+ * {@link AbstractReadWriteAccess.Item}.
+ * <p>
+ * This trades CPU for footprint: a packed entry is a single byte array, but since Hibernate only assembles
+ * {@link StandardCacheEntryImpl}s, every hit rebuilds one from the bytes. Use it for large regions whose memory budget
+ * matters more than their hit latency; serializing tiers get the same packing from {@link PackedCacheEntrySerializer}.
+ */
+public class PackedStorageAccess implements DomainDataStorageAccess {
+
+    private final DomainDataStorageAccess delegate;
+
+    private final PackedCacheEntryCodec codec;
+
+    private final EntitySchemas schemas;
+
+    public PackedStorageAccess(DomainDataStorageAccess delegate, PackedCacheEntryCodec codec, EntitySchemas schemas) {
+        this.delegate = delegate;
+        this.codec = codec;
+        this.schemas = schemas;
+    }
+
+    public DomainDataStorageAccess getDelegate() {
+        return delegate;
+    }
+
+    public PackedCacheEntryCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return unpack(delegate.getFromCache(key, session));
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        delegate.putIntoCache(key, pack(value), session);
+    }
+
+    @Override
+    public void putFromLoad(Object key, Object value, SharedSessionContractImplementor session) {
+        delegate.putFromLoad(key, pack(value), session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(key);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+
+    protected Object pack(Object value) {
+        if (value instanceof StandardCacheEntryImpl) {
+            return packEntry((StandardCacheEntryImpl) value);
+        }
+        if (value instanceof AbstractReadWriteAccess.Item) {
+            AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) value;
+            if (item.getValue() instanceof StandardCacheEntryImpl) {
+                Object packed = packEntry((StandardCacheEntryImpl) item.getValue());
+                if (packed != item.getValue()) {
+                    return HibernateCacheInternals.newItem(
+                            packed, HibernateCacheInternals.getVersion(item), HibernateCacheInternals.getTimestamp(item)
+                    );
+                }
+            }
+        }
+        return value;
+    }
+
+    protected Object unpack(Object value) {
+        if (value instanceof PackedCacheEntry) {
+            return unpackEntry((PackedCacheEntry) value);
+        }
+        if (value instanceof AbstractReadWriteAccess.Item) {
+            AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) value;
+            if (item.getValue() instanceof PackedCacheEntry) {
+                return HibernateCacheInternals.newItem(
+                        unpackEntry((PackedCacheEntry) item.getValue()),
+                        HibernateCacheInternals.getVersion(item),
+                        HibernateCacheInternals.getTimestamp(item)
+                );
+            }
+        }
+        return value;
+    }
+
+    private Object packEntry(StandardCacheEntryImpl entry) {
+        EntitySchema schema = schemas.forEntity(entry.getSubclass());
+        Serializable[] state = entry.getDisassembledState();
+        if (schema == null || !schema.accepts(state)) {
+            return entry;
+        }
+        EntryOutput output = new EntryOutput(64);
+        schema.write(output, state, codec);
+        return new PackedCacheEntry(schema, entry.getVersion(), output.toByteArray());
+    }
+
+    private StandardCacheEntryImpl unpackEntry(PackedCacheEntry entry) {
+        EntitySchema schema = entry.getSchema();
+        Serializable[] state = schema.read(new EntryInput(ByteBuffer.wrap(entry.getState())), codec);
+        return HibernateCacheInternals.newStandardCacheEntry(state, schema.getEntityName(), entry.getVersion());
+    }
+}
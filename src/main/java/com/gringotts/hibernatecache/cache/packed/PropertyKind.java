@@ -0,0 +1,171 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.EntryInput;
+import com.gringotts.hibernatecache.cache.serialization.EntryOutput;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * How a single disassembled property is packed by an {@link EntitySchema}: without a type tag for the types the
+ * schema knows from the mapping, through the tagged {@link CacheEntryCodec} encoding for anything else.
+ */
+enum PropertyKind {
+
+    LONG(Long.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            output.writeVarLong((Long) value);
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return input.readVarLong();
+        }
+    },
+    INTEGER(Integer.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            output.writeVarLong((Integer) value);
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return (int) input.readVarLong();
+        }
+    },
+    BOOLEAN(Boolean.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            output.writeByte((Boolean) value ? 1 : 0);
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return input.readByte() != 0;
+        }
+    },
+    DOUBLE(Double.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            output.writeLong(Double.doubleToRawLongBits((Double) value));
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return Double.longBitsToDouble(input.readLong());
+        }
+    },
+    STRING(String.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            codec.writeText(output, (String) value);
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return codec.readText(input);
+        }
+    },
+    /**
+     * Epoch second at UTC, then the nanosecond of the second.
+     */
+    LOCAL_DATE_TIME(LocalDateTime.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            output.writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+            output.writeVarInt(dateTime.getNano());
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return LocalDateTime.ofEpochSecond(input.readVarLong(), input.readVarInt(), ZoneOffset.UTC);
+        }
+    },
+    LOCAL_DATE(LocalDate.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            output.writeVarLong(((LocalDate) value).toEpochDay());
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return LocalDate.ofEpochDay(input.readVarLong());
+        }
+    },
+    INSTANT(Instant.class) {
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            Instant instant = (Instant) value;
+            output.writeVarLong(instant.getEpochSecond());
+            output.writeVarInt(instant.getNano());
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return Instant.ofEpochSecond(input.readVarLong(), input.readVarInt());
+        }
+    },
+    GENERIC(null) {
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void write(EntryOutput output, Object value, CacheEntryCodec codec) {
+            codec.write(output, value);
+        }
+
+        @Override
+        Object read(EntryInput input, CacheEntryCodec codec) {
+            return codec.read(input);
+        }
+    };
+
+    private final Class<?> type;
+
+    PropertyKind(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Disassembled values are boxed, so primitive properties map to the kind of their wrapper.
+     */
+    static PropertyKind of(Class<?> javaType) {
+        if (javaType == Long.class || javaType == long.class) {
+            return LONG;
+        } else if (javaType == Integer.class || javaType == int.class) {
+            return INTEGER;
+        } else if (javaType == Boolean.class || javaType == boolean.class) {
+            return BOOLEAN;
+        } else if (javaType == Double.class || javaType == double.class) {
+            return DOUBLE;
+        } else if (javaType == String.class) {
+            return STRING;
+        } else if (javaType == LocalDateTime.class) {
+            return LOCAL_DATE_TIME;
+        } else if (javaType == LocalDate.class) {
+            return LOCAL_DATE;
+        } else if (javaType == Instant.class) {
+            return INSTANT;
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Whether a non-null disassembled value can be written as this kind. Lazy placeholders, converted or
+     * custom-typed values may not match what the mapping declares.
+     */
+    boolean accepts(Object value) {
+        return value.getClass() == type;
+    }
+
+    abstract void write(EntryOutput output, Object value, CacheEntryCodec codec);
+
+    abstract Object read(EntryInput input, CacheEntryCodec codec);
+}
@@ -0,0 +1,379 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Size-bounded concurrent map from primitive {@code long} keys to non-null values.
+ * <p>
+ * The map is split into segments, each an open-addressing table with linear probing over parallel {@code long[]} and
+ * {@code Object[]} arrays. Reads are optimistic and take no lock unless they raced with a write to the same segment;
+ * removals shift the following probe chain back instead of leaving tombstones. Once a segment holds its share of the
+ * maximum size, every insertion of a new key evicts a randomly chosen other entry of that segment, preferring an
+ * expired one among the few it samples.
+ * <p>
+ * With an expiry, the write time of each entry is kept in a third array and read through the {@link Ticker}; an
+ * expired entry is no longer returned, and stays in its slot until it is replaced, removed or evicted.
+ */
+public class ConcurrentLongObjectMap {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private static final int EVICTION_SAMPLES = 8;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    private final long expireAfterWriteNanos;
+
+    private final Ticker ticker;
+
+    public ConcurrentLongObjectMap(long maximumSize) {
+        this(maximumSize, -1, Ticker.systemTicker());
+    }
+
+    /**
+     * @param expireAfterWriteSeconds seconds after which an entry expires once written, non-positive to never expire
+     * @param ticker the clock write times are read from
+     */
+    public ConcurrentLongObjectMap(long maximumSize, long expireAfterWriteSeconds, Ticker ticker) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size must not be negative: " + maximumSize);
+        }
+        this.expireAfterWriteNanos = expireAfterWriteSeconds > 0
+                ? TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds)
+                : -1;
+        this.ticker = ticker;
+        int segmentMaximumSize = (int) Math.min(Integer.MAX_VALUE / 2, (maximumSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentMaximumSize, expireAfterWriteNanos);
+        }
+    }
+
+    public Object get(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash, now());
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public void put(long key, Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        long hash = hash(key);
+        segmentFor(hash).put(key, hash, value, now());
+    }
+
+    public void remove(long key) {
+        long hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Entries held, including the expired ones not replaced, removed or evicted yet.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Visits every unexpired entry, one segment at a time, each under its read lock.
+     */
+    public void forEach(LongObjectConsumer consumer) {
+        long now = now();
+        for (Segment segment : segments) {
+            segment.forEach(consumer, now);
+        }
+    }
+
+    private long now() {
+        return expireAfterWriteNanos > 0 ? ticker.read() : 0;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> SEGMENT_SHIFT)];
+    }
+
+    static long hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    @FunctionalInterface
+    public interface LongObjectConsumer {
+
+        void accept(long key, Object value);
+    }
+
+    private static final class Segment extends StampedLock {
+
+        private final int maximumSize;
+
+        private final long expireAfterWriteNanos;
+
+        private Table table;
+
+        private int size;
+
+        Segment(int maximumSize, long expireAfterWriteNanos) {
+            this.maximumSize = maximumSize;
+            this.expireAfterWriteNanos = expireAfterWriteNanos;
+            allocate(MINIMUM_CAPACITY);
+        }
+
+        Object get(long key, long hash, long now) {
+            long stamp = tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    Object value = table.find(key, hash, now, expireAfterWriteNanos);
+                    if (validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    // raced with a write, retried below under the read lock
+                }
+            }
+            stamp = readLock();
+            try {
+                return table.find(key, hash, now, expireAfterWriteNanos);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void put(long key, long hash, Object value, long now) {
+            long stamp = writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int mask = values.length - 1;
+                int index = (int) hash & mask;
+                while (values[index] != null) {
+                    if (keys[index] == key) {
+                        values[index] = value;
+                        if (table.writeTimes != null) {
+                            table.writeTimes[index] = now;
+                        }
+                        return;
+                    }
+                    index = (index + 1) & mask;
+                }
+                if (maximumSize == 0) {
+                    return;
+                }
+                if (size >= maximumSize) {
+                    evictRandom(now);
+                } else if ((size + 1) * 4L > values.length * 3L) {
+                    resize(values.length * 2);
+                }
+                insert(key, hash, value, now);
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void remove(long key, long hash) {
+            long stamp = writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int mask = values.length - 1;
+                int index = (int) hash & mask;
+                while (values[index] != null) {
+                    if (keys[index] == key) {
+                        delete(index);
+                        return;
+                    }
+                    index = (index + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                allocate(MINIMUM_CAPACITY);
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = readLock();
+            try {
+                return size;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void forEach(LongObjectConsumer consumer, long now) {
+            long stamp = readLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null && !table.isExpired(i, now, expireAfterWriteNanos)) {
+                        consumer.accept(keys[i], values[i]);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private void insert(long key, long hash, Object value, long writeTime) {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = values.length - 1;
+            int index = (int) hash & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            if (table.writeTimes != null) {
+                table.writeTimes[index] = writeTime;
+            }
+            size++;
+        }
+
+        /**
+         * Evicts the first expired entry among the next {@value #EVICTION_SAMPLES} from a random slot, or the first of
+         * them when none has expired.
+         */
+        private void evictRandom(long now) {
+            Object[] values = table.values;
+            int mask = values.length - 1;
+            int index = ThreadLocalRandom.current().nextInt(values.length);
+            while (values[index] == null) {
+                index = (index + 1) & mask;
+            }
+            if (table.writeTimes != null) {
+                int sample = index;
+                for (int samples = 0; samples < EVICTION_SAMPLES; samples++) {
+                    if (table.isExpired(sample, now, expireAfterWriteNanos)) {
+                        index = sample;
+                        break;
+                    }
+                    do {
+                        sample = (sample + 1) & mask;
+                    } while (values[sample] == null);
+                }
+            }
+            delete(index);
+        }
+
+        /**
+         * Backward-shift deletion: moves later members of the probe chain into the gap so lookups never stop early.
+         */
+        private void delete(int index) {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            long[] writeTimes = table.writeTimes;
+            int mask = values.length - 1;
+            int gap = index;
+            int next = (gap + 1) & mask;
+            while (values[next] != null) {
+                int home = (int) hash(keys[next]) & mask;
+                // the entry at next may fill the gap unless its home slot lies cyclically in (gap, next]
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    if (writeTimes != null) {
+                        writeTimes[gap] = writeTimes[next];
+                    }
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            values[gap] = null;
+            keys[gap] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            Table oldTable = table;
+            allocate(capacity);
+            for (int i = 0; i < oldTable.values.length; i++) {
+                if (oldTable.values[i] != null) {
+                    long key = oldTable.keys[i];
+                    long writeTime = oldTable.writeTimes != null ? oldTable.writeTimes[i] : 0;
+                    insert(key, hash(key), oldTable.values[i], writeTime);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            table = new Table(capacity, expireAfterWriteNanos > 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * Keys, values and write times published together, so that an optimistic reader never pairs arrays of different
+     * tables.
+     */
+    private static final class Table {
+
+        final long[] keys;
+
+        final Object[] values;
+
+        /**
+         * {@code null} unless entries expire.
+         */
+        final long[] writeTimes;
+
+        Table(int capacity, boolean expiring) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            writeTimes = expiring ? new long[capacity] : null;
+        }
+
+        /**
+         * Safe to run against a table being modified: the probe is bounded by the table length and its result is only
+         * trusted after validating the stamp.
+         */
+        Object find(long key, long hash, long now, long expireAfterWriteNanos) {
+            int mask = values.length - 1;
+            int index = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[index];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[index] == key) {
+                    return isExpired(index, now, expireAfterWriteNanos) ? null : value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        boolean isExpired(int index, long now, long expireAfterWriteNanos) {
+            return writeTimes != null && now - writeTimes[index] >= expireAfterWriteNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * {@link CacheKeysFactory} using the {@link Long} identifier itself as the key of an entity without a tenant, so that
+ * a lookup neither allocates nor rehashes a composite key. Any other key is built by {@link DefaultCacheKeysFactory}.
+ * <p>
+ * Like Hibernate's {@code simple} keys factory, this relies on every entity region holding a single entity hierarchy.
+ * Selected with {@code hibernate.cache.keys_factory=long}, its keys are stored by {@link LongKeyedStorageAccess}.
+ */
+public class LongCacheKeysFactory implements CacheKeysFactory {
+
+    public static final String SHORT_NAME = "long";
+
+    public static final LongCacheKeysFactory INSTANCE = new LongCacheKeysFactory();
+
+    @Override
+    public Object createCollectionKey(
+            Object id,
+            CollectionPersister persister,
+            SessionFactoryImplementor factory,
+            String tenantIdentifier) {
+        return DefaultCacheKeysFactory.staticCreateCollectionKey(id, persister, factory, tenantIdentifier);
+    }
+
+    @Override
+    public Object createEntityKey(
+            Object id,
+            EntityPersister persister,
+            SessionFactoryImplementor factory,
+            String tenantIdentifier) {
+        if (id instanceof Long && tenantIdentifier == null) {
+            return id;
+        }
+        return DefaultCacheKeysFactory.staticCreateEntityKey(id, persister, factory, tenantIdentifier);
+    }
+
+    @Override
+    public Object createNaturalIdKey(
+            Object[] naturalIdValues,
+            EntityPersister persister,
+            SharedSessionContractImplementor session) {
+        return DefaultCacheKeysFactory.staticCreateNaturalIdKey(naturalIdValues, persister, session);
+    }
+
+    @Override
+    public Object getEntityId(Object cacheKey) {
+        if (cacheKey instanceof Long) {
+            return cacheKey;
+        }
+        return DefaultCacheKeysFactory.staticGetEntityId(cacheKey);
+    }
+
+    @Override
+    public Object getCollectionId(Object cacheKey) {
+        return DefaultCacheKeysFactory.staticGetCollectionId(cacheKey);
+    }
+
+    @Override
+    public Object[] getNaturalIdValues(Object cacheKey) {
+        return DefaultCacheKeysFactory.staticGetNaturalIdValues(cacheKey);
+    }
+}
@@ -0,0 +1,78 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Entity region storage for the keys of {@link LongCacheKeysFactory}: {@link Long} keys go to a
+ * {@link ConcurrentLongObjectMap}, so a lookup unboxes the identifier and probes primitive arrays without allocating.
+ * The keys the factory leaves to Hibernate's default (multi-tenant entries) go to the {@code fallback} storage. Both
+ * expire their entries after {@link com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings#EXPIRE_AFTER_WRITE};
+ * expired entries are not served for a
+ * {@link com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings#STALE_WHILE_REVALIDATE} window.
+ */
+public class LongKeyedStorageAccess implements DomainDataStorageAccess {
+
+    private final ConcurrentLongObjectMap entries;
+
+    private final DomainDataStorageAccess fallback;
+
+    public LongKeyedStorageAccess(ConcurrentLongObjectMap entries, DomainDataStorageAccess fallback) {
+        this.entries = entries;
+        this.fallback = fallback;
+    }
+
+    public ConcurrentLongObjectMap getEntries() {
+        return entries;
+    }
+
+    public DomainDataStorageAccess getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        if (key instanceof Long) {
+            return entries.get((Long) key);
+        }
+        return fallback.getFromCache(key, session);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        if (key instanceof Long) {
+            entries.put((Long) key, value);
+        } else {
+            fallback.putIntoCache(key, value, session);
+        }
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        if (key instanceof Long) {
+            return entries.containsKey((Long) key);
+        }
+        return fallback.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        entries.clear();
+        fallback.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        if (key instanceof Long) {
+            entries.remove((Long) key);
+        } else {
+            fallback.evictData(key);
+        }
+    }
+
+    @Override
+    public void release() {
+        entries.clear();
+        fallback.release();
+    }
+}
@@ -0,0 +1,114 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Query results made of {@code long} values only, typically the identifiers of the entities a query returned, held
+ * by a primitive array instead of a list of boxed {@link Long}s: an {@code int[]} when they all fit, a {@code long[]}
+ * otherwise.
+ * <p>
+ * Hibernate reads the results back through a {@link List} view of the array, which boxes each value as it is read,
+ * and only the ones beyond the {@link Long} cache at that.
+ */
+public final class LongQueryResults implements Serializable {
+
+    private final long timestamp;
+
+    private final int[] intValues;
+
+    private final long[] longValues;
+
+    private LongQueryResults(long timestamp, int[] intValues, long[] longValues) {
+        this.timestamp = timestamp;
+        this.intValues = intValues;
+        this.longValues = longValues;
+    }
+
+    /**
+     * @return {@code null} unless the results are one non-null {@link Long} per row
+     */
+    public static LongQueryResults of(QueryResultsCacheImpl.CacheItem item) {
+        List<?> results = HibernateCacheInternals.getResults(item);
+        if (results.isEmpty()) {
+            return null;
+        }
+        long[] values = new long[results.size()];
+        boolean fitInts = true;
+        int i = 0;
+        for (Object row : results) {
+            if (!(row instanceof Long)) {
+                return null;
+            }
+            long value = (Long) row;
+            fitInts &= value == (int) value;
+            values[i++] = value;
+        }
+        long timestamp = HibernateCacheInternals.getTimestamp(item);
+        if (!fitInts) {
+            return new LongQueryResults(timestamp, null, values);
+        }
+        int[] intValues = new int[values.length];
+        for (int j = 0; j < values.length; j++) {
+            intValues[j] = (int) values[j];
+        }
+        return new LongQueryResults(timestamp, intValues, null);
+    }
+
+    public QueryResultsCacheImpl.CacheItem toCacheItem() {
+        return HibernateCacheInternals.newQueryCacheItem(timestamp, new LongList(this));
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int size() {
+        return intValues != null ? intValues.length : longValues.length;
+    }
+
+    public long get(int index) {
+        return intValues != null ? intValues[index] : longValues[index];
+    }
+
+    /**
+     * @return the values if they all fit an {@code int}, {@code null} otherwise
+     */
+    public int[] getIntValues() {
+        return intValues;
+    }
+
+    /**
+     * @return the values unless they all fit an {@code int}, {@code null} otherwise
+     */
+    public long[] getLongValues() {
+        return longValues;
+    }
+
+    /**
+     * Read-only view of the values, which Hibernate assembles into a list of its own on every hit.
+     */
+    private static final class LongList extends AbstractList<Long> implements RandomAccess, Serializable {
+
+        private final LongQueryResults results;
+
+        private LongList(LongQueryResults results) {
+            this.results = results;
+        }
+
+        @Override
+        public Long get(int index) {
+            return results.get(index);
+        }
+
+        @Override
+        public int size() {
+            return results.size();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Query results region storage keeping the results made of {@code long} values only as {@link LongQueryResults}, and
+ * any other results as Hibernate put them.
+ */
+public class LongQueryResultsStorageAccess implements StorageAccess {
+
+    private final StorageAccess delegate;
+
+    public LongQueryResultsStorageAccess(StorageAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    public StorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = delegate.getFromCache(key, session);
+        return value instanceof LongQueryResults ? ((LongQueryResults) value).toCacheItem() : value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        if (value instanceof QueryResultsCacheImpl.CacheItem) {
+            LongQueryResults results = LongQueryResults.of((QueryResultsCacheImpl.CacheItem) value);
+            if (results != null) {
+                value = results;
+            }
+        }
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(key);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+}
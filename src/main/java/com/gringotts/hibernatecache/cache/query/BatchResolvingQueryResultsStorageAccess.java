@@ -0,0 +1,219 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.Session;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Query results region storage resolving the entities of a cached entity query in bulk, before Hibernate assembles
+ * them one by one.
+ * <p>
+ * On a hit, the identifiers found neither in the persistence context nor readable in the entity region, probed for all
+ * of them at once, are loaded with a single multi-load, which puts them back into the region. Hibernate then finds them
+ * in the persistence context, instead of running a select for each entity evicted since the query was cached. Only
+ * queries returning the entities of a single {@link ScopedTable} are resolved, and only while no write to that table
+ * made their results stale; a single miss is left to Hibernate.
+ */
+public class BatchResolvingQueryResultsStorageAccess implements StorageAccess {
+
+    private final StorageAccess delegate;
+
+    private final QueryShapes shapes = new QueryShapes();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder batchedEntities = new LongAdder();
+
+    public BatchResolvingQueryResultsStorageAccess(StorageAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    public StorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = delegate.getFromCache(key, session);
+        if (session instanceof Session && key instanceof QueryKey && value instanceof QueryResultsCacheImpl.CacheItem) {
+            resolve((QueryKey) key, (QueryResultsCacheImpl.CacheItem) value, session);
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(key);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+
+    /**
+     * Cached query hits whose missing entities were loaded together.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Entities loaded by those batches.
+     */
+    public long getBatchedEntityCount() {
+        return batchedEntities.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResolvingQueryResultsStorageAccess{" +
+                "batches=" + getBatchCount() +
+                ", batchedEntities=" + getBatchedEntityCount() +
+                '}';
+    }
+
+    private void resolve(QueryKey key, QueryResultsCacheImpl.CacheItem item, SharedSessionContractImplementor session) {
+        QueryShape shape = shapes.shape(HibernateCacheInternals.getSqlQueryString(key), session.getFactory());
+        if (shape == null || !shape.isEntitySelection()) {
+            return;
+        }
+        List<?> results = HibernateCacheInternals.getResults(item);
+        ScopedTable table = shape.getTable();
+        if (results.size() < 2
+                || !table.isIdentifierList(results)
+                || !isUpToDate(table.getSpace(), HibernateCacheInternals.getTimestamp(item), session)) {
+            return;
+        }
+        EntityPersister persister = table.getPersister();
+        List<Serializable> misses = misses(persister, results, session);
+        if (misses.size() < 2) {
+            return;
+        }
+        // the dialect's batch size splits a few hundred identifiers into several queries already
+        int inListLimit = session.getJdbcServices().getDialect().getInExpressionCountLimit();
+        MultiIdentifierLoadAccess<?> multiLoad = ((Session) session).byMultipleIds(persister.getEntityName());
+        multiLoad.withBatchSize(inListLimit > 0 ? Math.min(misses.size(), inListLimit) : misses.size())
+                .multiLoad(misses);
+        batches.increment();
+        batchedEntities.add(misses.size());
+    }
+
+    /**
+     * Checks the results against the timestamp of their table the way Hibernate is about to, without counting it in
+     * the statistics, so that stale results are not resolved for nothing.
+     */
+    private static boolean isUpToDate(String space, long timestamp, SharedSessionContractImplementor session) {
+        Object lastUpdate = session.getFactory().getCache().getTimestampsCache().getRegion().getFromCache(
+                space, session
+        );
+        return lastUpdate == null || (Long) lastUpdate < timestamp;
+    }
+
+    private static List<Serializable> misses(
+            EntityPersister persister,
+            List<?> ids,
+            SharedSessionContractImplementor session) {
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        EntityDataAccess access = persister.canReadFromCache() ? persister.getCacheAccessStrategy() : null;
+        Set<Serializable> misses = new LinkedHashSet<>();
+        Map<Object, Serializable> cacheKeys = new LinkedHashMap<>();
+        for (Object row : ids) {
+            Serializable id = (Serializable) row;
+            if (persistenceContext.containsEntity(session.generateEntityKey(id, persister))) {
+                continue;
+            }
+            if (access == null) {
+                misses.add(id);
+            } else {
+                cacheKeys.put(
+                        access.generateCacheKey(id, persister, session.getFactory(), session.getTenantIdentifier()), id
+                );
+            }
+        }
+        if (cacheKeys.isEmpty()) {
+            return new ArrayList<>(misses);
+        }
+        DomainDataStorageAccess storageAccess = access.getRegion() instanceof DomainDataRegionTemplate
+                ? ((DomainDataRegionTemplate) access.getRegion()).getCacheStorageAccess()
+                : null;
+        long txTimestamp = session.getTransactionStartTimestamp();
+        if (storageAccess instanceof CaffeineStorageAccess) {
+            Map<Object, Object> entries = ((CaffeineStorageAccess) storageAccess).getAllPresent(cacheKeys.keySet());
+            cacheKeys.forEach((cacheKey, id) -> {
+                if (!isReadable(entries.get(cacheKey), txTimestamp)) {
+                    misses.add(id);
+                }
+            });
+        } else if (storageAccess != null) {
+            cacheKeys.forEach((cacheKey, id) -> {
+                if (!isReadable(storageAccess.getFromCache(cacheKey, session), txTimestamp)) {
+                    misses.add(id);
+                }
+            });
+        } else {
+            cacheKeys.forEach((cacheKey, id) -> {
+                if (!access.contains(cacheKey)) {
+                    misses.add(id);
+                }
+            });
+        }
+        return new ArrayList<>(misses);
+    }
+
+    /**
+     * Whether Hibernate would assemble the entity from {@code entry}: a READ_WRITE entry locked by a writer, or cached
+     * after the transaction started, is loaded from the database anyway.
+     */
+    private static boolean isReadable(Object entry, long txTimestamp) {
+        if (entry instanceof AbstractReadWriteAccess.Lockable) {
+            return ((AbstractReadWriteAccess.Lockable) entry).isReadable(txTimestamp);
+        }
+        return entry != null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.spi.QueryKey;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Query results region key made of an interned {@link QueryKeyShape} and the parameter values and row selection of
+ * one execution, equal to another one when the {@link QueryKey}s they were made of are.
+ * <p>
+ * Only the parameter values are hashed and compared per key; the SQL, parameter names and types, filters, tenant and
+ * transformer were hashed once by their shape, and are compared by identity.
+ */
+public final class CanonicalQueryKey {
+
+    private QueryKeyShape shape;
+
+    private Object[] values;
+
+    private int valueCount;
+
+    private Integer firstRow;
+
+    private Integer maxRows;
+
+    private int hashCode;
+
+    /**
+     * A probe, {@link #reset(QueryKey, QueryKeyShape) reset} for every lookup.
+     */
+    CanonicalQueryKey() {
+        this.values = new Object[0];
+    }
+
+    private CanonicalQueryKey(CanonicalQueryKey probe) {
+        this.shape = probe.shape;
+        this.values = Arrays.copyOf(probe.values, probe.valueCount);
+        this.valueCount = probe.valueCount;
+        this.firstRow = probe.firstRow;
+        this.maxRows = probe.maxRows;
+        this.hashCode = probe.hashCode;
+    }
+
+    /**
+     * Turns this probe into the canonical form of a key.
+     *
+     * @return {@code false}, leaving the probe unusable, if the key is not of the given shape
+     */
+    boolean reset(QueryKey key, QueryKeyShape shape) {
+        int count = shape.getParameterCount();
+        int previousCount = valueCount;
+        if (values.length < count) {
+            values = new Object[count];
+        }
+        if (!shape.read(key, values)) {
+            // the probe lives as long as its thread, it must not keep the parameters of earlier keys reachable
+            Arrays.fill(values, 0, Math.max(count, previousCount), null);
+            this.valueCount = 0;
+            return false;
+        }
+        if (previousCount > count) {
+            Arrays.fill(values, count, previousCount, null);
+        }
+        this.shape = shape;
+        this.valueCount = count;
+        this.firstRow = HibernateCacheInternals.getFirstRow(key);
+        this.maxRows = HibernateCacheInternals.getMaxRows(key);
+        int result = shape.hashCode();
+        result = 37 * result + (firstRow == null ? 0 : firstRow.hashCode());
+        result = 37 * result + (maxRows == null ? 0 : maxRows.hashCode());
+        for (int i = 0; i < count; i++) {
+            result = 37 * result + (values[i] == null ? 0 : shape.getType(i).getHashCode(values[i]));
+        }
+        this.hashCode = result;
+        return true;
+    }
+
+    /**
+     * @return a key to store, holding no more than the values of this probe
+     */
+    CanonicalQueryKey copy() {
+        return new CanonicalQueryKey(this);
+    }
+
+    /**
+     * The disassembled parameter values, named ones first by name; not copied.
+     */
+    public Object[] getParameterValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CanonicalQueryKey)) {
+            return false;
+        }
+        CanonicalQueryKey that = (CanonicalQueryKey) other;
+        if (hashCode != that.hashCode
+                || valueCount != that.valueCount
+                || !shape.isSameAs(that.shape)
+                || !Objects.equals(firstRow, that.firstRow)
+                || !Objects.equals(maxRows, that.maxRows)) {
+            return false;
+        }
+        for (int i = 0; i < valueCount; i++) {
+            if (!shape.getType(i).isEqual(values[i], that.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("sql: ").append(shape);
+        buffer.append("; parameters: ").append(Arrays.toString(Arrays.copyOf(values, valueCount)));
+        if (firstRow != null) {
+            buffer.append("; first row: ").append(firstRow);
+        }
+        if (maxRows != null) {
+            buffer.append("; max rows: ").append(maxRows);
+        }
+        return buffer.toString();
+    }
+}
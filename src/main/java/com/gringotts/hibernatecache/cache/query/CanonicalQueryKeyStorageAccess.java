@@ -0,0 +1,118 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Query results region storage keyed by {@link CanonicalQueryKey}s instead of the {@link QueryKey}s Hibernate builds
+ * for every execution.
+ * <p>
+ * The shape of a query is interned by its SQL the first time it runs; after that, a lookup fills a probe of the
+ * calling thread with the parameter values of the key and hashes only them, allocating nothing. Stored keys share
+ * their shape, rather than each holding a map of its named parameters. A query seen with more than
+ * {@value #MAXIMUM_SHAPES_PER_QUERY} shapes, such as by many tenants, gets uninterned ones for the others, which are
+ * compared field by field.
+ */
+public class CanonicalQueryKeyStorageAccess implements StorageAccess {
+
+    private static final int MAXIMUM_SHAPES = 10_000;
+
+    private static final int MAXIMUM_SHAPES_PER_QUERY = 8;
+
+    private final StorageAccess delegate;
+
+    private final Cache<String, QueryKeyShape> shapes = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SHAPES)
+            .build();
+
+    private final ThreadLocal<CanonicalQueryKey> probes = ThreadLocal.withInitial(CanonicalQueryKey::new);
+
+    public CanonicalQueryKeyStorageAccess(StorageAccess delegate) {
+        this.delegate = delegate;
+    }
+
+    public StorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return delegate.getFromCache(probe(key), session);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        Object probe = probe(key);
+        Object storedKey = probe instanceof CanonicalQueryKey ? ((CanonicalQueryKey) probe).copy() : probe;
+        delegate.putIntoCache(storedKey, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(probe(key), session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(probe(key));
+    }
+
+    @Override
+    public void evictData() {
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(probe(key));
+    }
+
+    @Override
+    public void release() {
+        shapes.invalidateAll();
+        delegate.release();
+    }
+
+    /**
+     * @return the probe of the calling thread reset to the given key, which the delegate must not keep; the key itself
+     * if it is not a {@link QueryKey}
+     */
+    private Object probe(Object key) {
+        if (!(key instanceof QueryKey)) {
+            return key;
+        }
+        QueryKey queryKey = (QueryKey) key;
+        CanonicalQueryKey probe = probes.get();
+        String sql = HibernateCacheInternals.getSqlQueryString(queryKey);
+        for (QueryKeyShape shape = shapes.getIfPresent(sql); shape != null; shape = shape.getNext()) {
+            if (probe.reset(queryKey, shape)) {
+                return probe;
+            }
+        }
+        QueryKeyShape interned = shapes.asMap().compute(sql, (query, head) -> {
+            int depth = 0;
+            for (QueryKeyShape shape = head; shape != null; shape = shape.getNext(), depth++) {
+                if (shape.read(queryKey, null)) {
+                    return head;
+                }
+            }
+            return depth < MAXIMUM_SHAPES_PER_QUERY ? QueryKeyShape.of(queryKey, head) : head;
+        });
+        for (QueryKeyShape shape = interned; shape != null; shape = shape.getNext()) {
+            if (probe.reset(queryKey, shape)) {
+                return probe;
+            }
+        }
+        probe.reset(queryKey, QueryKeyShape.of(queryKey, null));
+        return probe;
+    }
+}
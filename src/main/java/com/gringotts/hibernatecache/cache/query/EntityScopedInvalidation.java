@@ -0,0 +1,276 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Invalidates the cached entity queries of a {@link SessionFactoryImplementor} by what the writes changed, rather than
+ * by the tables they wrote to.
+ * <p>
+ * Hibernate stamps a table with the time of every write to it, and drops any cached query read before the stamp of one
+ * of its tables. Here the {@link QueryTagListener} tells which rows and columns a session wrote, and the
+ * {@link EntityScopedTimestampsStorageAccess} stamps those {@link QueryTag}s whenever Hibernate stamps the table: at
+ * flush, with a time in the future until the transaction completes, then at completion. A query whose
+ * {@link QueryShape} is scoped is dropped by the {@link EntityScopedQueryResultsStorageAccess} only if it was read
+ * before the stamp of
+ * <ul>
+ * <li>its table as a whole, stamped by inserts and by the writes no tag describes (bulk and native statements,
+ * collection tables written by their owner, tables shared by several entities),</li>
+ * <li>one of the columns it filters or orders by,</li>
+ * <li>one of the rows it returned, stamped by their deletion,</li>
+ * <li>any deletion, if it skipped rows.</li>
+ * </ul>
+ * Tags are bounded by count; evicting one raises the floor of its table to its stamp, which drops every scoped query
+ * of that table read before it.
+ */
+public class EntityScopedInvalidation {
+
+    private final Cache<QueryTag, Long> stamps;
+
+    private final Map<String, Long> floors = new ConcurrentHashMap<>();
+
+    private volatile long floor;
+
+    private final Cache<UUID, SessionTags> sessions;
+
+    private final QueryShapes shapes = new QueryShapes();
+
+    private final LongSupplier nextTimestamp;
+
+    private final LongAdder scopedHits = new LongAdder();
+
+    private final LongAdder scopedMisses = new LongAdder();
+
+    private final LongAdder unscopedHits = new LongAdder();
+
+    private final LongAdder tableStamps = new LongAdder();
+
+    /**
+     * @param lockTimeoutMillis how long the tags a session recorded are kept without a flush or a completion
+     */
+    public EntityScopedInvalidation(long maximumTags, long lockTimeoutMillis, LongSupplier nextTimestamp) {
+        this.stamps = Caffeine.newBuilder()
+                .maximumSize(maximumTags)
+                .evictionListener((QueryTag tag, Long stamp, RemovalCause cause) -> {
+                    if (tag != null && stamp != null) {
+                        floors.merge(tag.getSpace(), stamp, Math::max);
+                    }
+                })
+                .build();
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(lockTimeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.nextTimestamp = nextTimestamp;
+    }
+
+    /**
+     * @return the scoped table of an entity, {@code null} if its writes can only be told apart by table
+     */
+    ScopedTable scopedTable(String entityName, SessionFactoryImplementor sessionFactory) {
+        return shapes.scopedTable(entityName, sessionFactory);
+    }
+
+    /**
+     * Remembers that the session changed what the tag describes, to stamp it along with its table.
+     */
+    void record(SharedSessionContractImplementor session, QueryTag tag) {
+        SessionTags tags = sessions.get(session.getSessionIdentifier(), id -> new SessionTags());
+        synchronized (tags) {
+            tags.flushed.add(tag.getSpace());
+            tags.transaction.computeIfAbsent(tag.getSpace(), space -> new HashSet<>()).add(tag);
+        }
+    }
+
+    /**
+     * Remembers that the session is writing the given tables in a way no tag describes, so that the current flush
+     * stamps them as a whole.
+     */
+    void recordUnscoped(SharedSessionContractImplementor session, Object[] spaces) {
+        SessionTags tags = sessions.get(session.getSessionIdentifier(), id -> new SessionTags());
+        synchronized (tags) {
+            for (Object space : spaces) {
+                tags.unscoped.add((String) space);
+            }
+        }
+    }
+
+    /**
+     * A flush ended: any later stamp of a table by the session before the next flush comes from a bulk statement.
+     */
+    void flushed(SharedSessionContractImplementor session) {
+        SessionTags tags = sessions.getIfPresent(session.getSessionIdentifier());
+        if (tags == null) {
+            return;
+        }
+        synchronized (tags) {
+            tags.flushed.clear();
+            tags.unscoped.clear();
+            if (tags.transaction.isEmpty()) {
+                sessions.invalidate(session.getSessionIdentifier());
+            }
+        }
+    }
+
+    /**
+     * Stamps the tags the session recorded for a table Hibernate is stamping; or the table as a whole, if the session
+     * recorded no tag for it during the current flush.
+     */
+    void stamp(String space, long timestamp, SharedSessionContractImplementor session) {
+        // the stamp of a completing transaction is the current time, the one of a flush lies beyond the lock timeout
+        boolean completion = timestamp < nextTimestamp.getAsLong();
+        SessionTags tags = session == null ? null : sessions.getIfPresent(session.getSessionIdentifier());
+        Set<QueryTag> spaceTags;
+        if (tags == null) {
+            spaceTags = null;
+        } else {
+            synchronized (tags) {
+                if (completion) {
+                    spaceTags = tags.transaction.remove(space);
+                    if (tags.transaction.isEmpty() && tags.flushed.isEmpty()) {
+                        sessions.invalidate(session.getSessionIdentifier());
+                    }
+                } else {
+                    spaceTags = tags.transaction.computeIfAbsent(space, key -> new HashSet<>());
+                    if (!tags.flushed.contains(space) || tags.unscoped.contains(space)) {
+                        spaceTags.add(QueryTag.table(space));
+                    }
+                    spaceTags = new HashSet<>(spaceTags);
+                }
+            }
+        }
+        if (spaceTags == null) {
+            spaceTags = Set.of(QueryTag.table(space));
+        }
+        if (!completion && spaceTags.contains(QueryTag.table(space))) {
+            tableStamps.increment();
+        }
+        for (QueryTag tag : spaceTags) {
+            stamps.put(tag, timestamp);
+        }
+    }
+
+    /**
+     * Drops every scoped query cached so far, as the timestamps region does when it is cleared.
+     */
+    void invalidateAll() {
+        floor = nextTimestamp.getAsLong();
+    }
+
+    /**
+     * @return the item to hand over to Hibernate: unchanged if the query is not scoped, stamped so that no table stamp
+     * drops it if none of its tags changed since it was read, {@code null} otherwise
+     */
+    QueryResultsCacheImpl.CacheItem validate(
+            QueryKey key,
+            QueryResultsCacheImpl.CacheItem item,
+            SharedSessionContractImplementor session) {
+        QueryShape shape = shapes.shape(HibernateCacheInternals.getSqlQueryString(key), session.getFactory());
+        List results = HibernateCacheInternals.getResults(item);
+        if (shape == null || !shape.getTable().isIdentifierList(results)) {
+            unscopedHits.increment();
+            return item;
+        }
+        long timestamp = HibernateCacheInternals.getTimestamp(item);
+        String space = shape.getTable().getSpace();
+        Integer firstRow = HibernateCacheInternals.getFirstRow(key);
+        boolean upToDate = isUpToDate(QueryTag.table(space), timestamp)
+                && (firstRow == null || firstRow <= 0 || isUpToDate(QueryTag.delete(space), timestamp));
+        for (String column : shape.getColumns()) {
+            upToDate = upToDate && isUpToDate(QueryTag.column(space, column), timestamp);
+        }
+        for (Object id : results) {
+            upToDate = upToDate && isUpToDate(QueryTag.row(space, id), timestamp);
+        }
+        // read after the tags, which raise it before they are evicted
+        upToDate = upToDate && floor < timestamp && floors.getOrDefault(space, Long.MIN_VALUE) < timestamp;
+        if (!upToDate) {
+            scopedMisses.increment();
+            return null;
+        }
+        scopedHits.increment();
+        return HibernateCacheInternals.newQueryCacheItem(Long.MAX_VALUE, results);
+    }
+
+    private boolean isUpToDate(QueryTag tag, long timestamp) {
+        Long stamp = stamps.getIfPresent(tag);
+        return stamp == null || stamp < timestamp;
+    }
+
+    /**
+     * Cached query hits whose tags had not changed since the query was read.
+     */
+    public long getScopedHitCount() {
+        return scopedHits.sum();
+    }
+
+    /**
+     * Cached query hits dropped because one of their tags changed since the query was read.
+     */
+    public long getScopedMissCount() {
+        return scopedMisses.sum();
+    }
+
+    /**
+     * Cached query hits left to Hibernate's table-wide invalidation, since the query is not scoped.
+     */
+    public long getUnscopedHitCount() {
+        return unscopedHits.sum();
+    }
+
+    /**
+     * Flushes and bulk statements that stamped a table as a whole, by inserting into it or by writing what no tag
+     * describes.
+     */
+    public long getTableStampCount() {
+        return tableStamps.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "EntityScopedInvalidation{" +
+                "scopedHits=" + getScopedHitCount() +
+                ", scopedMisses=" + getScopedMissCount() +
+                ", unscopedHits=" + getUnscopedHitCount() +
+                ", tableStamps=" + getTableStampCount() +
+                ", tags=" + stamps.estimatedSize() +
+                '}';
+    }
+
+    /**
+     * What a session wrote, by table.
+     */
+    private static final class SessionTags {
+
+        /**
+         * Tables the current flush recorded tags for.
+         */
+        private final Set<String> flushed = new HashSet<>();
+
+        /**
+         * Tables the current flush also wrote in a way no tag describes.
+         */
+        private final Set<String> unscoped = new HashSet<>();
+
+        /**
+         * Tags of the current transaction, stamped by every flush of their table, and last at completion.
+         */
+        private final Map<String, Set<QueryTag>> transaction = new HashMap<>();
+    }
+}
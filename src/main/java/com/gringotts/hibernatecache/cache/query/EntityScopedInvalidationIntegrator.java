@@ -0,0 +1,47 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Appends a {@link QueryTagListener} to the write and flush events of every session factory caching queries with a
+ * {@link CaffeineRegionFactory} that invalidates some of them by entity.
+ */
+public class EntityScopedInvalidationIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+            Metadata metadata,
+            SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+        if (!sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()
+                || !(regionFactory instanceof CaffeineRegionFactory)) {
+            return;
+        }
+        EntityScopedInvalidation invalidation = ((CaffeineRegionFactory) regionFactory).getEntityScopedInvalidation();
+        if (invalidation == null) {
+            return;
+        }
+        QueryTagListener listener = new QueryTagListener(invalidation);
+        EventListenerRegistry eventListenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, listener);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, listener);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, listener);
+        eventListenerRegistry.appendListeners(EventType.PRE_COLLECTION_RECREATE, listener);
+        eventListenerRegistry.appendListeners(EventType.PRE_COLLECTION_UPDATE, listener);
+        eventListenerRegistry.appendListeners(EventType.PRE_COLLECTION_REMOVE, listener);
+        eventListenerRegistry.appendListeners(EventType.FLUSH, listener);
+        eventListenerRegistry.appendListeners(EventType.AUTO_FLUSH, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
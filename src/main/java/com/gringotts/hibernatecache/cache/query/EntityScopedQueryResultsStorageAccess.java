@@ -0,0 +1,74 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link StorageAccess} of a query results region invalidating its scoped queries through the
+ * {@link EntityScopedInvalidation}, instead of through the stamps of their tables.
+ * <p>
+ * Results are stored as Hibernate put them. A scoped hit whose tags did not change since the query was read is handed
+ * over stamped with the largest timestamp, so that the table stamps Hibernate checks next let it through; one whose
+ * tags changed is handed over as a miss.
+ */
+public class EntityScopedQueryResultsStorageAccess implements StorageAccess {
+
+    private final StorageAccess delegate;
+
+    private final EntityScopedInvalidation invalidation;
+
+    public EntityScopedQueryResultsStorageAccess(StorageAccess delegate, EntityScopedInvalidation invalidation) {
+        this.delegate = delegate;
+        this.invalidation = invalidation;
+    }
+
+    public StorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = delegate.getFromCache(key, session);
+        if (session == null || !(key instanceof QueryKey) || !(value instanceof QueryResultsCacheImpl.CacheItem)) {
+            return value;
+        }
+        return invalidation.validate((QueryKey) key, (QueryResultsCacheImpl.CacheItem) value, session);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(key);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+}
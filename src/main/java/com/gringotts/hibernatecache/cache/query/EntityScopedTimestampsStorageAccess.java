@@ -0,0 +1,70 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link StorageAccess} of the timestamps region, stamping the {@link QueryTag}s of the table Hibernate stamps with
+ * the same time, through the {@link EntityScopedInvalidation}.
+ */
+public class EntityScopedTimestampsStorageAccess implements StorageAccess {
+
+    private final StorageAccess delegate;
+
+    private final EntityScopedInvalidation invalidation;
+
+    public EntityScopedTimestampsStorageAccess(StorageAccess delegate, EntityScopedInvalidation invalidation) {
+        this.delegate = delegate;
+        this.invalidation = invalidation;
+    }
+
+    public StorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return delegate.getFromCache(key, session);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        if (key instanceof String && value instanceof Long) {
+            // tags first, so that no scoped query is served by the time the table stamp is visible
+            invalidation.stamp((String) key, (Long) value, session);
+        }
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        invalidation.invalidateAll();
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        invalidation.invalidateAll();
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        delegate.evictData(key);
+    }
+
+    @Override
+    public void release() {
+        delegate.release();
+    }
+}
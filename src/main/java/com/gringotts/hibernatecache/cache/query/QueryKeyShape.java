@@ -0,0 +1,162 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.transform.CacheableResultTransformer;
+import org.hibernate.type.Type;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * What the {@link QueryKey}s of one query plan share: its SQL, the names and types of its parameters, the enabled
+ * filters, the tenant and the result transformer. Hashed once, so that a {@link CanonicalQueryKey} only hashes and
+ * compares its parameter values.
+ */
+final class QueryKeyShape {
+
+    private final String sql;
+
+    private final String[] parameterNames;
+
+    /**
+     * Of the named parameters, in the order of {@link #parameterNames}, then of the positional ones.
+     */
+    private final Type[] types;
+
+    private final Set<?> filterKeys;
+
+    private final String tenantIdentifier;
+
+    private final CacheableResultTransformer transformer;
+
+    private final int hashCode;
+
+    /**
+     * Another shape of the same SQL, with other parameter types, filters, tenant or transformer.
+     */
+    private final QueryKeyShape next;
+
+    private QueryKeyShape(QueryKey key, QueryKeyShape next) {
+        Map<String, TypedValue> namedParameters = HibernateCacheInternals.getNamedParameters(key);
+        Type[] positionalTypes = HibernateCacheInternals.getPositionalParameterTypes(key);
+        this.sql = HibernateCacheInternals.getSqlQueryString(key);
+        this.parameterNames = namedParameters == null
+                ? new String[0]
+                : namedParameters.keySet().stream().sorted().toArray(String[]::new);
+        this.types = new Type[parameterNames.length + positionalTypes.length];
+        for (int i = 0; i < parameterNames.length; i++) {
+            types[i] = namedParameters.get(parameterNames[i]).getType();
+        }
+        System.arraycopy(positionalTypes, 0, types, parameterNames.length, positionalTypes.length);
+        this.filterKeys = HibernateCacheInternals.getFilterKeys(key);
+        this.tenantIdentifier = HibernateCacheInternals.getTenantIdentifier(key);
+        this.transformer = key.getResultTransformer();
+        this.hashCode = generateHashCode();
+        this.next = next;
+    }
+
+    /**
+     * @param next the shape this one is chained to, {@code null} if it is the first of its SQL
+     */
+    static QueryKeyShape of(QueryKey key, QueryKeyShape next) {
+        return new QueryKeyShape(key, next);
+    }
+
+    QueryKeyShape getNext() {
+        return next;
+    }
+
+    int getParameterCount() {
+        return types.length;
+    }
+
+    Type getType(int parameter) {
+        return types[parameter];
+    }
+
+    /**
+     * Reads the parameter values of a key of this shape.
+     *
+     * @param values where to copy the values to, {@code null} to only check the shape
+     * @return whether the key is of this shape, as {@link QueryKey#equals(Object)} tells apart parameter types
+     */
+    boolean read(QueryKey key, Object[] values) {
+        if (!Objects.equals(tenantIdentifier, HibernateCacheInternals.getTenantIdentifier(key))
+                || !Objects.equals(filterKeys, HibernateCacheInternals.getFilterKeys(key))
+                || !Objects.equals(transformer, key.getResultTransformer())) {
+            return false;
+        }
+        Map<String, TypedValue> namedParameters = HibernateCacheInternals.getNamedParameters(key);
+        int namedCount = namedParameters == null ? 0 : namedParameters.size();
+        Type[] positionalTypes = HibernateCacheInternals.getPositionalParameterTypes(key);
+        if (namedCount != parameterNames.length || positionalTypes.length != types.length - namedCount) {
+            return false;
+        }
+        for (int i = 0; i < namedCount; i++) {
+            TypedValue value = namedParameters.get(parameterNames[i]);
+            if (value == null || value.getType().getReturnedClass() != types[i].getReturnedClass()) {
+                return false;
+            }
+            if (values != null) {
+                values[i] = value.getValue();
+            }
+        }
+        for (int i = 0; i < positionalTypes.length; i++) {
+            if (positionalTypes[i].getReturnedClass() != types[namedCount + i].getReturnedClass()) {
+                return false;
+            }
+        }
+        if (values != null) {
+            Object[] positionalValues = HibernateCacheInternals.getPositionalParameterValues(key);
+            System.arraycopy(positionalValues, 0, values, namedCount, positionalValues.length);
+        }
+        return true;
+    }
+
+    /**
+     * Whether keys of both shapes may be equal: they are the same instance, unless the SQL was seen while its chain
+     * was full or after its shapes were evicted.
+     */
+    boolean isSameAs(QueryKeyShape that) {
+        if (this == that) {
+            return true;
+        }
+        if (hashCode != that.hashCode
+                || !sql.equals(that.sql)
+                || !Arrays.equals(parameterNames, that.parameterNames)
+                || types.length != that.types.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].getReturnedClass() != that.types[i].getReturnedClass()) {
+                return false;
+            }
+        }
+        return Objects.equals(filterKeys, that.filterKeys)
+                && Objects.equals(tenantIdentifier, that.tenantIdentifier)
+                && Objects.equals(transformer, that.transformer);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+
+    private int generateHashCode() {
+        int result = sql.hashCode();
+        result = 37 * result + Arrays.hashCode(parameterNames);
+        result = 37 * result + (filterKeys == null ? 0 : filterKeys.hashCode());
+        result = 37 * result + (transformer == null ? 0 : transformer.hashCode());
+        result = 37 * result + (tenantIdentifier == null ? 0 : tenantIdentifier.hashCode());
+        return result;
+    }
+}
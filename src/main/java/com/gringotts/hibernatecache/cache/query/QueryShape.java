@@ -0,0 +1,97 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The table, and the columns of it, the results of a cached entity query depend on, read from the SQL Hibernate
+ * generated for it.
+ * <p>
+ * Only queries selecting the identifiers of a {@link ScopedTable}, from that table alone, are scoped: a join, a
+ * subquery or a literal could make the results depend on rows the tags of this table do not describe.
+ */
+final class QueryShape {
+
+    private static final Pattern SELECT = Pattern.compile(
+            "select\\s+(?:distinct\\s+)?((\\w+)\\.(\\w+)\\s+as\\s+\\w+(?:\\s*,\\s*\\2\\.\\w+\\s+as\\s+\\w+)*)"
+            + "\\s+from\\s+([\\w.]+)\\s+\\2(?:\\s+((?:where|order\\s+by)\\s.*))?",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+    );
+
+    private static final Pattern UNSCOPED = Pattern.compile(
+            "['\"`\\[]|\\b(?:select|from|join|union|intersect|except)\\b", Pattern.CASE_INSENSITIVE
+    );
+
+    private static final Pattern QUALIFIED_COLUMN = Pattern.compile("\\b(\\w+)\\.(\\w+)\\b");
+
+    private final ScopedTable table;
+
+    private final Set<String> columns;
+
+    private final boolean entitySelection;
+
+    private QueryShape(ScopedTable table, Set<String> columns, boolean entitySelection) {
+        this.table = table;
+        this.columns = columns;
+        this.entitySelection = entitySelection;
+    }
+
+    /**
+     * @param tables the scoped tables by lower-case table name
+     * @return {@code null} unless the query is scoped
+     */
+    static QueryShape parse(String sql, Map<String, ScopedTable> tables) {
+        Matcher select = SELECT.matcher(sql.trim());
+        if (!select.matches()) {
+            return null;
+        }
+        String alias = select.group(2);
+        ScopedTable table = tables.get(ScopedTable.normalize(select.group(4)));
+        if (table == null || !table.getIdentifierColumn().equals(ScopedTable.normalize(select.group(3)))) {
+            return null;
+        }
+        // an entity query selects every column of its table, a projection of the identifier only that one
+        Set<String> selected = new HashSet<>();
+        Matcher selectedColumn = QUALIFIED_COLUMN.matcher(select.group(1));
+        while (selectedColumn.find()) {
+            selected.add(ScopedTable.normalize(selectedColumn.group(2)));
+        }
+        boolean entitySelection = selected.size() > 1 && selected.containsAll(table.columns(null));
+        String restriction = select.group(5);
+        if (restriction == null) {
+            return new QueryShape(table, Collections.emptySet(), entitySelection);
+        }
+        if (UNSCOPED.matcher(restriction).find()) {
+            return null;
+        }
+        // the columns filtered and ordered by, so that the rows a paginated query stops at are covered too
+        Set<String> columns = new HashSet<>();
+        Matcher column = QUALIFIED_COLUMN.matcher(restriction);
+        while (column.find()) {
+            if (!column.group(1).equals(alias)) {
+                return null;
+            }
+            columns.add(ScopedTable.normalize(column.group(2)));
+        }
+        return new QueryShape(table, Collections.unmodifiableSet(columns), entitySelection);
+    }
+
+    ScopedTable getTable() {
+        return table;
+    }
+
+    Set<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Whether the query returns the entities of its table, rather than their identifiers.
+     */
+    boolean isEntitySelection() {
+        return entitySelection;
+    }
+}
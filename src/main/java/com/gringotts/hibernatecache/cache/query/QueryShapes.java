@@ -0,0 +1,58 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The {@link QueryShape}s of the statements of a session factory, parsed once per SQL, and the {@link ScopedTable}s
+ * they are resolved against, once the metamodel is complete.
+ */
+final class QueryShapes {
+
+    private static final int MAXIMUM_SHAPES = 10_000;
+
+    private final Cache<String, Optional<QueryShape>> shapes = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SHAPES)
+            .build();
+
+    private volatile Map<String, ScopedTable> tablesByEntity;
+
+    private volatile Map<String, ScopedTable> tablesByName;
+
+    /**
+     * @return the scoped table of an entity, {@code null} if its writes can only be told apart by table
+     */
+    ScopedTable scopedTable(String entityName, SessionFactoryImplementor sessionFactory) {
+        resolveTables(sessionFactory);
+        return tablesByEntity.get(entityName);
+    }
+
+    /**
+     * @return {@code null} unless the query is scoped
+     */
+    QueryShape shape(String sql, SessionFactoryImplementor sessionFactory) {
+        resolveTables(sessionFactory);
+        return shapes.get(sql, key -> Optional.ofNullable(QueryShape.parse(key, tablesByName))).orElse(null);
+    }
+
+    private void resolveTables(SessionFactoryImplementor sessionFactory) {
+        if (tablesByEntity == null) {
+            synchronized (this) {
+                if (tablesByEntity == null) {
+                    Map<String, ScopedTable> tables = ScopedTable.resolve(sessionFactory);
+                    Map<String, ScopedTable> byName = new HashMap<>();
+                    tables.values().forEach(table -> byName.put(
+                            ScopedTable.normalize(table.getPersister().getTableName()), table
+                    ));
+                    tablesByName = byName;
+                    tablesByEntity = tables;
+                }
+            }
+        }
+    }
+}
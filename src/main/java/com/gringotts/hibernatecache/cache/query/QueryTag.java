@@ -0,0 +1,80 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import java.util.Objects;
+
+/**
+ * What a write changed in a table, as far as the cached queries reading that table are concerned: any row of it, the
+ * values of one column, one row, or the number of rows before the ones a paginated query skipped to.
+ */
+final class QueryTag {
+
+    enum Kind {
+        /**
+         * A row was inserted, or the table written in a way no other tag describes.
+         */
+        TABLE,
+        /**
+         * A row was deleted, which shifts the rows after it.
+         */
+        DELETE,
+        COLUMN,
+        ROW
+    }
+
+    private final String space;
+
+    private final Kind kind;
+
+    /**
+     * The lower-case column name of a {@link Kind#COLUMN} tag, the disassembled identifier of a {@link Kind#ROW} one.
+     */
+    private final Object value;
+
+    private QueryTag(String space, Kind kind, Object value) {
+        this.space = space;
+        this.kind = kind;
+        this.value = value;
+    }
+
+    static QueryTag table(String space) {
+        return new QueryTag(space, Kind.TABLE, null);
+    }
+
+    static QueryTag delete(String space) {
+        return new QueryTag(space, Kind.DELETE, null);
+    }
+
+    static QueryTag column(String space, String column) {
+        return new QueryTag(space, Kind.COLUMN, column);
+    }
+
+    static QueryTag row(String space, Object id) {
+        return new QueryTag(space, Kind.ROW, id);
+    }
+
+    String getSpace() {
+        return space;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryTag)) {
+            return false;
+        }
+        QueryTag that = (QueryTag) o;
+        return kind == that.kind && space.equals(that.space) && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * space.hashCode() + kind.hashCode()) + Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return value == null ? kind + "(" + space + ")" : kind + "(" + space + ", " + value + ")";
+    }
+}
@@ -0,0 +1,134 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreCollectionRecreateEvent;
+import org.hibernate.event.spi.PreCollectionRecreateEventListener;
+import org.hibernate.event.spi.PreCollectionRemoveEvent;
+import org.hibernate.event.spi.PreCollectionRemoveEventListener;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Tells the {@link EntityScopedInvalidation} what each flush wrote: the rows, columns and inserts of the entities in
+ * a {@link ScopedTable}, and the tables written any other way, which only their stamp as a whole describes.
+ * <p>
+ * Registered after Hibernate's own flush listeners, so that the end of a flush is seen once its statements ran.
+ */
+public class QueryTagListener implements PostInsertEventListener, PostDeleteEventListener, PostUpdateEventListener,
+        PreCollectionRecreateEventListener, PreCollectionUpdateEventListener, PreCollectionRemoveEventListener,
+        FlushEventListener, AutoFlushEventListener {
+
+    private final EntityScopedInvalidation invalidation;
+
+    public QueryTagListener(EntityScopedInvalidation invalidation) {
+        this.invalidation = invalidation;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        ScopedTable table = scopedTable(event.getPersister());
+        if (table == null) {
+            invalidation.recordUnscoped(event.getSession(), event.getPersister().getPropertySpaces());
+            return;
+        }
+        invalidation.record(event.getSession(), QueryTag.table(table.getSpace()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        ScopedTable table = scopedTable(event.getPersister());
+        if (table == null) {
+            invalidation.recordUnscoped(event.getSession(), event.getPersister().getPropertySpaces());
+            return;
+        }
+        Object id = event.getPersister().getIdentifierType().disassemble(event.getId(), event.getSession(), null);
+        invalidation.record(event.getSession(), QueryTag.row(table.getSpace(), id));
+        invalidation.record(event.getSession(), QueryTag.delete(table.getSpace()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        ScopedTable table = scopedTable(event.getPersister());
+        if (table == null) {
+            invalidation.recordUnscoped(event.getSession(), event.getPersister().getPropertySpaces());
+            return;
+        }
+        // the results of a scoped query are identifiers, which only change along with the columns it filters by
+        for (String column : table.columns(event.getDirtyProperties())) {
+            invalidation.record(event.getSession(), QueryTag.column(table.getSpace(), column));
+        }
+    }
+
+    @Override
+    public void onPreRecreateCollection(PreCollectionRecreateEvent event) {
+        recordCollection(event);
+    }
+
+    @Override
+    public void onPreUpdateCollection(PreCollectionUpdateEvent event) {
+        recordCollection(event);
+    }
+
+    @Override
+    public void onPreRemoveCollection(PreCollectionRemoveEvent event) {
+        recordCollection(event);
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) {
+        invalidation.flushed(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) {
+        invalidation.flushed(event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    /**
+     * An inverse collection writes nothing, its elements are written as entities; any other one writes its table
+     * behind the back of the entities mapped to it.
+     */
+    private void recordCollection(AbstractCollectionEvent event) {
+        CollectionEntry entry = event.getSession().getPersistenceContextInternal().getCollectionEntry(
+                event.getCollection()
+        );
+        if (entry == null) {
+            return;
+        }
+        // a new collection has no role yet, a removed one no current persister anymore
+        CollectionPersister persister = entry.getCurrentPersister() != null
+                ? entry.getCurrentPersister()
+                : entry.getLoadedPersister();
+        if (persister != null && !persister.isInverse()) {
+            invalidation.recordUnscoped(event.getSession(), persister.getCollectionSpaces());
+        }
+    }
+
+    private ScopedTable scopedTable(EntityPersister persister) {
+        return invalidation.scopedTable(persister.getEntityName(), persister.getFactory());
+    }
+}
@@ -0,0 +1,123 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table holding a single entity and nothing else, mapped to a single identifier column: the only tables whose writes
+ * {@link EntityScopedInvalidation} can tell apart by row and column.
+ */
+final class ScopedTable {
+
+    private final String space;
+
+    private final String identifierColumn;
+
+    private final Class<?> identifierClass;
+
+    private final AbstractEntityPersister persister;
+
+    private ScopedTable(AbstractEntityPersister persister) {
+        this.space = (String) persister.getPropertySpaces()[0];
+        this.identifierColumn = normalize(persister.getIdentifierColumnNames()[0]);
+        this.identifierClass = persister.getIdentifierType().getReturnedClass();
+        this.persister = persister;
+    }
+
+    /**
+     * @return the scoped tables of a session factory by entity name
+     */
+    static Map<String, ScopedTable> resolve(SessionFactoryImplementor sessionFactory) {
+        Map<String, ScopedTable> tables = new HashMap<>();
+        Set<String> sharedSpaces = new HashSet<>();
+        Set<String> spaces = new HashSet<>();
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            for (Object space : persister.getPropertySpaces()) {
+                if (!spaces.add(normalize((String) space))) {
+                    sharedSpaces.add(normalize((String) space));
+                }
+            }
+            if (persister instanceof AbstractEntityPersister
+                    && ((AbstractEntityPersister) persister).getTableSpan() == 1
+                    && persister.getPropertySpaces().length == 1
+                    && !persister.getEntityMetamodel().hasSubclasses()
+                    && !persister.getEntityMetamodel().isInherited()
+                    && ((AbstractEntityPersister) persister).getIdentifierColumnNames().length == 1) {
+                tables.put(persister.getEntityName(), new ScopedTable((AbstractEntityPersister) persister));
+            }
+        }
+        // two entities mapped to the same table would write rows behind each other's back
+        tables.values().removeIf(table -> sharedSpaces.contains(normalize(table.space)));
+        return Collections.unmodifiableMap(tables);
+    }
+
+    static String normalize(String identifier) {
+        return identifier.toLowerCase(Locale.ROOT);
+    }
+
+    String getSpace() {
+        return space;
+    }
+
+    String getIdentifierColumn() {
+        return identifierColumn;
+    }
+
+    Class<?> getIdentifierClass() {
+        return identifierClass;
+    }
+
+    AbstractEntityPersister getPersister() {
+        return persister;
+    }
+
+    /**
+     * Whether cached query results are the identifiers of this table, as a query returning its entities caches them.
+     */
+    boolean isIdentifierList(List<?> results) {
+        for (Object row : results) {
+            if (!identifierClass.isInstance(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the lower-case columns of the given properties, or of all of them if {@code null}, with the version
+     * column a versioned update also writes
+     */
+    Set<String> columns(int[] properties) {
+        Set<String> columns = new HashSet<>();
+        if (properties == null) {
+            for (int property = 0; property < persister.getPropertyNames().length; property++) {
+                addColumns(columns, property);
+            }
+        } else {
+            for (int property : properties) {
+                addColumns(columns, property);
+            }
+        }
+        if (persister.isVersioned()) {
+            addColumns(columns, persister.getVersionProperty());
+        }
+        return columns;
+    }
+
+    private void addColumns(Set<String> columns, int property) {
+        for (String column : persister.getPropertyColumnNames(property)) {
+            if (column != null) {
+                columns.add(normalize(column));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of the {@code putFromLoad} writes a {@link StripedReadWriteSupport} took off the reader's thread, and
+ * the daemon threads applying them.
+ * <p>
+ * A reader finding the queue full waits up to the back-pressure timeout for room, so that a burst of misses slows down
+ * the readers rather than the cache falling behind without bound, then drops its put: the next reader loads the entry
+ * again.
+ */
+public final class AsyncPutQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPutQueue.class);
+
+    private final BlockingQueue<Runnable> puts;
+
+    private final long backPressureNanos;
+
+    private final Thread[] workers;
+
+    private final LongAdder queued = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder applied = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @param backPressureMillis how long a reader waits for room in a full queue, {@code 0} to drop right away
+     */
+    public AsyncPutQueue(String name, int capacity, int threads, long backPressureMillis) {
+        this.puts = new ArrayBlockingQueue<>(capacity);
+        this.backPressureNanos = TimeUnit.MILLISECONDS.toNanos(backPressureMillis);
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers[i] = worker;
+        }
+    }
+
+    /**
+     * @return whether the put was queued, {@code false} if the queue stayed full
+     */
+    boolean submit(Runnable put) {
+        if (puts.offer(put)) {
+            queued.increment();
+            return true;
+        }
+        waited.increment();
+        try {
+            if (backPressureNanos > 0 && puts.offer(put, backPressureNanos, TimeUnit.NANOSECONDS)) {
+                queued.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Counts a queued put turned down because it waited longer than a soft lock may last.
+     */
+    void recordExpired() {
+        expired.increment();
+    }
+
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * Puts that found the queue full and made their reader wait for room.
+     */
+    public long getBackPressureCount() {
+        return waited.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queued puts that ran, whether the entry accepted them or not.
+     */
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public int getPendingCount() {
+        return puts.size();
+    }
+
+    @Override
+    public void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        puts.clear();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Runnable put;
+            try {
+                put = puts.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                put.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not apply a queued cache put", e);
+            }
+            applied.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncPutQueue{" +
+                "queued=" + getQueuedCount() +
+                ", backPressure=" + getBackPressureCount() +
+                ", dropped=" + getDroppedCount() +
+                ", applied=" + getAppliedCount() +
+                ", expired=" + getExpiredCount() +
+                ", pending=" + getPendingCount() +
+                '}';
+    }
+}
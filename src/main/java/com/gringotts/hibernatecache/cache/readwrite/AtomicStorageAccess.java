@@ -0,0 +1,61 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A {@link DomainDataStorageAccess} able to read and replace the entry of a key in one atomic step, such as a JCache
+ * {@link javax.cache.processor.EntryProcessor} or a {@link java.util.concurrent.ConcurrentMap#compute}.
+ * <p>
+ * The READ_WRITE access strategies run their soft-lock transitions through it instead of a {@code get} followed by a
+ * {@code put} under a lock: one store operation per transition, with no other write to the key in between.
+ */
+public interface AtomicStorageAccess extends DomainDataStorageAccess {
+
+    /**
+     * Applies {@code transition} to the entry of {@code key}, once, without any other write to that key happening
+     * meanwhile. It runs while the storage holds the entry, so it must not call back into the storage.
+     *
+     * @return what the transition returned
+     */
+    <T> T invoke(Object key, Function<Entry, T> transition, SharedSessionContractImplementor session);
+
+    /**
+     * Applies the transition of each key as {@link #invoke} does, in as few calls to the store as it allows. By default
+     * one {@link #invoke} per key.
+     *
+     * @return what the transitions returned, by key
+     */
+    default <T> Map<Object, T> invokeAll(
+            Map<Object, Function<Entry, T>> transitions,
+            SharedSessionContractImplementor session) {
+        Map<Object, T> results = new HashMap<>();
+        for (Map.Entry<Object, Function<Entry, T>> transition : transitions.entrySet()) {
+            results.put(transition.getKey(), invoke(transition.getKey(), transition.getValue(), session));
+        }
+        return results;
+    }
+
+    /**
+     * The entry of a key during a transition.
+     */
+    interface Entry {
+
+        /**
+         * @return the current value, {@code null} if there is none
+         */
+        Object getValue();
+
+        /**
+         * Replaces the value once the transition completes. A value modified in place must be set again, since the
+         * storage may hand out copies.
+         */
+        void setValue(Object value);
+
+        void remove();
+    }
+}
@@ -0,0 +1,163 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells the {@link StripedCollectionReadWriteAccess} of an inverse one-to-many collection updated incrementally which
+ * elements a transaction added to or removed from which owner, from the many-to-one side of the inserted, deleted and
+ * updated elements, the way Hibernate's {@link org.hibernate.cache.internal.CollectionCacheInvalidator} finds the
+ * collections to evict.
+ * <p>
+ * Only unordered bags and sets are updated: the position an element takes in an indexed or ordered collection is not
+ * known without reloading it.
+ */
+public class CollectionElementChangeListener
+        implements PostInsertEventListener, PostDeleteEventListener, PostUpdateEventListener {
+
+    /**
+     * The collections updated incrementally of each element entity, resolved once the regions are built.
+     */
+    private final Map<String, List<IncrementalCollection>> incrementalCollections = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        recordChanges(event.getPersister(), event.getSession(), event.getId(), null, event.getState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        recordChanges(event.getPersister(), event.getSession(), event.getId(), event.getDeletedState(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        List<IncrementalCollection> collections = incrementalCollections(event.getPersister());
+        if (event.getOldState() == null && !collections.isEmpty()) {
+            // updated without a snapshot, the element may have left an owner this transaction did not load
+            for (IncrementalCollection collection : collections) {
+                collection.access().recordUnattributedChange(event.getSession());
+            }
+            return;
+        }
+        recordChanges(event.getPersister(), event.getSession(), event.getId(), event.getOldState(), event.getState());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    /**
+     * @param oldState {@code null} for an inserted element
+     * @param newState {@code null} for a deleted element
+     */
+    private void recordChanges(
+            EntityPersister persister,
+            EventSource session,
+            Serializable id,
+            Object[] oldState,
+            Object[] newState) {
+        for (IncrementalCollection collection : incrementalCollections(persister)) {
+            Serializable oldOwnerId = oldState == null ? null : ownerId(collection, oldState, session);
+            Serializable newOwnerId = newState == null ? null : ownerId(collection, newState, session);
+            if (Objects.equals(oldOwnerId, newOwnerId)) {
+                continue;
+            }
+            Object elementId = persister.getIdentifierType().disassemble(id, session, null);
+            if (oldOwnerId != null) {
+                collection.access().recordElementChange(session, collection.key(oldOwnerId, session), elementId, false);
+            }
+            if (newOwnerId != null) {
+                collection.access().recordElementChange(session, collection.key(newOwnerId, session), elementId, true);
+            }
+        }
+    }
+
+    private static Serializable ownerId(IncrementalCollection collection, Object[] state, EventSource session) {
+        Object owner = state[collection.mappedByIndex];
+        if (owner == null) {
+            return null;
+        }
+        Serializable ownerId = session.getContextEntityIdentifier(owner);
+        return ownerId != null
+                ? ownerId
+                : collection.persister.getOwnerEntityPersister().getIdentifier(owner, session);
+    }
+
+    private List<IncrementalCollection> incrementalCollections(EntityPersister persister) {
+        return incrementalCollections.computeIfAbsent(persister.getEntityName(), entityName -> {
+            MetamodelImplementor metamodel = persister.getFactory().getMetamodel();
+            Set<String> roles = metamodel.getCollectionRolesByEntityParticipant(entityName);
+            if (roles == null) {
+                return Collections.emptyList();
+            }
+            List<IncrementalCollection> collections = new ArrayList<>(1);
+            for (String role : roles) {
+                CollectionPersister collectionPersister = metamodel.collectionPersister(role);
+                String mappedBy = collectionPersister.getMappedByProperty();
+                Integer mappedByIndex = mappedBy == null || mappedBy.isEmpty()
+                        ? null
+                        : persister.getEntityMetamodel().getPropertyIndexOrNull(mappedBy);
+                if (mappedByIndex != null
+                        && collectionPersister.hasCache()
+                        && collectionPersister.getCacheAccessStrategy() instanceof StripedCollectionReadWriteAccess
+                        && ((StripedCollectionReadWriteAccess) collectionPersister.getCacheAccessStrategy())
+                        .isIncremental()
+                        && collectionPersister.isInverse()
+                        && collectionPersister.isOneToMany()
+                        && !collectionPersister.hasIndex()
+                        && !collectionPersister.hasOrdering()) {
+                    collections.add(new IncrementalCollection(collectionPersister, mappedByIndex));
+                }
+            }
+            return collections;
+        });
+    }
+
+    private static final class IncrementalCollection {
+
+        private final CollectionPersister persister;
+
+        /**
+         * Index of the many-to-one property mapping the collection in the state of its elements.
+         */
+        private final int mappedByIndex;
+
+        private IncrementalCollection(CollectionPersister persister, int mappedByIndex) {
+            this.persister = persister;
+            this.mappedByIndex = mappedByIndex;
+        }
+
+        StripedCollectionReadWriteAccess access() {
+            return (StripedCollectionReadWriteAccess) persister.getCacheAccessStrategy();
+        }
+
+        Object key(Serializable ownerId, EventSource session) {
+            return access().generateCacheKey(ownerId, persister, session.getFactory(), session.getTenantIdentifier());
+        }
+    }
+}
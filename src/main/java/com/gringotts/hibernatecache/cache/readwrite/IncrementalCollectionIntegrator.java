@@ -0,0 +1,35 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Appends a {@link CollectionElementChangeListener} to the entity insert, delete and update events of every session
+ * factory using the second-level cache. Whether a collection region updates its entries incrementally is only known
+ * once the regions are built, so the listener finds out on the first event of each entity.
+ */
+public class IncrementalCollectionIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+            Metadata metadata,
+            SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        if (!sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return;
+        }
+        CollectionElementChangeListener listener = new CollectionElementChangeListener();
+        EventListenerRegistry eventListenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, listener);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, listener);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How much the soft locks of one READ_WRITE access cost: how long entries stayed locked, and how many reads found a
+ * lock instead of a value and went to the database.
+ */
+public class SoftLockStatistics {
+
+    private final LongAdder locks = new LongAdder();
+
+    private final LongAdder releases = new LongAdder();
+
+    private final LongAdder lockedNanos = new LongAdder();
+
+    private final LongAccumulator maximumLockedNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder lockedReads = new LongAdder();
+
+    private final LongAdder restores = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder batchedWrites = new LongAdder();
+
+    private final LongAdder incrementalUpdates = new LongAdder();
+
+    void recordLock() {
+        locks.increment();
+    }
+
+    void recordRelease(long nanos) {
+        releases.increment();
+        lockedNanos.add(nanos);
+        maximumLockedNanos.accumulate(nanos);
+    }
+
+    void recordLockedRead() {
+        lockedReads.increment();
+    }
+
+    void recordRestore() {
+        restores.increment();
+    }
+
+    void recordBatch(int writes) {
+        batches.increment();
+        batchedWrites.add(writes);
+    }
+
+    void recordIncrementalUpdate() {
+        incrementalUpdates.increment();
+    }
+
+    /**
+     * Soft locks taken, by updates, deletes and collection changes.
+     */
+    public long getLockCount() {
+        return locks.sum();
+    }
+
+    /**
+     * Soft locks released by their own transaction, which the locked time statistics are about. Locks that expired
+     * or were taken over by another transaction are not counted.
+     */
+    public long getReleaseCount() {
+        return releases.sum();
+    }
+
+    public long getLockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lockedNanos.sum());
+    }
+
+    public long getMaximumLockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maximumLockedNanos.get());
+    }
+
+    public double getAverageLockedMillis() {
+        long releases = getReleaseCount();
+        return releases == 0 ? 0 : lockedNanos.sum() / 1_000_000.0 / releases;
+    }
+
+    /**
+     * Lookups that missed because the entry was soft-locked.
+     */
+    public long getLockedReadCount() {
+        return lockedReads.sum();
+    }
+
+    /**
+     * Rolled back transactions whose locked entries got their previous value back, instead of staying locked until
+     * the lock timeout.
+     */
+    public long getRestoreCount() {
+        return restores.sum();
+    }
+
+    /**
+     * Transaction completions whose writes were applied as one batch.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Writes those batches carried: inserted and updated entries, and released soft locks.
+     */
+    public long getBatchedWriteCount() {
+        return batchedWrites.sum();
+    }
+
+    /**
+     * Collection entries a transaction updated with the elements it added and removed, instead of invalidating them.
+     */
+    public long getIncrementalUpdateCount() {
+        return incrementalUpdates.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "SoftLockStatistics[locks=%d, releases=%d, lockedMillis=%d, averageLockedMillis=%.2f, "
+                        + "maximumLockedMillis=%d, lockedReads=%d, restores=%d, batches=%d, batchedWrites=%d, "
+                        + "incrementalUpdates=%d]",
+                getLockCount(), getReleaseCount(), getLockedMillis(), getAverageLockedMillis(),
+                getMaximumLockedMillis(), getLockedReadCount(), getRestoreCount(), getBatchCount(),
+                getBatchedWriteCount(), getIncrementalUpdateCount()
+        );
+    }
+}
@@ -0,0 +1,92 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.CollectionReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link CollectionReadWriteAccess} locking per key instead of per region, see {@link StripedReadWriteSupport}.
+ * <p>
+ * With incremental updates, an inverse one-to-many collection entry locked by a transaction is updated at completion
+ * with the elements the {@link CollectionElementChangeListener} saw the transaction add and remove, instead of being
+ * invalidated, so that a collection receiving writes stays cached.
+ */
+public class StripedCollectionReadWriteAccess extends CollectionReadWriteAccess {
+
+    private final StripedReadWriteSupport support;
+
+    public StripedCollectionReadWriteAccess(
+            DomainDataRegion region,
+            CacheKeysFactory keysFactory,
+            DomainDataStorageAccess storageAccess,
+            CollectionDataCachingConfig config,
+            StripedLocks locks,
+            boolean batchCompletionWrites,
+            AsyncPutQueue asyncPuts,
+            boolean incrementalUpdates) {
+        super(region, keysFactory, storageAccess, config);
+        this.support = new StripedReadWriteSupport(
+                region, storageAccess, locks, uuid(), getVersionComparator(), batchCompletionWrites, asyncPuts,
+                incrementalUpdates
+        );
+    }
+
+    public StripedLocks getLocks() {
+        return support.getLocks();
+    }
+
+    public SoftLockStatistics getSoftLockStatistics() {
+        return support.getStatistics();
+    }
+
+    public boolean isIncremental() {
+        return support.isIncremental();
+    }
+
+    /**
+     * Records an element added to, or removed from, the collection of {@code key} by the transaction of
+     * {@code session}, to be applied to its entry when that transaction releases its lock.
+     *
+     * @param elementId the disassembled id of the element, as the
+     * {@link org.hibernate.cache.spi.entry.CollectionCacheEntry} of the collection holds it
+     */
+    public void recordElementChange(
+            SharedSessionContractImplementor session,
+            Object key,
+            Object elementId,
+            boolean added) {
+        support.recordElementChange(session, key, elementId, added);
+    }
+
+    /**
+     * Records that the transaction of {@code session} moved an element of such a collection away from an owner it
+     * cannot tell, so that the collections it locked are invalidated as usual.
+     */
+    public void recordUnattributedChange(SharedSessionContractImplementor session) {
+        support.recordUnattributedChange(session);
+    }
+
+    @Override
+    public Object get(SharedSessionContractImplementor session, Object key) {
+        return support.get(session, key);
+    }
+
+    @Override
+    public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        return support.putFromLoad(session, key, value, version);
+    }
+
+    @Override
+    public SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
+        return support.lockItem(session, key, version);
+    }
+
+    @Override
+    public void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) {
+        support.unlockItem(session, key, lock);
+    }
+}
@@ -0,0 +1,42 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared by the keys hashing to them, so that writes to different keys of a region seldom wait
+ * for each other while writes to the same key always do.
+ */
+public final class StripedLocks {
+
+    private final Lock[] locks;
+
+    private final int mask;
+
+    /**
+     * @param stripes rounded up to a power of two
+     */
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("The number of lock stripes must be positive: " + stripes);
+        }
+        int size = Integer.highestOneBit(Math.min(stripes, 1 << 30));
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public Lock lockFor(Object key) {
+        int hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+}
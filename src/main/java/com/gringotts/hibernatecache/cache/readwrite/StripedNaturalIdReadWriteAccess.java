@@ -0,0 +1,69 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import org.hibernate.cache.cfg.spi.NaturalIdDataCachingConfig;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.NaturalIdReadWriteAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * {@link NaturalIdReadWriteAccess} locking per key instead of per region, see {@link StripedReadWriteSupport}.
+ */
+public class StripedNaturalIdReadWriteAccess extends NaturalIdReadWriteAccess {
+
+    private final StripedReadWriteSupport support;
+
+    public StripedNaturalIdReadWriteAccess(
+            DomainDataRegion region,
+            CacheKeysFactory keysFactory,
+            DomainDataStorageAccess storageAccess,
+            NaturalIdDataCachingConfig config,
+            StripedLocks locks,
+            boolean batchCompletionWrites,
+            AsyncPutQueue asyncPuts) {
+        super(region, keysFactory, storageAccess, config);
+        this.support = new StripedReadWriteSupport(
+                region, storageAccess, locks, uuid(), getVersionComparator(), batchCompletionWrites, asyncPuts, false
+        );
+    }
+
+    public StripedLocks getLocks() {
+        return support.getLocks();
+    }
+
+    public SoftLockStatistics getSoftLockStatistics() {
+        return support.getStatistics();
+    }
+
+    @Override
+    public Object get(SharedSessionContractImplementor session, Object key) {
+        return support.get(session, key);
+    }
+
+    @Override
+    public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        return support.putFromLoad(session, key, value, version);
+    }
+
+    @Override
+    public SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
+        return support.lockItem(session, key, version);
+    }
+
+    @Override
+    public void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) {
+        support.unlockItem(session, key, lock);
+    }
+
+    @Override
+    public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value) {
+        return support.afterInsert(session, key, value, null);
+    }
+
+    @Override
+    public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value, SoftLock lock) {
+        return support.afterUpdate(session, key, value, null, lock);
+    }
+}
@@ -0,0 +1,652 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.CacheMode;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.SecondLevelCacheLogger;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess.Item;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess.Lockable;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess.SoftLockImpl;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.SimpleTimestamper;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The READ_WRITE protocol of {@link org.hibernate.cache.spi.support.AbstractReadWriteAccess}, step for step, with the
+ * region-wide read/write lock replaced:
+ * <ul>
+ *     <li>reads take no lock at all: the storage hands back either the entry before or after a concurrent write, and
+ *     a soft lock being modified in place is unreadable either way;</li>
+ *     <li>every write is a transition of the entry of one key, run as one {@link AtomicStorageAccess#invoke} when the
+ *     storage supports it, and otherwise as a {@code get} and a {@code put} under the {@link StripedLocks stripe} of
+ *     the key.</li>
+ * </ul>
+ * Unlike Hibernate's, a soft lock does not outlive a rolled back transaction: the lock registers an
+ * {@link org.hibernate.action.spi.AfterTransactionCompletionProcess} which, on rollback, puts back the value the lock
+ * replaced, as long as no other transaction locked the entry meanwhile. It runs before the action's own
+ * {@code unlockItem}, which then leaves the entry alone. Readers no longer miss until the lock timeout, and, for
+ * versioned entities, loads no longer fail to replace a lock holding the version they read.
+ * <p>
+ * With completion batching, the writes a transaction leaves for its completion ({@code afterInsert},
+ * {@code afterUpdate} and {@code unlockItem}) are buffered instead, and applied with one
+ * {@link AtomicStorageAccess#invokeAll} once every action completed: the buffer registers its own completion process
+ * on the first write, which runs after the processes already queued. Their return value then only says the write
+ * was issued.
+ * <p>
+ * With an {@link AsyncPutQueue}, {@code putFromLoad} only queues its transition and returns whether it was queued.
+ * The transition runs later on a thread of the queue, with the same check against the entry it finds then, made with
+ * the start timestamp of the reader's transaction: a soft lock, or the item or released lock a later transaction left,
+ * still turns it down. A put that waited longer than the lock timeout is dropped instead, since the lock of a change
+ * it missed may have expired meanwhile. Loads in {@link CacheMode#REFRESH} still put right away, their caller
+ * expecting the entry refreshed once they return.
+ * <p>
+ * With incremental collection updates, the ids the elements of an inverse one-to-many collection gained or lost in a
+ * transaction, as reported by the {@link CollectionElementChangeListener}, are applied at completion to the entry its
+ * soft lock replaced, instead of leaving the entry invalidated. The same rules as for an updated entity apply: the lock
+ * must still be held, and by this transaction only, or the entry is invalidated as usual. A transaction some changes
+ * of which could not be attributed to an owner invalidates its collections as usual too.
+ */
+final class StripedReadWriteSupport {
+
+    private final DomainDataRegion region;
+
+    private final DomainDataStorageAccess storageAccess;
+
+    private final StripedLocks locks;
+
+    private final UUID uuid;
+
+    private final AtomicLong nextLockId = new AtomicLong();
+
+    private final Comparator versionComparator;
+
+    /**
+     * Locks held by a transaction through this access, kept no longer than the lock timeout, after which Hibernate treats
+     * them as expired anyway.
+     */
+    private final Cache<SoftLock, LockRecord> records;
+
+    private final SoftLockStatistics statistics = new SoftLockStatistics();
+
+    /**
+     * The completion writes of each transaction, by session, {@code null} unless batching them. Kept no longer than the
+     * lock timeout, in case the completion of a transaction failed before applying them.
+     */
+    private final Cache<UUID, WriteBatch> batches;
+
+    private final AsyncPutQueue asyncPuts;
+
+    /**
+     * The collection element changes of each transaction, by session, {@code null} unless updating collection entries
+     * incrementally. Removed once the transaction completed, and kept no longer than the lock timeout after their last
+     * change otherwise.
+     */
+    private final Cache<UUID, SessionElementChanges> elementChanges;
+
+    /**
+     * @param locks may be {@code null} when the storage is an {@link AtomicStorageAccess}
+     * @param batchCompletionWrites ignored unless the storage is an {@link AtomicStorageAccess}
+     * @param asyncPuts {@code null} to put loads from the reader's thread
+     * @param incrementalUpdates whether to apply the {@link #recordElementChange element changes} of a transaction to
+     * the collection entries it locked
+     */
+    StripedReadWriteSupport(
+            DomainDataRegion region,
+            DomainDataStorageAccess storageAccess,
+            StripedLocks locks,
+            UUID uuid,
+            Comparator versionComparator,
+            boolean batchCompletionWrites,
+            AsyncPutQueue asyncPuts,
+            boolean incrementalUpdates) {
+        if (locks == null && !(storageAccess instanceof AtomicStorageAccess)) {
+            throw new IllegalArgumentException("Lock stripes are required by non-atomic storage " + storageAccess);
+        }
+        this.region = region;
+        this.storageAccess = storageAccess;
+        this.locks = locks;
+        this.uuid = uuid;
+        this.versionComparator = versionComparator;
+        long timeout = regionFactory().getTimeout() / SimpleTimestamper.ONE_MS;
+        this.records = Caffeine.newBuilder().expireAfterWrite(timeout, TimeUnit.MILLISECONDS).build();
+        this.batches = batchCompletionWrites && storageAccess instanceof AtomicStorageAccess
+                ? Caffeine.newBuilder().expireAfterWrite(timeout, TimeUnit.MILLISECONDS).build()
+                : null;
+        this.asyncPuts = asyncPuts;
+        this.elementChanges = incrementalUpdates
+                ? Caffeine.newBuilder().expireAfterAccess(timeout, TimeUnit.MILLISECONDS).build()
+                : null;
+    }
+
+    StripedLocks getLocks() {
+        return locks;
+    }
+
+    SoftLockStatistics getStatistics() {
+        return statistics;
+    }
+
+    boolean isIncremental() {
+        return elementChanges != null;
+    }
+
+    Object get(SharedSessionContractImplementor session, Object key) {
+        Lockable item = (Lockable) storageAccess.getFromCache(key, session);
+        if (item == null) {
+            return null;
+        }
+        if (item.isReadable(session.getTransactionStartTimestamp())) {
+            return item.getValue();
+        }
+        if (item instanceof SoftLock) {
+            statistics.recordLockedRead();
+        }
+        return null;
+    }
+
+    boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        long timestamp = session.getTransactionStartTimestamp();
+        Function<AtomicStorageAccess.Entry, Boolean> put = entry -> {
+            Lockable item = (Lockable) entry.getValue();
+            if (item != null && !item.isWriteable(timestamp, version, versionComparator)) {
+                return false;
+            }
+            entry.setValue(HibernateCacheInternals.newItem(value, version, timestamp));
+            return true;
+        };
+        if (asyncPuts == null || session.getCacheMode() == CacheMode.REFRESH) {
+            return transition(session, key, put);
+        }
+        // the reader's session may be closed by the time the put runs
+        return asyncPuts.submit(() -> {
+            if (regionFactory().nextTimestamp() - timestamp > regionFactory().getTimeout()) {
+                asyncPuts.recordExpired();
+                return;
+            }
+            transition(null, key, put);
+        });
+    }
+
+    SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
+        long timeout = regionFactory().nextTimestamp() + regionFactory().getTimeout();
+        long lockId = nextLockId.getAndIncrement();
+        Lockable[] previous = new Lockable[1];
+        SoftLockImpl softLock = transition(session, key, entry -> {
+            Lockable item = (Lockable) entry.getValue();
+            previous[0] = item;
+            SoftLockImpl lock = item == null
+                    ? HibernateCacheInternals.newSoftLock(timeout, uuid, lockId, version, false, 1, 0)
+                    : item.lock(timeout, uuid, lockId);
+            entry.setValue(lock);
+            return lock;
+        });
+        statistics.recordLock();
+        if (!(session instanceof SessionImplementor)) {
+            return softLock;
+        }
+        if (previous[0] instanceof SoftLockImpl) {
+            // joining a lock, restorable only if this transaction holds all of it (e.g. a collection changed and
+            // invalidated by the same flush)
+            LockRecord record = softLock == null ? null : records.getIfPresent(softLock);
+            if (record != null && record.sessionIdentifier.equals(session.getSessionIdentifier())) {
+                record.holders++;
+            } else if (record != null) {
+                record.joinedByOtherTransaction = true;
+            }
+        } else {
+            LockRecord record = new LockRecord((Item) previous[0], session.getSessionIdentifier());
+            records.put(softLock, record);
+            ((SessionImplementor) session).getActionQueue().registerProcess((success, completedSession) -> {
+                if (!success) {
+                    restore(completedSession, key, softLock, record);
+                }
+            });
+        }
+        return softLock;
+    }
+
+    private void restore(SharedSessionContractImplementor session, Object key, SoftLock softLock, LockRecord record) {
+        if (record.joinedByOtherTransaction) {
+            return;
+        }
+        boolean restored = transition(session, key, entry -> {
+            Object value = entry.getValue();
+            // a transaction that joined and already released the lock may have committed a newer state
+            if (!(value instanceof SoftLockImpl)
+                    || ((SoftLockImpl) value).wasLockedConcurrently()
+                    || !((SoftLockImpl) value).isUnlockable(softLock)
+                    || HibernateCacheInternals.getMultiplicity((SoftLockImpl) value) != record.holders) {
+                return false;
+            }
+            if (record.previous == null) {
+                entry.remove();
+            } else {
+                entry.setValue(record.previous);
+            }
+            return true;
+        });
+        if (restored) {
+            record.restored = true;
+            statistics.recordRestore();
+            statistics.recordRelease(record.lockedNanos());
+        }
+    }
+
+    void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock softLock) {
+        LockRecord record = releaseRecord(session, softLock);
+        if (record != null && record.restored) {
+            return;
+        }
+        boolean lastHolder = record != null && record.holders == 0;
+        CollectionCacheEntry updatedEntry = lastHolder ? applyElementChanges(session, key, record) : null;
+        long timestamp = regionFactory().nextTimestamp();
+        boolean[] updated = new boolean[1];
+        completionTransition(session, key, entry -> {
+            Lockable item = (Lockable) entry.getValue();
+            if (item != null && item.isUnlockable(softLock)) {
+                SoftLockImpl lockItem = (SoftLockImpl) item;
+                // joins of this transaction's own actions mark the lock concurrent as well
+                if (updatedEntry != null
+                        && !record.joinedByOtherTransaction
+                        && HibernateCacheInternals.getMultiplicity(lockItem) == 1) {
+                    entry.setValue(HibernateCacheInternals.newItem(updatedEntry, null, timestamp));
+                    updated[0] = true;
+                } else {
+                    decrementLock(entry, lockItem, timestamp);
+                }
+                return true;
+            }
+            handleLockExpiry(entry, key, timestamp);
+            return false;
+        }, released -> {
+            if (released && lastHolder) {
+                statistics.recordRelease(record.lockedNanos());
+            }
+            if (updated[0]) {
+                statistics.recordIncrementalUpdate();
+            }
+        });
+    }
+
+    /**
+     * Records that an element of the collection of {@code key} was added to it, or removed from it, by the transaction
+     * of {@code session}, whether or not that transaction locked the collection.
+     *
+     * @param elementId the disassembled id of the element, as a {@link CollectionCacheEntry} holds it
+     */
+    void recordElementChange(SharedSessionContractImplementor session, Object key, Object elementId, boolean added) {
+        SessionElementChanges changes = elementChanges(session);
+        if (changes != null) {
+            changes.byKey.computeIfAbsent(key, k -> new ElementChanges()).record(elementId, added);
+        }
+    }
+
+    /**
+     * Records that the transaction of {@code session} moved an element away from an owner it cannot tell, which turns
+     * incremental updates off for the rest of that transaction.
+     */
+    void recordUnattributedChange(SharedSessionContractImplementor session) {
+        SessionElementChanges changes = elementChanges(session);
+        if (changes != null) {
+            changes.incomplete = true;
+        }
+    }
+
+    private SessionElementChanges elementChanges(SharedSessionContractImplementor session) {
+        if (elementChanges == null || !(session instanceof SessionImplementor)) {
+            return null;
+        }
+        SessionImplementor sessionImplementor = (SessionImplementor) session;
+        return elementChanges.get(session.getSessionIdentifier(), identifier -> {
+            SessionElementChanges newChanges = new SessionElementChanges();
+            // registered again on completion, so that it runs after the unlockItem of every collection action
+            sessionImplementor.getActionQueue().registerProcess((success, completedSession) ->
+                    sessionImplementor.getActionQueue().registerProcess((committed, cleanedSession) ->
+                            elementChanges.asMap().remove(identifier, newChanges)
+                    )
+            );
+            return newChanges;
+        });
+    }
+
+    /**
+     * @return the entry the lock replaced with the element changes of the transaction applied, {@code null} if there
+     * was no collection entry or no changes to apply
+     */
+    private CollectionCacheEntry applyElementChanges(
+            SharedSessionContractImplementor session,
+            Object key,
+            LockRecord record) {
+        if (elementChanges == null || record.previous == null
+                || !(record.previous.getValue() instanceof CollectionCacheEntry)) {
+            return null;
+        }
+        SessionElementChanges changes = elementChanges.getIfPresent(session.getSessionIdentifier());
+        ElementChanges keyChanges = changes == null ? null : changes.byKey.remove(key);
+        return keyChanges == null || changes.incomplete
+                ? null
+                : keyChanges.applyTo((CollectionCacheEntry) record.previous.getValue());
+    }
+
+    boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+        long timestamp = regionFactory().nextTimestamp();
+        return completionTransition(session, key, entry -> {
+            if (entry.getValue() != null) {
+                return false;
+            }
+            entry.setValue(HibernateCacheInternals.newItem(value, version, timestamp));
+            return true;
+        }, null);
+    }
+
+    boolean afterUpdate(
+            SharedSessionContractImplementor session,
+            Object key,
+            Object value,
+            Object version,
+            SoftLock softLock) {
+        LockRecord record = releaseRecord(session, softLock);
+        boolean lastHolder = record != null && record.holders == 0;
+        long timestamp = regionFactory().nextTimestamp();
+        boolean[] released = new boolean[1];
+        return completionTransition(session, key, entry -> {
+            Lockable item = (Lockable) entry.getValue();
+            if (item == null || !item.isUnlockable(softLock)) {
+                handleLockExpiry(entry, key, timestamp);
+                return false;
+            }
+            released[0] = true;
+            SoftLockImpl lockItem = (SoftLockImpl) item;
+            if (lockItem.wasLockedConcurrently()) {
+                decrementLock(entry, lockItem, timestamp);
+                return false;
+            }
+            entry.setValue(HibernateCacheInternals.newItem(value, version, timestamp));
+            return true;
+        }, updated -> {
+            if (released[0] && lastHolder) {
+                statistics.recordRelease(record.lockedNanos());
+            }
+        });
+    }
+
+    /**
+     * @return the record of a lock held by the transaction of {@code session}, {@code null} for a lock of another
+     * transaction that {@code session} joined
+     */
+    private LockRecord getRecord(SharedSessionContractImplementor session, SoftLock softLock) {
+        LockRecord record = softLock == null ? null : records.getIfPresent(softLock);
+        return record != null && record.sessionIdentifier.equals(session.getSessionIdentifier()) ? record : null;
+    }
+
+    private LockRecord releaseRecord(SharedSessionContractImplementor session, SoftLock softLock) {
+        LockRecord record = getRecord(session, softLock);
+        if (record != null && --record.holders == 0) {
+            records.invalidate(softLock);
+        }
+        return record;
+    }
+
+    /**
+     * Runs a transition of the completion of the transaction of {@code session}, right away or, when batching them, as
+     * part of the batch of that transaction.
+     *
+     * @param then called with the result of the transition once it ran, may be {@code null}
+     * @return the result of the transition, {@code true} if it was only added to the batch
+     */
+    private boolean completionTransition(
+            SharedSessionContractImplementor session,
+            Object key,
+            Function<AtomicStorageAccess.Entry, Boolean> transition,
+            Consumer<Boolean> then) {
+        if (batches == null || !(session instanceof SessionImplementor)) {
+            boolean result = transition(session, key, transition);
+            if (then != null) {
+                then.accept(result);
+            }
+            return result;
+        }
+        UUID sessionIdentifier = session.getSessionIdentifier();
+        WriteBatch batch = batches.get(sessionIdentifier, identifier -> {
+            WriteBatch newBatch = new WriteBatch();
+            ((SessionImplementor) session).getActionQueue().registerProcess(
+                    (success, completedSession) -> flush(completedSession, identifier, newBatch)
+            );
+            return newBatch;
+        });
+        batch.add(key, transition, then);
+        return true;
+    }
+
+    private void flush(SharedSessionContractImplementor session, UUID sessionIdentifier, WriteBatch batch) {
+        batches.asMap().remove(sessionIdentifier, batch);
+        Map<Object, Function<AtomicStorageAccess.Entry, boolean[]>> transitions = new LinkedHashMap<>();
+        for (Map.Entry<Object, List<BatchedWrite>> keyWrites : batch.writes.entrySet()) {
+            List<BatchedWrite> writes = keyWrites.getValue();
+            transitions.put(keyWrites.getKey(), entry -> {
+                boolean[] results = new boolean[writes.size()];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = writes.get(i).transition.apply(entry);
+                }
+                return results;
+            });
+        }
+        Map<Object, boolean[]> results = ((AtomicStorageAccess) storageAccess).invokeAll(transitions, session);
+        statistics.recordBatch(batch.size);
+        for (Map.Entry<Object, List<BatchedWrite>> keyWrites : batch.writes.entrySet()) {
+            boolean[] keyResults = results.get(keyWrites.getKey());
+            List<BatchedWrite> writes = keyWrites.getValue();
+            for (int i = 0; keyResults != null && i < keyResults.length; i++) {
+                if (writes.get(i).then != null) {
+                    writes.get(i).then.accept(keyResults[i]);
+                }
+            }
+        }
+    }
+
+    private <T> T transition(
+            SharedSessionContractImplementor session,
+            Object key,
+            Function<AtomicStorageAccess.Entry, T> transition) {
+        if (storageAccess instanceof AtomicStorageAccess) {
+            return ((AtomicStorageAccess) storageAccess).invoke(key, transition, session);
+        }
+        Lock lock = locks.lockFor(key);
+        lock.lock();
+        try {
+            LockedEntry entry = new LockedEntry(storageAccess.getFromCache(key, session));
+            T result = transition.apply(entry);
+            if (entry.removed) {
+                storageAccess.evictData(key);
+            } else if (entry.written) {
+                storageAccess.putIntoCache(key, entry.value, session);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The soft lock is unlocked on a copy where the storage copies values, so it is written back either way.
+     */
+    private static void decrementLock(AtomicStorageAccess.Entry entry, SoftLockImpl softLock, long timestamp) {
+        softLock.unlock(timestamp);
+        entry.setValue(softLock);
+    }
+
+    /**
+     * Replaces whatever the key holds by a lock that is already released, so that only loads started from now on can
+     * cache the key again.
+     */
+    private void handleLockExpiry(AtomicStorageAccess.Entry entry, Object key, long timestamp) {
+        SecondLevelCacheLogger.INSTANCE.softLockedCacheExpired(region.getName(), key);
+        entry.setValue(HibernateCacheInternals.newSoftLock(
+                timestamp + regionFactory().getTimeout(), uuid, nextLockId.getAndIncrement(), null, false, 0, timestamp
+        ));
+    }
+
+    private RegionFactory regionFactory() {
+        return region.getRegionFactory();
+    }
+
+    private static final class LockedEntry implements AtomicStorageAccess.Entry {
+
+        private Object value;
+
+        private boolean written;
+
+        private boolean removed;
+
+        private LockedEntry(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(Object value) {
+            this.value = value;
+            written = true;
+            removed = false;
+        }
+
+        @Override
+        public void remove() {
+            value = null;
+            removed = true;
+            written = false;
+        }
+    }
+
+    /**
+     * The completion writes of one transaction, in the order it issued them, grouped by key. Accessed by the thread of
+     * its session only.
+     */
+    private static final class WriteBatch {
+
+        private final Map<Object, List<BatchedWrite>> writes = new LinkedHashMap<>();
+
+        private int size;
+
+        void add(Object key, Function<AtomicStorageAccess.Entry, Boolean> transition, Consumer<Boolean> then) {
+            writes.computeIfAbsent(key, k -> new ArrayList<>(1)).add(new BatchedWrite(transition, then));
+            size++;
+        }
+    }
+
+    private static final class BatchedWrite {
+
+        private final Function<AtomicStorageAccess.Entry, Boolean> transition;
+
+        private final Consumer<Boolean> then;
+
+        private BatchedWrite(Function<AtomicStorageAccess.Entry, Boolean> transition, Consumer<Boolean> then) {
+            this.transition = transition;
+            this.then = then;
+        }
+    }
+
+    /**
+     * The collection element changes of one transaction. Accessed by the thread of its session only.
+     */
+    private static final class SessionElementChanges {
+
+        private final Map<Object, ElementChanges> byKey = new HashMap<>();
+
+        private boolean incomplete;
+    }
+
+    private static final class ElementChanges {
+
+        private final Set<Object> added = new LinkedHashSet<>();
+
+        private final Set<Object> removed = new HashSet<>();
+
+        void record(Object elementId, boolean add) {
+            if (add) {
+                removed.remove(elementId);
+                added.add(elementId);
+            } else {
+                added.remove(elementId);
+                removed.add(elementId);
+            }
+        }
+
+        CollectionCacheEntry applyTo(CollectionCacheEntry entry) {
+            Serializable[] state = entry.getState();
+            List<Serializable> elements = new ArrayList<>(state.length + added.size());
+            for (Serializable element : state) {
+                if (!removed.contains(element)) {
+                    elements.add(element);
+                }
+            }
+            Set<Object> present = new HashSet<>(elements);
+            for (Object element : added) {
+                if (present.add(element)) {
+                    elements.add((Serializable) element);
+                }
+            }
+            return HibernateCacheInternals.newCollectionCacheEntry(elements.toArray(new Serializable[0]));
+        }
+    }
+
+    private static final class LockRecord {
+
+        /**
+         * The item the lock replaced, {@code null} if the key had no entry.
+         */
+        private final Item previous;
+
+        private final UUID sessionIdentifier;
+
+        private final long lockedAt = System.nanoTime();
+
+        /**
+         * Locks of the same transaction sharing this one, accessed by the thread of its session only.
+         */
+        private int holders = 1;
+
+        private boolean restored;
+
+        /**
+         * Whether a concurrent transaction joined the lock, in which case only an invalidation is safe.
+         */
+        private volatile boolean joinedByOtherTransaction;
+
+        private LockRecord(Item previous, UUID sessionIdentifier) {
+            this.previous = previous;
+            this.sessionIdentifier = sessionIdentifier;
+        }
+
+        long lockedNanos() {
+            return System.nanoTime() - lockedAt;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.gringotts.hibernatecache.cache.revalidate;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link CaffeineStorageAccess} of an entity region serving its entries past their freshness, while a background task
+ * loads them again.
+ * <p>
+ * The cache expires entries only once the stale window went by as well. A hit on an entry older than the freshness
+ * returns it right away and hands its key over to the executor, which loads the entity through a session of its own
+ * in {@link CacheMode#REFRESH}, the normal load path putting the state it read. Within that load, and only for the
+ * entry it was started for, the stale entry looks absent, so that concurrency strategies which never replace a
+ * cached item by an unversioned one still let the reload through. Anything written to the key meanwhile, a soft lock
+ * or a newer state, is not the stale entry anymore and is left to the concurrency strategy as usual.
+ * <p>
+ * A key is reloaded by one task at a time, soft-locked entries are never reloaded, and an entity deleted meanwhile is
+ * evicted. Reloads the executor turns down are dropped: the entry keeps being served until it expires.
+ */
+public class RevalidatingStorageAccess extends CaffeineStorageAccess {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevalidatingStorageAccess.class);
+
+    /**
+     * The reload running on the current thread, if any.
+     */
+    private static final ThreadLocal<Revalidation> REVALIDATION = new ThreadLocal<>();
+
+    private final CaffeineStorageAccess delegate;
+
+    private final Policy.Expiration<Object, Object> expiration;
+
+    private final long freshNanos;
+
+    private final Executor executor;
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final String entityName;
+
+    private final CacheKeysFactory keysFactory;
+
+    private final Set<Object> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder droppedRevalidations = new LongAdder();
+
+    private final LongAdder failedRevalidations = new LongAdder();
+
+    /**
+     * @param delegate the storage of a cache expiring entries after they were written
+     * @param freshSeconds age in seconds past which an entry is served stale and reloaded
+     * @param entityName the root entity the region holds
+     */
+    public RevalidatingStorageAccess(
+            CaffeineStorageAccess delegate,
+            long freshSeconds,
+            Executor executor,
+            SessionFactoryImplementor sessionFactory,
+            String entityName,
+            CacheKeysFactory keysFactory) {
+        super(delegate.getUnderlyingCache());
+        this.delegate = delegate;
+        this.expiration = delegate.getUnderlyingCache().policy().expireAfterWrite().orElseThrow(
+                () -> new IllegalArgumentException("The cache of entity [" + entityName + "] never expires entries")
+        );
+        this.freshNanos = TimeUnit.SECONDS.toNanos(freshSeconds);
+        this.executor = executor;
+        this.sessionFactory = sessionFactory;
+        this.entityName = entityName;
+        this.keysFactory = keysFactory;
+    }
+
+    public CaffeineStorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = delegate.getFromCache(key, session);
+        if (value == null) {
+            return null;
+        }
+        Revalidation revalidation = REVALIDATION.get();
+        if (revalidation != null && revalidation.hides(key, value)) {
+            return null;
+        }
+        if (!(value instanceof SoftLock) && isStale(key)) {
+            staleHits.increment();
+            revalidate(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public <T> T invoke(Object key, Function<Entry, T> transition, SharedSessionContractImplementor session) {
+        Revalidation revalidation = REVALIDATION.get();
+        if (revalidation == null || !revalidation.key.equals(key)) {
+            return delegate.invoke(key, transition, session);
+        }
+        return delegate.invoke(key, entry -> transition.apply(
+                revalidation.hides(key, entry.getValue()) ? new HidingEntry(entry) : entry
+        ), session);
+    }
+
+    /**
+     * Hits on entries past their freshness, served while they were reloaded.
+     */
+    public long getStaleHitCount() {
+        return staleHits.sum();
+    }
+
+    /**
+     * Entries loaded again in the background.
+     */
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Reloads the executor turned down.
+     */
+    public long getDroppedRevalidationCount() {
+        return droppedRevalidations.sum();
+    }
+
+    public long getFailedRevalidationCount() {
+        return failedRevalidations.sum();
+    }
+
+    private boolean isStale(Object key) {
+        return expiration.ageOf(key, TimeUnit.NANOSECONDS).orElse(0) > freshNanos;
+    }
+
+    private void revalidate(Object key, Object staleValue) {
+        if (!revalidating.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> reload(key, staleValue));
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(key);
+            droppedRevalidations.increment();
+        }
+    }
+
+    private void reload(Object key, Object staleValue) {
+        REVALIDATION.set(new Revalidation(key, staleValue));
+        try (Session session = sessionFactory.openSession()) {
+            session.setCacheMode(CacheMode.REFRESH);
+            Transaction transaction = session.beginTransaction();
+            Object entity;
+            try {
+                entity = session.get(entityName, (Serializable) keysFactory.getEntityId(key));
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+            if (entity == null) {
+                getUnderlyingCache().asMap().remove(key, staleValue);
+            }
+            revalidations.increment();
+        } catch (RuntimeException e) {
+            failedRevalidations.increment();
+            LOGGER.warn("Could not revalidate the cached entity [" + entityName + "] of key " + key, e);
+        } finally {
+            REVALIDATION.remove();
+            revalidating.remove(key);
+        }
+    }
+
+    private static final class Revalidation {
+
+        private final Object key;
+
+        private final Object staleValue;
+
+        private Revalidation(Object key, Object staleValue) {
+            this.key = key;
+            this.staleValue = staleValue;
+        }
+
+        boolean hides(Object key, Object value) {
+            return value != null && value == staleValue && this.key.equals(key);
+        }
+    }
+
+    /**
+     * The entry of a stale value, as if the key held nothing.
+     */
+    private static final class HidingEntry implements Entry {
+
+        private final Entry entry;
+
+        private boolean hidden = true;
+
+        private HidingEntry(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object getValue() {
+            return hidden ? null : entry.getValue();
+        }
+
+        @Override
+        public void setValue(Object value) {
+            hidden = false;
+            entry.setValue(value);
+        }
+
+        @Override
+        public void remove() {
+            hidden = false;
+            entry.remove();
+        }
+    }
+}
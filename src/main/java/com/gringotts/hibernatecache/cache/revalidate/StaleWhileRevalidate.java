@@ -0,0 +1,24 @@
+package com.gringotts.hibernatecache.cache.revalidate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Placed next to {@link org.hibernate.annotations.Cache} on a cached root entity, lets the region of a
+ * {@link com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory} serve an entry for this many more seconds
+ * once it expired, while a background task loads it again.
+ * <p>
+ * Stands for {@link com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings#STALE_WHILE_REVALIDATE}, which takes
+ * precedence when set for the region.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StaleWhileRevalidate {
+
+    /**
+     * Seconds a stale entry keeps being served.
+     */
+    long value();
+}
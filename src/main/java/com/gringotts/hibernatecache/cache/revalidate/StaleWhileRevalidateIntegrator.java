@@ -0,0 +1,46 @@
+package com.gringotts.hibernatecache.cache.revalidate;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.RootClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Hands the {@link StaleWhileRevalidate} annotations of the cached root entities over to a
+ * {@link CaffeineRegionFactory}, which builds the regions right after the integrators ran.
+ */
+public class StaleWhileRevalidateIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+            Metadata metadata,
+            SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+        if (!(regionFactory instanceof CaffeineRegionFactory)) {
+            return;
+        }
+        for (PersistentClass entityBinding : metadata.getEntityBindings()) {
+            if (!(entityBinding instanceof RootClass) || !entityBinding.isCached()) {
+                continue;
+            }
+            Class<?> mappedClass = entityBinding.getMappedClass();
+            StaleWhileRevalidate staleWhileRevalidate = mappedClass == null
+                    ? null
+                    : mappedClass.getAnnotation(StaleWhileRevalidate.class);
+            if (staleWhileRevalidate != null) {
+                ((CaffeineRegionFactory) regionFactory).registerStaleWhileRevalidate(
+                        ((RootClass) entityBinding).getCacheRegionName(), staleWhileRevalidate.value()
+                );
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,465 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.bytecode.enhance.spi.LazyPropertyInitializer;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.property.access.internal.PropertyAccessStrategyBackRefImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the values Hibernate stores in second-level cache regions.
+ * <p>
+ * The read-write wrappers, the cache entries and the disassembled state inside them are written field by field with
+ * a one byte type tag in front of every value. Only values of types not known here fall back to Java serialization.
+ * <p>
+ * Given a {@link StringDictionary}, strings (values, entity and enum names) it already knows are written as an id.
+ * Such a codec, and the dictionary, must then be used by a single region, both to write and to read its entries.
+ */
+public class CacheEntryCodec {
+
+    protected static final byte NULL = 0;
+    protected static final byte ITEM = 1;
+    protected static final byte SOFT_LOCK = 2;
+    protected static final byte STANDARD_ENTRY = 3;
+    protected static final byte COLLECTION_ENTRY = 4;
+    protected static final byte QUERY_ITEM = 5;
+
+    protected static final byte LONG = 10;
+    protected static final byte INTEGER = 11;
+    protected static final byte SHORT = 12;
+    protected static final byte BYTE = 13;
+    protected static final byte TRUE = 14;
+    protected static final byte FALSE = 15;
+    protected static final byte DOUBLE = 16;
+    protected static final byte FLOAT = 17;
+    protected static final byte CHARACTER = 18;
+    protected static final byte STRING = 19;
+    protected static final byte BIG_DECIMAL = 20;
+    protected static final byte BIG_INTEGER = 21;
+    protected static final byte UUID_VALUE = 22;
+    protected static final byte ENUM = 23;
+
+    protected static final byte LOCAL_DATE_TIME = 30;
+    protected static final byte LOCAL_DATE = 31;
+    protected static final byte LOCAL_TIME = 32;
+    protected static final byte INSTANT = 33;
+    protected static final byte DATE = 34;
+    protected static final byte SQL_TIMESTAMP = 35;
+    protected static final byte SQL_DATE = 36;
+    protected static final byte SQL_TIME = 37;
+
+    protected static final byte ARRAY = 40;
+    protected static final byte BYTE_ARRAY = 41;
+    protected static final byte LIST = 42;
+
+    protected static final byte UNFETCHED_PROPERTY = 50;
+    protected static final byte UNKNOWN_BACK_REFERENCE = 51;
+
+    protected static final byte JAVA_SERIALIZED = 127;
+
+    private final ClassLoader classLoader;
+
+    private final StringDictionary dictionary;
+
+    public CacheEntryCodec(ClassLoader classLoader) {
+        this(classLoader, null);
+    }
+
+    public CacheEntryCodec(ClassLoader classLoader, StringDictionary dictionary) {
+        this.classLoader = classLoader;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * The dictionary strings are written through, {@code null} if they are always written inline.
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public byte[] encode(Object value) {
+        EntryOutput output = new EntryOutput();
+        write(output, value);
+        return output.toByteArray();
+    }
+
+    public Object decode(ByteBuffer buffer) {
+        return read(new EntryInput(buffer));
+    }
+
+    /**
+     * Whether {@code binary} is an encoding of {@code value}. With a dictionary, the entry is decoded and both are
+     * encoded again with their strings inline, so that comparing neither admits strings nor counts in its statistics.
+     */
+    public boolean matches(Object value, ByteBuffer binary) {
+        if (dictionary == null) {
+            return ByteBuffer.wrap(encode(value)).equals(binary);
+        }
+        return Arrays.equals(encodeInline(value), encodeInline(decode(binary.duplicate())));
+    }
+
+    private byte[] encodeInline(Object value) {
+        EntryOutput output = new EntryOutput();
+        output.inlineStrings = true;
+        write(output, value);
+        return output.toByteArray();
+    }
+
+    public void write(EntryOutput output, Object value) {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof AbstractReadWriteAccess.Item) {
+            AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) value;
+            output.writeByte(ITEM);
+            output.writeVarLong(HibernateCacheInternals.getTimestamp(item));
+            write(output, HibernateCacheInternals.getVersion(item));
+            write(output, item.getValue());
+        } else if (value instanceof AbstractReadWriteAccess.SoftLockImpl) {
+            AbstractReadWriteAccess.SoftLockImpl lock = (AbstractReadWriteAccess.SoftLockImpl) value;
+            UUID sourceUuid = HibernateCacheInternals.getSourceUuid(lock);
+            output.writeByte(SOFT_LOCK);
+            output.writeLong(sourceUuid.getMostSignificantBits());
+            output.writeLong(sourceUuid.getLeastSignificantBits());
+            output.writeVarLong(HibernateCacheInternals.getLockId(lock));
+            output.writeVarLong(HibernateCacheInternals.getTimeout(lock));
+            output.writeByte(lock.wasLockedConcurrently() ? 1 : 0);
+            output.writeVarInt(HibernateCacheInternals.getMultiplicity(lock));
+            output.writeVarLong(HibernateCacheInternals.getUnlockTimestamp(lock));
+            write(output, HibernateCacheInternals.getVersion(lock));
+        } else if (value instanceof StandardCacheEntryImpl) {
+            writeStandardEntry(output, (StandardCacheEntryImpl) value);
+        } else if (value instanceof CollectionCacheEntry) {
+            output.writeByte(COLLECTION_ENTRY);
+            write(output, HibernateCacheInternals.getState((CollectionCacheEntry) value));
+        } else if (value instanceof QueryResultsCacheImpl.CacheItem) {
+            QueryResultsCacheImpl.CacheItem item = (QueryResultsCacheImpl.CacheItem) value;
+            output.writeByte(QUERY_ITEM);
+            output.writeVarLong(HibernateCacheInternals.getTimestamp(item));
+            write(output, HibernateCacheInternals.getResults(item));
+        } else {
+            writeValue(output, value);
+        }
+    }
+
+    protected void writeStandardEntry(EntryOutput output, StandardCacheEntryImpl entry) {
+        output.writeByte(STANDARD_ENTRY);
+        writeText(output, entry.getSubclass());
+        write(output, entry.getVersion());
+        write(output, entry.getDisassembledState());
+    }
+
+    /**
+     * Writes a single disassembled value, such as a property, an identifier or a version.
+     */
+    protected void writeValue(EntryOutput output, Object value) {
+        Class<?> type = value.getClass();
+        if (type == Long.class) {
+            output.writeByte(LONG);
+            output.writeVarLong((Long) value);
+        } else if (type == Integer.class) {
+            output.writeByte(INTEGER);
+            output.writeVarLong((Integer) value);
+        } else if (type == String.class) {
+            writeString(output, (String) value);
+        } else if (type == Short.class) {
+            output.writeByte(SHORT);
+            output.writeVarLong((Short) value);
+        } else if (type == Byte.class) {
+            output.writeByte(BYTE);
+            output.writeByte((Byte) value);
+        } else if (type == Boolean.class) {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            output.writeByte(DOUBLE);
+            output.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (type == Float.class) {
+            output.writeByte(FLOAT);
+            output.writeVarLong(Float.floatToRawIntBits((Float) value));
+        } else if (type == Character.class) {
+            output.writeByte(CHARACTER);
+            output.writeVarInt((Character) value);
+        } else if (type == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            output.writeByte(BIG_DECIMAL);
+            output.writeVarLong(decimal.scale());
+            output.writeBytes(decimal.unscaledValue().toByteArray());
+        } else if (type == BigInteger.class) {
+            output.writeByte(BIG_INTEGER);
+            output.writeBytes(((BigInteger) value).toByteArray());
+        } else if (type == UUID.class) {
+            UUID uuid = (UUID) value;
+            output.writeByte(UUID_VALUE);
+            output.writeLong(uuid.getMostSignificantBits());
+            output.writeLong(uuid.getLeastSignificantBits());
+        } else if (value instanceof Enum) {
+            Enum<?> constant = (Enum<?>) value;
+            output.writeByte(ENUM);
+            writeText(output, constant.getDeclaringClass().getName());
+            writeText(output, constant.name());
+        } else if (type == LocalDateTime.class) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            output.writeByte(LOCAL_DATE_TIME);
+            output.writeVarLong(dateTime.toLocalDate().toEpochDay());
+            output.writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+        } else if (type == LocalDate.class) {
+            output.writeByte(LOCAL_DATE);
+            output.writeVarLong(((LocalDate) value).toEpochDay());
+        } else if (type == LocalTime.class) {
+            output.writeByte(LOCAL_TIME);
+            output.writeVarLong(((LocalTime) value).toNanoOfDay());
+        } else if (type == Instant.class) {
+            Instant instant = (Instant) value;
+            output.writeByte(INSTANT);
+            output.writeVarLong(instant.getEpochSecond());
+            output.writeVarInt(instant.getNano());
+        } else if (type == Date.class) {
+            output.writeByte(DATE);
+            output.writeVarLong(((Date) value).getTime());
+        } else if (type == java.sql.Timestamp.class) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            output.writeByte(SQL_TIMESTAMP);
+            output.writeVarLong(timestamp.getTime());
+            output.writeVarInt(timestamp.getNanos());
+        } else if (type == java.sql.Date.class) {
+            output.writeByte(SQL_DATE);
+            output.writeVarLong(((java.sql.Date) value).getTime());
+        } else if (type == java.sql.Time.class) {
+            output.writeByte(SQL_TIME);
+            output.writeVarLong(((java.sql.Time) value).getTime());
+        } else if (type == Serializable[].class || type == Object[].class) {
+            Object[] array = (Object[]) value;
+            output.writeByte(ARRAY);
+            output.writeVarInt(array.length);
+            for (Object element : array) {
+                write(output, element);
+            }
+        } else if (type == byte[].class) {
+            output.writeByte(BYTE_ARRAY);
+            output.writeBytes((byte[]) value);
+        } else if (type == ArrayList.class) {
+            List<?> list = (List<?>) value;
+            output.writeByte(LIST);
+            output.writeVarInt(list.size());
+            for (Object element : list) {
+                write(output, element);
+            }
+        } else if (value == LazyPropertyInitializer.UNFETCHED_PROPERTY) {
+            output.writeByte(UNFETCHED_PROPERTY);
+        } else if (value == PropertyAccessStrategyBackRefImpl.UNKNOWN) {
+            output.writeByte(UNKNOWN_BACK_REFERENCE);
+        } else {
+            output.writeByte(JAVA_SERIALIZED);
+            output.writeBytes(serialize(value));
+        }
+    }
+
+    protected void writeString(EntryOutput output, String value) {
+        output.writeByte(STRING);
+        writeText(output, value);
+    }
+
+    /**
+     * Writes a string without type tag, through the dictionary if there is one and the output is not only compared.
+     */
+    public void writeText(EntryOutput output, String value) {
+        if (dictionary == null || output.inlineStrings) {
+            output.writeString(value);
+        } else {
+            dictionary.write(output, value);
+        }
+    }
+
+    public String readText(EntryInput input) {
+        return dictionary == null ? input.readString() : dictionary.read(input);
+    }
+
+    public Object read(EntryInput input) {
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case ITEM: {
+                long timestamp = input.readVarLong();
+                Object version = read(input);
+                return HibernateCacheInternals.newItem(read(input), version, timestamp);
+            }
+            case SOFT_LOCK: {
+                UUID sourceUuid = new UUID(input.readLong(), input.readLong());
+                long lockId = input.readVarLong();
+                long timeout = input.readVarLong();
+                boolean concurrent = input.readByte() != 0;
+                int multiplicity = input.readVarInt();
+                long unlockTimestamp = input.readVarLong();
+                return HibernateCacheInternals.newSoftLock(
+                        timeout, sourceUuid, lockId, read(input), concurrent, multiplicity, unlockTimestamp
+                );
+            }
+            case STANDARD_ENTRY:
+                return readStandardEntry(input);
+            case COLLECTION_ENTRY:
+                return HibernateCacheInternals.newCollectionCacheEntry((Serializable) read(input));
+            case QUERY_ITEM: {
+                long timestamp = input.readVarLong();
+                return HibernateCacheInternals.newQueryCacheItem(timestamp, (List) read(input));
+            }
+            default:
+                return readValue(input, tag);
+        }
+    }
+
+    protected Object readStandardEntry(EntryInput input) {
+        String subclass = readText(input);
+        Object version = read(input);
+        Serializable[] state = (Serializable[]) read(input);
+        return HibernateCacheInternals.newStandardCacheEntry(state, subclass, version);
+    }
+
+    protected Object readValue(EntryInput input, byte tag) {
+        switch (tag) {
+            case LONG:
+                return input.readVarLong();
+            case INTEGER:
+                return (int) input.readVarLong();
+            case STRING:
+                return readText(input);
+            case SHORT:
+                return (short) input.readVarLong();
+            case BYTE:
+                return input.readByte();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(input.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat((int) input.readVarLong());
+            case CHARACTER:
+                return (char) input.readVarInt();
+            case BIG_DECIMAL: {
+                int scale = (int) input.readVarLong();
+                return new BigDecimal(new BigInteger(input.readBytes()), scale);
+            }
+            case BIG_INTEGER:
+                return new BigInteger(input.readBytes());
+            case UUID_VALUE:
+                return new UUID(input.readLong(), input.readLong());
+            case ENUM:
+                return readEnum(readText(input), readText(input));
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.of(
+                        LocalDate.ofEpochDay(input.readVarLong()),
+                        LocalTime.ofNanoOfDay(input.readVarLong())
+                );
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(input.readVarLong());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(input.readVarLong());
+            case INSTANT:
+                return Instant.ofEpochSecond(input.readVarLong(), input.readVarInt());
+            case DATE:
+                return new Date(input.readVarLong());
+            case SQL_TIMESTAMP: {
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(input.readVarLong());
+                timestamp.setNanos(input.readVarInt());
+                return timestamp;
+            }
+            case SQL_DATE:
+                return new java.sql.Date(input.readVarLong());
+            case SQL_TIME:
+                return new java.sql.Time(input.readVarLong());
+            case ARRAY: {
+                Serializable[] array = new Serializable[input.readVarInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Serializable) read(input);
+                }
+                return array;
+            }
+            case BYTE_ARRAY:
+                return input.readBytes();
+            case LIST: {
+                int size = input.readVarInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(input));
+                }
+                return list;
+            }
+            case UNFETCHED_PROPERTY:
+                return LazyPropertyInitializer.UNFETCHED_PROPERTY;
+            case UNKNOWN_BACK_REFERENCE:
+                return PropertyAccessStrategyBackRefImpl.UNKNOWN;
+            case JAVA_SERIALIZED:
+                return deserialize(input.readBytes());
+            default:
+                throw new CacheException("Unknown cache entry type tag: " + tag);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readEnum(String className, String name) {
+        try {
+            return Enum.valueOf((Class) Class.forName(className, false, classLoader), name);
+        } catch (ClassNotFoundException e) {
+            throw new CacheException("Could not load enum type " + className, e);
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            throw new CacheException("Could not serialize cache value of type " + value.getClass(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) {
+        try (ObjectInputStream input = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Could not deserialize cache value", e);
+        }
+    }
+
+    private class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ClassLoaderObjectInputStream(InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(descriptor.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(descriptor);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ehcache {@link Serializer} for second-level cache values, used by the off-heap tier configured in
+ * {@code ehcache-tiered.xml}. Entries are written by {@link CacheEntryCodec} instead of Java serialization.
+ */
+public class CacheEntrySerializer implements Serializer<Object> {
+
+    private final CacheEntryCodec codec;
+
+    public CacheEntrySerializer(ClassLoader classLoader) {
+        this(new CacheEntryCodec(classLoader));
+    }
+
+    protected CacheEntrySerializer(CacheEntryCodec codec) {
+        this.codec = codec;
+    }
+
+    public CacheEntryCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public ByteBuffer serialize(Object object) throws SerializerException {
+        return ByteBuffer.wrap(codec.encode(object));
+    }
+
+    @Override
+    public Object read(ByteBuffer binary) throws SerializerException {
+        return codec.decode(binary);
+    }
+
+    @Override
+    public boolean equals(Object object, ByteBuffer binary) throws SerializerException {
+        return codec.matches(object, binary);
+    }
+}
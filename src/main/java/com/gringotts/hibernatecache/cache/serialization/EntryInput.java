@@ -0,0 +1,71 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reading counterpart of {@link EntryOutput}, working on any (heap, direct or mapped) {@link ByteBuffer}.
+ */
+public final class EntryInput {
+
+    private final ByteBuffer buffer;
+
+    public EntryInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public byte readByte() {
+        return buffer.get();
+    }
+
+    public byte[] readBytes() {
+        byte[] bytes = new byte[readVarInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get();
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    public long readVarLong() {
+        long zigZag = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get();
+            zigZag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                                      StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
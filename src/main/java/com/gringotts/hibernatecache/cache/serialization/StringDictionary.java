@@ -0,0 +1,237 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+import org.hibernate.cache.CacheException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Region-level table of repeated string values, so that {@link CacheEntryCodec} writes a string it has seen before as
+ * a small id instead of its UTF-8 bytes, and decodes it back to one shared {@link String} instance.
+ * <p>
+ * A string is admitted the second time it is written, so values that never repeat (free text, unique codes) stay
+ * inline instead of filling the table. Ids are never reassigned, since the encoded entries referring to them live as
+ * long as the region does: once {@code maximumSize} strings are known, new ones are written inline. The dictionary
+ * only lives in memory, so it must not back a tier that outlives it, such as a persistent disk tier.
+ * <p>
+ * Comparing an encoded entry with a value must not go through {@link #write}, which counts, and admits, the strings it
+ * is given: see {@link CacheEntryCodec#matches}.
+ */
+public class StringDictionary implements StringDictionaryMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StringDictionary.class);
+
+    /**
+     * Longer strings are always written inline, they are unlikely to repeat.
+     */
+    public static final int MAXIMUM_LENGTH = 256;
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 65_536;
+
+    private static final int ADMISSION_SLOTS = 4096;
+
+    private final int maximumSize;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Hashes of the strings seen once, indexed by their low bits.
+     */
+    private final AtomicIntegerArray admission = new AtomicIntegerArray(ADMISSION_SLOTS);
+
+    private volatile String[] strings = new String[16];
+
+    private volatile int[] lengths = new int[16];
+
+    private int size;
+
+    private final LongAdder stringBytes = new LongAdder();
+
+    private final LongAdder encodedBytes = new LongAdder();
+
+    private final LongAdder dictionaryBytes = new LongAdder();
+
+    private final LongAdder references = new LongAdder();
+
+    private final LongAdder inlined = new LongAdder();
+
+    public StringDictionary(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size must not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Writes {@code value} as {@code (id << 1) | 1} when it is in the dictionary, as {@code length << 1} followed by
+     * its UTF-8 bytes otherwise.
+     */
+    public void write(EntryOutput output, String value) {
+        int start = output.size();
+        Integer id = ids.get(value);
+        if (id == null && value.length() <= MAXIMUM_LENGTH) {
+            id = admit(value);
+        }
+        if (id != null) {
+            output.writeVarInt(id << 1 | 1);
+            stringBytes.add(lengths[id]);
+            references.increment();
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeVarInt(bytes.length << 1);
+            output.writeRaw(bytes, 0, bytes.length);
+            stringBytes.add(bytes.length);
+            inlined.increment();
+        }
+        encodedBytes.add(output.size() - start);
+    }
+
+    public String read(EntryInput input) {
+        int header = input.readVarInt();
+        if ((header & 1) == 0) {
+            byte[] bytes = new byte[header >>> 1];
+            input.getBuffer().get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        int id = header >>> 1;
+        String[] strings = this.strings;
+        if (id >= strings.length || strings[id] == null) {
+            throw new CacheException("Unknown string dictionary id: " + id);
+        }
+        return strings[id];
+    }
+
+    private Integer admit(String value) {
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (ADMISSION_SLOTS - 1);
+        if (admission.get(slot) != hash) {
+            admission.set(slot, hash);
+            return null;
+        }
+        synchronized (this) {
+            Integer id = ids.get(value);
+            if (id != null || size >= maximumSize) {
+                return id;
+            }
+            id = size;
+            if (id == strings.length) {
+                // copied before the new id is published, so readers of an entry using it find it in either array
+                lengths = Arrays.copyOf(lengths, id << 1);
+                strings = Arrays.copyOf(strings, id << 1);
+            }
+            int length = value.getBytes(StandardCharsets.UTF_8).length;
+            lengths[id] = length;
+            strings[id] = value;
+            size++;
+            dictionaryBytes.add(length);
+            ids.put(value, id);
+            return id;
+        }
+    }
+
+    /**
+     * Registers the dictionary as {@code com.gringotts.hibernatecache:type=StringDictionary,name=<name>}, with a
+     * {@code region} key as well unless {@code regionName} is {@code null}.
+     *
+     * @return the name the dictionary is registered under, {@code null} if it could not be registered
+     */
+    public ObjectName registerMBean(String name, String regionName) {
+        try {
+            ObjectName objectName = new ObjectName(
+                    "com.gringotts.hibernatecache:type=StringDictionary,name=" + ObjectName.quote(name)
+                    + (regionName == null ? "" : ",region=" + ObjectName.quote(regionName))
+            );
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            LOGGER.warn("Could not register the string dictionary MBean for " + name, e);
+            return null;
+        }
+    }
+
+    public static void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Could not unregister the string dictionary MBean " + objectName, e);
+        }
+    }
+
+    @Override
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * UTF-8 bytes of the distinct strings held by the dictionary.
+     */
+    @Override
+    public long getDictionaryBytes() {
+        return dictionaryBytes.sum();
+    }
+
+    /**
+     * Strings written as a dictionary id.
+     */
+    @Override
+    public long getReferenceCount() {
+        return references.sum();
+    }
+
+    /**
+     * Strings written inline, because they were new, too long or did not fit anymore.
+     */
+    @Override
+    public long getInlineCount() {
+        return inlined.sum();
+    }
+
+    /**
+     * UTF-8 bytes of every string written so far, as an encoding without dictionary would have taken.
+     */
+    @Override
+    public long getStringBytes() {
+        return stringBytes.sum();
+    }
+
+    /**
+     * Bytes actually written for those strings, length and id headers included.
+     */
+    @Override
+    public long getEncodedBytes() {
+        return encodedBytes.sum();
+    }
+
+    /**
+     * {@link #getStringBytes()} over {@link #getEncodedBytes()}: how many times smaller the strings got, {@code 1} when
+     * nothing was written yet.
+     */
+    @Override
+    public double getCompressionRatio() {
+        long encoded = getEncodedBytes();
+        return encoded == 0 ? 1 : (double) getStringBytes() / encoded;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "StringDictionary[size=%d/%d, dictionaryBytes=%d, references=%d, inlined=%d, compressionRatio=%.2f]",
+                getSize(), maximumSize, getDictionaryBytes(), getReferenceCount(), getInlineCount(),
+                getCompressionRatio()
+        );
+    }
+}
@@ -0,0 +1,28 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+/**
+ * JMX view of a {@link StringDictionary}, registered as
+ * {@code com.gringotts.hibernatecache:type=StringDictionary,name=<session factory>,region=<region>} by the Caffeine
+ * regions, and as {@code com.gringotts.hibernatecache:type=StringDictionary,name=<serializer>} by the Ehcache ones.
+ */
+public interface StringDictionaryMXBean {
+
+    int getMaximumSize();
+
+    /**
+     * Number of distinct strings in the dictionary.
+     */
+    int getSize();
+
+    long getDictionaryBytes();
+
+    long getReferenceCount();
+
+    long getInlineCount();
+
+    long getStringBytes();
+
+    long getEncodedBytes();
+
+    double getCompressionRatio();
+}
@@ -0,0 +1,212 @@
+package com.gringotts.hibernatecache.cache.snapshot;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.EntryInput;
+import com.gringotts.hibernatecache.cache.serialization.EntryOutput;
+import org.hibernate.cache.CacheException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Memory-mapped snapshot of one region, written when the {@link org.hibernate.SessionFactory} closes and read back
+ * by the next one.
+ * <p>
+ * Layout: magic, format version, the cache timestamp and wall-clock time of the snapshot, then length-prefixed
+ * key/stamp/value records encoded by {@link CacheEntryCodec}, the stamp being whatever the entry is later validated
+ * by. Opening a snapshot only decodes the keys and stamps; a value is decoded from the mapping the first time its key
+ * is asked for, and each value is handed out at most once.
+ */
+public class RegionSnapshot {
+
+    private static final int MAGIC = 0x4C32534E;
+
+    private static final byte FORMAT_VERSION = 2;
+
+    private final Path file;
+
+    private final long timestamp;
+
+    private final long createdAtMillis;
+
+    private final ByteBuffer mapping;
+
+    private final Map<Object, Integer> valueOffsets;
+
+    private final Map<Object, Object> stamps;
+
+    private final CacheEntryCodec codec;
+
+    private RegionSnapshot(
+            Path file,
+            long timestamp,
+            long createdAtMillis,
+            ByteBuffer mapping,
+            Map<Object, Integer> valueOffsets,
+            Map<Object, Object> stamps,
+            CacheEntryCodec codec) {
+        this.file = file;
+        this.timestamp = timestamp;
+        this.createdAtMillis = createdAtMillis;
+        this.mapping = mapping;
+        this.valueOffsets = valueOffsets;
+        this.stamps = stamps;
+        this.codec = codec;
+    }
+
+    /**
+     * Writes the given entries, each with the stamp {@code stamper} returns for its value, to a temporary file which
+     * then atomically replaces {@code file}.
+     *
+     * @return the number of entries written
+     */
+    public static int write(
+            Path file,
+            Map<Object, Object> entries,
+            Function<Object, Object> stamper,
+            long timestamp,
+            CacheEntryCodec codec) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + 2 * Long.BYTES);
+            header.putInt(MAGIC).put(FORMAT_VERSION).putLong(timestamp).putLong(System.currentTimeMillis()).flip();
+            writeFully(channel, header);
+
+            EntryOutput record = new EntryOutput(256);
+            EntryOutput part = new EntryOutput(256);
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                record.reset();
+                appendPart(record, part, entry.getKey(), codec);
+                appendPart(record, part, stamper.apply(entry.getValue()), codec);
+                appendPart(record, part, entry.getValue(), codec);
+                writeFully(channel, record.toByteBuffer());
+                count++;
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new CacheException("Could not write cache snapshot " + file, e);
+        }
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CacheException("Could not replace cache snapshot " + file, e);
+        }
+        return count;
+    }
+
+    /**
+     * Maps {@code file} and indexes its keys, or returns {@code null} when there is no usable snapshot.
+     */
+    public static RegionSnapshot open(Path file, CacheEntryCodec codec) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapping.remaining() < Integer.BYTES + 1 + 2 * Long.BYTES
+                    || mapping.getInt() != MAGIC
+                    || mapping.get() != FORMAT_VERSION) {
+                return null;
+            }
+            long timestamp = mapping.getLong();
+            long createdAtMillis = mapping.getLong();
+
+            Map<Object, Integer> valueOffsets = new ConcurrentHashMap<>();
+            Map<Object, Object> stamps = new ConcurrentHashMap<>();
+            EntryInput input = new EntryInput(mapping);
+            while (mapping.hasRemaining()) {
+                int keyLength = input.readVarInt();
+                int keyEnd = mapping.position() + keyLength;
+                Object key = codec.read(input);
+                mapping.position(keyEnd);
+                int stampLength = input.readVarInt();
+                int stampEnd = mapping.position() + stampLength;
+                Object stamp = codec.read(input);
+                mapping.position(stampEnd);
+                if (stamp != null) {
+                    stamps.put(key, stamp);
+                }
+                int valueLength = input.readVarInt();
+                valueOffsets.put(key, mapping.position());
+                mapping.position(mapping.position() + valueLength);
+            }
+            return new RegionSnapshot(file, timestamp, createdAtMillis, mapping, valueOffsets, stamps, codec);
+        } catch (IOException | RuntimeException e) {
+            throw new CacheException("Could not read cache snapshot " + file, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Cache timestamp ({@link org.hibernate.cache.spi.RegionFactory#nextTimestamp()}) at which the snapshot was taken.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public int size() {
+        return valueOffsets.size();
+    }
+
+    /**
+     * Decodes and hands out the value stored for {@code key}, at most once.
+     */
+    public Object take(Object key) {
+        Integer offset = valueOffsets.remove(key);
+        stamps.remove(key);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer value = mapping.duplicate();
+        value.position(offset);
+        return codec.read(new EntryInput(value));
+    }
+
+    /**
+     * Forgets {@code key}, so that a snapshot value can never replace what has been written since.
+     */
+    public void discard(Object key) {
+        valueOffsets.remove(key);
+        stamps.remove(key);
+    }
+
+    /**
+     * Visits the stamp of every key not handed out nor discarded yet.
+     */
+    public void forEachStamp(BiConsumer<Object, Object> consumer) {
+        stamps.forEach(consumer);
+    }
+
+    private static void appendPart(EntryOutput record, EntryOutput part, Object value, CacheEntryCodec codec) {
+        part.reset();
+        codec.write(part, value);
+        record.writeVarInt(part.size());
+        ByteBuffer bytes = part.toByteBuffer();
+        record.writeRaw(bytes.array(), bytes.arrayOffset(), bytes.remaining());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
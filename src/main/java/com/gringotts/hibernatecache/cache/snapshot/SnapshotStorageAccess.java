@@ -0,0 +1,372 @@
+package com.gringotts.hibernatecache.cache.snapshot;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Warm-restart decorator of an entity region storage.
+ * <p>
+ * On release the readable entries of versioned entities are written to a {@link RegionSnapshot}, each stamped with its
+ * entity name and version; entries of unversioned entities and collections cannot be checked against the database
+ * and are left out. The next storage for the same region maps that file on first use and, before serving anything
+ * from it, loads the current versions of all the snapshot entities in one {@code select id, version ... where id in
+ * (...)} per entity and chunk of ids, discarding every entry whose row was deleted or changed while the application
+ * was down. It then falls back to the snapshot on misses. A snapshot value is only served when none of the tables
+ * behind the region were invalidated in the timestamps cache since the snapshot was taken (bulk updates, when the
+ * query cache is enabled), and any write to a key discards its snapshot value, so that state older than what the live
+ * region has seen is never resurrected.
+ */
+public class SnapshotStorageAccess implements DomainDataStorageAccess {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStorageAccess.class);
+
+    private static final int VALIDATION_CHUNK_SIZE = 500;
+
+    private final DomainDataStorageAccess delegate;
+
+    private final ConcurrentMap<Object, Object> entries;
+
+    private final Path file;
+
+    private final CacheEntryCodec codec;
+
+    private final long maxAgeMillis;
+
+    private final List<String> entityNames;
+
+    private final LongSupplier timestamper;
+
+    private volatile String[] querySpaces;
+
+    private volatile boolean opened;
+
+    private volatile boolean validated;
+
+    private volatile RegionSnapshot snapshot;
+
+    /**
+     * @param delegate the live storage
+     * @param entries the live storage's entries, as a map view
+     * @param file where the snapshot of this region is read from and written to
+     * @param maxAgeSeconds older snapshots are ignored, negative to accept any age
+     * @param entityNames the entities cached in this region
+     * @param timestamper supplies the cache timestamp a snapshot is taken at
+     */
+    public SnapshotStorageAccess(
+            DomainDataStorageAccess delegate,
+            ConcurrentMap<Object, Object> entries,
+            Path file,
+            CacheEntryCodec codec,
+            long maxAgeSeconds,
+            List<String> entityNames,
+            LongSupplier timestamper) {
+        this.delegate = delegate;
+        this.entries = entries;
+        this.file = file;
+        this.codec = codec;
+        this.maxAgeMillis = maxAgeSeconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+        this.entityNames = entityNames;
+        this.timestamper = timestamper;
+    }
+
+    public DomainDataStorageAccess getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = delegate.getFromCache(key, session);
+        if (value != null || session == null) {
+            return value;
+        }
+        RegionSnapshot snapshot = snapshot();
+        if (snapshot != null && !validated) {
+            validate(session.getFactory());
+            snapshot = snapshot();
+        }
+        if (snapshot == null) {
+            return null;
+        }
+        Object restored = snapshot.take(key);
+        if (restored == null || !isUpToDate(snapshot, session)) {
+            return null;
+        }
+        Object current = entries.putIfAbsent(key, restored);
+        return current != null ? current : restored;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        discard(key);
+        delegate.putIntoCache(key, value, session);
+    }
+
+    @Override
+    public void putFromLoad(Object key, Object value, SharedSessionContractImplementor session) {
+        discard(key);
+        delegate.putFromLoad(key, value, session);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        discard(key);
+        delegate.removeFromCache(key, session);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        dropSnapshot();
+        delegate.clearCache(session);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        dropSnapshot();
+        delegate.evictData();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        discard(key);
+        delegate.evictData(key);
+    }
+
+    /**
+     * Snapshots the region, then releases the live storage.
+     */
+    @Override
+    public void release() {
+        try {
+            // taken before reading the entries: anything invalidated while copying is newer than the snapshot
+            long timestamp = timestamper.getAsLong();
+            Map<Object, Object> readable = new LinkedHashMap<>();
+            entries.forEach((key, value) -> {
+                if (isSnapshotable(value)) {
+                    readable.put(key, value);
+                }
+            });
+            int written = RegionSnapshot.write(file, readable, SnapshotStorageAccess::stamp, timestamp, codec);
+            LOGGER.info("Wrote {} entries to cache snapshot {}", written, file);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not snapshot cache region to " + file, e);
+        } finally {
+            dropSnapshot();
+            delegate.release();
+        }
+    }
+
+    /**
+     * Soft locks and reference entries only make sense within the running application, and only entities carrying a
+     * version can be validated on restart.
+     */
+    protected boolean isSnapshotable(Object value) {
+        StandardCacheEntryImpl entry = entityEntry(value);
+        return entry != null && entry.getVersion() != null;
+    }
+
+    private static StandardCacheEntryImpl entityEntry(Object value) {
+        if (value instanceof AbstractReadWriteAccess.Item) {
+            value = ((AbstractReadWriteAccess.Item) value).getValue();
+        }
+        return value instanceof StandardCacheEntryImpl ? (StandardCacheEntryImpl) value : null;
+    }
+
+    private static Object stamp(Object value) {
+        StandardCacheEntryImpl entry = entityEntry(value);
+        return new Object[]{entry.getSubclass(), entry.getVersion()};
+    }
+
+    private RegionSnapshot snapshot() {
+        if (!opened) {
+            synchronized (this) {
+                if (!opened) {
+                    snapshot = openSnapshot();
+                    opened = true;
+                }
+            }
+        }
+        RegionSnapshot snapshot = this.snapshot;
+        if (snapshot != null && snapshot.size() == 0) {
+            this.snapshot = null;
+            return null;
+        }
+        return snapshot;
+    }
+
+    private RegionSnapshot openSnapshot() {
+        try {
+            RegionSnapshot snapshot = RegionSnapshot.open(file, codec);
+            if (snapshot == null) {
+                return null;
+            }
+            long age = System.currentTimeMillis() - snapshot.getCreatedAtMillis();
+            if (maxAgeMillis >= 0 && age > maxAgeMillis) {
+                LOGGER.info("Ignoring cache snapshot {}, taken {} ms ago", file, age);
+                return null;
+            }
+            LOGGER.info("Mapped cache snapshot {} with {} entries", file, snapshot.size());
+            return snapshot;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Ignoring unreadable cache snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Discards the snapshot entries whose version no longer matches the database, or the whole snapshot when that
+     * cannot be checked. Runs on a stateless session of its own, so the first read of the region borrows a second
+     * connection once.
+     */
+    private synchronized void validate(SessionFactoryImplementor factory) {
+        RegionSnapshot snapshot = this.snapshot;
+        if (validated || snapshot == null) {
+            return;
+        }
+        validated = true;
+        try {
+            MetamodelImplementor metamodel = factory.getMetamodel();
+            Map<String, Map<Serializable, Object[]>> byRootEntity = new HashMap<>();
+            List<Object> unverifiable = new ArrayList<>();
+            snapshot.forEachStamp((key, stamp) -> {
+                Object[] entityVersion = (Object[]) stamp;
+                EntityPersister persister = metamodel.entityPersisters().get((String) entityVersion[0]);
+                if (persister == null || !persister.isVersioned() || persister.getIdentifierPropertyName() == null) {
+                    unverifiable.add(key);
+                    return;
+                }
+                Serializable id = (Serializable) persister.getCacheAccessStrategy().getCacheKeyId(key);
+                byRootEntity.computeIfAbsent(persister.getRootEntityName(), name -> new HashMap<>())
+                        .put(id, new Object[]{key, entityVersion[1]});
+            });
+            unverifiable.forEach(snapshot::discard);
+
+            int inListLimit = factory.getJdbcServices().getDialect().getInExpressionCountLimit();
+            int chunkSize = inListLimit > 0 ? Math.min(inListLimit, VALIDATION_CHUNK_SIZE) : VALIDATION_CHUNK_SIZE;
+            int discarded = unverifiable.size();
+            try (StatelessSession session = factory.openStatelessSession()) {
+                for (Map.Entry<String, Map<Serializable, Object[]>> entity : byRootEntity.entrySet()) {
+                    discarded += validate(snapshot, session, metamodel.entityPersister(entity.getKey()),
+                                          entity.getValue(), chunkSize);
+                }
+            }
+            LOGGER.info("Discarded {} stale entries of cache snapshot {}", discarded, file);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Ignoring cache snapshot " + file + " which could not be validated", e);
+            dropSnapshot();
+        }
+    }
+
+    private static int validate(
+            RegionSnapshot snapshot,
+            StatelessSession session,
+            EntityPersister persister,
+            Map<Serializable, Object[]> keysAndVersions,
+            int chunkSize) {
+        String idName = persister.getIdentifierPropertyName();
+        String versionName = persister.getPropertyNames()[persister.getVersionProperty()];
+        String query = "select e." + idName + ", e." + versionName
+                + " from " + persister.getEntityName() + " e where e." + idName + " in (:ids)";
+        Map<Serializable, Object[]> pending = new HashMap<>(keysAndVersions);
+        List<Serializable> ids = new ArrayList<>(keysAndVersions.keySet());
+        int discarded = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Object[]> rows = session.createQuery(query, Object[].class)
+                    .setParameterList("ids", ids.subList(from, Math.min(from + chunkSize, ids.size())))
+                    .getResultList();
+            for (Object[] row : rows) {
+                Object[] keyAndVersion = pending.remove((Serializable) row[0]);
+                if (keyAndVersion != null && !persister.getVersionType().isEqual(keyAndVersion[1], row[1])) {
+                    snapshot.discard(keyAndVersion[0]);
+                    discarded++;
+                }
+            }
+        }
+        // rows deleted while the application was down
+        pending.values().forEach(keyAndVersion -> snapshot.discard(keyAndVersion[0]));
+        return discarded + pending.size();
+    }
+
+    /**
+     * Same check as {@link org.hibernate.cache.spi.TimestampsCache#isUpToDate}, reading the region directly since this
+     * runs inside the entity/collection cache get Hibernate is already timing.
+     */
+    private boolean isUpToDate(RegionSnapshot snapshot, SharedSessionContractImplementor session) {
+        SessionFactoryImplementor factory = session.getFactory();
+        if (!factory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            // without the query cache there is no timestamps region tracking bulk updates, only per-key writes
+            return true;
+        }
+        TimestampsRegion timestampsRegion = factory.getCache().getTimestampsCache().getRegion();
+        for (String space : querySpaces(factory)) {
+            Long lastUpdate = (Long) timestampsRegion.getFromCache(space, session);
+            if (lastUpdate != null && lastUpdate >= snapshot.getTimestamp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String[] querySpaces(SessionFactoryImplementor factory) {
+        String[] querySpaces = this.querySpaces;
+        if (querySpaces == null) {
+            MetamodelImplementor metamodel = factory.getMetamodel();
+            Set<String> spaces = new LinkedHashSet<>();
+            for (String entityName : entityNames) {
+                Arrays.stream(metamodel.entityPersister(entityName).getQuerySpaces())
+                        .forEach(space -> spaces.add((String) space));
+            }
+            querySpaces = spaces.toArray(new String[0]);
+            this.querySpaces = querySpaces;
+        }
+        return querySpaces;
+    }
+
+    private void discard(Object key) {
+        RegionSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.discard(key);
+        } else if (!opened) {
+            // writes before the first read still have to shadow the snapshot
+            RegionSnapshot opened = snapshot();
+            if (opened != null) {
+                opened.discard(key);
+            }
+        }
+    }
+
+    private void dropSnapshot() {
+        synchronized (this) {
+            opened = true;
+            snapshot = null;
+        }
+    }
+}
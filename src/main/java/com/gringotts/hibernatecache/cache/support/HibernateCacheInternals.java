@@ -0,0 +1,238 @@
+package com.gringotts.hibernatecache.cache.support;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.QueryResultsCacheImpl;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reads and rebuilds the cache entry types Hibernate keeps package-private
+ * ({@link AbstractReadWriteAccess.Item}, {@link AbstractReadWriteAccess.SoftLockImpl},
+ * {@link StandardCacheEntryImpl}, {@link CollectionCacheEntry} and {@link QueryResultsCacheImpl.CacheItem}),
+ * so that storages which copy entries (serializers, snapshots) can round-trip them without Java serialization, and
+ * the SQL, parameters and row selection a {@link QueryKey} was generated from.
+ */
+public final class HibernateCacheInternals {
+
+    private static final Constructor<AbstractReadWriteAccess.Item> ITEM =
+            constructor(AbstractReadWriteAccess.Item.class, Object.class, Object.class, long.class);
+    private static final Field ITEM_VERSION = field(AbstractReadWriteAccess.Item.class, "version");
+    private static final Field ITEM_TIMESTAMP = field(AbstractReadWriteAccess.Item.class, "timestamp");
+
+    private static final Constructor<AbstractReadWriteAccess.SoftLockImpl> SOFT_LOCK =
+            constructor(AbstractReadWriteAccess.SoftLockImpl.class, long.class, UUID.class, long.class, Object.class);
+    private static final Field LOCK_SOURCE_UUID = field(AbstractReadWriteAccess.SoftLockImpl.class, "sourceUuid");
+    private static final Field LOCK_ID = field(AbstractReadWriteAccess.SoftLockImpl.class, "lockId");
+    private static final Field LOCK_VERSION = field(AbstractReadWriteAccess.SoftLockImpl.class, "version");
+    private static final Field LOCK_TIMEOUT = field(AbstractReadWriteAccess.SoftLockImpl.class, "timeout");
+    private static final Field LOCK_CONCURRENT = field(AbstractReadWriteAccess.SoftLockImpl.class, "concurrent");
+    private static final Field LOCK_MULTIPLICITY = field(AbstractReadWriteAccess.SoftLockImpl.class, "multiplicity");
+    private static final Field LOCK_UNLOCK_TIMESTAMP =
+            field(AbstractReadWriteAccess.SoftLockImpl.class, "unlockTimestamp");
+
+    private static final Constructor<StandardCacheEntryImpl> STANDARD_ENTRY =
+            constructor(StandardCacheEntryImpl.class, Serializable[].class, String.class, Object.class);
+
+    private static final Constructor<CollectionCacheEntry> COLLECTION_ENTRY =
+            constructor(CollectionCacheEntry.class, Serializable.class);
+    private static final Field COLLECTION_STATE = field(CollectionCacheEntry.class, "state");
+
+    private static final Constructor<QueryResultsCacheImpl.CacheItem> QUERY_ITEM =
+            constructor(QueryResultsCacheImpl.CacheItem.class, long.class, List.class);
+    private static final Field QUERY_ITEM_TIMESTAMP = field(QueryResultsCacheImpl.CacheItem.class, "timestamp");
+    private static final Field QUERY_ITEM_RESULTS = field(QueryResultsCacheImpl.CacheItem.class, "results");
+
+    private static final Field QUERY_KEY_SQL = field(QueryKey.class, "sqlQueryString");
+    private static final Field QUERY_KEY_FIRST_ROW = field(QueryKey.class, "firstRow");
+    private static final Field QUERY_KEY_MAX_ROWS = field(QueryKey.class, "maxRows");
+    private static final Field QUERY_KEY_POSITIONAL_TYPES = field(QueryKey.class, "positionalParameterTypes");
+    private static final Field QUERY_KEY_POSITIONAL_VALUES = field(QueryKey.class, "positionalParameterValues");
+    private static final Field QUERY_KEY_NAMED_PARAMETERS = field(QueryKey.class, "namedParameters");
+    private static final Field QUERY_KEY_FILTER_KEYS = field(QueryKey.class, "filterKeys");
+    private static final Field QUERY_KEY_TENANT = field(QueryKey.class, "tenantIdentifier");
+
+    private HibernateCacheInternals() {
+        throw new UnsupportedOperationException("The " + getClass() + " is not instantiable!");
+    }
+
+    public static AbstractReadWriteAccess.Item newItem(Object value, Object version, long timestamp) {
+        return newInstance(ITEM, value, version, timestamp);
+    }
+
+    public static Object getVersion(AbstractReadWriteAccess.Item item) {
+        return get(ITEM_VERSION, item);
+    }
+
+    public static long getTimestamp(AbstractReadWriteAccess.Item item) {
+        return (Long) get(ITEM_TIMESTAMP, item);
+    }
+
+    public static AbstractReadWriteAccess.SoftLockImpl newSoftLock(
+            long timeout,
+            UUID sourceUuid,
+            long lockId,
+            Object version,
+            boolean concurrent,
+            int multiplicity,
+            long unlockTimestamp) {
+        AbstractReadWriteAccess.SoftLockImpl lock = newInstance(SOFT_LOCK, timeout, sourceUuid, lockId, version);
+        set(LOCK_CONCURRENT, lock, concurrent);
+        set(LOCK_MULTIPLICITY, lock, multiplicity);
+        set(LOCK_UNLOCK_TIMESTAMP, lock, unlockTimestamp);
+        return lock;
+    }
+
+    public static UUID getSourceUuid(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return get(LOCK_SOURCE_UUID, lock);
+    }
+
+    public static long getLockId(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return (Long) get(LOCK_ID, lock);
+    }
+
+    public static Object getVersion(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return get(LOCK_VERSION, lock);
+    }
+
+    public static long getTimeout(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return (Long) get(LOCK_TIMEOUT, lock);
+    }
+
+    public static int getMultiplicity(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return (Integer) get(LOCK_MULTIPLICITY, lock);
+    }
+
+    public static long getUnlockTimestamp(AbstractReadWriteAccess.SoftLockImpl lock) {
+        return (Long) get(LOCK_UNLOCK_TIMESTAMP, lock);
+    }
+
+    public static StandardCacheEntryImpl newStandardCacheEntry(
+            Serializable[] disassembledState,
+            String subclass,
+            Object version) {
+        return newInstance(STANDARD_ENTRY, disassembledState, subclass, version);
+    }
+
+    public static CollectionCacheEntry newCollectionCacheEntry(Serializable state) {
+        return newInstance(COLLECTION_ENTRY, state);
+    }
+
+    public static Serializable getState(CollectionCacheEntry entry) {
+        return get(COLLECTION_STATE, entry);
+    }
+
+    public static QueryResultsCacheImpl.CacheItem newQueryCacheItem(long timestamp, List results) {
+        return newInstance(QUERY_ITEM, timestamp, results);
+    }
+
+    public static long getTimestamp(QueryResultsCacheImpl.CacheItem item) {
+        return (Long) get(QUERY_ITEM_TIMESTAMP, item);
+    }
+
+    public static List getResults(QueryResultsCacheImpl.CacheItem item) {
+        return get(QUERY_ITEM_RESULTS, item);
+    }
+
+    public static String getSqlQueryString(QueryKey key) {
+        return get(QUERY_KEY_SQL, key);
+    }
+
+    /**
+     * @return {@code null} unless the query skips rows
+     */
+    public static Integer getFirstRow(QueryKey key) {
+        return get(QUERY_KEY_FIRST_ROW, key);
+    }
+
+    /**
+     * @return {@code null} unless the query limits its rows
+     */
+    public static Integer getMaxRows(QueryKey key) {
+        return get(QUERY_KEY_MAX_ROWS, key);
+    }
+
+    public static Type[] getPositionalParameterTypes(QueryKey key) {
+        return get(QUERY_KEY_POSITIONAL_TYPES, key);
+    }
+
+    /**
+     * @return the disassembled values of the positional parameters
+     */
+    public static Object[] getPositionalParameterValues(QueryKey key) {
+        return get(QUERY_KEY_POSITIONAL_VALUES, key);
+    }
+
+    /**
+     * @return the disassembled values of the named parameters, {@code null} if the query has none; unlike
+     * {@link QueryKey#getNamedParameters()}, neither wrapped nor failing on {@code null}
+     */
+    public static Map<String, TypedValue> getNamedParameters(QueryKey key) {
+        return get(QUERY_KEY_NAMED_PARAMETERS, key);
+    }
+
+    public static Set<?> getFilterKeys(QueryKey key) {
+        return get(QUERY_KEY_FILTER_KEYS, key);
+    }
+
+    public static String getTenantIdentifier(QueryKey key) {
+        return get(QUERY_KEY_TENANT, key);
+    }
+
+    private static <T> Constructor<T> constructor(Class<T> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Unsupported Hibernate version, missing constructor of " + type, e);
+        }
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported Hibernate version, missing field " + type + "#" + name, e);
+        }
+    }
+
+    private static <T> T newInstance(Constructor<T> constructor, Object... args) {
+        try {
+            return constructor.newInstance(args);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new CacheException("Could not instantiate " + constructor.getDeclaringClass(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(Field field, Object target) {
+        try {
+            return (T) field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new CacheException("Could not read " + field, e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new CacheException("Could not write " + field, e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.gringotts.hibernatecache.cache.timestamps;
+
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timestamps region storage holding the last update timestamp of each table in a slot of its own, instead of in a
+ * cache entry.
+ * <p>
+ * Every cached query hit reads the timestamps of its tables, and every write stamps them, so the few table entries are
+ * the hottest of all regions. Here a table is assigned a slot once, and from then on a read is a lookup in an
+ * unchanging map plus a volatile read, a stamp a volatile write, neither taking a lock nor allocating. Slots are
+ * padded to {@value #STRIDE} longs, so that writers stamping one table do not invalidate the cache line readers of
+ * another one are reading. They are allocated in chunks that never move, so that adding a table does not race with
+ * the stamps of the others.
+ * <p>
+ * A stamp replaces the previous one, as Hibernate's {@link org.hibernate.cache.spi.TimestampsCache} expects: the
+ * completion of a transaction lowers the timestamp its flush set ahead by the lock timeout. Tables are never evicted;
+ * there are only as many as the mapping declares and native queries synchronize on.
+ */
+public class StripedTimestampsStorageAccess implements StorageAccess {
+
+    /**
+     * Longs per slot, two cache lines, as adjacent lines are prefetched together.
+     */
+    static final int STRIDE = 16;
+
+    private static final int SLOTS_PER_CHUNK = 64;
+
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private final Map<Object, Integer> slots = new ConcurrentHashMap<>();
+
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+    /**
+     * Guarded by {@link #allocate()}; the size of {@link #slots} does not include the insertions still running.
+     */
+    private int nextSlot;
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            return null;
+        }
+        long timestamp = chunk(slot).get(offset(slot));
+        return timestamp == ABSENT ? null : timestamp;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(key, k -> allocate());
+        }
+        chunk(slot).set(offset(slot), (Long) value);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return getFromCache(key, null) != null;
+    }
+
+    @Override
+    public void evictData() {
+        for (Integer slot : slots.values()) {
+            chunk(slot).set(offset(slot), ABSENT);
+        }
+    }
+
+    @Override
+    public void evictData(Object key) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            chunk(slot).set(offset(slot), ABSENT);
+        }
+    }
+
+    @Override
+    public void release() {
+        evictData();
+    }
+
+    /**
+     * Tables holding a timestamp.
+     */
+    public long getElementCount() {
+        long count = 0;
+        for (Integer slot : slots.values()) {
+            if (chunk(slot).get(offset(slot)) != ABSENT) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Heap bytes retained by the slots and the map assigning them, the padding included.
+     */
+    public long getSizeInMemory() {
+        // chunk header and array, and a map node with its boxed slot number
+        return chunks.length * (16L + 8L * SLOTS_PER_CHUNK * STRIDE) + slots.size() * 48L;
+    }
+
+    private synchronized int allocate() {
+        int slot = nextSlot++;
+        AtomicLongArray[] current = chunks;
+        if (slot / SLOTS_PER_CHUNK == current.length) {
+            AtomicLongArray chunk = new AtomicLongArray(SLOTS_PER_CHUNK * STRIDE);
+            for (int i = 0; i < SLOTS_PER_CHUNK; i++) {
+                chunk.set(i * STRIDE, ABSENT);
+            }
+            AtomicLongArray[] grown = new AtomicLongArray[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = chunk;
+            chunks = grown;
+        }
+        return slot;
+    }
+
+    private AtomicLongArray chunk(int slot) {
+        return chunks[slot / SLOTS_PER_CHUNK];
+    }
+
+    private static int offset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * STRIDE;
+    }
+}
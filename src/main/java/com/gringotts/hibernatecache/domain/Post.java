@@ -1,5 +1,6 @@
 package com.gringotts.hibernatecache.domain;
 
+import com.gringotts.hibernatecache.cache.revalidate.StaleWhileRevalidate;
 import lombok.Data;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
@@ -16,6 +17,7 @@ import java.util.List;
 @Entity(name = "POSTS")
 @Table(name = "POSTS")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@StaleWhileRevalidate(60)
 @Data
 public class Post {
 
@@ -1,12 +1,23 @@
 package com.gringotts.hibernatecache;
 
 
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import com.gringotts.hibernatecache.cache.near.NearCacheStorageAccess;
+import com.gringotts.hibernatecache.cache.packed.PackedStorageAccess;
+import com.gringotts.hibernatecache.cache.primitive.LongKeyedStorageAccess;
+import com.gringotts.hibernatecache.cache.primitive.LongQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.query.BatchResolvingQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.query.CanonicalQueryKeyStorageAccess;
+import com.gringotts.hibernatecache.cache.query.EntityScopedQueryResultsStorageAccess;
+import com.gringotts.hibernatecache.cache.snapshot.SnapshotStorageAccess;
 import com.gringotts.hibernatecache.domain.Post;
 import com.gringotts.hibernatecache.domain.PostComment;
 import com.gringotts.hibernatecache.domain.PostDetail;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.ehcache.core.Ehcache;
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
 import org.hibernate.Interceptor;
 import org.hibernate.SessionFactory;
 import org.hibernate.cache.internal.QueryResultsCacheImpl;
@@ -39,12 +50,15 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.spi.PersistenceUnitInfo;
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -59,6 +73,11 @@ import java.util.stream.Collectors;
 @EnableConfigurationProperties
 public abstract class AbstractTestConfiguration {
 
+    /**
+     * System property selecting the region factory the scenarios run against, see the {@code caffeine} profile.
+     */
+    public static final String REGION_FACTORY_PROPERTY = "cache.region.factory";
+
     protected final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
     static {
@@ -140,10 +159,13 @@ public abstract class AbstractTestConfiguration {
             properties.put("hibernate.connection.datasource", dataSource);
         }
         properties.put("hibernate.generate_statistics", Boolean.TRUE.toString());
-        properties.put("hibernate.cache.region.factory_class", "jcache");
+        properties.put("hibernate.cache.region.factory_class", regionFactory());
 
         properties.put("net.sf.ehcache.configurationResourceName",
                        Thread.currentThread().getContextClassLoader().getResource("ehcache.xml").toString());
+        //mirror the ehcache.xml defaultCache
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.MAXIMUM_SIZE, "100000");
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.EXPIRE_AFTER_WRITE, "10");
 
         additionalProperties(properties);
         return properties;
@@ -153,6 +175,10 @@ public abstract class AbstractTestConfiguration {
 
     }
 
+    protected String regionFactory() {
+        return System.getProperty(REGION_FACTORY_PROPERTY, "jcache");
+    }
+
     protected void printQueryCacheRegionStatistics() {
         printCacheRegionStatisticsEntries("default-query-results-region");
         printCacheRegionStatisticsKeys("default-query-results-region");
@@ -187,17 +213,14 @@ public abstract class AbstractTestConfiguration {
             AbstractRegion region = ReflectionUtils.getFieldValue(cacheRegionStatistics, "region");
 
             StorageAccess storageAccess = getStorageAccess(region);
-            Ehcache cache = getEhcache(storageAccess);
+            Iterable keySet = getCacheKeys(storageAccess);
 
-            if (cache != null) {
+            if (keySet != null) {
                 StringBuilder cacheEntriesBuilder = new StringBuilder();
                 cacheEntriesBuilder.append("[");
 
                 boolean firstEntry = true;
 
-                Object onHeapStore = ReflectionUtils.getFieldValue(cache, "store");
-                Object onHeapStoreMap = ReflectionUtils.getFieldValue(onHeapStore, "map");
-                Iterable keySet = ReflectionUtils.invokeMethod(onHeapStoreMap, "keySet");
                 for (Object key : keySet) {
                     Object cacheValue = storageAccess.getFromCache(key, null);
 
@@ -280,17 +303,14 @@ public abstract class AbstractTestConfiguration {
             AbstractRegion region = ReflectionUtils.getFieldValue(cacheRegionStatistics, "region");
 
             StorageAccess storageAccess = getStorageAccess(region);
-            Ehcache cache = getEhcache(storageAccess);
+            Iterable keySet = getCacheKeys(storageAccess);
 
-            if (cache != null) {
+            if (keySet != null) {
                 StringBuilder cacheKeysBuilder = new StringBuilder();
                 cacheKeysBuilder.append("[");
 
                 boolean firstEntry = true;
 
-                Object onHeapStore = ReflectionUtils.getFieldValue(cache, "store");
-                Object onHeapStoreMap = ReflectionUtils.getFieldValue(onHeapStore, "map");
-                Iterable keySet = ReflectionUtils.invokeMethod(onHeapStoreMap, "keySet");
                 for (Object key : keySet) {
 
                     if (!firstEntry) {
@@ -342,6 +362,62 @@ public abstract class AbstractTestConfiguration {
         throw new IllegalArgumentException("Unsupported region: " + region);
     }
 
+    protected Iterable<?> getCacheKeys(StorageAccess storageAccess) {
+        if (storageAccess instanceof SnapshotStorageAccess) {
+            return getCacheKeys(((SnapshotStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof NearCacheStorageAccess) {
+            NearCacheStorageAccess nearCacheStorageAccess = (NearCacheStorageAccess) storageAccess;
+            //reference entries only live in the near cache
+            Set<Object> keys = new LinkedHashSet<>(nearCacheStorageAccess.getNearCache().asMap().keySet());
+            Iterable<?> delegateKeys = getCacheKeys(nearCacheStorageAccess.getDelegate());
+            if (delegateKeys != null) {
+                delegateKeys.forEach(keys::add);
+            }
+            return keys;
+        }
+        if (storageAccess instanceof PackedStorageAccess) {
+            return getCacheKeys(((PackedStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof EntityScopedQueryResultsStorageAccess) {
+            return getCacheKeys(((EntityScopedQueryResultsStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof LongQueryResultsStorageAccess) {
+            return getCacheKeys(((LongQueryResultsStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof BatchResolvingQueryResultsStorageAccess) {
+            return getCacheKeys(((BatchResolvingQueryResultsStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof CanonicalQueryKeyStorageAccess) {
+            return getCacheKeys(((CanonicalQueryKeyStorageAccess) storageAccess).getDelegate());
+        }
+        if (storageAccess instanceof LongKeyedStorageAccess) {
+            LongKeyedStorageAccess longKeyedStorageAccess = (LongKeyedStorageAccess) storageAccess;
+            List<Object> keys = new ArrayList<>();
+            longKeyedStorageAccess.getEntries().forEach((key, value) -> keys.add(key));
+            getCacheKeys(longKeyedStorageAccess.getFallback()).forEach(keys::add);
+            return keys;
+        }
+        if (storageAccess instanceof CaffeineStorageAccess) {
+            return ((CaffeineStorageAccess) storageAccess).getUnderlyingCache().asMap().keySet();
+        }
+        Ehcache cache = getEhcache(storageAccess);
+        if (cache == null) {
+            return null;
+        }
+        Object store = ReflectionUtils.getFieldValue(cache, "store");
+        if (!(store instanceof OnHeapStore)) {
+            //tiered stores have no single map, walk the entries instead
+            List<Object> keys = new ArrayList<>();
+            for (org.ehcache.Cache.Entry<?, ?> entry : (Iterable<org.ehcache.Cache.Entry<?, ?>>) cache) {
+                keys.add(entry.getKey());
+            }
+            return keys;
+        }
+        Object onHeapStoreMap = ReflectionUtils.getFieldValue(store, "map");
+        return ReflectionUtils.invokeMethod(onHeapStoreMap, "keySet");
+    }
+
     protected Ehcache getEhcache(StorageAccess storageAccess) {
         Object cacheHolder = storageAccess;
         if (storageAccess instanceof JCacheAccessImpl) {
@@ -0,0 +1,86 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.PersistenceUnitInfoImpl;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import com.gringotts.hibernatecache.domain.PostDetail;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Cache values shaped like the ones Hibernate stores for the domain entities, for benchmarks that do not go through a
+ * {@link org.hibernate.Session}.
+ */
+public final class BenchmarkEntries {
+
+    private static final LocalDateTime CREATED_ON = LocalDateTime.of(2023, 8, 1, 12, 0);
+
+    private BenchmarkEntries() {
+        throw new UnsupportedOperationException("The " + getClass() + " is not instantiable!");
+    }
+
+    /**
+     * Disassembled {@link PostDetail}: {@code createdBy}, {@code createdOn} and the {@code post} id.
+     */
+    public static StandardCacheEntryImpl postDetail(long id) {
+        return HibernateCacheInternals.newStandardCacheEntry(
+                new Serializable[]{"author-" + (id % 50), CREATED_ON.plusMinutes(id), id},
+                PostDetail.class.getName(),
+                null
+        );
+    }
+
+    /**
+     * {@link #postDetail(long)} wrapped the way the READ_WRITE strategy stores it.
+     */
+    public static Object postDetailItem(long id) {
+        return HibernateCacheInternals.newItem(postDetail(id), null, 0L);
+    }
+
+    /**
+     * A factory over the domain entities and an in-memory H2 database that is never queried, for the persisters and
+     * the metamodel-derived state it registers.
+     */
+    public static SessionFactoryImplementor bootSessionFactory(String name) {
+        return bootSessionFactory(name, new Properties());
+    }
+
+    /**
+     * {@link #bootSessionFactory(String)} with additional configuration, such as region factory settings, and entities
+     * of the benchmark's own.
+     */
+    public static SessionFactoryImplementor bootSessionFactory(
+            String name,
+            Properties additionalProperties,
+            Class<?>... additionalEntities) {
+        List<String> entities = new ArrayList<>(
+                List.of(Post.class.getName(), PostComment.class.getName(), PostDetail.class.getName())
+        );
+        for (Class<?> entity : additionalEntities) {
+            entities.add(entity.getName());
+        }
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.region.factory_class", "caffeine");
+        properties.putAll(additionalProperties);
+        properties.put("hibernate.connection.url", "jdbc:h2:mem:" + name);
+        return new EntityManagerFactoryBuilderImpl(
+                new PersistenceUnitInfoDescriptor(
+                        new PersistenceUnitInfoImpl(
+                                name,
+                                entities,
+                                properties
+                        )
+                ),
+                properties
+        ).build().unwrap(SessionFactoryImplementor.class);
+    }
+}
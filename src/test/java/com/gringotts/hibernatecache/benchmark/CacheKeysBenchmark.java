@@ -0,0 +1,113 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import com.gringotts.hibernatecache.cache.primitive.ConcurrentLongObjectMap;
+import com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory;
+import com.gringotts.hibernatecache.cache.primitive.LongKeyedStorageAccess;
+import com.gringotts.hibernatecache.domain.PostDetail;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity region lookup through {@link DefaultCacheKeysFactory} keys in a Caffeine region against {@link Long} keys of
+ * {@link LongCacheKeysFactory} in {@link LongKeyedStorageAccess}: key creation plus storage get, as done by
+ * {@code CacheEntityLoaderHelper} on every second-level cache lookup. Compare the {@code gc.alloc.rate.norm} column.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.CacheKeysBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeysBenchmark {
+
+    @Param({"default", "long"})
+    private String keys;
+
+    @Param({"100000"})
+    private int entries;
+
+    private CacheKeysFactory cacheKeysFactory;
+
+    private DomainDataStorageAccess storageAccess;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EntityPersister persister;
+
+    /**
+     * Identifiers as the session holds them, so that neither side pays for boxing.
+     */
+    private Long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName());
+        persister = sessionFactory.getMetamodel().entityPersister(PostDetail.class);
+        CaffeineStorageAccess caffeineStorageAccess = new CaffeineStorageAccess(
+                Caffeine.newBuilder().maximumSize(entries).build()
+        );
+        if ("long".equals(keys)) {
+            cacheKeysFactory = LongCacheKeysFactory.INSTANCE;
+            storageAccess = new LongKeyedStorageAccess(new ConcurrentLongObjectMap(entries), caffeineStorageAccess);
+        } else {
+            cacheKeysFactory = DefaultCacheKeysFactory.INSTANCE;
+            storageAccess = caffeineStorageAccess;
+        }
+
+        ids = new Long[entries];
+        for (int i = 0; i < entries; i++) {
+            ids[i] = (long) i;
+            Object key = cacheKeysFactory.createEntityKey(ids[i], persister, sessionFactory, null);
+            storageAccess.putIntoCache(key, BenchmarkEntries.postDetailItem(i), null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storageAccess.release();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Object hit() {
+        Long id = ids[ThreadLocalRandom.current().nextInt(entries)];
+        return storageAccess.getFromCache(cacheKeysFactory.createEntityKey(id, persister, sessionFactory, null), null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(CacheKeysBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build()
+        ).run();
+    }
+}
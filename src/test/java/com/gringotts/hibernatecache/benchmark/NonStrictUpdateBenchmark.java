@@ -0,0 +1,162 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit ratio of a NONSTRICT_READ_WRITE entity against the share of operations updating it, in the three modes of a
+ * Caffeine region:
+ * <ul>
+ *     <li>{@code evict}: Hibernate's access, evicting the entry on update;</li>
+ *     <li>{@code guarded}: {@link CaffeineSettings#VERSION_GUARDED_PUTS}, evicting as well;</li>
+ *     <li>{@code write-through}: {@link CaffeineSettings#WRITE_THROUGH_UPDATES}, caching the committed version.</li>
+ * </ul>
+ * Each operation either updates a random key (flush and commit) or reads it, loading and putting it on a miss. The hit
+ * ratio of the reads is printed at the end of each trial; the score is the cost of the mix.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.NonStrictUpdateBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NonStrictUpdateBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"evict", "guarded", "write-through"})
+    private String mode;
+
+    @Param({"1", "10", "30"})
+    private int updatePercent;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EntityDataAccess access;
+
+    private SharedSessionContractImplementor session;
+
+    private Object[] keys;
+
+    private int[] versions;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        if ("guarded".equals(mode)) {
+            properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.VERSION_GUARDED_PUTS, "true");
+        } else if ("write-through".equals(mode)) {
+            properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.WRITE_THROUGH_UPDATES, "true");
+        }
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties, PostViews.class);
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(PostViews.class);
+        access = persister.getCacheAccessStrategy();
+        // a session without an action queue, so that updates register no completion processes piling up
+        session = (SharedSessionContractImplementor) sessionFactory.openStatelessSession();
+        keys = new Object[KEYS];
+        versions = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = access.generateCacheKey((long) i, persister, sessionFactory, null);
+            access.putFromLoad(session, keys[i], entry(i), versions[i]);
+        }
+        System.out.printf("%n%s%n", access.getClass().getSimpleName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long reads = hits.sum() + misses.sum();
+        System.out.printf(
+                "%n%s, %d%% updates: hit ratio %.3f over %d reads%n",
+                mode, updatePercent, reads == 0 ? 0 : (double) hits.sum() / reads, reads
+        );
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Object readOrUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(KEYS);
+        Object key = keys[i];
+        if (random.nextInt(100) < updatePercent) {
+            int previousVersion = versions[i];
+            int version = ++versions[i];
+            Object entry = entry(version);
+            access.update(session, key, entry, version, previousVersion);
+            return access.afterUpdate(session, key, entry, version, previousVersion, null);
+        }
+        Object cached = access.get(session, key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return access.putFromLoad(session, key, entry(versions[i]), versions[i]);
+    }
+
+    private static Object entry(int version) {
+        return HibernateCacheInternals.newStandardCacheEntry(
+                new Serializable[]{(long) version * 31, version}, PostViews.class.getName(), version
+        );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(NonStrictUpdateBenchmark.class.getSimpleName())
+                        .build()
+        ).run();
+    }
+
+    /**
+     * A counter updated on every view of a post and read far more often than that.
+     */
+    @Entity(name = "PostViews")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+    public static class PostViews {
+
+        @Id
+        private Long id;
+
+        private long views;
+
+        @Version
+        private int version;
+    }
+}
@@ -0,0 +1,100 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.cache.serialization.CacheEntrySerializer;
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap-only region against the heap + off-heap tiering of {@code ehcache-tiered.xml}: hit latency, and the
+ * full-GC pause caused by a populated region (the off-heap entries are not traced by the collector).
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.OffHeapTierBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OffHeapTierBenchmark {
+
+    @Param({"heap", "tiered"})
+    private String tiers;
+
+    @Param({"500000"})
+    private int entries;
+
+    private CacheManager cacheManager;
+
+    private Cache<Long, Object> cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+
+        CacheConfigurationBuilder<Long, Object> configuration = "heap".equals(tiers)
+                ? CacheConfigurationBuilder.newCacheConfigurationBuilder(
+                        Long.class, Object.class, ResourcePoolsBuilder.heap(entries))
+                : CacheConfigurationBuilder.newCacheConfigurationBuilder(
+                                Long.class, Object.class,
+                                ResourcePoolsBuilder.heap(1000).offheap(512, MemoryUnit.MB))
+                        .withValueSerializer(new CacheEntrySerializer(getClass().getClassLoader()));
+        cache = cacheManager.createCache("benchmark-" + tiers, configuration);
+
+        for (long id = 0; id < entries; id++) {
+            cache.put(id, BenchmarkEntries.postDetailItem(id));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheManager.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object hit() {
+        return cache.get(ThreadLocalRandom.current().nextLong(entries));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public void fullGcPause() {
+        System.gc();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(OffHeapTierBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import com.gringotts.hibernatecache.cache.packed.EntitySchemas;
+import com.gringotts.hibernatecache.cache.packed.PackedCacheEntryCodec;
+import com.gringotts.hibernatecache.cache.packed.PackedStorageAccess;
+import com.gringotts.hibernatecache.cache.serialization.CacheEntryCodec;
+import com.gringotts.hibernatecache.cache.serialization.StringDictionary;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tagged against schema-packed {@code PostDetail} entries, in the two places an entry's encoding shows:
+ * <ul>
+ *     <li>{@link #serializedHit()}: decoding an entry on a hit of a serializing tier, see {@code gc.alloc.rate.norm}
+ *     and the encoded size printed by the setup;</li>
+ *     <li>{@link #heapHit()}: a heap region hit, plain against {@link PackedStorageAccess}; the setup prints the heap
+ *     retained per entry.</li>
+ * </ul>
+ * The {@code dictionary} encoding packs the entries and writes their repeated {@code createdBy} through a
+ * {@link StringDictionary}, whose statistics the setup prints as well.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.PackedEntryBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PackedEntryBenchmark {
+
+    @Param({"tagged", "packed", "dictionary"})
+    private String encoding;
+
+    @Param({"200000"})
+    private int entries;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private ByteBuffer[] serialized;
+
+    private CacheEntryCodec codec;
+
+    private DomainDataStorageAccess storageAccess;
+
+    private Long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // registers the entity schemas
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName());
+        ClassLoader classLoader = getClass().getClassLoader();
+        boolean packed = !"tagged".equals(encoding);
+
+        codec = newCodec(classLoader);
+        serialized = new ByteBuffer[1024];
+        long serializedBytes = 0;
+        for (int i = 0; i < serialized.length; i++) {
+            serialized[i] = ByteBuffer.wrap(codec.encode(BenchmarkEntries.postDetailItem(i)));
+            serializedBytes += serialized[i].remaining();
+        }
+
+        CaffeineStorageAccess caffeineStorageAccess = new CaffeineStorageAccess(
+                Caffeine.newBuilder().maximumSize(entries).build()
+        );
+        storageAccess = packed
+                ? new PackedStorageAccess(caffeineStorageAccess, (PackedCacheEntryCodec) newCodec(classLoader),
+                                          EntitySchemas.getInstance())
+                : caffeineStorageAccess;
+        ids = new Long[entries];
+        for (int i = 0; i < entries; i++) {
+            ids[i] = (long) i;
+        }
+        long before = usedHeap();
+        for (int i = 0; i < entries; i++) {
+            storageAccess.putIntoCache(ids[i], BenchmarkEntries.postDetailItem(i), null);
+        }
+        long after = usedHeap();
+
+        System.out.printf(
+                "%n%s: %d serialized bytes per entry, %d heap bytes per entry%n",
+                encoding, serializedBytes / serialized.length, (after - before) / entries
+        );
+        if (storageAccess instanceof PackedStorageAccess
+                && ((PackedStorageAccess) storageAccess).getCodec().getDictionary() != null) {
+            System.out.printf("%s%n", ((PackedStorageAccess) storageAccess).getCodec().getDictionary());
+        }
+    }
+
+    private CacheEntryCodec newCodec(ClassLoader classLoader) {
+        switch (encoding) {
+            case "packed":
+                return new PackedCacheEntryCodec(classLoader);
+            case "dictionary":
+                return new PackedCacheEntryCodec(
+                        classLoader, EntitySchemas.getInstance(),
+                        new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_SIZE)
+                );
+            default:
+                return new CacheEntryCodec(classLoader);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storageAccess.release();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Object serializedHit() {
+        ByteBuffer buffer = serialized[ThreadLocalRandom.current().nextInt(serialized.length)];
+        return codec.decode(buffer.duplicate());
+    }
+
+    @Benchmark
+    public Object heapHit() {
+        return storageAccess.getFromCache(ids[ThreadLocalRandom.current().nextInt(entries)], null);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(PackedEntryBenchmark.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.support.DirectAccessRegionTemplate;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of query results region lookups with 8 threads, each building the {@link QueryKey} of its execution as
+ * Hibernate does, for {@value #QUERIES} parameter values of the same query.
+ * {@code canonicalQueryKeys=false} keys the region by the {@link QueryKey}s themselves; otherwise by
+ * {@link com.gringotts.hibernatecache.cache.query.CanonicalQueryKey}s, through a probe of the calling thread. Run
+ * with {@code -prof gc} to compare the garbage of both.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.QueryKeyBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryKeyBenchmark {
+
+    private static final int QUERIES = 1_000;
+
+    private static final String SQL = "select post0_.id as id1_0_, post0_.created_on as created_2_0_, " +
+            "post0_.title as title3_0_ from posts post0_ where post0_.title like ? order by post0_.id";
+
+    @Param({"false", "true"})
+    private boolean canonicalQueryKeys;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private DirectAccessRegionTemplate region;
+
+    private SharedSessionContractImplementor session;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(
+                CaffeineSettings.PROP_PREFIX + CaffeineSettings.CANONICAL_QUERY_KEYS, String.valueOf(canonicalQueryKeys)
+        );
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties);
+        region = (DirectAccessRegionTemplate) sessionFactory.getCache().getDefaultQueryResultsCache().getRegion();
+        session = (SharedSessionContractImplementor) sessionFactory.openSession();
+        for (int i = 0; i < QUERIES; i++) {
+            region.getStorageAccess().putIntoCache(queryKey(i, session), List.of((long) i), session);
+        }
+        System.out.printf("%n%s%n", region.getStorageAccess().getClass().getSimpleName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return region.getStorageAccess().getFromCache(
+                queryKey(ThreadLocalRandom.current().nextInt(QUERIES), session), session
+        );
+    }
+
+    private static QueryKey queryKey(int query, SharedSessionContractImplementor session) {
+        Map<String, TypedValue> namedParameters = Collections.singletonMap(
+                "titlePattern", new TypedValue(StandardBasicTypes.STRING, "Post " + query + "%")
+        );
+        QueryParameters parameters = new QueryParameters(new Type[0], new Object[0], namedParameters, null);
+        return QueryKey.generateQueryKey(SQL, parameters, null, session, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(QueryKeyBenchmark.class.getSimpleName())
+                        .build()
+        ).run();
+    }
+}
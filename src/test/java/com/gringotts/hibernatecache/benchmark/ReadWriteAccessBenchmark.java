@@ -0,0 +1,135 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.PostDetail;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the {@code PostDetail} READ_WRITE access with 64 threads, each working on its own keys as request
+ * threads updating different posts do:
+ * <ul>
+ *     <li>{@link #update(ThreadState)}: the soft lock taken on flush and the entry replaced after commit;</li>
+ *     <li>{@link #readMostly(ThreadState)}: nine lookups for one load putting its entry.</li>
+ * </ul>
+ * {@code lockStripes=0} is Hibernate's single read/write lock per region; otherwise each transition is one atomic
+ * {@code compute} of the region's cache.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.ReadWriteAccessBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(64)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadWriteAccessBenchmark {
+
+    private static final int KEYS_PER_THREAD = 256;
+
+    @Param({"0", "256"})
+    private int lockStripes;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EntityPersister persister;
+
+    private EntityDataAccess access;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.LOCK_STRIPES, String.valueOf(lockStripes));
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties);
+        persister = sessionFactory.getMetamodel().entityPersister(PostDetail.class);
+        access = persister.getCacheAccessStrategy();
+        System.out.printf("%n%s%n", access.getClass().getSimpleName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private SharedSessionContractImplementor session;
+
+        private Object[] keys;
+
+        private Object[] entries;
+
+        @Setup(Level.Trial)
+        public void setUp(ReadWriteAccessBenchmark benchmark) {
+            session = (SharedSessionContractImplementor) benchmark.sessionFactory.openSession();
+            long firstId = (long) benchmark.threads.getAndIncrement() * KEYS_PER_THREAD;
+            keys = new Object[KEYS_PER_THREAD];
+            entries = new Object[KEYS_PER_THREAD];
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                long id = firstId + i;
+                keys[i] = benchmark.access.generateCacheKey(id, benchmark.persister, benchmark.sessionFactory, null);
+                entries[i] = BenchmarkEntries.postDetail(id);
+                benchmark.access.putFromLoad(session, keys[i], entries[i], null);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.close();
+        }
+    }
+
+    @Benchmark
+    public boolean update(ThreadState state) {
+        int i = ThreadLocalRandom.current().nextInt(KEYS_PER_THREAD);
+        SoftLock lock = access.lockItem(state.session, state.keys[i], null);
+        return access.afterUpdate(state.session, state.keys[i], state.entries[i], null, null, lock);
+    }
+
+    @Benchmark
+    public Object readMostly(ThreadState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(KEYS_PER_THREAD);
+        if (random.nextInt(10) == 0) {
+            return access.putFromLoad(state.session, state.keys[i], state.entries[i], null);
+        }
+        return access.get(state.session, state.keys[i]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(ReadWriteAccessBenchmark.class.getSimpleName())
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,135 @@
+package com.gringotts.hibernatecache.benchmark;
+
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import com.gringotts.hibernatecache.domain.PostDetail;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the timestamps region with 60 threads checking cached queries over the {@code Post} and
+ * {@code PostComment} tables, while 4 threads write to those tables and to the {@code PostDetail} one:
+ * <ul>
+ *     <li>{@link #isUpToDate(ThreadState)}: the check of every query cache hit;</li>
+ *     <li>{@link #invalidate(ThreadState)}: the stamp of a flush followed by the one of its completion.</li>
+ * </ul>
+ * {@code stripedTimestamps=false} keeps the timestamps in a Caffeine cache; otherwise each table has a padded slot of
+ * its own.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.gringotts.hibernatecache.benchmark.TimestampsRegionBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TimestampsRegionBenchmark {
+
+    @Param({"false", "true"})
+    private boolean stripedTimestamps;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private TimestampsCache timestampsCache;
+
+    private String[] querySpaces;
+
+    private List<String[]> writtenSpaces;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(
+                CaffeineSettings.PROP_PREFIX + CaffeineSettings.STRIPED_TIMESTAMPS, String.valueOf(stripedTimestamps)
+        );
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties);
+        timestampsCache = sessionFactory.getCache().getTimestampsCache();
+        String[] posts = spaces(Post.class);
+        String[] comments = spaces(PostComment.class);
+        querySpaces = Stream.concat(Arrays.stream(posts), Arrays.stream(comments)).toArray(String[]::new);
+        writtenSpaces = List.of(posts, comments, spaces(PostDetail.class));
+        System.out.printf("%n%s%n", timestampsCache.getRegion().getClass().getSimpleName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    private String[] spaces(Class<?> entity) {
+        Object[] spaces = sessionFactory.getMetamodel().entityPersister(entity).getPropertySpaces();
+        return Arrays.copyOf(spaces, spaces.length, String[].class);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private SharedSessionContractImplementor session;
+
+        private Long queryTimestamp;
+
+        @Setup(Level.Trial)
+        public void setUp(TimestampsRegionBenchmark benchmark) {
+            session = (SharedSessionContractImplementor) benchmark.sessionFactory.openSession();
+            queryTimestamp = benchmark.sessionFactory.getCache().getRegionFactory().nextTimestamp();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.close();
+        }
+    }
+
+    @Benchmark
+    @Group("queries")
+    @GroupThreads(60)
+    public boolean isUpToDate(ThreadState state) {
+        return timestampsCache.isUpToDate(querySpaces, state.queryTimestamp, state.session);
+    }
+
+    @Benchmark
+    @Group("queries")
+    @GroupThreads(4)
+    public void invalidate(ThreadState state) {
+        String[] spaces = writtenSpaces.get(ThreadLocalRandom.current().nextInt(writtenSpaces.size()));
+        timestampsCache.preInvalidate(spaces, state.session);
+        timestampsCache.invalidate(spaces, state.session);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                new OptionsBuilder()
+                        .include(TimestampsRegionBenchmark.class.getSimpleName())
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,188 @@
+package com.gringotts.hibernatecache.cache.nonstrict;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.io.Serializable;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GuardedEntityNonStrictReadWriteAccessTest {
+
+    private SessionFactoryImplementor sessionFactory;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.WRITE_THROUGH_UPDATES, Boolean.TRUE.toString());
+        sessionFactory = BenchmarkEntries.bootSessionFactory(
+                getClass().getSimpleName(), properties, Counter.class, Tag.class
+        );
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void olderCommitDoesNotReplaceNewerOne() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Counter.class);
+        GuardedEntityNonStrictReadWriteAccess access =
+                (GuardedEntityNonStrictReadWriteAccess) persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, counter(0), 0)).isTrue();
+        }
+
+        //the first transaction writes version 1, the second one version 2, and commits first
+        SessionImplementor first = openSession();
+        first.beginTransaction();
+        access.update(first, key, counter(1), 1, 0);
+        SessionImplementor second = openSession();
+        second.beginTransaction();
+        access.update(second, key, counter(2), 2, 1);
+
+        second.getTransaction().commit();
+        assertThat(access.afterUpdate(second, key, counter(2), 2, 1, null)).isTrue();
+        first.getTransaction().commit();
+        assertThat(access.afterUpdate(first, key, counter(1), 1, 0, null)).isFalse();
+        first.close();
+        second.close();
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(((CacheEntry) access.get(reader, key)).getVersion()).isEqualTo(2);
+        }
+        assertThat(access.getWriteThroughCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void commitDoesNotReplaceVersionLoadedSince() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Counter.class);
+        GuardedEntityNonStrictReadWriteAccess access =
+                (GuardedEntityNonStrictReadWriteAccess) persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        access.update(writer, key, counter(1), 1, 0);
+        writer.getTransaction().commit();
+
+        //before the commit above writes through, a reader loads version 2, written by another application node
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, counter(2), 2)).isTrue();
+        }
+
+        assertThat(access.afterUpdate(writer, key, counter(1), 1, 0, null)).isFalse();
+        writer.close();
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(((CacheEntry) access.get(reader, key)).getVersion()).isEqualTo(2);
+        }
+        assertThat(access.getWriteThroughCount()).isZero();
+    }
+
+    @Test
+    public void commitDoesNotResurrectDeletedEntity() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Counter.class);
+        GuardedEntityNonStrictReadWriteAccess access =
+                (GuardedEntityNonStrictReadWriteAccess) persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, counter(0), 0)).isTrue();
+        }
+
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        access.update(writer, key, counter(1), 1, 0);
+        writer.getTransaction().commit();
+
+        //before the commit above writes through, another transaction deletes the entity
+        SessionImplementor deleter = openSession();
+        deleter.beginTransaction();
+        access.remove(deleter, key);
+        deleter.getTransaction().commit();
+        deleter.close();
+
+        assertThat(access.afterUpdate(writer, key, counter(1), 1, 0, null)).isFalse();
+        writer.close();
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+        }
+        assertThat(access.getWriteThroughCount()).isZero();
+    }
+
+    @Test
+    public void unversionedEntityIsEvicted() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Tag.class);
+        GuardedEntityNonStrictReadWriteAccess access =
+                (GuardedEntityNonStrictReadWriteAccess) persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, tag("Hibernate"), null)).isTrue();
+        }
+
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        access.update(writer, key, tag("JPA"), null, null);
+        writer.getTransaction().commit();
+        assertThat(access.afterUpdate(writer, key, tag("JPA"), null, null, null)).isFalse();
+        writer.close();
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+        }
+        assertThat(access.getWriteThroughCount()).isZero();
+    }
+
+    private SessionImplementor openSession() {
+        return (SessionImplementor) sessionFactory.openSession();
+    }
+
+    private static Object counter(int version) {
+        return HibernateCacheInternals.newStandardCacheEntry(
+                new Serializable[]{(long) version, version}, Counter.class.getName(), version
+        );
+    }
+
+    private static Object tag(String name) {
+        return HibernateCacheInternals.newStandardCacheEntry(new Serializable[]{name}, Tag.class.getName(), null);
+    }
+
+    @Entity(name = "Counter_WriteThrough")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+    public static class Counter {
+
+        @Id
+        private Long id;
+
+        private long value;
+
+        @Version
+        private int version;
+    }
+
+    @Entity(name = "Tag_WriteThrough")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+    public static class Tag {
+
+        @Id
+        private Long id;
+
+        private String name;
+    }
+}
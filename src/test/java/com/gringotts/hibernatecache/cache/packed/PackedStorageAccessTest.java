@@ -0,0 +1,226 @@
+package com.gringotts.hibernatecache.cache.packed;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.access.CachedDomainDataAccess;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Version;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round-trips entries through the packed storage of a region, with and without a string dictionary.
+ */
+@RunWith(Parameterized.class)
+public class PackedStorageAccessTest {
+
+    @Parameterized.Parameter
+    public int dictionarySize;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    @Parameterized.Parameters(name = "dictionary of {0}")
+    public static List<Integer> dictionarySizes() {
+        return List.of(0, 1_000);
+    }
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.PACKED_ENTRIES, Boolean.TRUE.toString());
+        properties.put(
+                CaffeineSettings.PROP_PREFIX + CaffeineSettings.STRING_DICTIONARY_SIZE, String.valueOf(dictionarySize)
+        );
+        sessionFactory = BenchmarkEntries.bootSessionFactory(
+                getClass().getSimpleName() + "-" + dictionarySize, properties, Document.class, Invoice.class
+        );
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void entriesRoundTrip() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Document.class);
+        PackedStorageAccess storageAccess = storageAccess(persister.getCacheAccessStrategy());
+        Serializable[] state = state(persister, Map.of(
+                "title", "High-Performance Java Persistence",
+                "pages", 466,
+                "published", LocalDate.of(2016, 10, 12),
+                "archived", false,
+                "parent", 2L,
+                "children", 1L,
+                "version", 3
+        ));
+
+        for (int i = 0; i < 2; i++) {
+            storageAccess.putFromLoad(1L, entry(state, Document.class.getName(), 3), null);
+            assertThat(storageAccess.getDelegate().getFromCache(1L, null)).isInstanceOf(PackedCacheEntry.class);
+            assertEntry(storageAccess.getFromCache(1L, null), state, Document.class.getName(), 3);
+        }
+    }
+
+    @Test
+    public void nullPropertiesRoundTrip() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Document.class);
+        PackedStorageAccess storageAccess = storageAccess(persister.getCacheAccessStrategy());
+        Serializable[] state = state(persister, Map.of("version", 0));
+
+        storageAccess.putFromLoad(1L, entry(state, Document.class.getName(), 0), null);
+
+        assertThat(storageAccess.getDelegate().getFromCache(1L, null)).isInstanceOf(PackedCacheEntry.class);
+        assertEntry(storageAccess.getFromCache(1L, null), state, Document.class.getName(), 0);
+    }
+
+    @Test
+    public void subclassEntriesRoundTrip() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Invoice.class);
+        PackedStorageAccess storageAccess = storageAccess(persister.getCacheAccessStrategy());
+        Serializable[] state = state(persister, Map.of(
+                "title", "Invoice",
+                "amount", new BigDecimal("44.95"),
+                "ratio", 0.2,
+                "version", 1
+        ));
+
+        storageAccess.putFromLoad(1L, entry(state, Invoice.class.getName(), 1), null);
+
+        assertThat(((PackedCacheEntry) storageAccess.getDelegate().getFromCache(1L, null)).getSchema().getEntityName())
+                .isEqualTo(Invoice.class.getName());
+        assertEntry(storageAccess.getFromCache(1L, null), state, Invoice.class.getName(), 1);
+    }
+
+    @Test
+    public void readWriteItemsRoundTrip() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Document.class);
+        PackedStorageAccess storageAccess = storageAccess(persister.getCacheAccessStrategy());
+        Serializable[] state = state(persister, Map.of("title", "Hibernate", "version", 7));
+
+        Object entry = entry(state, Document.class.getName(), 7);
+        storageAccess.putFromLoad(1L, HibernateCacheInternals.newItem(entry, 7, 42L), null);
+
+        AbstractReadWriteAccess.Item packed = (AbstractReadWriteAccess.Item) storageAccess.getDelegate()
+                .getFromCache(1L, null);
+        assertThat(packed.getValue()).isInstanceOf(PackedCacheEntry.class);
+        AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) storageAccess.getFromCache(1L, null);
+        assertThat(HibernateCacheInternals.getVersion(item)).isEqualTo(7);
+        assertThat(HibernateCacheInternals.getTimestamp(item)).isEqualTo(42L);
+        assertEntry(item.getValue(), state, Document.class.getName(), 7);
+
+        //soft locks are stored as they are
+        Object lock = HibernateCacheInternals.newSoftLock(42L, UUID.randomUUID(), 1L, 7, false, 1, 0L);
+        storageAccess.putIntoCache(1L, lock, null);
+        assertThat(storageAccess.getFromCache(1L, null)).isSameAs(lock);
+    }
+
+    @Test
+    public void otherEntriesAreStoredAsTheyAre() {
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Document.class);
+        PackedStorageAccess storageAccess = storageAccess(persister.getCacheAccessStrategy());
+        //a state the schema was not derived for
+        Object entry = entry(new Serializable[]{"Hibernate"}, Document.class.getName(), 0);
+        storageAccess.putFromLoad(1L, entry, null);
+        assertThat(storageAccess.getFromCache(1L, null)).isSameAs(entry);
+
+        CollectionPersister collectionPersister = sessionFactory.getMetamodel()
+                .collectionPersister(Document.class.getName() + ".children");
+        PackedStorageAccess collectionStorageAccess = storageAccess(collectionPersister.getCacheAccessStrategy());
+        CollectionCacheEntry collectionEntry = HibernateCacheInternals.newCollectionCacheEntry(
+                new Serializable[]{2L, 3L}
+        );
+        collectionStorageAccess.putFromLoad(1L, collectionEntry, null);
+        assertThat(collectionStorageAccess.getFromCache(1L, null)).isSameAs(collectionEntry);
+    }
+
+    private static PackedStorageAccess storageAccess(CachedDomainDataAccess access) {
+        return (PackedStorageAccess) ((DomainDataRegionTemplate) access.getRegion()).getCacheStorageAccess();
+    }
+
+    /**
+     * @return the disassembled state of the persister's properties, {@code null} for those not given
+     */
+    private static Serializable[] state(EntityPersister persister, Map<String, Serializable> values) {
+        String[] names = persister.getPropertyNames();
+        Serializable[] state = new Serializable[names.length];
+        for (int i = 0; i < names.length; i++) {
+            state[i] = values.get(names[i]);
+        }
+        assertThat(Arrays.asList(names)).containsAll(values.keySet());
+        return state;
+    }
+
+    private static Object entry(Serializable[] state, String entityName, Object version) {
+        return HibernateCacheInternals.newStandardCacheEntry(state.clone(), entityName, version);
+    }
+
+    private static void assertEntry(Object value, Serializable[] state, String entityName, Object version) {
+        assertThat(value).isInstanceOf(StandardCacheEntryImpl.class);
+        StandardCacheEntryImpl entry = (StandardCacheEntryImpl) value;
+        assertThat(entry.getDisassembledState()).containsExactly(state);
+        assertThat(entry.getSubclass()).isEqualTo(entityName);
+        assertThat(entry.getVersion()).isEqualTo(version);
+    }
+
+    @Entity(name = "Document_Packed")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Document {
+
+        @Id
+        private Long id;
+
+        private String title;
+
+        private Integer pages;
+
+        private LocalDate published;
+
+        private Boolean archived;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Document parent;
+
+        @OneToMany(mappedBy = "parent")
+        @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+        private List<Document> children;
+
+        @Version
+        private int version;
+    }
+
+    @Entity(name = "Invoice_Packed")
+    public static class Invoice extends Document {
+
+        private BigDecimal amount;
+
+        private Double ratio;
+    }
+}
@@ -0,0 +1,206 @@
+package com.gringotts.hibernatecache.cache.primitive;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentLongObjectMapTest {
+
+    private static final int SEGMENT_SHIFT = 60;
+
+    private static final int HOME_MASK = 15;
+
+    @Test
+    public void removalKeepsTheProbeChainReachable() {
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(1_000);
+        //five keys sharing their segment and home slot, then one whose home slot the chain runs over
+        List<Long> chain = keysWith(0, 3, 5);
+        long next = keysWith(0, 4, 1).get(0);
+        chain.forEach(key -> map.put(key, "value " + key));
+        map.put(next, "value " + next);
+
+        map.remove(chain.get(0));
+        map.remove(chain.get(2));
+
+        assertThat(map.get(chain.get(0))).isNull();
+        assertThat(map.get(chain.get(2))).isNull();
+        assertThat(map.get(chain.get(1))).isEqualTo("value " + chain.get(1));
+        assertThat(map.get(chain.get(3))).isEqualTo("value " + chain.get(3));
+        assertThat(map.get(chain.get(4))).isEqualTo("value " + chain.get(4));
+        assertThat(map.get(next)).isEqualTo("value " + next);
+        assertThat(map.size()).isEqualTo(4);
+
+        map.remove(chain.get(4));
+        map.remove(next);
+        map.remove(chain.get(1));
+        map.remove(chain.get(3));
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomWrites() {
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(100_000);
+        Map<Long, Object> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            //few distinct keys, so that the tables fill, and collide, and empty again
+            long key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        for (long key = 0; key < 2_000; key++) {
+            assertThat(map.get(key)).as("key %d", key).isEqualTo(expected.get(key));
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+
+        Map<Long, Object> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertThat(visited).isEqualTo(expected);
+    }
+
+    @Test
+    public void readersSeeEveryEntryWhileTablesGrow() throws Exception {
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(1_000_000);
+        AtomicLong published = new AtomicLong(-1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    Random random = new Random();
+                    while (writing.get()) {
+                        long last = published.get();
+                        if (last >= 0) {
+                            long key = (long) (random.nextDouble() * (last + 1));
+                            assertThat(map.get(key)).as("key %d", key).isEqualTo(key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                start.await();
+                try {
+                    //every segment doubles its table from 16 to 64k slots
+                    for (long key = 0; key < 500_000; key++) {
+                        map.put(key, key);
+                        published.set(key);
+                    }
+                } finally {
+                    writing.set(false);
+                }
+                return null;
+            });
+            start.countDown();
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(map.size()).isEqualTo(500_000);
+    }
+
+    @Test
+    public void evictsOnceFull() {
+        //10 entries per segment
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(160);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, key);
+            assertThat(map.get(key)).isEqualTo(key);
+        }
+        assertThat(map.size()).isEqualTo(160);
+        map.forEach((key, value) -> assertThat(value).isEqualTo(key));
+
+        //replacing a value evicts nothing
+        Map<Long, Object> entries = new HashMap<>();
+        map.forEach(entries::put);
+        entries.forEach((key, value) -> map.put(key, "replaced"));
+        assertThat(map.size()).isEqualTo(160);
+        entries.keySet().forEach(key -> assertThat(map.get(key)).isEqualTo("replaced"));
+
+        ConcurrentLongObjectMap empty = new ConcurrentLongObjectMap(0);
+        empty.put(1L, 1L);
+        assertThat(empty.get(1L)).isNull();
+        assertThat(empty.size()).isZero();
+    }
+
+    @Test
+    public void expiresAfterWrite() {
+        AtomicLong nanos = new AtomicLong();
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(1_000, 10, nanos::get);
+        map.put(1L, "first");
+        map.put(2L, "second");
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        map.put(2L, "second, again");
+        assertThat(map.get(1L)).isEqualTo("first");
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(map.get(1L)).isNull();
+        assertThat(map.containsKey(1L)).isFalse();
+        assertThat(map.get(2L)).isEqualTo("second, again");
+        Map<Long, Object> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertThat(visited).containsOnlyKeys(2L);
+
+        map.put(1L, "first, again");
+        assertThat(map.get(1L)).isEqualTo("first, again");
+    }
+
+    @Test
+    public void evictsExpiredEntriesFirst() {
+        AtomicLong nanos = new AtomicLong();
+        //8 entries per segment, all of which the eviction samples
+        ConcurrentLongObjectMap map = new ConcurrentLongObjectMap(128, 10, nanos::get);
+        List<Long> keys = keysWith(0, -1, 9);
+        map.put(keys.get(0), "expired");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 1; i < 8; i++) {
+            map.put(keys.get(i), "live");
+        }
+
+        map.put(keys.get(8), "live");
+
+        assertThat(map.size()).isEqualTo(128 / 16);
+        for (int i = 1; i < 9; i++) {
+            assertThat(map.get(keys.get(i))).isEqualTo("live");
+        }
+    }
+
+    /**
+     * @return keys hashed to the given segment and, unless {@code -1}, home slot of a 16-slot table
+     */
+    private static List<Long> keysWith(int segment, int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; keys.size() < count; key++) {
+            long hash = ConcurrentLongObjectMap.hash(key);
+            if ((hash >>> SEGMENT_SHIFT) == segment && (home < 0 || (hash & HOME_MASK) == home)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,113 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.support.DirectAccessRegionTemplate;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchResolvingQueryResultsStorageAccessTest {
+
+    private static final int POSTS = 5;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private BatchResolvingQueryResultsStorageAccess storageAccess;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(
+                CaffeineSettings.PROP_PREFIX + CaffeineSettings.BATCH_ENTITY_RESOLUTION, Boolean.TRUE.toString()
+        );
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties);
+        storageAccess = (BatchResolvingQueryResultsStorageAccess) ((DirectAccessRegionTemplate) sessionFactory
+                .getCache().getDefaultQueryResultsCache().getRegion()).getStorageAccess();
+
+        try (SessionImplementor session = openSession()) {
+            session.beginTransaction();
+            for (long postId = 1; postId <= POSTS; postId++) {
+                Post post = new Post();
+                post.setId(postId);
+                post.setTitle("High-Performance Java Persistence, part " + postId);
+                session.persist(post);
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void resolvesEntitiesMissingFromTheRegion() {
+        assertThat(findPosts()).hasSize(POSTS);
+        sessionFactory.getCache().evictEntityData(Post.class, 1L);
+        sessionFactory.getCache().evictEntityData(Post.class, 2L);
+
+        assertThat(findPosts()).extracting(Post::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+
+        assertThat(storageAccess.getBatchCount()).isEqualTo(1);
+        assertThat(storageAccess.getBatchedEntityCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void resolvesEntitiesUnreadableFromTheRegion() {
+        assertThat(findPosts()).hasSize(POSTS);
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(Post.class);
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        //the first post is evicted, the second one locked by a writer, the third one cached after the reader started
+        sessionFactory.getCache().evictEntityData(Post.class, 1L);
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        access.lockItem(writer, key(access, persister, 2L), null);
+        Object third = key(access, persister, 3L);
+        try (SessionImplementor session = openSession()) {
+            ((DomainDataRegionTemplate) access.getRegion()).getCacheStorageAccess().putIntoCache(
+                    third, HibernateCacheInternals.newItem(access.get(session, third), null, Long.MAX_VALUE), null
+            );
+        }
+
+        assertThat(findPosts()).extracting(Post::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+
+        assertThat(storageAccess.getBatchCount()).isEqualTo(1);
+        assertThat(storageAccess.getBatchedEntityCount()).isEqualTo(3);
+        writer.getTransaction().rollback();
+        writer.close();
+    }
+
+    private List<Post> findPosts() {
+        try (SessionImplementor session = openSession()) {
+            return session
+                    .createQuery("select p from POSTS p where p.title like :titlePattern order by p.id", Post.class)
+                    .setParameter("titlePattern", "High-Performance%")
+                    .setCacheable(true)
+                    .getResultList();
+        }
+    }
+
+    private Object key(EntityDataAccess access, EntityPersister persister, long id) {
+        return access.generateCacheKey(id, persister, sessionFactory, null);
+    }
+
+    private SessionImplementor openSession() {
+        return (SessionImplementor) sessionFactory.openSession();
+    }
+}
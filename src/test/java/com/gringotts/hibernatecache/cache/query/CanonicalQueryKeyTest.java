@@ -0,0 +1,88 @@
+package com.gringotts.hibernatecache.cache.query;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.hibernate.type.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CanonicalQueryKeyTest {
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private SessionImplementor session;
+
+    @Before
+    public void setUp() {
+        sessionFactory = BenchmarkEntries.bootSessionFactory(getClass().getSimpleName());
+        session = (SessionImplementor) sessionFactory.openSession();
+    }
+
+    @After
+    public void tearDown() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void probeKeepsNoValuesOfEarlierKeys() {
+        QueryKey threeValues = key("select p from POSTS p where p.id in (:first, :second, :third)", 1L, 2L, 3L);
+        QueryKey oneValue = key("select p from POSTS p where p.id = :first", 4L);
+        CanonicalQueryKey probe = new CanonicalQueryKey();
+
+        assertThat(probe.reset(threeValues, QueryKeyShape.of(threeValues, null))).isTrue();
+        assertThat(probe.getParameterValues()).containsExactly(1L, 2L, 3L);
+
+        assertThat(probe.reset(oneValue, QueryKeyShape.of(oneValue, null))).isTrue();
+        assertThat(probe.getParameterValues()).containsExactly(4L, null, null);
+        assertThat(probe).isEqualTo(probe.copy());
+        assertThat(probe.copy().getParameterValues()).containsExactly(4L);
+
+        assertThat(probe.reset(threeValues, QueryKeyShape.of(threeValues, null))).isTrue();
+        assertThat(probe.reset(threeValues, QueryKeyShape.of(oneValue, null))).isFalse();
+        assertThat(probe.getParameterValues()).containsOnlyNulls();
+    }
+
+    @Test
+    public void probeMatchesKeysOfTheSameValues() {
+        QueryKey key = key("select p from POSTS p where p.title = :first", "Hibernate");
+        QueryKeyShape shape = QueryKeyShape.of(key, null);
+        CanonicalQueryKey probe = new CanonicalQueryKey();
+        assertThat(probe.reset(key, shape)).isTrue();
+        CanonicalQueryKey stored = probe.copy();
+
+        assertThat(probe.reset(key("select p from POSTS p where p.title = :first", "JPA"), shape)).isTrue();
+        assertThat(probe).isNotEqualTo(stored);
+        assertThat(probe.reset(key("select p from POSTS p where p.title = :first", "Hibernate"), shape)).isTrue();
+        assertThat(probe).isEqualTo(stored).hasSameHashCodeAs(stored);
+    }
+
+    private QueryKey key(String sql, Object... values) {
+        String[] names = {"first", "second", "third"};
+        Map<String, TypedValue> namedParameters = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            Type type = values[i] instanceof Long ? LongType.INSTANCE : StringType.INSTANCE;
+            namedParameters.put(names[i], new TypedValue(type, values[i]));
+        }
+        return QueryKey.generateQueryKey(
+                sql,
+                new QueryParameters(new Type[0], new Object[0], namedParameters, null),
+                Collections.emptySet(),
+                session,
+                null
+        );
+    }
+}
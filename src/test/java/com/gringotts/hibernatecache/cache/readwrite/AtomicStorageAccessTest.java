@@ -0,0 +1,181 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineStorageAccess;
+import com.gringotts.hibernatecache.cache.near.NearCacheSettings;
+import com.gringotts.hibernatecache.cache.near.NearCacheStorageAccess;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Races loads of a versioned entity against the updates of a writer, through the {@link AtomicStorageAccess} of the
+ * Caffeine regions and of the near-cached JCache ones.
+ */
+@RunWith(Parameterized.class)
+public class AtomicStorageAccessTest {
+
+    private static final int LOADERS = 3;
+
+    private static final int VERSIONS = 1_000;
+
+    @Parameterized.Parameter
+    public String regionFactory;
+
+    @Parameterized.Parameter(1)
+    public Class<?> storageAccessType;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EntityPersister persister;
+
+    private EntityDataAccess access;
+
+    private DomainDataStorageAccess storageAccess;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> regionFactories() {
+        return List.of(
+                new Object[]{CaffeineSettings.SIMPLE_FACTORY_NAME, CaffeineStorageAccess.class},
+                new Object[]{NearCacheSettings.SIMPLE_FACTORY_NAME, NearCacheStorageAccess.class}
+        );
+    }
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.region.factory_class", regionFactory);
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        sessionFactory = BenchmarkEntries.bootSessionFactory(
+                getClass().getSimpleName() + "-" + regionFactory, properties, Counter.class
+        );
+        persister = sessionFactory.getMetamodel().entityPersister(Counter.class);
+        access = persister.getCacheAccessStrategy();
+        storageAccess = ((DomainDataRegionTemplate) access.getRegion()).getCacheStorageAccess();
+        assertThat(storageAccess).isInstanceOf(AtomicStorageAccess.class).isInstanceOf(storageAccessType);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void loadsNeitherReplaceSoftLocksNorNewerItems() throws Exception {
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+        //the version the database holds, as far as a load starting now reads it
+        AtomicInteger committed = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(LOADERS + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> loaders = new ArrayList<>();
+            for (int i = 0; i < LOADERS; i++) {
+                loaders.add(executor.submit(() -> {
+                    start.await();
+                    int newestSeen = -1;
+                    while (writing.get()) {
+                        try (SessionImplementor loader = openSession()) {
+                            int version = committed.get();
+                            access.putFromLoad(loader, key, counter(version), version);
+                        }
+                        //the cached version only ever grows
+                        Object cached = storageAccess.getFromCache(key, null);
+                        if (cached instanceof AbstractReadWriteAccess.Item) {
+                            int version = (Integer) ((CacheEntry) ((AbstractReadWriteAccess.Item) cached).getValue())
+                                    .getVersion();
+                            assertThat(version).isGreaterThanOrEqualTo(newestSeen);
+                            newestSeen = version;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                start.await();
+                try {
+                    for (int version = 1; version <= VERSIONS; version++) {
+                        try (SessionImplementor session = openSession()) {
+                            session.beginTransaction();
+                            SoftLock lock = access.lockItem(session, key, version - 1);
+                            committed.set(version);
+                            session.getTransaction().commit();
+                            assertThat(storageAccess.getFromCache(key, null))
+                                    .as("version %d", version)
+                                    .isInstanceOf(AbstractReadWriteAccess.SoftLockImpl.class);
+                            access.afterUpdate(session, key, counter(version), version, version - 1, lock);
+                        }
+                    }
+                } finally {
+                    writing.set(false);
+                }
+                return null;
+            });
+            start.countDown();
+            writer.get(120, TimeUnit.SECONDS);
+            for (Future<?> loader : loaders) {
+                loader.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(((CacheEntry) access.get(reader, key)).getVersion()).isEqualTo(VERSIONS);
+        }
+    }
+
+    private SessionImplementor openSession() {
+        return (SessionImplementor) sessionFactory.openSession();
+    }
+
+    private static Object counter(int version) {
+        return HibernateCacheInternals.newStandardCacheEntry(
+                new Serializable[]{(long) version, version}, Counter.class.getName(), version
+        );
+    }
+
+    @Entity(name = "Counter_Atomic")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Counter {
+
+        @Id
+        private Long id;
+
+        private long value;
+
+        @Version
+        private int version;
+    }
+}
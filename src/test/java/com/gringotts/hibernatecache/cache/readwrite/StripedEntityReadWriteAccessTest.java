@@ -0,0 +1,323 @@
+package com.gringotts.hibernatecache.cache.readwrite;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.primitive.LongCacheKeysFactory;
+import com.gringotts.hibernatecache.cache.primitive.LongKeyedStorageAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against the atomic storage of the Caffeine regions, and against the {@link LongKeyedStorageAccess} of the
+ * {@code long} keys factory, whose transitions take the lock stripe of their key instead.
+ */
+@RunWith(Parameterized.class)
+public class StripedEntityReadWriteAccessTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ROUNDS = 200;
+
+    @Parameterized.Parameter
+    public String keysFactory;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EntityPersister persister;
+
+    private StripedEntityReadWriteAccess access;
+
+    @Parameterized.Parameters(name = "{0} keys")
+    public static List<String> keysFactories() {
+        return List.of("default", LongCacheKeysFactory.SHORT_NAME);
+    }
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("hibernate.cache.keys_factory", keysFactory);
+        sessionFactory = BenchmarkEntries.bootSessionFactory(
+                getClass().getSimpleName() + "-" + keysFactory, properties
+        );
+        persister = sessionFactory.getMetamodel().entityPersister(Post.class);
+        access = (StripedEntityReadWriteAccess) persister.getCacheAccessStrategy();
+        DomainDataRegionTemplate region = (DomainDataRegionTemplate) access.getRegion();
+        assertThat(region.getCacheStorageAccess() instanceof AtomicStorageAccess)
+                .isEqualTo(!LongCacheKeysFactory.SHORT_NAME.equals(keysFactory));
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void concurrentWritesToDifferentKeys() throws Exception {
+        run(THREADS, thread -> {
+            for (long id = thread * 100L; id < thread * 100L + 100; id++) {
+                Object key = key(id);
+                try (SessionImplementor session = openSession()) {
+                    assertThat(access.afterInsert(session, key, "inserted " + id, null)).isTrue();
+                }
+                for (int round = 0; round < 5; round++) {
+                    update(key, "updated " + id + " " + round);
+                }
+            }
+        });
+
+        try (SessionImplementor reader = openSession()) {
+            for (long id = 0; id < THREADS * 100L; id++) {
+                assertThat(access.get(reader, key(id))).isEqualTo("updated " + id + " 4");
+            }
+        }
+    }
+
+    @Test
+    public void concurrentLocksOfSameKeyAreAllReleased() throws Exception {
+        Object key = key(1L);
+        run(THREADS, thread -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                if (round % 2 == 0) {
+                    update(key, "updated by " + thread);
+                } else {
+                    try (SessionImplementor session = openSession()) {
+                        session.beginTransaction();
+                        SoftLock lock = access.lockItem(session, key, null);
+                        session.getTransaction().commit();
+                        access.unlockItem(session, key, lock);
+                    }
+                }
+            }
+        });
+
+        //a lock left held, or a lost unlock of a shared one, would turn the load down
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, "loaded", null)).isTrue();
+        }
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isEqualTo("loaded");
+        }
+    }
+
+    @Test
+    public void concurrentLocksOfSameKeyAreJoined() throws Exception {
+        for (long id = 0; id < ROUNDS; id++) {
+            Object key = key(id);
+            List<SessionImplementor> writers = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                writers.add(openSession());
+            }
+            SoftLock[] locks = new SoftLock[THREADS];
+            run(THREADS, thread -> locks[thread] = access.lockItem(writers.get(thread), key, null));
+
+            //a lock lost to a concurrent one would release the key before its last holder completed
+            for (int thread = 0; thread < THREADS - 1; thread++) {
+                access.unlockItem(writers.get(thread), key, locks[thread]);
+            }
+            try (SessionImplementor loader = openSession()) {
+                assertThat(access.putFromLoad(loader, key, "loaded", null)).as("round %d", id).isFalse();
+            }
+            access.unlockItem(writers.get(THREADS - 1), key, locks[THREADS - 1]);
+            writers.forEach(SessionImplementor::close);
+
+            try (SessionImplementor loader = openSession()) {
+                assertThat(access.putFromLoad(loader, key, "loaded", null)).as("round %d", id).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void lockedKeyIsNeitherReadNorLoaded() {
+        Object key = key(1L);
+        SessionImplementor staleLoader = openSession();
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        SoftLock lock = access.lockItem(writer, key, null);
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+            assertThat(access.putFromLoad(reader, key, "loaded while locked", null)).isFalse();
+        }
+
+        writer.getTransaction().commit();
+        assertThat(access.afterUpdate(writer, key, "updated", null, null, lock)).isTrue();
+        writer.close();
+
+        //a load that started before the update completed
+        assertThat(access.putFromLoad(staleLoader, key, "loaded before the update", null)).isFalse();
+        staleLoader.close();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isEqualTo("updated");
+        }
+    }
+
+    @Test
+    public void concurrentlyLockedKeyIsInvalidated() {
+        Object key = key(1L);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, "loaded", null)).isTrue();
+        }
+        SessionImplementor first = openSession();
+        first.beginTransaction();
+        SoftLock firstLock = access.lockItem(first, key, null);
+        SessionImplementor second = openSession();
+        second.beginTransaction();
+        SoftLock secondLock = access.lockItem(second, key, null);
+
+        first.getTransaction().commit();
+        assertThat(access.afterUpdate(first, key, "updated by the first", null, null, firstLock)).isFalse();
+        second.getTransaction().commit();
+        assertThat(access.afterUpdate(second, key, "updated by the second", null, null, secondLock)).isFalse();
+        first.close();
+        second.close();
+
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+            assertThat(access.putFromLoad(reader, key, "loaded again", null)).isTrue();
+        }
+    }
+
+    @Test
+    public void rollbackRestoresTheLockedEntry() {
+        Object key = key(1L);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, "loaded", null)).isTrue();
+        }
+
+        SessionImplementor writer = openSession();
+        writer.beginTransaction();
+        SoftLock lock = access.lockItem(writer, key, null);
+        writer.getTransaction().rollback();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isEqualTo("loaded");
+        }
+
+        //the unlock of the rolled back action leaves the restored entry alone
+        access.unlockItem(writer, key, lock);
+        writer.close();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isEqualTo("loaded");
+        }
+        assertThat(access.getSoftLockStatistics().getRestoreCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void rollbackKeepsTheLockAnotherTransactionJoined() {
+        Object key = key(1L);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, "loaded", null)).isTrue();
+        }
+        SessionImplementor first = openSession();
+        first.beginTransaction();
+        SoftLock firstLock = access.lockItem(first, key, null);
+        SessionImplementor second = openSession();
+        second.beginTransaction();
+        SoftLock secondLock = access.lockItem(second, key, null);
+
+        first.getTransaction().rollback();
+        access.unlockItem(first, key, firstLock);
+        first.close();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+        }
+
+        second.getTransaction().commit();
+        access.afterUpdate(second, key, "updated by the second", null, null, secondLock);
+        second.close();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+        }
+        assertThat(access.getSoftLockStatistics().getRestoreCount()).isZero();
+    }
+
+    @Test
+    public void rollbackAfterAnotherTransactionJoinedAndCommittedDoesNotRestore() {
+        Object key = key(1L);
+        try (SessionImplementor loader = openSession()) {
+            assertThat(access.putFromLoad(loader, key, "loaded", null)).isTrue();
+        }
+        SessionImplementor first = openSession();
+        first.beginTransaction();
+        SoftLock firstLock = access.lockItem(first, key, null);
+        SessionImplementor second = openSession();
+        second.beginTransaction();
+        SoftLock secondLock = access.lockItem(second, key, null);
+
+        second.getTransaction().commit();
+        access.afterUpdate(second, key, "updated by the second", null, null, secondLock);
+        second.close();
+
+        //the entry loaded before the second transaction committed is stale by now
+        first.getTransaction().rollback();
+        access.unlockItem(first, key, firstLock);
+        first.close();
+        try (SessionImplementor reader = openSession()) {
+            assertThat(access.get(reader, key)).isNull();
+        }
+        assertThat(access.getSoftLockStatistics().getRestoreCount()).isZero();
+    }
+
+    private void update(Object key, Object value) {
+        try (SessionImplementor session = openSession()) {
+            session.beginTransaction();
+            SoftLock lock = access.lockItem(session, key, null);
+            session.getTransaction().commit();
+            access.afterUpdate(session, key, value, null, null, lock);
+        }
+    }
+
+    private Object key(long id) {
+        return access.generateCacheKey(id, persister, sessionFactory, null);
+    }
+
+    private SessionImplementor openSession() {
+        return (SessionImplementor) sessionFactory.openSession();
+    }
+
+    private static void run(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int index = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+
+        void run(int thread);
+    }
+}
@@ -0,0 +1,167 @@
+package com.gringotts.hibernatecache.cache.serialization;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.packed.DictionaryCacheEntrySerializer;
+import com.gringotts.hibernatecache.cache.support.HibernateCacheInternals;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void admitsStringsSeenTwice() {
+        StringDictionary dictionary = new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_SIZE);
+        EntryOutput output = new EntryOutput();
+        dictionary.write(output, "Hibernate");
+        assertThat(dictionary.getSize()).isZero();
+        assertThat(dictionary.getInlineCount()).isEqualTo(1);
+
+        dictionary.write(output, "Hibernate");
+        dictionary.write(output, "Hibernate");
+        dictionary.write(output, "JPA");
+        assertThat(dictionary.getSize()).isEqualTo(1);
+        assertThat(dictionary.getReferenceCount()).isEqualTo(2);
+        assertThat(dictionary.getInlineCount()).isEqualTo(2);
+
+        EntryInput input = new EntryInput(ByteBuffer.wrap(output.toByteArray()));
+        assertThat(dictionary.read(input)).isEqualTo("Hibernate");
+        String first = dictionary.read(input);
+        assertThat(first).isEqualTo("Hibernate");
+        assertThat(dictionary.read(input)).isSameAs(first);
+        assertThat(dictionary.read(input)).isEqualTo("JPA");
+    }
+
+    @Test
+    public void writesLongStringsInline() {
+        StringDictionary dictionary = new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_SIZE);
+        String value = "x".repeat(StringDictionary.MAXIMUM_LENGTH + 1);
+        EntryOutput output = new EntryOutput();
+        for (int i = 0; i < 3; i++) {
+            dictionary.write(output, value);
+        }
+
+        assertThat(dictionary.getSize()).isZero();
+        assertThat(dictionary.getInlineCount()).isEqualTo(3);
+        EntryInput input = new EntryInput(ByteBuffer.wrap(output.toByteArray()));
+        for (int i = 0; i < 3; i++) {
+            assertThat(dictionary.read(input)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void stopsAdmittingOnceFull() {
+        StringDictionary dictionary = new StringDictionary(2);
+        EntryOutput output = new EntryOutput();
+        for (String value : new String[]{"a", "a", "b", "b", "c", "c", "c", "a"}) {
+            dictionary.write(output, value);
+        }
+
+        assertThat(dictionary.getSize()).isEqualTo(2);
+        //the second and fourth writes, then the last one
+        assertThat(dictionary.getReferenceCount()).isEqualTo(3);
+        assertThat(dictionary.getInlineCount()).isEqualTo(5);
+        EntryInput input = new EntryInput(ByteBuffer.wrap(output.toByteArray()));
+        for (String value : new String[]{"a", "a", "b", "b", "c", "c", "c", "a"}) {
+            assertThat(dictionary.read(input)).isEqualTo(value);
+        }
+
+        StringDictionary empty = new StringDictionary(0);
+        empty.write(new EntryOutput(), "a");
+        empty.write(new EntryOutput(), "a");
+        assertThat(empty.getSize()).isZero();
+        assertThat(empty.getInlineCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void countsBytes() {
+        StringDictionary dictionary = new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_SIZE);
+        assertThat(dictionary.getCompressionRatio()).isEqualTo(1);
+        for (int i = 0; i < 3; i++) {
+            dictionary.write(new EntryOutput(), "Hibernate");
+        }
+
+        assertThat(dictionary.getDictionaryBytes()).isEqualTo(9);
+        assertThat(dictionary.getStringBytes()).isEqualTo(27);
+        //a length and the bytes, then an id twice
+        assertThat(dictionary.getEncodedBytes()).isEqualTo(12);
+        assertThat(dictionary.getCompressionRatio()).isEqualTo(27 / 12d);
+    }
+
+    @Test
+    public void serializerComparesWithoutWritingThroughTheDictionary() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("com.gringotts.hibernatecache:type=StringDictionary,*");
+        Set<ObjectName> registered = server.queryNames(pattern, null);
+        DictionaryCacheEntrySerializer serializer = new DictionaryCacheEntrySerializer(getClass().getClassLoader());
+        Set<ObjectName> names = server.queryNames(pattern, null);
+        names.removeAll(registered);
+        assertThat(names).hasSize(1);
+        ObjectName name = names.iterator().next();
+
+        StringDictionary dictionary = serializer.getCodec().getDictionary();
+        Object entry = post("High-Performance Java Persistence");
+        serializer.serialize(entry);
+        ByteBuffer binary = serializer.serialize(entry);
+        assertThat(dictionary.getSize()).isEqualTo(2);
+        long references = dictionary.getReferenceCount();
+        long inlined = dictionary.getInlineCount();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(serializer.equals(entry, binary)).isTrue();
+            assertThat(serializer.equals(post("Hibernate"), binary)).isFalse();
+        }
+        assertThat(serializer.read(binary.duplicate())).isInstanceOf(entry.getClass());
+
+        assertThat(dictionary.getSize()).isEqualTo(2);
+        assertThat(dictionary.getReferenceCount()).isEqualTo(references);
+        assertThat(dictionary.getInlineCount()).isEqualTo(inlined);
+        assertThat(server.getAttribute(name, "Size")).isEqualTo(2);
+        assertThat(server.getAttribute(name, "ReferenceCount")).isEqualTo(references);
+
+        serializer.close();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    public void caffeineRegionRegistersItsDictionary() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("com.gringotts.hibernatecache:type=StringDictionary,*");
+        Set<ObjectName> registered = server.queryNames(pattern, null);
+        Properties properties = new Properties();
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.PACKED_ENTRIES, Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.STRING_DICTIONARY_SIZE, "1000");
+        SessionFactoryImplementor sessionFactory = BenchmarkEntries.bootSessionFactory(
+                getClass().getSimpleName(), properties
+        );
+        Set<ObjectName> names;
+        try {
+            names = server.queryNames(pattern, null);
+            names.removeAll(registered);
+            String postRegion = sessionFactory.getMetamodel().entityPersister(Post.class)
+                    .getCacheAccessStrategy().getRegion().getName();
+            assertThat(names).extracting(name -> name.getKeyProperty("region")).contains(ObjectName.quote(postRegion));
+            for (ObjectName name : names) {
+                assertThat(server.getAttribute(name, "MaximumSize")).isEqualTo(1000);
+            }
+        } finally {
+            sessionFactory.close();
+        }
+        names.forEach(name -> assertThat(server.isRegistered(name)).isFalse());
+    }
+
+    private static Object post(String title) {
+        return HibernateCacheInternals.newStandardCacheEntry(new Serializable[]{title}, "POSTS", null);
+    }
+}
@@ -0,0 +1,144 @@
+package com.gringotts.hibernatecache.cache.snapshot;
+
+import com.gringotts.hibernatecache.benchmark.BenchmarkEntries;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotStorageAccessTest {
+
+    @Rule
+    public TemporaryFolder snapshotDirectory = new TemporaryFolder();
+
+    //keeps the in-memory database alive across restarts
+    private Connection connection;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:" + getClass().getSimpleName());
+        sessionFactory = boot("create");
+        try (SessionImplementor session = openSession()) {
+            session.beginTransaction();
+            for (long id = 1; id <= 3; id++) {
+                Counter counter = new Counter();
+                counter.id = id;
+                counter.count = id;
+                session.persist(counter);
+            }
+            Tag tag = new Tag();
+            tag.id = 1L;
+            tag.name = "Hibernate";
+            session.persist(tag);
+            session.getTransaction().commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        sessionFactory.close();
+        connection.close();
+    }
+
+    @Test
+    public void restoresEntriesStillMatchingTheDatabase() {
+        restart();
+
+        try (SessionImplementor session = openSession()) {
+            for (long id = 1; id <= 3; id++) {
+                assertThat(session.find(Counter.class, id).count).isEqualTo(id);
+            }
+        }
+        assertThat(sessionFactory.getStatistics().getDomainDataRegionStatistics(Counter.class.getName())
+                           .getHitCount()).isEqualTo(3);
+        //the versions of all the snapshot entries are checked at once
+        assertThat(sessionFactory.getStatistics().getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void discardsEntriesChangedWhileTheApplicationWasDown() throws SQLException {
+        sessionFactory.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("update Counter_Snapshot set count = 20, version = version + 1 where id = 2");
+            statement.executeUpdate("delete from Counter_Snapshot where id = 3");
+        }
+        sessionFactory = boot("none");
+
+        try (SessionImplementor session = openSession()) {
+            assertThat(session.find(Counter.class, 1L).count).isEqualTo(1);
+            assertThat(session.find(Counter.class, 2L).count).isEqualTo(20);
+            assertThat(session.find(Counter.class, 3L)).isNull();
+        }
+        assertThat(sessionFactory.getStatistics().getDomainDataRegionStatistics(Counter.class.getName())
+                           .getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void unversionedEntitiesAreNotRestored() {
+        restart();
+
+        try (SessionImplementor session = openSession()) {
+            assertThat(session.find(Tag.class, 1L).name).isEqualTo("Hibernate");
+        }
+        assertThat(sessionFactory.getStatistics().getDomainDataRegionStatistics(Tag.class.getName())
+                           .getHitCount()).isZero();
+    }
+
+    private void restart() {
+        sessionFactory.close();
+        sessionFactory = boot("none");
+    }
+
+    private SessionFactoryImplementor boot(String schemaAction) {
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", schemaAction);
+        properties.put("hibernate.generate_statistics", Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.SNAPSHOT_DIRECTORY, snapshotDirectory.getRoot().toString());
+        return BenchmarkEntries.bootSessionFactory(getClass().getSimpleName(), properties, Counter.class, Tag.class);
+    }
+
+    private SessionImplementor openSession() {
+        return (SessionImplementor) sessionFactory.openSession();
+    }
+
+    @Entity(name = "Counter_Snapshot")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Counter {
+
+        @Id
+        private Long id;
+
+        private long count;
+
+        @Version
+        private int version;
+    }
+
+    @Entity(name = "Tag_Snapshot")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Tag {
+
+        @Id
+        private Long id;
+
+        private String name;
+    }
+}
@@ -0,0 +1,99 @@
+package com.gringotts.hibernatecache.cache.timestamps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedTimestampsStorageAccessTest {
+
+    private static final int THREADS = 8;
+
+    private static final int TABLES_PER_THREAD = 40;
+
+    @Test
+    public void stampsReplaceEachOther() {
+        StripedTimestampsStorageAccess storageAccess = new StripedTimestampsStorageAccess();
+        assertThat(storageAccess.getFromCache("POSTS", null)).isNull();
+
+        //a flush stamps beyond the lock timeout, the completion lowers it again
+        storageAccess.putIntoCache("POSTS", 2_000L, null);
+        storageAccess.putIntoCache("POSTS", 1_000L, null);
+        assertThat(storageAccess.getFromCache("POSTS", null)).isEqualTo(1_000L);
+        assertThat(storageAccess.contains("POSTS")).isTrue();
+        assertThat(storageAccess.getElementCount()).isEqualTo(1);
+
+        storageAccess.evictData("POSTS");
+        assertThat(storageAccess.getFromCache("POSTS", null)).isNull();
+        assertThat(storageAccess.contains("POSTS")).isFalse();
+        assertThat(storageAccess.getElementCount()).isZero();
+    }
+
+    @Test
+    public void tablesBeyondOneChunk() {
+        StripedTimestampsStorageAccess storageAccess = new StripedTimestampsStorageAccess();
+        for (int table = 0; table < 200; table++) {
+            storageAccess.putIntoCache("TABLE_" + table, (long) table, null);
+        }
+        for (int table = 0; table < 200; table++) {
+            assertThat(storageAccess.getFromCache("TABLE_" + table, null)).isEqualTo((long) table);
+        }
+        assertThat(storageAccess.getElementCount()).isEqualTo(200);
+
+        storageAccess.evictData();
+        assertThat(storageAccess.getElementCount()).isZero();
+        assertThat(storageAccess.getFromCache("TABLE_199", null)).isNull();
+    }
+
+    @Test
+    public void concurrentStampsOfDifferentTables() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 500; round++) {
+                StripedTimestampsStorageAccess storageAccess = new StripedTimestampsStorageAccess();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writers = new ArrayList<>();
+                for (int thread = 0; thread < THREADS; thread++) {
+                    int writer = thread;
+                    writers.add(executor.submit(() -> {
+                        start.await();
+                        for (int table = 0; table < TABLES_PER_THREAD; table++) {
+                            storageAccess.putIntoCache(table(writer, table), stamp(writer, table), null);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(10, TimeUnit.SECONDS);
+                }
+                //no table shares its slot with another one
+                for (int thread = 0; thread < THREADS; thread++) {
+                    for (int table = 0; table < TABLES_PER_THREAD; table++) {
+                        assertThat(storageAccess.getFromCache(table(thread, table), null))
+                                .as("round %d, %s", round, table(thread, table))
+                                .isEqualTo(stamp(thread, table));
+                    }
+                }
+                assertThat(storageAccess.getElementCount()).isEqualTo(THREADS * TABLES_PER_THREAD);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String table(int thread, int table) {
+        return "TABLE_" + thread + "_" + table;
+    }
+
+    private static long stamp(int thread, int table) {
+        return thread * 1_000L + table;
+    }
+}
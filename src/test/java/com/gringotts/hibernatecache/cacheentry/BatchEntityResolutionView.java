@@ -0,0 +1,79 @@
+package com.gringotts.hibernatecache.cacheentry;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchEntityResolutionView extends AbstractTestConfiguration {
+
+    private static final int POSTS = 200;
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.BATCH_ENTITY_RESOLUTION, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            for (long postId = 1; postId <= POSTS; postId++) {
+                Post post = new Post();
+                post.setId(postId);
+                post.setTitle("High-Performance Java Persistence, part " + postId);
+                entityManager.persist(post);
+            }
+        });
+    }
+
+    @Test
+    public void batchEntityResolutionView() {
+        doInJPA(entityManager -> assertThat(findPosts(entityManager)).hasSize(POSTS));
+
+        //half of the posts the cached query returns are evicted since
+        for (long postId = 1; postId <= POSTS; postId += 2) {
+            sessionFactory().getCache().evictEntityData(Post.class, postId);
+        }
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> assertThat(findPosts(entityManager))
+                .hasSize(POSTS)
+                .extracting(Post::getId)
+                .startsWith(1L, 2L)
+                .endsWith((long) POSTS));
+        printQueryCacheRegionStatistics();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        //one query for the 100 missing posts, instead of one each
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        //and they are back in the region
+        statistics.clear();
+        doInJPA(entityManager -> assertThat(findPosts(entityManager)).hasSize(POSTS));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    private List<Post> findPosts(EntityManager entityManager) {
+        return entityManager
+                .createQuery("select p " +
+                                     "from POSTS p " +
+                                     "where p.title like :titlePattern " +
+                                     "order by p.id", Post.class)
+                .setParameter("titlePattern", "High-Performance%")
+                .setHint("org.hibernate.cacheable", true)
+                .getResultList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.gringotts.hibernatecache.cacheentry;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.query.CanonicalQueryKey;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.cache.spi.support.AbstractRegion;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CanonicalQueryKeyView extends AbstractTestConfiguration {
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.CANONICAL_QUERY_KEYS, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            entityManager.persist(newPost(1L, "Welcome to Hibernate Cache"));
+            entityManager.persist(newPost(2L, "Welcome to Hibernate"));
+            entityManager.persist(newPost(3L, "High-Performance Java Persistence"));
+        });
+    }
+
+    @Test
+    public void canonicalQueryKeyView() {
+        doInJPA(entityManager -> assertThat(findPosts(entityManager, "Welcome to%")).hasSize(2));
+        doInJPA(entityManager -> assertThat(findPosts(entityManager, "High-Performance%")).hasSize(1));
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> {
+            assertThat(findPosts(entityManager, "Welcome to%")).hasSize(2);
+            assertThat(findPosts(entityManager, "High-Performance%")).hasSize(1);
+            assertThat(findPosts(entityManager, "Welcome to%")).hasSize(2);
+        });
+        printQueryCacheRegionStatistics();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(3);
+        assertThat(statistics.getQueryCacheMissCount()).isZero();
+
+        //a value the query never ran with
+        doInJPA(entityManager -> assertThat(findPosts(entityManager, "Welcome to Hibernate Cache")).hasSize(1));
+        assertThat(statistics.getQueryCacheMissCount()).isEqualTo(1);
+
+        AbstractRegion region = (AbstractRegion) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getDefaultQueryResultsCache()
+                .getRegion();
+        assertThat(getCacheKeys(getStorageAccess(region)))
+                .hasSize(3)
+                .allMatch(CanonicalQueryKey.class::isInstance);
+    }
+
+    private List<Post> findPosts(EntityManager entityManager, String titlePattern) {
+        return entityManager
+                .createQuery("select p " +
+                                     "from POSTS p " +
+                                     "where p.title like :titlePattern ", Post.class)
+                .setParameter("titlePattern", titlePattern)
+                .setHint("org.hibernate.cacheable", true)
+                .getResultList();
+    }
+
+    private Post newPost(Long id, String title) {
+        Post post = new Post();
+        post.setId(id);
+        post.setTitle(title);
+        return post;
+    }
+}
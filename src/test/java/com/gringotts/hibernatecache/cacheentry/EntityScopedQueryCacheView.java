@@ -0,0 +1,111 @@
+package com.gringotts.hibernatecache.cacheentry;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.query.EntityScopedInvalidation;
+import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EntityScopedQueryCacheView extends AbstractTestConfiguration {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+                Post.class,
+        };
+    }
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.ENTITY_SCOPED_INVALIDATION, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            entityManager.persist(new Post(1L, "Welcome to Hibernate Cache"));
+            entityManager.persist(new Post(2L, "Welcome to Hibernate"));
+            entityManager.persist(new Post(3L, "High-Performance Java Persistence"));
+        });
+    }
+
+    @Test
+    public void entityScopedQueryCacheView() {
+        doInJPA(entityManager -> assertThat(findPosts(entityManager)).hasSize(2));
+
+        //neither changes what the query returns
+        doInJPA(entityManager -> entityManager.find(Post.class, 1L).setViews(100));
+        doInJPA(entityManager -> entityManager.remove(entityManager.find(Post.class, 3L)));
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> assertThat(findPosts(entityManager)).hasSize(2));
+        printQueryCacheRegionStatistics();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        //a title may start matching the pattern
+        doInJPA(entityManager -> entityManager.find(Post.class, 2L).setTitle("Welcome to Hibernate 5"));
+
+        statistics.clear();
+        doInJPA(entityManager -> assertThat(findPosts(entityManager)).hasSize(2));
+        printQueryCacheRegionStatistics();
+        assertThat(statistics.getQueryCacheHitCount()).isZero();
+
+        EntityScopedInvalidation invalidation = ((CaffeineRegionFactory) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory())
+                .getEntityScopedInvalidation();
+        LOGGER.info("{}", invalidation);
+        assertThat(invalidation.getScopedHitCount()).isEqualTo(1);
+        assertThat(invalidation.getScopedMissCount()).isEqualTo(1);
+    }
+
+    private List<Post> findPosts(EntityManager entityManager) {
+        return entityManager
+                .createQuery("select p " +
+                                     "from Post_Scoped p " +
+                                     "where p.title like :titlePattern ", Post.class)
+                .setParameter("titlePattern", "Welcome to%")
+                .setHint("org.hibernate.cacheable", true)
+                .getResultList();
+    }
+
+    @Entity(name = "Post_Scoped")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Data
+    public static class Post {
+
+        @Id
+        private Long id;
+        private String title;
+        private int views;
+
+        public Post() {
+        }
+
+        public Post(Long id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+}
@@ -1,26 +1,37 @@
 package com.gringotts.hibernatecache.cacheentry;
 
 import com.gringotts.hibernatecache.AbstractTestConfiguration;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
+import com.gringotts.hibernatecache.cache.near.NearCacheSettings;
 import lombok.Data;
-import lombok.NoArgsConstructor;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.stat.CacheRegionStatistics;
 import org.junit.Test;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
-import java.io.Serializable;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertNotNull;
+import static org.assertj.core.api.Assertions.assertThat;
 
+/**
+ * Reference entries are only used for {@link Immutable} entities without associations: the region then holds the
+ * entity instance itself, which every session gets back as is. A plain {@code jcache} region copies its values by
+ * serialization, so the scenario runs against the near cache factory, which keeps reference entries on heap.
+ */
 public class SimpleCacheReferenceEntryAndKeyView extends AbstractTestConfiguration {
 
+    @Override
+    protected String regionFactory() {
+        return System.getProperty(REGION_FACTORY_PROPERTY, NearCacheSettings.SIMPLE_FACTORY_NAME);
+    }
+
     @Override
     protected void additionalProperties(Properties properties) {
         properties.put("hibernate.cache.use_reference_entries", Boolean.TRUE.toString());
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
     }
 
     @Override
@@ -30,37 +41,51 @@ public class SimpleCacheReferenceEntryAndKeyView extends AbstractTestConfigurati
 
     @Test
     public void simpleCacheReferenceView() {
-        doInJPA(entityManager -> entityManager.persist(
-                Post.builder()
-                        .id(1L)
-                        .title("Welcome to Hibernate Caching")
-                        .build()
-        ));
-
-        doInJPA(entityManager -> {
-            Post post = entityManager.find(Post.class, 1L);
-            assertNotNull(post);
-        });
+        doInJPA(entityManager -> entityManager.persist(new Post(1L, "Welcome to Hibernate Caching")));
 
-        printCacheRegionStatistics(Post.class.getName());
+        Post[] loaded = new Post[2];
+        int instances = Post.INSTANCES.get();
+
+        doInJPA(entityManager -> loaded[0] = entityManager.find(Post.class, 1L));
+        doInJPA(entityManager -> loaded[1] = entityManager.find(Post.class, 1L));
+
+        //both hits handed back the instance held by the region, nothing was hydrated
+        assertThat(loaded[0]).isSameAs(loaded[1]);
+        assertThat(loaded[0].getTitle()).isEqualTo("Welcome to Hibernate Caching");
+        assertThat(Post.INSTANCES.get()).isEqualTo(instances);
 
-        /* Not working for some reason due to some changes,
-          even if this information is provided in the book.
-          Or we cannot already access this information
-        */
+        CacheRegionStatistics statistics = sessionFactory().getStatistics()
+                .getDomainDataRegionStatistics(Post.class.getName());
+        assertThat(statistics.getHitCount()).isEqualTo(2);
+        assertThat(statistics.getMissCount()).isZero();
+
+        printCacheRegionStatistics(Post.class.getName());
     }
 
     @Entity(name = "Post_CacheEntry")
-    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Immutable
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @Data
-    @Builder
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class Post implements Serializable {
+    public static class Post {
+
+        /**
+         * Every instantiation, including the ones Hibernate makes when assembling a disassembled entry.
+         */
+        static final AtomicInteger INSTANCES = new AtomicInteger();
 
         @Id
         private Long id;
 
         private String title;
+
+        public Post() {
+            INSTANCES.incrementAndGet();
+        }
+
+        public Post(Long id, String title) {
+            this();
+            this.id = id;
+            this.title = title;
+        }
     }
 }
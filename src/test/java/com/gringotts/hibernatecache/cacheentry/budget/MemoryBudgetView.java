@@ -0,0 +1,81 @@
+package com.gringotts.hibernatecache.cacheentry.budget;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.budget.MemoryBudget;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemoryBudgetView extends AbstractTestConfiguration {
+
+    private static final long MEMORY_BUDGET = 400 * 1024;
+
+    private static final int POSTS = 5;
+
+    private static final int COMMENTS_PER_POST = 600;
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.MEMORY_BUDGET, String.valueOf(MEMORY_BUDGET));
+        //rebalanced by hand below
+        properties.put(CaffeineSettings.REBALANCE_INTERVAL, String.valueOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void memoryBudgetView() {
+        doInJPA(entityManager -> {
+            for (long postId = 1; postId <= POSTS; postId++) {
+                final var post = new Post();
+                post.setId(postId);
+                post.setTitle("Post number " + postId);
+                entityManager.persist(post);
+                for (long commentId = 0; commentId < COMMENTS_PER_POST; commentId++) {
+                    post.addComment(new PostComment(postId * 10_000 + commentId, "Comment " + commentId));
+                }
+            }
+        });
+
+        MemoryBudget memoryBudget = ((CaffeineRegionFactory) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory())
+                .getMemoryBudget();
+        Map<String, Long> initialAllocations = memoryBudget.getAllocations();
+        LOGGER.info("Initial allocations: {}", initialAllocations);
+
+        //the comments do not fit in an equal share of the budget, while the other regions sit idle
+        for (int round = 0; round < 5; round++) {
+            doInJPA(entityManager -> {
+                for (long postId = 1; postId <= POSTS; postId++) {
+                    for (long commentId = 0; commentId < COMMENTS_PER_POST; commentId++) {
+                        entityManager.find(PostComment.class, postId * 10_000 + commentId);
+                    }
+                }
+            });
+            memoryBudget.rebalance();
+            LOGGER.info("Rebalancing #{}: {}", memoryBudget.getRebalanceCount(), memoryBudget.getLastDecision());
+        }
+
+        Map<String, Long> allocations = memoryBudget.getAllocations();
+        LOGGER.info("Final allocations: {}", allocations);
+        printCacheRegionStatistics(PostComment.class.getName());
+
+        assertThat(memoryBudget.getMoveCount()).isPositive();
+        assertThat(allocations.get(PostComment.class.getName()))
+                .isGreaterThan(initialAllocations.get(PostComment.class.getName()));
+        assertThat(allocations.values().stream().mapToLong(Long::longValue).sum()).isLessThanOrEqualTo(MEMORY_BUDGET);
+    }
+}
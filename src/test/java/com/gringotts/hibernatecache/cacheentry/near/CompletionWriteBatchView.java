@@ -0,0 +1,66 @@
+package com.gringotts.hibernatecache.cacheentry.near;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.near.NearCacheSettings;
+import com.gringotts.hibernatecache.cache.readwrite.SoftLockStatistics;
+import com.gringotts.hibernatecache.cache.readwrite.StripedEntityReadWriteAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompletionWriteBatchView extends AbstractTestConfiguration {
+
+    private static final int COMMENTS = 50;
+
+    @Override
+    protected String regionFactory() {
+        return NearCacheSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        properties.put(NearCacheSettings.PROP_PREFIX + NearCacheSettings.BATCH_COMPLETION_WRITES, Boolean.TRUE.toString());
+    }
+
+    @Test
+    public void completionWriteBatchView() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+            for (long commentId = 1; commentId <= COMMENTS; commentId++) {
+                post.addComment(new PostComment(commentId, "Comment " + commentId));
+            }
+        });
+
+        //the 50 comments reached their region as one invokeAll
+        SoftLockStatistics softLockStatistics = ((StripedEntityReadWriteAccess) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(PostComment.class)
+                .getCacheAccessStrategy())
+                .getSoftLockStatistics();
+        LOGGER.info("{}", softLockStatistics);
+        assertThat(softLockStatistics.getBatchCount()).isEqualTo(1);
+        assertThat(softLockStatistics.getBatchedWriteCount()).isEqualTo(COMMENTS);
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> {
+            for (long commentId = 1; commentId <= COMMENTS; commentId++) {
+                entityManager.find(PostComment.class, commentId);
+            }
+        });
+        printEntityCacheRegionStatistics(PostComment.class);
+        assertThat(statistics.getDomainDataRegionStatistics(PostComment.class.getName()).getHitCount())
+                .isEqualTo(COMMENTS);
+    }
+}
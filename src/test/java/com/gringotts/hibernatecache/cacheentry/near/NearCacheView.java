@@ -0,0 +1,71 @@
+package com.gringotts.hibernatecache.cacheentry.near;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.near.NearCacheSettings;
+import com.gringotts.hibernatecache.cache.near.NearCacheStorageAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NearCacheView extends AbstractTestConfiguration {
+
+    @Override
+    protected String regionFactory() {
+        return NearCacheSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        properties.put(NearCacheSettings.PROP_PREFIX + NearCacheSettings.EXPIRE_AFTER_WRITE, "10");
+    }
+
+    @Test
+    public void nearCacheView() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("Welcome to Hibernate Caching presentation");
+            entityManager.persist(post);
+            post.addComment(new PostComment(1L, "This is one comment"));
+        });
+
+        doInJPA(entityManager -> {
+            final var post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("Welcome to Hibernate Caching presentation");
+        });
+
+        NearCacheStorageAccess storageAccess = getNearCacheStorageAccess(Post.class.getName());
+        assertThat(storageAccess.getNearCache().estimatedSize()).isEqualTo(1);
+
+        doInJPA(entityManager -> {
+            final var post = entityManager.find(Post.class, 1L);
+            post.setTitle("High-Performance Hibernate");
+        });
+
+        //the READ_WRITE lock and unlock both went through the near cache
+        assertThat(storageAccess.getNearCache().estimatedSize()).isZero();
+
+        doInJPA(entityManager -> {
+            final var post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("High-Performance Hibernate");
+        });
+
+        printCacheRegionStatistics(Post.class.getName());
+        assertThat(storageAccess.getNearCache().estimatedSize()).isEqualTo(1);
+    }
+
+    private NearCacheStorageAccess getNearCacheStorageAccess(String regionName) {
+        DomainDataRegionTemplate region = (DomainDataRegionTemplate) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegion(regionName);
+        return (NearCacheStorageAccess) region.getCacheStorageAccess();
+    }
+}
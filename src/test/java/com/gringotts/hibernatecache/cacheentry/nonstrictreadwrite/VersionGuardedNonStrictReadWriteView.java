@@ -0,0 +1,80 @@
+package com.gringotts.hibernatecache.cacheentry.nonstrictreadwrite;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.nonstrict.GuardedEntityNonStrictReadWriteAccess;
+import com.gringotts.hibernatecache.cacheentry.nonstrictreadwrite.NonStrictReadWriteConcurrencyStrategyWithConcurrency.User;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VersionGuardedNonStrictReadWriteView extends AbstractTestConfiguration {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                User.class
+        };
+    }
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.VERSION_GUARDED_PUTS, Boolean.TRUE.toString());
+    }
+
+    @Override
+    protected void afterInit() {
+        doInJPA(entityManager -> entityManager.persist(new User("Hibernate-Cache-Pro")));
+    }
+
+    @Test
+    public void versionGuardedNonStrictReadWriteView() {
+        SessionFactoryImplementor sessionFactory = sessionFactory().unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(User.class);
+        GuardedEntityNonStrictReadWriteAccess access =
+                (GuardedEntityNonStrictReadWriteAccess) persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(1L, persister, sessionFactory, null);
+
+        //a reader that loaded version 0 before the update below committed, and only puts it afterwards
+        EntityManager readerEntityManager = entityManagerFactory().createEntityManager();
+        readerEntityManager.getTransaction().begin();
+        SharedSessionContractImplementor reader = readerEntityManager.unwrap(SharedSessionContractImplementor.class);
+        User staleUser = readerEntityManager.find(User.class, 1L);
+        access.evict(key);
+        CacheEntry staleEntry = persister.buildCacheEntry(
+                staleUser, persister.getPropertyValues(staleUser), staleUser.getVersion(), reader
+        );
+
+        doInJPA(entityManager -> {
+            User user = entityManager.find(User.class, 1L);
+            user.setName("Hibernate Cache Winner");
+        });
+
+        assertThat(access.putFromLoad(reader, key, staleEntry, staleUser.getVersion())).isFalse();
+        readerEntityManager.getTransaction().rollback();
+        readerEntityManager.close();
+        LOGGER.info("Rejected puts: {}", access.getRejectedPutCount());
+
+        //the committed version is cacheable again right away
+        doInJPA(entityManager -> entityManager.find(User.class, 1L));
+        doInJPA(entityManager -> {
+            User user = entityManager.find(User.class, 1L);
+            assertThat(user.getName()).isEqualTo("Hibernate Cache Winner");
+        });
+        printEntityCacheRegionStatistics(User.class);
+        assertThat(sessionFactory().getStatistics().getDomainDataRegionStatistics(User.class.getName()).getHitCount())
+                .isPositive();
+    }
+}
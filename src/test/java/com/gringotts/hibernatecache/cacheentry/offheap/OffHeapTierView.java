@@ -0,0 +1,68 @@
+package com.gringotts.hibernatecache.cacheentry.offheap;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import com.gringotts.hibernatecache.domain.PostDetail;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapTierView extends AbstractTestConfiguration {
+
+    @Override
+    protected String regionFactory() {
+        return "jcache";
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        properties.put("hibernate.javax.cache.uri", "ehcache-tiered.xml");
+    }
+
+    @Test
+    public void offHeapTierView() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("Welcome to Hibernate Caching presentation");
+            entityManager.persist(post);
+            post.addComment(new PostComment(1L, "This is one comment"));
+            post.addComment(new PostComment(2L, "This is two comment"));
+
+            final var postDetail = new PostDetail();
+            postDetail.setId(1L);
+            postDetail.setCreatedBy("Mystery Man");
+            postDetail.setCreatedOn(LocalDateTime.now());
+            postDetail.setPost(post);
+            entityManager.persist(postDetail);
+        });
+
+        doInJPA(entityManager -> {
+            final var post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments().size()).isEqualTo(2);
+        });
+
+        doInJPA(entityManager -> {
+            final var post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments().size()).isEqualTo(2);
+            final var postDetail = entityManager.find(PostDetail.class, 1L);
+            assertThat(postDetail.getCreatedBy()).isEqualTo("Mystery Man");
+        });
+
+        printCacheRegionStatistics(Post.class.getName());
+        printCacheRegionStatistics(PostDetail.class.getName());
+        printCollectionCacheRegionStatistics(Post.class, "comments");
+
+        Statistics statistics = sessionFactory().getStatistics();
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isPositive();
+        assertThat(statistics.getDomainDataRegionStatistics(PostDetail.class.getName()).getHitCount()).isPositive();
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName() + ".comments").getHitCount())
+                .isPositive();
+    }
+}
@@ -0,0 +1,76 @@
+package com.gringotts.hibernatecache.cacheentry.readwrite;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.readwrite.AsyncPutQueue;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncPutFromLoadView extends AbstractTestConfiguration {
+
+    private static final int COMMENTS = 20;
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.ASYNC_PUTS, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+            for (long commentId = 1; commentId <= COMMENTS; commentId++) {
+                post.addComment(new PostComment(commentId, "Comment " + commentId));
+            }
+        });
+        sessionFactory().getCache().evictAllRegions();
+    }
+
+    @Test
+    public void asyncPutFromLoadView() throws InterruptedException {
+        //the misses return without writing to the cache
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments()).hasSize(COMMENTS);
+        });
+
+        AsyncPutQueue asyncPutQueue = ((CaffeineRegionFactory) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory())
+                .getAsyncPutQueue(Post.class.getName());
+        //the post, its collection and its comments
+        while (asyncPutQueue.getAppliedCount() < COMMENTS + 2) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        LOGGER.info("{}", asyncPutQueue);
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments()).hasSize(COMMENTS);
+        });
+        printEntityCacheRegionStatistics(Post.class);
+        printCollectionCacheRegionStatistics(Post.class, "comments");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(COMMENTS + 2);
+        assertThat(statistics.getSecondLevelCacheMissCount()).isZero();
+    }
+}
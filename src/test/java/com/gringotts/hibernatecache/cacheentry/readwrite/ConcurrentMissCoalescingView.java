@@ -0,0 +1,114 @@
+package com.gringotts.hibernatecache.cacheentry.readwrite;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.coalescing.CoalescingSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Interceptor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentMissCoalescingView extends AbstractTestConfiguration {
+
+    private static final int READERS = 5;
+
+    private final AtomicBoolean slowSelects = new AtomicBoolean();
+
+    @Override
+    protected Interceptor interceptor() {
+        return new EmptyInterceptor() {
+            @Override
+            public String onPrepareStatement(String sql) {
+                if (slowSelects.get() && sql.toLowerCase().contains("from post")) {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return sql;
+            }
+        };
+    }
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.session_factory_name", getClass().getSimpleName());
+        properties.put("hibernate.session_factory_name_is_jndi", Boolean.FALSE.toString());
+        properties.put(CoalescingSettings.PROP_PREFIX + CoalescingSettings.ENABLED, Boolean.TRUE.toString());
+        properties.put(CoalescingSettings.PROP_PREFIX + CoalescingSettings.WAIT_TIMEOUT, String.valueOf(2_000));
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+        });
+        sessionFactory().getCache().evictEntityData(Post.class);
+    }
+
+    @Test
+    public void concurrentMissCoalescingView() throws Exception {
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        slowSelects.set(true);
+
+        //the first miss selects the post, the readers arriving while it does wait for it
+        ExecutorService readers = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            List<Future<?>> reads = new ArrayList<>();
+            reads.add(readers.submit(this::readPost));
+            TimeUnit.MILLISECONDS.sleep(100);
+            for (int i = 0; i < READERS; i++) {
+                reads.add(readers.submit(this::readPost));
+            }
+            for (Future<?> read : reads) {
+                read.get();
+            }
+        } finally {
+            slowSelects.set(false);
+            readers.shutdown();
+        }
+
+        printEntityCacheRegionStatistics(Post.class);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isEqualTo(READERS);
+
+        ObjectName objectName = new ObjectName(
+                "com.gringotts.hibernatecache:type=LoadCoalescing,name=" + ObjectName.quote(getClass().getSimpleName())
+        );
+        Object coalescedLoads = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(objectName, "CoalescedLoadCount");
+        LOGGER.info("Coalesced loads: {}", coalescedLoads);
+        assertThat(coalescedLoads).isEqualTo((long) READERS);
+    }
+
+    private void readPost() {
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("High-Performance Java Persistence");
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.gringotts.hibernatecache.cacheentry.readwrite;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.readwrite.StripedCollectionReadWriteAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalCollectionUpdateView extends AbstractTestConfiguration {
+
+    private static final String COMMENTS_ROLE = Post.class.getName() + ".comments";
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.INCREMENTAL_COLLECTIONS, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+            post.addComment(new PostComment(1L, "Excellent!"));
+            post.addComment(new PostComment(2L, "Great!"));
+        });
+        //caches the collection
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments()).hasSize(2);
+        });
+    }
+
+    @Test
+    public void incrementalCollectionUpdateView() {
+        //the comment is queued on the uninitialized collection
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            post.addComment(new PostComment(3L, "Must read!"));
+        });
+        //an orphan removed from the initialized collection
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            post.getComments().removeIf(comment -> comment.getId() == 1L);
+        });
+
+        sessionFactory().getStatistics().clear();
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getComments())
+                    .extracting(PostComment::getComment)
+                    .containsExactly("Great!", "Must read!");
+        });
+        printCollectionCacheRegionStatistics(Post.class, "comments");
+        CacheRegionStatistics statistics = sessionFactory().getStatistics()
+                .getDomainDataRegionStatistics(COMMENTS_ROLE);
+        assertThat(statistics.getHitCount()).isEqualTo(1);
+        assertThat(statistics.getMissCount()).isZero();
+
+        StripedCollectionReadWriteAccess access = (StripedCollectionReadWriteAccess) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .collectionPersister(COMMENTS_ROLE)
+                .getCacheAccessStrategy();
+        LOGGER.info("{}", access.getSoftLockStatistics());
+        assertThat(access.getSoftLockStatistics().getIncrementalUpdateCount()).isEqualTo(2);
+    }
+}
@@ -2,16 +2,17 @@ package com.gringotts.hibernatecache.cacheentry.readwrite;
 
 import com.gringotts.hibernatecache.AbstractTestConfiguration;
 import com.gringotts.hibernatecache.ReflectionUtils;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.ehcache.core.Ehcache;
 import org.hibernate.EmptyInterceptor;
 import org.hibernate.Interceptor;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.access.SoftLock;
 import org.hibernate.cache.spi.support.AbstractRegion;
 import org.hibernate.cache.spi.support.StorageAccess;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
@@ -29,7 +30,6 @@ import java.io.Serializable;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static java.lang.Thread.sleep;
 
@@ -60,8 +60,8 @@ public class ReadWriteCacheConcurrencyStrategyWithLockTimeout extends AbstractTe
     protected Properties properties() {
         Properties properties = super.properties();
         properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
-        properties.put("hibernate.cache.region.factory_class", "jcache");
         properties.put("net.sf.ehcache.hibernate.cache_lock_timeout", String.valueOf(250));
+        properties.put(CaffeineSettings.LOCK_TIMEOUT, String.valueOf(250));
         return properties;
     }
 
@@ -86,29 +86,24 @@ public class ReadWriteCacheConcurrencyStrategyWithLockTimeout extends AbstractTe
         }
         applyInterceptor.set(false);
 
-        AtomicReference<Object> previousCacheEntryReference = new AtomicReference<>();
-        AtomicBoolean cacheEntryChanged = new AtomicBoolean();
+        AtomicBoolean cacheEntryUnlocked = new AtomicBoolean();
         AtomicInteger numberOfIterations = new AtomicInteger(0);
 
-        while (!cacheEntryChanged.get()) {
+        //region factories restoring the previous item on rollback unlock the entry right away, the others once the
+        //lock times out and a load replaces it
+        while (!cacheEntryUnlocked.get()) {
             doInJPA(entityManager -> {
-                boolean entryChange;
                 entityManager.find(Repository.class, 1L);
                 try {
-                    Object previousCacheEntry = previousCacheEntryReference.get();
                     Object cacheEntry = getCacheEntry(Repository.class, 1L);
-                    entryChange = previousCacheEntry != null &&
-                            !previousCacheEntry.equals(cacheEntry);
-                    previousCacheEntryReference.set(cacheEntry);
                     LOGGER.info("Cache entry {}", ToStringBuilder.reflectionToString(cacheEntry));
-                    if(!entryChange) {
+                    if (cacheEntry instanceof SoftLock) {
                         numberOfIterations.incrementAndGet();
                         sleep(100);
                     } else {
                         LOGGER.info("Cache entry was unlocked");
-                        LOGGER.info("Cache entry {}", ToStringBuilder.reflectionToString(getCacheEntry(Repository.class, 1L)));
                         LOGGER.info("Number of iterations it took: {}", numberOfIterations.get());
-                        cacheEntryChanged.set(true);
+                        cacheEntryUnlocked.set(true);
                     }
                 } catch (IllegalAccessException | InterruptedException e) {
                     LOGGER.error("Error accessing Cache", e);
@@ -120,10 +115,10 @@ public class ReadWriteCacheConcurrencyStrategyWithLockTimeout extends AbstractTe
     @SuppressWarnings("unchecked")
     private <T> T getCacheEntry(Class<T> clazz, Long id) throws IllegalAccessException {
         EntityPersister entityPersister = ((SessionFactoryImplementor) sessionFactory()).getEntityPersister(clazz.getName() );
-        return (T) getCache(clazz).get(cacheKey(id, entityPersister));
+        return (T) getCache(clazz).getFromCache(cacheKey(id, entityPersister), null);
     }
 
-    private Ehcache getCache(Class clazz) {
+    private StorageAccess getCache(Class clazz) {
         SessionFactory sessionFactory = sessionFactory();
         Statistics statistics = sessionFactory.getStatistics();
         if (sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
@@ -133,8 +128,7 @@ public class ReadWriteCacheConcurrencyStrategyWithLockTimeout extends AbstractTe
         final var regionName = clazz.getName();
         CacheRegionStatistics cacheRegionStatistics = statistics.getDomainDataRegionStatistics(regionName);
         AbstractRegion region = ReflectionUtils.getFieldValue(cacheRegionStatistics, "region");
-        StorageAccess storageAccess = getStorageAccess(region);
-        return getEhcache(storageAccess);
+        return getStorageAccess(region);
     }
 
     private Object cacheKey(Serializable identifier, EntityPersister p) {
@@ -0,0 +1,60 @@
+package com.gringotts.hibernatecache.cacheentry.readwrite;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.readwrite.SoftLockStatistics;
+import com.gringotts.hibernatecache.cache.readwrite.StripedEntityReadWriteAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RollbackSoftLockReleaseView extends AbstractTestConfiguration {
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+        });
+    }
+
+    @Test
+    public void rollbackSoftLockReleaseView() {
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            post.setTitle("High-Performance Java Persistence, 2nd edition");
+            entityManager.flush();
+            entityManager.getTransaction().setRollbackOnly();
+        });
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        //the rollback put the previous item back, instead of leaving a soft lock until the lock timeout
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("High-Performance Java Persistence");
+        });
+        printEntityCacheRegionStatistics(Post.class);
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isEqualTo(1);
+
+        SoftLockStatistics softLockStatistics = ((StripedEntityReadWriteAccess) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Post.class)
+                .getCacheAccessStrategy())
+                .getSoftLockStatistics();
+        LOGGER.info("{}", softLockStatistics);
+        assertThat(softLockStatistics.getRestoreCount()).isEqualTo(1);
+        assertThat(softLockStatistics.getLockCount()).isEqualTo(softLockStatistics.getReleaseCount());
+    }
+}
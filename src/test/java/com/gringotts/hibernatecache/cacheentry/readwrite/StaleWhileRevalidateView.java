@@ -0,0 +1,89 @@
+package com.gringotts.hibernatecache.cacheentry.readwrite;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.cache.revalidate.RevalidatingStorageAccess;
+import com.gringotts.hibernatecache.domain.Post;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.support.AbstractRegion;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StaleWhileRevalidateView extends AbstractTestConfiguration {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final List<Runnable> revalidations = new ArrayList<>();
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        //time only moves, and reloads only run, when the test says so
+        properties.put(CaffeineSettings.TICKER, (Ticker) nanos::get);
+        properties.put(CaffeineSettings.REVALIDATION_EXECUTOR, (Executor) revalidations::add);
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+        });
+    }
+
+    @Test
+    public void staleWhileRevalidateView() {
+        //a change the cache cannot know of
+        doInJPA(entityManager -> entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("update POSTS set title = ? where id = ?")) {
+                statement.setString(1, "High-Performance Java Persistence, 2nd edition");
+                statement.setLong(2, 1L);
+                statement.executeUpdate();
+            }
+        }));
+        //past the 10 seconds expire_after_write, within the 60 seconds of @StaleWhileRevalidate
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("High-Performance Java Persistence");
+        });
+        assertThat(revalidations).hasSize(1);
+
+        revalidations.forEach(Runnable::run);
+        doInJPA(entityManager -> {
+            Post post = entityManager.find(Post.class, 1L);
+            assertThat(post.getTitle()).isEqualTo("High-Performance Java Persistence, 2nd edition");
+        });
+        printEntityCacheRegionStatistics(Post.class);
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isEqualTo(2);
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getMissCount()).isZero();
+
+        RevalidatingStorageAccess storageAccess = (RevalidatingStorageAccess) getStorageAccess((AbstractRegion)
+                sessionFactory().unwrap(SessionFactoryImplementor.class).getCache().getRegion(Post.class.getName()));
+        LOGGER.info("Stale hits: {}, revalidations: {}",
+                    storageAccess.getStaleHitCount(), storageAccess.getRevalidationCount());
+        assertThat(storageAccess.getStaleHitCount()).isEqualTo(1);
+        assertThat(storageAccess.getRevalidationCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.gringotts.hibernatecache.cacheentry.snapshot;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import lombok.Data;
+import org.hibernate.Session;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotWarmRestartView extends AbstractTestConfiguration {
+
+    private final Path snapshotDirectory = createSnapshotDirectory();
+
+    private boolean restarted;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class[]{Post.class};
+    }
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.SNAPSHOT_DIRECTORY, snapshotDirectory.toString());
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        if (restarted) {
+            properties.put("hibernate.hbm2ddl.auto", "none");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Test
+    public void snapshotWarmRestartView() {
+        doInJPA(entityManager -> {
+            for (long id = 1; id <= 2; id++) {
+                final var post = new Post();
+                post.setId(id);
+                post.setTitle("Welcome to Hibernate Caching presentation, part " + id);
+                entityManager.persist(post);
+            }
+        });
+
+        restart();
+
+        doInJPA(entityManager -> {
+            assertThat(entityManager.find(Post.class, 1L)).isNotNull();
+            assertThat(entityManager.find(Post.class, 2L)).isNotNull();
+        });
+
+        printCacheRegionStatistics(Post.class.getName());
+
+        Statistics statistics = sessionFactory().getStatistics();
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isEqualTo(2);
+        //the one query checking the versions of the snapshot entries
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        //a change the cache cannot know of, as if made while the application was down
+        doInJPA(entityManager -> entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "update Post_Snapshot set title = ?, version = version + 1 where id = ?")) {
+                statement.setString(1, "High-Performance Hibernate");
+                statement.setLong(2, 1L);
+                statement.executeUpdate();
+            }
+        }));
+
+        restart();
+
+        doInJPA(entityManager -> {
+            assertThat(entityManager.find(Post.class, 1L).getTitle()).isEqualTo("High-Performance Hibernate");
+            assertThat(entityManager.find(Post.class, 2L)).isNotNull();
+        });
+
+        printCacheRegionStatistics(Post.class.getName());
+
+        statistics = sessionFactory().getStatistics();
+        //the changed post no longer matches its version and is loaded again
+        assertThat(statistics.getDomainDataRegionStatistics(Post.class.getName()).getHitCount()).isEqualTo(1);
+    }
+
+    private void restart() {
+        entityManagerFactory.close();
+        restarted = true;
+        entityManagerFactory = newEntityManagerFactory();
+    }
+
+    private static Path createSnapshotDirectory() {
+        try {
+            return Files.createTempDirectory("hibernate-cache-snapshot");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Entity(name = "Post_Snapshot")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Data
+    public static class Post {
+
+        @Id
+        private Long id;
+
+        private String title;
+
+        @Version
+        private int version;
+    }
+}
@@ -0,0 +1,75 @@
+package com.gringotts.hibernatecache.cacheentry.weight;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactQueryResultsView extends AbstractTestConfiguration {
+
+    private static final int COMMENTS = 1_000;
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.COMPACT_QUERY_RESULTS, Boolean.TRUE.toString());
+    }
+
+    @Override
+    public void afterInit() {
+        doInJPA(entityManager -> {
+            final var post = new Post();
+            post.setId(1L);
+            post.setTitle("High-Performance Java Persistence");
+            entityManager.persist(post);
+            for (long commentId = 1; commentId <= COMMENTS; commentId++) {
+                post.addComment(new PostComment(1_000 + commentId, "Comment " + commentId));
+            }
+        });
+    }
+
+    @Test
+    public void compactQueryResultsView() {
+        doInJPA(entityManager -> assertThat(findComments(entityManager)).hasSize(COMMENTS));
+
+        Statistics statistics = sessionFactory().getStatistics();
+        statistics.clear();
+        doInJPA(entityManager -> assertThat(findComments(entityManager))
+                .hasSize(COMMENTS)
+                .extracting(PostComment::getId)
+                .startsWith(1_001L, 1_002L)
+                .endsWith(2_000L));
+        printQueryCacheRegionStatistics();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        CacheRegionStatistics queryRegion = statistics.getQueryRegionStatistics("default-query-results-region");
+        LOGGER.info("Query results retain {} bytes", queryRegion.getSizeInMemory());
+        //an int per identifier, instead of a reference and a boxed Long each
+        assertThat(queryRegion.getSizeInMemory()).isLessThan(COMMENTS * 8L);
+    }
+
+    private List<PostComment> findComments(EntityManager entityManager) {
+        return entityManager
+                .createQuery("select pc " +
+                                     "from POST_COMMENTS pc " +
+                                     "where pc.post.id = :postId " +
+                                     "order by pc.id", PostComment.class)
+                .setParameter("postId", 1L)
+                .setHint("org.hibernate.cacheable", true)
+                .getResultList();
+    }
+}
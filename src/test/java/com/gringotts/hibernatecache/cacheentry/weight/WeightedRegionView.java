@@ -0,0 +1,73 @@
+package com.gringotts.hibernatecache.cacheentry.weight;
+
+import com.gringotts.hibernatecache.AbstractTestConfiguration;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineRegionFactory;
+import com.gringotts.hibernatecache.cache.caffeine.CaffeineSettings;
+import com.gringotts.hibernatecache.domain.Post;
+import com.gringotts.hibernatecache.domain.PostComment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeightedRegionView extends AbstractTestConfiguration {
+
+    private static final long MAXIMUM_WEIGHT = 64 * 1024;
+
+    @Override
+    protected String regionFactory() {
+        return CaffeineSettings.SIMPLE_FACTORY_NAME;
+    }
+
+    @Override
+    protected void additionalProperties(Properties properties) {
+        properties.put(CaffeineSettings.PROP_PREFIX + CaffeineSettings.MAXIMUM_WEIGHT, String.valueOf(MAXIMUM_WEIGHT));
+    }
+
+    @Test
+    public void weightedRegionView() {
+        doInJPA(entityManager -> {
+            for (long postId = 1; postId <= 2; postId++) {
+                final var post = new Post();
+                post.setId(postId);
+                post.setTitle("Post number " + postId);
+                entityManager.persist(post);
+                //the first post has a large comments collection, the second a tiny one
+                int comments = postId == 1 ? 1_000 : 1;
+                for (long commentId = 0; commentId < comments; commentId++) {
+                    post.addComment(new PostComment(postId * 10_000 + commentId, "Comment " + commentId));
+                }
+            }
+        });
+
+        doInJPA(entityManager -> {
+            assertThat(entityManager.find(Post.class, 1L).getComments()).hasSize(1_000);
+            assertThat(entityManager.find(Post.class, 2L).getComments()).hasSize(1);
+        });
+
+        printCollectionCacheRegionStatistics(Post.class, "comments");
+
+        //eviction runs asynchronously
+        CaffeineRegionFactory regionFactory = (CaffeineRegionFactory) sessionFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory();
+        regionFactory.getCache(PostComment.class.getName()).cleanUp();
+
+        Statistics statistics = sessionFactory().getStatistics();
+        CacheRegionStatistics posts = statistics.getDomainDataRegionStatistics(Post.class.getName());
+        CacheRegionStatistics collections = statistics.getDomainDataRegionStatistics(Post.class.getName() + ".comments");
+        CacheRegionStatistics comments = statistics.getDomainDataRegionStatistics(PostComment.class.getName());
+
+        assertThat(collections.getElementCountInMemory()).isEqualTo(2);
+        //both collection entries count as one entry each, but not as the same number of bytes
+        assertThat(collections.getSizeInMemory()).isGreaterThan(10 * posts.getSizeInMemory());
+        //the 1,001 comments do not fit in the byte budget of their region
+        assertThat(comments.getSizeInMemory()).isPositive().isLessThanOrEqualTo(MAXIMUM_WEIGHT);
+        assertThat(comments.getElementCountInMemory()).isLessThan(1_001);
+    }
+}